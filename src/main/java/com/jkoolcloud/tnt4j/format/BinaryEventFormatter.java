@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * <p>
+ * Event formatter which can produce the encoded form of tracking objects as bytes. Sinks writing bytes (e.g. Kafka)
+ * call {@code toBytes()} instead of {@code format()} and use the returned bytes as the record value, skipping the
+ * intermediate string and its encoding.
+ * </p>
+ * <p>
+ * Each {@code toBytes()} method must return the complete encoded form of its arguments in a newly allocated array,
+ * which the caller owns and may retain after the call. Bytes need not be text; when they are, they should carry the
+ * same content as the string returned by the matching {@code format()} method, encoded as UTF-8.
+ * </p>
+ *
+ *
+ * @version $Revision: 1 $
+ *
+ * @see EventFormatter
+ */
+public interface BinaryEventFormatter extends EventFormatter {
+	/**
+	 * Format a given object and return bytes
+	 *
+	 * @param obj object to be formatted
+	 * @param args arguments associated with the object
+	 * @return formatted object bytes
+	 */
+	byte[] toBytes(Object obj, Object... args);
+
+	/**
+	 * Format a given {@link TrackingEvent} and return bytes
+	 *
+	 * @param event tracking event instance to be formatted
+	 * @return formatted tracking event bytes
+	 * @see TrackingEvent
+	 */
+	byte[] toBytes(TrackingEvent event);
+
+	/**
+	 * Format a given {@link TrackingActivity} and return bytes
+	 *
+	 * @param activity tracking activity instance to be formatted
+	 * @return formatted tracking activity bytes
+	 * @see TrackingActivity
+	 */
+	byte[] toBytes(TrackingActivity activity);
+
+	/**
+	 * Format a given {@link Snapshot} and return bytes
+	 *
+	 * @param snapshot snapshot object to be formatted
+	 * @return formatted snapshot bytes
+	 * @see Snapshot
+	 */
+	byte[] toBytes(Snapshot snapshot);
+
+	/**
+	 * Format a given message and severity level combo and return bytes
+	 *
+	 * @param ttl time to live in seconds
+	 * @param src event source
+	 * @param level severity level
+	 * @param msg message to be formatted
+	 * @param args arguments associated with the object
+	 * @return formatted message and severity bytes
+	 * @see OpLevel
+	 */
+	byte[] toBytes(long ttl, Source src, OpLevel level, String msg, Object... args);
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements a decoder of CBOR (RFC 7049) data items, such as records produced by {@link CBORFormatter}.
+ * Decoded items are returned as plain Java objects: maps as {@link Map} with string keys (in encoded order), arrays as
+ * {@link List}, integers as {@link Long} (or {@link BigInteger} when out of range), floating point numbers as
+ * {@link Float} or {@link Double}, text as {@link String}, byte strings as {@code byte[]}, and booleans and null as is.
+ * Tags are skipped. Intended for tooling, such as converting binary logs to JSON.
+ * </p>
+ * <p>
+ * A stream may contain a sequence of records. Line separators between top level records, as written by line oriented
+ * sinks, are skipped.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see CBORFormatter
+ * @see CBORWriter
+ */
+public class CBORDecoder {
+	private static final Charset UTF8 = Charset.forName(Utils.UTF8);
+	private static final Object BREAK = new Object();
+
+	private final InputStream in;
+	private int peeked = -1;
+
+	/**
+	 * Create a decoder reading items from a given input stream.
+	 *
+	 * @param in
+	 *            input stream
+	 */
+	public CBORDecoder(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Create a decoder reading items from a given byte array.
+	 *
+	 * @param data
+	 *            encoded data items
+	 */
+	public CBORDecoder(byte[] data) {
+		this(new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Decode first data item of a given byte array.
+	 *
+	 * @param data
+	 *            encoded data items
+	 * @return decoded item
+	 * @throws IOException
+	 *             if data is malformed or truncated
+	 */
+	public static Object decode(byte[] data) throws IOException {
+		return new CBORDecoder(data).next();
+	}
+
+	/**
+	 * Decode all data items of a given byte array.
+	 *
+	 * @param data
+	 *            encoded data items
+	 * @return list of decoded items
+	 * @throws IOException
+	 *             if data is malformed or truncated
+	 */
+	public static List<Object> decodeAll(byte[] data) throws IOException {
+		CBORDecoder decoder = new CBORDecoder(data);
+		List<Object> items = new ArrayList<Object>();
+		while (decoder.hasNext()) {
+			items.add(decoder.next());
+		}
+		return items;
+	}
+
+	/**
+	 * Determine if there are more data items, skipping line separators between items.
+	 *
+	 * @return {@code true} if there are more items, {@code false} at the end of stream
+	 * @throws IOException
+	 *             if error reading stream
+	 */
+	public boolean hasNext() throws IOException {
+		while (peeked == -1 || peeked == '\n' || peeked == '\r') {
+			peeked = in.read();
+			if (peeked == -1) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decode next data item.
+	 *
+	 * @return decoded item
+	 * @throws IOException
+	 *             if data is malformed or truncated
+	 * @throws EOFException
+	 *             if there are no more items
+	 */
+	public Object next() throws IOException {
+		if (!hasNext()) {
+			throw new EOFException("No more CBOR items");
+		}
+		int initial = peeked;
+		peeked = -1;
+		Object item = readItem(initial);
+		if (item == BREAK) {
+			throw new IOException("Unexpected CBOR break");
+		}
+		return item;
+	}
+
+	private Object readItem() throws IOException {
+		return readItem(readByte());
+	}
+
+	private Object readItem(int initial) throws IOException {
+		int major = initial >>> 5;
+		int info = initial & 0x1F;
+		switch (major) {
+		case CBORWriter.MAJOR_UINT:
+			return readUnsigned(info, false);
+		case CBORWriter.MAJOR_NINT:
+			return readUnsigned(info, true);
+		case CBORWriter.MAJOR_BYTES:
+			return readString(info, CBORWriter.MAJOR_BYTES);
+		case CBORWriter.MAJOR_TEXT:
+			return new String(readString(info, CBORWriter.MAJOR_TEXT), UTF8);
+		case CBORWriter.MAJOR_ARRAY:
+			return readArray(info);
+		case CBORWriter.MAJOR_MAP:
+			return readMap(info);
+		case CBORWriter.MAJOR_TAG:
+			readLength(info);
+			return readItem();
+		default:
+			return readSimple(initial, info);
+		}
+	}
+
+	private Object readUnsigned(int info, boolean negative) throws IOException {
+		long value = readLength(info);
+		if (value >= 0) {
+			return negative ? -1 - value : value;
+		}
+		BigInteger big = new BigInteger(1, toBytes(value));
+		return negative ? BigInteger.ONE.negate().subtract(big) : big;
+	}
+
+	private byte[] readString(int info, int major) throws IOException {
+		if (info == CBORWriter.INDEFINITE) {
+			ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+			int initial;
+			while ((initial = readByte()) != CBORWriter.BREAK) {
+				if ((initial >>> 5) != major) {
+					throw new IOException("Invalid CBOR string chunk: major=" + (initial >>> 5));
+				}
+				byte[] chunk = readString(initial & 0x1F, major);
+				chunks.write(chunk, 0, chunk.length);
+			}
+			return chunks.toByteArray();
+		}
+		byte[] data = new byte[checkedLength(readLength(info))];
+		readFully(data);
+		return data;
+	}
+
+	private List<Object> readArray(int info) throws IOException {
+		List<Object> items = new ArrayList<Object>();
+		if (info == CBORWriter.INDEFINITE) {
+			Object item;
+			while ((item = readItem()) != BREAK) {
+				items.add(item);
+			}
+		} else {
+			for (long i = readLength(info); i > 0; i--) {
+				items.add(readValue());
+			}
+		}
+		return items;
+	}
+
+	private Map<String, Object> readMap(int info) throws IOException {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		if (info == CBORWriter.INDEFINITE) {
+			Object key;
+			while ((key = readItem()) != BREAK) {
+				map.put(String.valueOf(key), readValue());
+			}
+		} else {
+			for (long i = readLength(info); i > 0; i--) {
+				map.put(String.valueOf(readValue()), readValue());
+			}
+		}
+		return map;
+	}
+
+	private Object readValue() throws IOException {
+		Object item = readItem();
+		if (item == BREAK) {
+			throw new IOException("Unexpected CBOR break");
+		}
+		return item;
+	}
+
+	private Object readSimple(int initial, int info) throws IOException {
+		switch (initial) {
+		case CBORWriter.FALSE:
+			return Boolean.FALSE;
+		case CBORWriter.TRUE:
+			return Boolean.TRUE;
+		case CBORWriter.NULL:
+		case CBORWriter.NULL + 1: // undefined
+			return null;
+		case CBORWriter.FLOAT32 - 1:
+			return halfToFloat((int) readNumber(2));
+		case CBORWriter.FLOAT32:
+			return Float.intBitsToFloat((int) readNumber(4));
+		case CBORWriter.FLOAT64:
+			return Double.longBitsToDouble(readNumber(8));
+		case CBORWriter.BREAK:
+			return BREAK;
+		default:
+			if (info < 24) {
+				return (long) info;
+			} else if (info == 24) {
+				return (long) readByte();
+			}
+			throw new IOException("Unsupported CBOR simple value: " + Integer.toHexString(initial));
+		}
+	}
+
+	private long readLength(int info) throws IOException {
+		if (info < 24) {
+			return info;
+		}
+		switch (info) {
+		case 24:
+			return readNumber(1);
+		case 25:
+			return readNumber(2);
+		case 26:
+			return readNumber(4);
+		case 27:
+			return readNumber(8);
+		default:
+			throw new IOException("Invalid CBOR length: info=" + info);
+		}
+	}
+
+	private long readNumber(int n) throws IOException {
+		long value = 0;
+		for (int i = 0; i < n; i++) {
+			value = (value << 8) | readByte();
+		}
+		return value;
+	}
+
+	private int readByte() throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException("Truncated CBOR item");
+		}
+		return b;
+	}
+
+	private void readFully(byte[] data) throws IOException {
+		int off = 0;
+		while (off < data.length) {
+			int n = in.read(data, off, data.length - off);
+			if (n < 0) {
+				throw new EOFException("Truncated CBOR item");
+			}
+			off += n;
+		}
+	}
+
+	private static int checkedLength(long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("CBOR string too long: length=" + length);
+		}
+		return (int) length;
+	}
+
+	private static byte[] toBytes(long value) {
+		byte[] bytes = new byte[8];
+		for (int i = 7; i >= 0; i--, value >>>= 8) {
+			bytes[i] = (byte) value;
+		}
+		return bytes;
+	}
+
+	private static float halfToFloat(int half) {
+		int exp = (half >> 10) & 0x1F;
+		int mant = half & 0x3FF;
+		float value;
+		if (exp == 0) {
+			value = mant * (float) Math.pow(2, -24);
+		} else if (exp == 31) {
+			value = mant == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+		} else {
+			value = (mant + 1024) * (float) Math.pow(2, exp - 25);
+		}
+		return (half & 0x8000) != 0 ? -value : value;
+	}
+}
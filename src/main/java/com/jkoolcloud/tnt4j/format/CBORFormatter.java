@@ -0,0 +1,662 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.jkoolcloud.tnt4j.config.Configurable;
+import com.jkoolcloud.tnt4j.core.*;
+import com.jkoolcloud.tnt4j.format.JSONFormatter.SpecNumbersHandling;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.Useconds;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * Binary implementation of {@link StreamEventFormatter} interface, which encodes {@link TrackingActivity},
+ * {@link TrackingEvent}, {@link Snapshot}, {@link Property} and log messages in CBOR (Concise Binary Object
+ * Representation, RFC 7049) format. Each record is a CBOR map with the same keys and values as produced by
+ * {@link JSONFormatter}, so records are decoded into the same structure as parsed JSON (see {@link CBORDecoder}).
+ * Numbers are written as binary integers and floats instead of decimal text, strings need no escaping, and source
+ * attributes are encoded once per source, which makes records smaller and faster to produce than JSON.
+ * </p>
+ * <p>
+ * Methods returning strings return Base64 encoded records. Sinks writing bytes (file, socket, Kafka, MQTT) write
+ * binary records.
+ * </p>
+ * <p>
+ * This formatter supports the following configuration properties:
+ * <ul>
+ * <li>{@code OpName} - operation name of log messages. Default value - {@code log}. (Optional)</li>
+ * <li>{@code SpecNumbersHandling} - handling of {@code NaN} and {@code Infinity} property values: {@code SUPPRESS},
+ * {@code ENQUOTE} (written as text) or {@code MAINTAIN} (written as floats). Default value - {@code SUPPRESS}.
+ * (Optional)</li>
+ * </ul>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see CBORDecoder
+ * @see CBORWriter
+ * @see JSONFormatter
+ */
+public class CBORFormatter implements StreamEventFormatter, Configurable, JSONLabels {
+	private static final String DEF_OP_NAME = "log";
+
+	private Map<String, Object> config = null;
+	protected String defOpName = DEF_OP_NAME;
+	protected SpecNumbersHandling specialNumbersHandling = SpecNumbersHandling.SUPPRESS;
+
+	private final SourceFragmentCache<byte[]> sourceFields = new SourceFragmentCache<byte[]>() {
+		@Override
+		protected byte[] build(Source source) {
+			CBORWriter out = CBORWriter.acquire();
+			try {
+				writeSourceFields(out, source);
+				return out.toByteArray();
+			} finally {
+				out.release();
+			}
+		}
+	};
+
+	/**
+	 * Create CBOR formatter
+	 */
+	public CBORFormatter() {
+	}
+
+	@Override
+	public Map<String, Object> getConfiguration() {
+		return config;
+	}
+
+	@Override
+	public void setConfiguration(Map<String, Object> settings) {
+		config = settings;
+		defOpName = Utils.getString("OpName", settings, defOpName);
+		String specNumbers = Utils.getString("SpecNumbersHandling", settings, SpecNumbersHandling.SUPPRESS.name());
+		try {
+			specialNumbersHandling = SpecNumbersHandling.valueOf(specNumbers.toUpperCase());
+		} catch (IllegalArgumentException exc) {
+			specialNumbersHandling = SpecNumbersHandling.SUPPRESS;
+		}
+	}
+
+	@Override
+	public String format(Object obj, Object... args) {
+		return Base64.encodeBase64String(toBytes(obj, args));
+	}
+
+	@Override
+	public String format(TrackingEvent event) {
+		return Base64.encodeBase64String(toBytes(event));
+	}
+
+	@Override
+	public String format(TrackingActivity activity) {
+		return Base64.encodeBase64String(toBytes(activity));
+	}
+
+	@Override
+	public String format(Snapshot snapshot) {
+		return Base64.encodeBase64String(toBytes(snapshot));
+	}
+
+	@Override
+	public String format(long ttl, Source source, OpLevel level, String msg, Object... args) {
+		return Base64.encodeBase64String(toBytes(ttl, source, level, msg, args));
+	}
+
+	@Override
+	public byte[] toBytes(Object obj, Object... args) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, obj, args);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(TrackingEvent event) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, event);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(TrackingActivity activity) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, activity);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(Snapshot snapshot) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, snapshot);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(long ttl, Source src, OpLevel level, String msg, Object... args) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, ttl, src, level, msg, args);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(TrackingEvent event, ByteBuffer dst) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, event);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(TrackingActivity activity, ByteBuffer dst) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, activity);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(Snapshot snapshot, ByteBuffer dst) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, snapshot);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(ByteBuffer dst, long ttl, Source src, OpLevel level, String msg, Object... args) {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, ttl, src, level, msg, args);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(TrackingEvent event, OutputStream dst) throws IOException {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, event);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(TrackingActivity activity, OutputStream dst) throws IOException {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, activity);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(Snapshot snapshot, OutputStream dst) throws IOException {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, snapshot);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(OutputStream dst, long ttl, Source src, OpLevel level, String msg, Object... args)
+			throws IOException {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			write(out, ttl, src, level, msg, args);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	/**
+	 * Write a given object as CBOR. Nothing is written for suppressed properties.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param obj
+	 *            object to be formatted
+	 * @param args
+	 *            arguments associated with the object
+	 */
+	protected void write(CBORWriter out, Object obj, Object... args) {
+		if (obj instanceof TrackingActivity) {
+			write(out, (TrackingActivity) obj);
+		} else if (obj instanceof TrackingEvent) {
+			write(out, (TrackingEvent) obj);
+		} else if (obj instanceof Snapshot) {
+			write(out, (Snapshot) obj);
+		} else if (obj instanceof Property) {
+			write(out, (Property) obj);
+		} else {
+			out.writeMapStart();
+			writeNumber(out, JSON_TIME_USEC_FIELD, Useconds.CURRENT.get());
+			writeText(out, JSON_MSG_TEXT_FIELD, Utils.format(Utils.toString(obj), args));
+			out.writeBreak();
+		}
+	}
+
+	/**
+	 * Write a given {@link TrackingEvent} as CBOR.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param event
+	 *            tracking event instance to be formatted
+	 */
+	protected void write(CBORWriter out, TrackingEvent event) {
+		Operation op = event.getOperation();
+		out.writeMapStart();
+		writeIds(out, event.getTrackingId(), event.getSignature(), event.getParentId());
+		writeSource(out, event.getSource());
+		if (event.get2(TrackingEvent.OBJ_ONE) != null) {
+			// we have a relation
+			writeText(out, JSON_RELATE_TYPE_FIELD, String.valueOf(event.get2Type()));
+			writeText(out, JSON_RELATE_FQN_A_FIELD, event.get2(TrackingEvent.OBJ_ONE).getFQName());
+			writeText(out, JSON_RELATE_FQN_B_FIELD, event.get2(TrackingEvent.OBJ_TWO).getFQName());
+		}
+		writeSeverityType(out, event.getSeverity(), op.getType());
+		writeNumber(out, JSON_PID_FIELD, op.getPID());
+		writeNumber(out, JSON_TID_FIELD, op.getTID());
+		writeText(out, JSON_COMP_CODE_FIELD, String.valueOf(op.getCompCode()));
+		writeNumber(out, JSON_COMP_CODE_NO_FIELD, op.getCompCode().ordinal());
+		writeNumber(out, JSON_REASON_CODE_FIELD, op.getReasonCode());
+		writeNumber(out, JSON_TTL_SEC_FIELD, event.getTTL());
+		writeString(out, JSON_LOCATION_FIELD, event.getLocation());
+		writeString(out, JSON_OPERATION_FIELD, op.getResolvedName());
+		writeString(out, JSON_RESOURCE_FIELD, op.getResource());
+		writeString(out, JSON_USER_FIELD, op.getUser());
+		writeNumber(out, JSON_TIME_USEC_FIELD, Useconds.CURRENT.get());
+		if (op.getStartTime() != null) {
+			writeNumber(out, JSON_START_TIME_USEC_FIELD, op.getStartTime().getTimeUsec());
+		}
+		if (op.getEndTime() != null) {
+			writeNumber(out, JSON_END_TIME_USEC_FIELD, op.getEndTime().getTimeUsec());
+			writeNumber(out, JSON_ELAPSED_TIME_USEC_FIELD, op.getElapsedTimeUsec());
+			if (op.getWaitTimeUsec() > 0) {
+				writeNumber(out, JSON_WAIT_TIME_USEC_FIELD, op.getWaitTimeUsec());
+			}
+			if (event.getMessageAge() > 0) {
+				writeNumber(out, JSON_MSG_AGE_USEC_FIELD, event.getMessageAge());
+			}
+		}
+		int snapCount = op.getSnapshotCount();
+		int propCount = op.getPropertyCount();
+		writeNumber(out, JSON_SNAPSHOT_COUNT_FIELD, snapCount);
+		writeNumber(out, JSON_PROPERTY_COUNT_FIELD, propCount);
+		writeNumber(out, JSON_MSG_SIZE_FIELD, event.getSize());
+		writeText(out, JSON_MSG_MIME_FIELD, event.getMimeType());
+		writeText(out, JSON_MSG_ENC_FIELD, event.getEncoding());
+		writeText(out, JSON_MSG_CHARSET_FIELD, event.getCharset());
+		writeString(out, JSON_MSG_TEXT_FIELD, event.getMessage());
+		writeString(out, JSON_EXCEPTION_FIELD, op.getExceptionString());
+		if (!Utils.isEmpty(event.getCorrelator())) {
+			writeItems(out, JSON_CORR_ID_FIELD, event.getCorrelator());
+		}
+		if (!Utils.isEmpty(event.getTag())) {
+			writeItems(out, JSON_MSG_TAG_FIELD, event.getTag());
+		}
+		if (propCount > 0) {
+			writeItems(out, JSON_PROPERTIES_FIELD, op.getProperties());
+		}
+		if (snapCount > 0) {
+			writeItems(out, JSON_SNAPSHOTS_FIELD, op.getSnapshots());
+		}
+		out.writeBreak();
+	}
+
+	/**
+	 * Write a given {@link TrackingActivity} as CBOR.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param activity
+	 *            tracking activity instance to be formatted
+	 */
+	protected void write(CBORWriter out, TrackingActivity activity) {
+		out.writeMapStart();
+		writeIds(out, activity.getTrackingId(), activity.getSignature(), activity.getParentId());
+		writeSource(out, activity.getSource());
+		writeText(out, JSON_STATUS_FIELD, String.valueOf(activity.getStatus()));
+		writeSeverityType(out, activity.getSeverity(), activity.getType());
+		writeNumber(out, JSON_PID_FIELD, activity.getPID());
+		writeNumber(out, JSON_TID_FIELD, activity.getTID());
+		writeText(out, JSON_COMP_CODE_FIELD, String.valueOf(activity.getCompCode()));
+		writeNumber(out, JSON_COMP_CODE_NO_FIELD, activity.getCompCode().ordinal());
+		writeNumber(out, JSON_REASON_CODE_FIELD, activity.getReasonCode());
+		writeNumber(out, JSON_TTL_SEC_FIELD, activity.getTTL());
+		writeString(out, JSON_LOCATION_FIELD, activity.getLocation());
+		writeString(out, JSON_OPERATION_FIELD, activity.getResolvedName());
+		writeString(out, JSON_RESOURCE_FIELD, activity.getResource());
+		writeString(out, JSON_USER_FIELD, activity.getSource().getUser());
+		writeNumber(out, JSON_TIME_USEC_FIELD, Useconds.CURRENT.get());
+		if (activity.getStartTime() != null) {
+			writeNumber(out, JSON_START_TIME_USEC_FIELD, activity.getStartTime().getTimeUsec());
+		}
+		if (activity.getEndTime() != null) {
+			writeNumber(out, JSON_END_TIME_USEC_FIELD, activity.getEndTime().getTimeUsec());
+			writeNumber(out, JSON_ELAPSED_TIME_USEC_FIELD, activity.getElapsedTimeUsec());
+			if (activity.getWaitTimeUsec() > 0) {
+				writeNumber(out, JSON_WAIT_TIME_USEC_FIELD, activity.getWaitTimeUsec());
+			}
+		}
+		writeNumber(out, JSON_ID_COUNT_FIELD, activity.getIdCount());
+		writeNumber(out, JSON_SNAPSHOT_COUNT_FIELD, activity.getSnapshotCount());
+		writeNumber(out, JSON_PROPERTY_COUNT_FIELD, activity.getPropertyCount());
+		writeString(out, JSON_EXCEPTION_FIELD, activity.getExceptionString());
+		if (!Utils.isEmpty(activity.getCorrelator())) {
+			writeItems(out, JSON_CORR_ID_FIELD, activity.getCorrelator());
+		}
+		if (activity.getIdCount() > 0) {
+			writeItems(out, JSON_ID_SET_FIELD, activity.getIds());
+		}
+		if (activity.getPropertyCount() > 0) {
+			writeItems(out, JSON_PROPERTIES_FIELD, activity.getProperties());
+		}
+		if (activity.getSnapshotCount() > 0) {
+			writeItems(out, JSON_SNAPSHOTS_FIELD, activity.getSnapshots());
+		}
+		out.writeBreak();
+	}
+
+	/**
+	 * Write a given {@link Snapshot} as CBOR.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param snap
+	 *            snapshot object to be formatted
+	 */
+	protected void write(CBORWriter out, Snapshot snap) {
+		out.writeMapStart();
+		writeIds(out, snap.getTrackingId(), snap.getSignature(), snap.getParentId());
+		writeString(out, JSON_FQN_FIELD, snap.getId());
+		writeString(out, JSON_CATEGORY_FIELD, snap.getCategory());
+		writeString(out, JSON_NAME_FIELD, snap.getName());
+		writeNumber(out, JSON_COUNT_FIELD, snap.size());
+		writeNumber(out, JSON_TIME_USEC_FIELD, snap.getTimeStamp().getTimeUsec());
+		writeNumber(out, JSON_TTL_SEC_FIELD, snap.getTTL());
+		Source source = snap.getSource();
+		if (source != null) {
+			writeSource(out, source);
+		}
+		writeSeverityType(out, snap.getSeverity(), snap.getType());
+		if (snap.size() > 0) {
+			writeItems(out, JSON_PROPERTIES_FIELD, snap.getSnapshot());
+		}
+		out.writeBreak();
+	}
+
+	/**
+	 * Write a given {@link Property} as CBOR. Nothing is written for suppressed properties.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param prop
+	 *            property object to be formatted
+	 * @see #isSuppressed(Property)
+	 */
+	protected void write(CBORWriter out, Property prop) {
+		if (isSuppressed(prop)) {
+			return;
+		}
+		out.writeMapStart();
+		writeText(out, JSON_NAME_FIELD, prop.getKey());
+		writeText(out, JSON_TYPE_FIELD, prop.getDataType());
+		if (prop.getValueType() != null && !prop.getValueType().equalsIgnoreCase(ValueTypes.VALUE_TYPE_NONE)) {
+			writeText(out, JSON_VALUE_TYPE_FIELD, prop.getValueType());
+		}
+		out.writeText(JSON_VALUE_FIELD);
+		writeValue(out, prop.getValue());
+		out.writeBreak();
+	}
+
+	/**
+	 * Write a given property value. Integral numbers are written as integers, floating point numbers as floats, other
+	 * numbers which do not fit into {@code long} (e.g. {@link java.math.BigDecimal}) as text, booleans and nulls as
+	 * is and other objects as text.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param value
+	 *            property value
+	 */
+	protected void writeValue(CBORWriter out, Object value) {
+		if (value == null) {
+			out.writeNull();
+		} else if (value instanceof Boolean) {
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte) {
+			out.writeLong(((Number) value).longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			if (isSpecialEnquote(value)) {
+				out.writeText(value.toString());
+			} else if (value instanceof Float) {
+				out.writeFloat((Float) value);
+			} else {
+				out.writeDouble((Double) value);
+			}
+		} else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+			out.writeLong(((BigInteger) value).longValue());
+		} else {
+			out.writeText(Utils.toString(value));
+		}
+	}
+
+	/**
+	 * Write a given message and severity level combo as CBOR.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param ttl
+	 *            time to live in seconds
+	 * @param source
+	 *            event source
+	 * @param level
+	 *            severity level
+	 * @param msg
+	 *            message to be formatted
+	 * @param args
+	 *            arguments associated with the message
+	 */
+	protected void write(CBORWriter out, long ttl, Source source, OpLevel level, String msg, Object... args) {
+		out.writeMapStart();
+		writeSeverityType(out, level, OpType.DATAGRAM);
+		writeNumber(out, JSON_PID_FIELD, Utils.getVMPID());
+		writeNumber(out, JSON_TID_FIELD, Thread.currentThread().getId());
+		writeText(out, JSON_USER_FIELD,
+				source == null ? DefaultSourceFactory.getInstance().getRootSource().getUser() : source.getUser());
+		writeNumber(out, JSON_TTL_SEC_FIELD, ttl);
+		writeNumber(out, JSON_TIME_USEC_FIELD, Useconds.CURRENT.get());
+		writeText(out, JSON_OPERATION_FIELD, defOpName);
+		if (source != null) {
+			writeSource(out, source);
+			Source geoloc = source.getSource(SourceType.GEOADDR);
+			if (geoloc != null) {
+				writeText(out, JSON_LOCATION_FIELD, geoloc.getName());
+			}
+		}
+		if (!Utils.isEmpty(msg)) {
+			writeText(out, JSON_MSG_TEXT_FIELD, Utils.format(msg, args));
+		}
+		Throwable ex = Utils.getThrowable(args);
+		if (ex != null) {
+			writeText(out, JSON_EXCEPTION_FIELD, ex.toString());
+		}
+		out.writeBreak();
+	}
+
+	/**
+	 * Write a keyed CBOR array of given items.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param key
+	 *            array key
+	 * @param items
+	 *            collection of activity entity items
+	 */
+	protected void writeItems(CBORWriter out, String key, Collection<?> items) {
+		out.writeText(key);
+		out.writeArrayStart();
+		if (items != null) {
+			for (Object item : items) {
+				if (item instanceof TrackingEvent) {
+					write(out, (TrackingEvent) item);
+				} else if (item instanceof TrackingActivity) {
+					write(out, (TrackingActivity) item);
+				} else if (item instanceof Snapshot) {
+					write(out, (Snapshot) item);
+				} else if (item instanceof Property) {
+					write(out, (Property) item);
+				} else {
+					out.writeText(Utils.toString(item));
+				}
+			}
+		}
+		out.writeBreak();
+	}
+
+	/**
+	 * Determine if a given property is not written: property is {@code null}, transient or has special numeric value
+	 * suppressed by configuration.
+	 *
+	 * @param prop
+	 *            property to check
+	 * @return {@code true} if property is not written, {@code false} otherwise
+	 */
+	protected boolean isSuppressed(Property prop) {
+		return prop == null || prop.isTransient()
+				|| (specialNumbersHandling == SpecNumbersHandling.SUPPRESS && isSpecial(prop.getValue()));
+	}
+
+	private boolean isSpecialEnquote(Object value) {
+		return specialNumbersHandling == SpecNumbersHandling.ENQUOTE && isSpecial(value);
+	}
+
+	private static boolean isSpecial(Object value) {
+		return value instanceof Number && Utils.isSpecialNumberValue((Number) value);
+	}
+
+	/**
+	 * Write cached source name, SSN, FQN and URL entries of a given source.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param source
+	 *            event source
+	 */
+	protected void writeSource(CBORWriter out, Source source) {
+		byte[] fields = sourceFields.get(source);
+		out.write(fields, 0, fields.length);
+	}
+
+	/**
+	 * Write source name, SSN, FQN and URL entries of a given source without caching.
+	 *
+	 * @param out
+	 *            CBOR writer
+	 * @param source
+	 *            event source
+	 */
+	protected void writeSourceFields(CBORWriter out, Source source) {
+		writeText(out, JSON_SOURCE_FIELD, source.getName());
+		writeString(out, JSON_SOURCE_SSN_FIELD, JSONFormatter.getSSN(source));
+		writeText(out, JSON_SOURCE_FQN_FIELD, source.getFQName());
+		writeString(out, JSON_SOURCE_URL_FIELD, source.getUrl());
+	}
+
+	private void writeIds(CBORWriter out, String trackId, String signature, String parentId) {
+		writeString(out, JSON_TRACK_ID_FIELD, trackId);
+		writeString(out, JSON_TRACK_SIGN_FIELD, signature);
+		writeString(out, JSON_PARENT_TRACK_ID_FIELD, parentId);
+	}
+
+	private void writeSeverityType(CBORWriter out, OpLevel sev, OpType type) {
+		writeText(out, JSON_SEVERITY_FIELD, String.valueOf(sev));
+		writeNumber(out, JSON_SEVERITY_NO_FIELD, sev.ordinal());
+		writeText(out, JSON_TYPE_FIELD, String.valueOf(type));
+		writeNumber(out, JSON_TYPE_NO_FIELD, type.ordinal());
+	}
+
+	private static void writeNumber(CBORWriter out, String key, long value) {
+		out.writeText(key).writeLong(value);
+	}
+
+	private static void writeText(CBORWriter out, String key, String value) {
+		out.writeText(key).writeText(value);
+	}
+
+	private static void writeString(CBORWriter out, String key, String value) {
+		if (!Utils.isEmpty(value)) {
+			out.writeText(key).writeText(value);
+		}
+	}
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class implements a growable byte buffer which encodes data items in CBOR (Concise Binary Object
+ * Representation, RFC 7049) format. Integers, lengths and text are always written in the shortest form; maps and
+ * arrays are written with indefinite length and must be terminated using {@link #writeBreak()}. Writers are reused by
+ * each thread via {@link #acquire()} and {@link #release()}, so encoding does not allocate in a steady state.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see CBORFormatter
+ * @see CBORDecoder
+ */
+public class CBORWriter {
+	static final int MAJOR_UINT = 0;
+	static final int MAJOR_NINT = 1;
+	static final int MAJOR_BYTES = 2;
+	static final int MAJOR_TEXT = 3;
+	static final int MAJOR_ARRAY = 4;
+	static final int MAJOR_MAP = 5;
+	static final int MAJOR_TAG = 6;
+	static final int MAJOR_SIMPLE = 7;
+
+	static final int FALSE = 0xF4;
+	static final int TRUE = 0xF5;
+	static final int NULL = 0xF6;
+	static final int FLOAT32 = 0xFA;
+	static final int FLOAT64 = 0xFB;
+	static final int BREAK = 0xFF;
+	static final int INDEFINITE = 31;
+
+	private static final int INITIAL_SIZE = 1024;
+	private static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+	private static final ThreadLocal<CBORWriter> LOCAL = new ThreadLocal<CBORWriter>() {
+		@Override
+		protected CBORWriter initialValue() {
+			return new CBORWriter(INITIAL_SIZE);
+		}
+	};
+
+	private byte[] buf;
+	private int pos;
+	private boolean inUse;
+
+	/**
+	 * Create a writer with a given initial capacity.
+	 *
+	 * @param size
+	 *            initial capacity in bytes
+	 */
+	public CBORWriter(int size) {
+		buf = new byte[Math.max(16, size)];
+	}
+
+	/**
+	 * Obtain an empty writer reused by the current thread. A new writer is returned if the thread writer is already in
+	 * use (re-entrant formatting). Writer must be returned using {@link #release()}.
+	 *
+	 * @return empty writer
+	 */
+	public static CBORWriter acquire() {
+		CBORWriter writer = LOCAL.get();
+		if (writer.inUse) {
+			writer = new CBORWriter(INITIAL_SIZE);
+		}
+		writer.inUse = true;
+		writer.pos = 0;
+		return writer;
+	}
+
+	/**
+	 * Return this writer for reuse by the current thread. Oversized buffers are not retained.
+	 */
+	public void release() {
+		inUse = false;
+		pos = 0;
+		if (buf.length > MAX_RETAINED_SIZE) {
+			buf = new byte[INITIAL_SIZE];
+		}
+	}
+
+	/**
+	 * Obtain number of bytes written.
+	 *
+	 * @return number of bytes written
+	 */
+	public int size() {
+		return pos;
+	}
+
+	/**
+	 * Write a range of already encoded bytes.
+	 *
+	 * @param b
+	 *            bytes to write
+	 * @param off
+	 *            offset of first byte
+	 * @param len
+	 *            number of bytes
+	 * @return itself
+	 */
+	public CBORWriter write(byte[] b, int off, int len) {
+		ensure(len);
+		System.arraycopy(b, off, buf, pos, len);
+		pos += len;
+		return this;
+	}
+
+	/**
+	 * Start a map of indefinite length. Map entries are written as key item followed by value item.
+	 *
+	 * @return itself
+	 */
+	public CBORWriter writeMapStart() {
+		return writeByte((MAJOR_MAP << 5) | INDEFINITE);
+	}
+
+	/**
+	 * Start an array of indefinite length.
+	 *
+	 * @return itself
+	 */
+	public CBORWriter writeArrayStart() {
+		return writeByte((MAJOR_ARRAY << 5) | INDEFINITE);
+	}
+
+	/**
+	 * Terminate a map or an array of indefinite length.
+	 *
+	 * @return itself
+	 */
+	public CBORWriter writeBreak() {
+		return writeByte(BREAK);
+	}
+
+	/**
+	 * Write an integer.
+	 *
+	 * @param value
+	 *            number to write
+	 * @return itself
+	 */
+	public CBORWriter writeLong(long value) {
+		if (value < 0) {
+			// -1 - n encoding, ~value == -1 - value
+			writeHeader(MAJOR_NINT, ~value);
+		} else {
+			writeHeader(MAJOR_UINT, value);
+		}
+		return this;
+	}
+
+	/**
+	 * Write a double precision floating point number.
+	 *
+	 * @param value
+	 *            number to write
+	 * @return itself
+	 */
+	public CBORWriter writeDouble(double value) {
+		ensure(9);
+		buf[pos++] = (byte) FLOAT64;
+		writeBigEndian(Double.doubleToLongBits(value), 8);
+		return this;
+	}
+
+	/**
+	 * Write a single precision floating point number.
+	 *
+	 * @param value
+	 *            number to write
+	 * @return itself
+	 */
+	public CBORWriter writeFloat(float value) {
+		ensure(5);
+		buf[pos++] = (byte) FLOAT32;
+		writeBigEndian(Float.floatToIntBits(value), 4);
+		return this;
+	}
+
+	/**
+	 * Write a boolean.
+	 *
+	 * @param value
+	 *            boolean to write
+	 * @return itself
+	 */
+	public CBORWriter writeBoolean(boolean value) {
+		return writeByte(value ? TRUE : FALSE);
+	}
+
+	/**
+	 * Write null.
+	 *
+	 * @return itself
+	 */
+	public CBORWriter writeNull() {
+		return writeByte(NULL);
+	}
+
+	/**
+	 * Write a text string encoded as UTF-8. Unpaired surrogates are written as {@code '?'}.
+	 *
+	 * @param text
+	 *            text to write, null is written for {@code null}
+	 * @return itself
+	 */
+	public CBORWriter writeText(CharSequence text) {
+		if (text == null) {
+			return writeNull();
+		}
+		int len = text.length();
+		// reserve header for the longest possible encoding, shift text when header turns out shorter
+		int maxHeader = headerSize(len * 3L);
+		ensure(maxHeader + len * 3);
+		int start = pos + maxHeader;
+		int end = start;
+		for (int i = 0; i < len; i++) {
+			char ch = text.charAt(i);
+			if (ch < 0x80) {
+				buf[end++] = (byte) ch;
+			} else if (ch < 0x800) {
+				buf[end++] = (byte) (0xC0 | (ch >> 6));
+				buf[end++] = (byte) (0x80 | (ch & 0x3F));
+			} else if (ch >= 0xD800 && ch <= 0xDBFF && i + 1 < len && text.charAt(i + 1) >= 0xDC00
+					&& text.charAt(i + 1) <= 0xDFFF) {
+				int cp = 0x10000 + ((ch - 0xD800) << 10) + (text.charAt(++i) - 0xDC00);
+				buf[end++] = (byte) (0xF0 | (cp >> 18));
+				buf[end++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buf[end++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buf[end++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (ch >= 0xD800 && ch <= 0xDFFF) {
+				// unpaired surrogate
+				buf[end++] = '?';
+			} else {
+				buf[end++] = (byte) (0xE0 | (ch >> 12));
+				buf[end++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				buf[end++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+		int n = end - start;
+		int header = headerSize(n);
+		if (header < maxHeader) {
+			System.arraycopy(buf, start, buf, pos + header, n);
+		}
+		writeHeader(MAJOR_TEXT, n);
+		pos += n;
+		return this;
+	}
+
+	/**
+	 * Write a byte string.
+	 *
+	 * @param b
+	 *            bytes to write
+	 * @param off
+	 *            offset of first byte
+	 * @param len
+	 *            number of bytes
+	 * @return itself
+	 */
+	public CBORWriter writeBytes(byte[] b, int off, int len) {
+		writeHeader(MAJOR_BYTES, len);
+		return write(b, off, len);
+	}
+
+	/**
+	 * Copy written bytes to a given byte buffer.
+	 *
+	 * @param out
+	 *            destination buffer
+	 * @return number of bytes copied
+	 * @throws BufferOverflowException
+	 *             if buffer has insufficient space, buffer is not modified
+	 */
+	public int writeTo(ByteBuffer out) {
+		if (out.remaining() < pos) {
+			throw new BufferOverflowException();
+		}
+		out.put(buf, 0, pos);
+		return pos;
+	}
+
+	/**
+	 * Copy written bytes to a given output stream.
+	 *
+	 * @param out
+	 *            output stream
+	 * @throws IOException
+	 *             if error writing to stream
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buf, 0, pos);
+	}
+
+	/**
+	 * Obtain a copy of written bytes.
+	 *
+	 * @return written bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, pos);
+	}
+
+	private CBORWriter writeByte(int b) {
+		ensure(1);
+		buf[pos++] = (byte) b;
+		return this;
+	}
+
+	private void writeHeader(int major, long value) {
+		ensure(9);
+		int type = major << 5;
+		if (value < 24) {
+			buf[pos++] = (byte) (type | (int) value);
+		} else if (value <= 0xFFL) {
+			buf[pos++] = (byte) (type | 24);
+			buf[pos++] = (byte) value;
+		} else if (value <= 0xFFFFL) {
+			buf[pos++] = (byte) (type | 25);
+			writeBigEndian(value, 2);
+		} else if (value <= 0xFFFFFFFFL) {
+			buf[pos++] = (byte) (type | 26);
+			writeBigEndian(value, 4);
+		} else {
+			buf[pos++] = (byte) (type | 27);
+			writeBigEndian(value, 8);
+		}
+	}
+
+	private static int headerSize(long value) {
+		return value < 24 ? 1 : value <= 0xFFL ? 2 : value <= 0xFFFFL ? 3 : value <= 0xFFFFFFFFL ? 5 : 9;
+	}
+
+	private void writeBigEndian(long value, int n) {
+		for (int shift = (n - 1) << 3; shift >= 0; shift -= 8) {
+			buf[pos++] = (byte) (value >>> shift);
+		}
+	}
+
+	private void ensure(int n) {
+		if (pos + n > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+		}
+	}
+}
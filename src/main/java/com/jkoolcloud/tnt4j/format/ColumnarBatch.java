@@ -0,0 +1,617 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * <p>
+ * This class accumulates {@link TrackingActivity}, {@link TrackingEvent}, {@link Snapshot} and log message records
+ * into a columnar batch, which is encoded as a single CBOR item. Records have the same fields as produced by
+ * {@link CBORFormatter} (and {@link JSONFormatter}), but instead of repeating field names and values in every record:
+ * </p>
+ * <ul>
+ * <li>each field is stored once per batch as a column holding field values of all records;</li>
+ * <li>strings (source FQNs, operation names, enum values, etc.) are written once per batch into a dictionary and
+ * referenced by index;</li>
+ * <li>integers (timestamps, elapsed times, PID, TID, etc.) are delta encoded against the previous value of the same
+ * column, so they mostly fit into one or two bytes;</li>
+ * <li>nested items (properties, snapshots, correlators, etc.) are stored in child tables of their column.</li>
+ * </ul>
+ * <p>
+ * Encoded batch is a CBOR map {@code {"batch": 1, "dict": [strings], "table": table}}, where table is an array
+ * {@code [rows, [columns]]} and each column is an array {@code [name, types, values, child table]}. {@code name} is
+ * {@code null} for scalar items of arrays. {@code types} is a single cell type when all cells of the column have the
+ * same type, or a byte string with one cell type per row otherwise. {@code values} holds values of cells which have
+ * one, in row order: delta for integers, dictionary index for strings, item count for arrays. Child table is present
+ * only for columns with array or map cells. Use {@link ColumnarBatchDecoder} to decode batches back into records.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see ColumnarBatchDecoder
+ * @see CBORFormatter
+ */
+public class ColumnarBatch {
+	/**
+	 * Batch format version
+	 */
+	public static final int VERSION = 1;
+
+	static final String BATCH_FIELD = "batch";
+	static final String DICT_FIELD = "dict";
+	static final String TABLE_FIELD = "table";
+
+	static final byte CELL_ABSENT = 0;
+	static final byte CELL_NULL = 1;
+	static final byte CELL_FALSE = 2;
+	static final byte CELL_TRUE = 3;
+	static final byte CELL_INT = 4;
+	static final byte CELL_FLOAT = 5;
+	static final byte CELL_DOUBLE = 6;
+	static final byte CELL_STRING = 7;
+	static final byte CELL_ARRAY = 8;
+	static final byte CELL_MAP = 9;
+
+	private final BatchFormatter formatter = new BatchFormatter();
+	private final ColumnBuilder builder = new ColumnBuilder();
+
+	/**
+	 * Create an empty columnar batch using default record layout.
+	 */
+	public ColumnarBatch() {
+		this(null);
+	}
+
+	/**
+	 * Create an empty columnar batch using record layout configured by given settings.
+	 *
+	 * @param settings
+	 *            {@link CBORFormatter} configuration, such as {@code OpName} and {@code SpecNumbersHandling}, may be
+	 *            {@code null}
+	 */
+	public ColumnarBatch(Map<String, Object> settings) {
+		if (settings != null) {
+			formatter.setConfiguration(settings);
+		}
+	}
+
+	/**
+	 * Add a tracking event to the batch.
+	 *
+	 * @param event
+	 *            tracking event
+	 * @return number of records in the batch
+	 */
+	public synchronized int add(TrackingEvent event) {
+		int rows = builder.begin();
+		try {
+			formatter.write(builder, event);
+		} catch (RuntimeException exc) {
+			builder.rollback(rows);
+			throw exc;
+		}
+		return builder.root.rows;
+	}
+
+	/**
+	 * Add a tracking activity to the batch.
+	 *
+	 * @param activity
+	 *            tracking activity
+	 * @return number of records in the batch
+	 */
+	public synchronized int add(TrackingActivity activity) {
+		int rows = builder.begin();
+		try {
+			formatter.write(builder, activity);
+		} catch (RuntimeException exc) {
+			builder.rollback(rows);
+			throw exc;
+		}
+		return builder.root.rows;
+	}
+
+	/**
+	 * Add a snapshot to the batch.
+	 *
+	 * @param snapshot
+	 *            snapshot
+	 * @return number of records in the batch
+	 */
+	public synchronized int add(Snapshot snapshot) {
+		int rows = builder.begin();
+		try {
+			formatter.write(builder, snapshot);
+		} catch (RuntimeException exc) {
+			builder.rollback(rows);
+			throw exc;
+		}
+		return builder.root.rows;
+	}
+
+	/**
+	 * Add a log message to the batch.
+	 *
+	 * @param ttl
+	 *            event time-to-live in seconds
+	 * @param source
+	 *            message source
+	 * @param level
+	 *            message severity level
+	 * @param msg
+	 *            message pattern
+	 * @param args
+	 *            message arguments
+	 * @return number of records in the batch
+	 */
+	public synchronized int add(long ttl, Source source, OpLevel level, String msg, Object... args) {
+		int rows = builder.begin();
+		try {
+			formatter.write(builder, ttl, source, level, msg, args);
+		} catch (RuntimeException exc) {
+			builder.rollback(rows);
+			throw exc;
+		}
+		return builder.root.rows;
+	}
+
+	/**
+	 * Add an object to the batch. Objects other than activities, events, snapshots and properties are added as log
+	 * messages.
+	 *
+	 * @param obj
+	 *            object to add
+	 * @param args
+	 *            arguments associated with the object
+	 * @return number of records in the batch
+	 */
+	public synchronized int add(Object obj, Object... args) {
+		int rows = builder.begin();
+		try {
+			formatter.write(builder, obj, args);
+		} catch (RuntimeException exc) {
+			builder.rollback(rows);
+			throw exc;
+		}
+		return builder.root.rows;
+	}
+
+	/**
+	 * Obtain number of records in the batch.
+	 *
+	 * @return number of records
+	 */
+	public synchronized int size() {
+		return builder.root.rows;
+	}
+
+	/**
+	 * Determine if batch has no records.
+	 *
+	 * @return {@code true} if batch is empty, {@code false} otherwise
+	 */
+	public synchronized boolean isEmpty() {
+		return builder.root.rows == 0;
+	}
+
+	/**
+	 * Encode all records of the batch.
+	 *
+	 * @return encoded batch
+	 */
+	public synchronized byte[] toBytes() {
+		CBORWriter out = CBORWriter.acquire();
+		try {
+			builder.writeTo(out);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	/**
+	 * Encode all records of the batch and remove them from the batch.
+	 *
+	 * @return encoded batch, {@code null} if batch is empty
+	 */
+	public synchronized byte[] drain() {
+		if (builder.root.rows == 0) {
+			return null;
+		}
+		try {
+			return toBytes();
+		} finally {
+			builder.clear();
+		}
+	}
+
+	/**
+	 * Remove all records from the batch.
+	 */
+	public synchronized void clear() {
+		builder.clear();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{records: " + size() + "}";
+	}
+
+	/**
+	 * Formatter writing source fields of every record, so they are dictionary encoded instead of copied from
+	 * pre-encoded source fragments.
+	 */
+	private static class BatchFormatter extends CBORFormatter {
+		@Override
+		protected void writeSource(CBORWriter out, Source source) {
+			writeSourceFields(out, source);
+		}
+	}
+
+	private static class Table {
+		final List<Column> columns = new ArrayList<Column>();
+		final Map<String, Column> byName = new HashMap<String, Column>();
+		int rows;
+
+		Column column(String name) {
+			Column column = byName.get(name);
+			if (column == null) {
+				column = new Column(name);
+				columns.add(column);
+				byName.put(name, column);
+			}
+			return column;
+		}
+
+		void truncate(int count) {
+			rows = count;
+			for (Column column : columns) {
+				column.truncate(count);
+			}
+		}
+
+		void clear() {
+			rows = 0;
+			columns.clear();
+			byName.clear();
+		}
+	}
+
+	private static class Column {
+		final String name;
+		byte[] types = new byte[16];
+		long[] values = new long[16];
+		int size;
+		Table child;
+
+		Column(String name) {
+			this.name = name;
+		}
+
+		Table child() {
+			if (child == null) {
+				child = new Table();
+			}
+			return child;
+		}
+
+		int set(int row, byte type, long value) {
+			if (size > row) {
+				throw new IllegalStateException("Duplicate field: name=" + name + ", row=" + row);
+			}
+			if (row >= types.length) {
+				int capacity = Math.max(types.length * 2, row + 1);
+				types = Arrays.copyOf(types, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			while (size < row) {
+				types[size++] = CELL_ABSENT;
+			}
+			types[size] = type;
+			values[size] = value;
+			return size++;
+		}
+
+		void truncate(int count) {
+			size = Math.min(size, count);
+			if (child != null) {
+				int childRows = 0;
+				for (int i = 0; i < size; i++) {
+					if (types[i] == CELL_ARRAY) {
+						childRows += (int) values[i];
+					} else if (types[i] == CELL_MAP) {
+						childRows++;
+					}
+				}
+				child.truncate(childRows);
+			}
+		}
+	}
+
+	private static class Frame {
+		final Table table;
+		final boolean array;
+		int row;
+		Column key;
+		Column owner;
+		int ownerCell;
+		int count;
+
+		Frame(Table table, boolean array) {
+			this.table = table;
+			this.array = array;
+		}
+	}
+
+	/**
+	 * CBOR writer which stores written items into columns instead of bytes.
+	 */
+	private static class ColumnBuilder extends CBORWriter {
+		final Table root = new Table();
+		final ArrayList<Frame> stack = new ArrayList<Frame>();
+		final ArrayList<String> dict = new ArrayList<String>();
+		final Map<String, Integer> dictIndex = new HashMap<String, Integer>();
+
+		ColumnBuilder() {
+			super(16);
+		}
+
+		int begin() {
+			stack.clear();
+			return root.rows;
+		}
+
+		void rollback(int rows) {
+			stack.clear();
+			root.truncate(rows);
+		}
+
+		void clear() {
+			stack.clear();
+			root.clear();
+			dict.clear();
+			dictIndex.clear();
+		}
+
+		@Override
+		public CBORWriter writeMapStart() {
+			Frame parent = top();
+			Frame map;
+			if (parent == null) {
+				map = new Frame(root, false);
+			} else if (parent.array) {
+				parent.count++;
+				map = new Frame(parent.table, false);
+			} else {
+				Column column = valueColumn(parent);
+				column.set(parent.row, CELL_MAP, 1);
+				map = new Frame(column.child(), false);
+			}
+			map.row = map.table.rows++;
+			stack.add(map);
+			return this;
+		}
+
+		@Override
+		public CBORWriter writeArrayStart() {
+			Frame parent = top();
+			if (parent == null) {
+				throw new IllegalStateException("Batch records must be maps");
+			}
+			Column column = valueColumn(parent);
+			Frame array = new Frame(column.child(), true);
+			array.owner = column;
+			array.ownerCell = column.set(parent.row, CELL_ARRAY, 0);
+			stack.add(array);
+			return this;
+		}
+
+		@Override
+		public CBORWriter writeBreak() {
+			if (stack.isEmpty()) {
+				throw new IllegalStateException("Unbalanced break");
+			}
+			Frame frame = stack.remove(stack.size() - 1);
+			if (frame.array) {
+				frame.owner.values[frame.ownerCell] = frame.count;
+			}
+			return this;
+		}
+
+		@Override
+		public CBORWriter writeLong(long value) {
+			return value(CELL_INT, value);
+		}
+
+		@Override
+		public CBORWriter writeDouble(double value) {
+			return value(CELL_DOUBLE, Double.doubleToRawLongBits(value));
+		}
+
+		@Override
+		public CBORWriter writeFloat(float value) {
+			return value(CELL_FLOAT, Float.floatToRawIntBits(value));
+		}
+
+		@Override
+		public CBORWriter writeBoolean(boolean value) {
+			return value(value ? CELL_TRUE : CELL_FALSE, 0);
+		}
+
+		@Override
+		public CBORWriter writeNull() {
+			return value(CELL_NULL, 0);
+		}
+
+		@Override
+		public CBORWriter writeText(CharSequence text) {
+			String value = text.toString();
+			Frame frame = top();
+			if (frame != null && !frame.array && frame.key == null) {
+				frame.key = frame.table.column(value);
+				return this;
+			}
+			Integer index = dictIndex.get(value);
+			if (index == null) {
+				index = dict.size();
+				dict.add(value);
+				dictIndex.put(value, index);
+			}
+			return value(CELL_STRING, index);
+		}
+
+		@Override
+		public CBORWriter writeBytes(byte[] b, int off, int len) {
+			throw new UnsupportedOperationException("Byte strings are not supported in columnar batches");
+		}
+
+		@Override
+		public CBORWriter write(byte[] b, int off, int len) {
+			throw new UnsupportedOperationException("Encoded fragments are not supported in columnar batches");
+		}
+
+		private Frame top() {
+			return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+		}
+
+		private CBORWriter value(byte type, long value) {
+			Frame frame = top();
+			if (frame == null) {
+				throw new IllegalStateException("Batch records must be maps");
+			}
+			valueColumn(frame).set(frame.row, type, value);
+			return this;
+		}
+
+		/**
+		 * Obtain column receiving the next value within a given frame: column of the current key for maps, scalar
+		 * item column of a new child row for arrays.
+		 */
+		private Column valueColumn(Frame frame) {
+			if (frame.array) {
+				frame.row = frame.table.rows++;
+				frame.count++;
+				return frame.table.column(null);
+			}
+			if (frame.key == null) {
+				throw new IllegalStateException("Map keys must be text");
+			}
+			Column column = frame.key;
+			frame.key = null;
+			return column;
+		}
+
+		void writeTo(CBORWriter out) {
+			out.writeMapStart();
+			out.writeText(BATCH_FIELD).writeLong(VERSION);
+			out.writeText(DICT_FIELD).writeArrayStart();
+			for (String value : dict) {
+				out.writeText(value);
+			}
+			out.writeBreak();
+			out.writeText(TABLE_FIELD);
+			writeTable(out, root);
+			out.writeBreak();
+		}
+
+		private static void writeTable(CBORWriter out, Table table) {
+			out.writeArrayStart();
+			out.writeLong(table.rows);
+			out.writeArrayStart();
+			for (Column column : table.columns) {
+				writeColumn(out, column, table.rows);
+			}
+			out.writeBreak();
+			out.writeBreak();
+		}
+
+		private static void writeColumn(CBORWriter out, Column column, int rows) {
+			out.writeArrayStart();
+			if (column.name == null) {
+				out.writeNull();
+			} else {
+				out.writeText(column.name);
+			}
+			int type = uniformType(column, rows);
+			if (type >= 0) {
+				out.writeLong(type);
+			} else {
+				byte[] types = Arrays.copyOf(column.types, rows);
+				// cells past column size are absent, zero filled by copyOf
+				out.writeBytes(types, 0, rows);
+			}
+			out.writeArrayStart();
+			long prev = 0;
+			for (int i = 0; i < column.size; i++) {
+				long value = column.values[i];
+				switch (column.types[i]) {
+				case CELL_INT:
+					out.writeLong(value - prev);
+					prev = value;
+					break;
+				case CELL_FLOAT:
+					out.writeFloat(Float.intBitsToFloat((int) value));
+					break;
+				case CELL_DOUBLE:
+					out.writeDouble(Double.longBitsToDouble(value));
+					break;
+				case CELL_STRING:
+				case CELL_ARRAY:
+				case CELL_MAP:
+					out.writeLong(value);
+					break;
+				default:
+					break;
+				}
+			}
+			out.writeBreak();
+			if (column.child != null) {
+				writeTable(out, column.child);
+			}
+			out.writeBreak();
+		}
+
+		private static int uniformType(Column column, int rows) {
+			if (column.size == 0) {
+				return CELL_ABSENT;
+			}
+			byte type = column.types[0];
+			if (column.size < rows && type != CELL_ABSENT) {
+				return -1;
+			}
+			for (int i = 1; i < column.size; i++) {
+				if (column.types[i] != type) {
+					return -1;
+				}
+			}
+			return type;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class decodes columnar batches produced by {@link ColumnarBatch} back into records. Each record is a map with
+ * the same keys and values as a record decoded by {@link CBORDecoder} from {@link CBORFormatter} output: strings,
+ * {@link Long} integers, {@link Float}/{@link Double} floats, booleans, lists and maps. Batches may be separated by
+ * line separators, as written by file and socket sinks.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see ColumnarBatch
+ * @see CBORDecoder
+ */
+public class ColumnarBatchDecoder {
+	private final CBORDecoder decoder;
+
+	/**
+	 * Create a decoder reading batches from a given input stream.
+	 *
+	 * @param in
+	 *            input stream
+	 */
+	public ColumnarBatchDecoder(InputStream in) {
+		this.decoder = new CBORDecoder(in);
+	}
+
+	/**
+	 * Create a decoder reading batches from a given byte array.
+	 *
+	 * @param data
+	 *            encoded batches
+	 */
+	public ColumnarBatchDecoder(byte[] data) {
+		this.decoder = new CBORDecoder(data);
+	}
+
+	/**
+	 * Decode records of all batches contained in a given byte array.
+	 *
+	 * @param data
+	 *            encoded batches
+	 * @return list of decoded records
+	 * @throws IOException
+	 *             if data is malformed or truncated
+	 */
+	public static List<Map<String, Object>> decodeAll(byte[] data) throws IOException {
+		ColumnarBatchDecoder decoder = new ColumnarBatchDecoder(data);
+		List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+		while (decoder.hasNext()) {
+			records.addAll(decoder.next());
+		}
+		return records;
+	}
+
+	/**
+	 * Determine if there are more batches.
+	 *
+	 * @return {@code true} if there are more batches, {@code false} at the end of stream
+	 * @throws IOException
+	 *             if error reading stream
+	 */
+	public boolean hasNext() throws IOException {
+		return decoder.hasNext();
+	}
+
+	/**
+	 * Decode records of the next batch.
+	 *
+	 * @return list of decoded records
+	 * @throws IOException
+	 *             if batch is malformed or truncated
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Map<String, Object>> next() throws IOException {
+		Object item = decoder.next();
+		if (!(item instanceof Map)) {
+			throw new IOException("Invalid columnar batch: map expected");
+		}
+		Map<String, Object> batch = (Map<String, Object>) item;
+		Object version = batch.get(ColumnarBatch.BATCH_FIELD);
+		if (!(version instanceof Long) || ((Long) version).intValue() != ColumnarBatch.VERSION) {
+			throw new IOException("Unsupported columnar batch version: " + version);
+		}
+		List<Object> dict = asList(batch.get(ColumnarBatch.DICT_FIELD));
+		Table root = new Table(batch.get(ColumnarBatch.TABLE_FIELD), dict);
+		List<Map<String, Object>> records = new ArrayList<Map<String, Object>>(root.rows);
+		for (int i = 0; i < root.rows; i++) {
+			Object record = root.nextRow();
+			if (!(record instanceof Map)) {
+				throw new IOException("Invalid columnar batch: record " + i + " is not a map");
+			}
+			records.add((Map<String, Object>) record);
+		}
+		return records;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> asList(Object item) throws IOException {
+		if (!(item instanceof List)) {
+			throw new IOException("Invalid columnar batch: array expected");
+		}
+		return (List<Object>) item;
+	}
+
+	private static long asLong(Object item) throws IOException {
+		if (!(item instanceof Long)) {
+			throw new IOException("Invalid columnar batch: integer expected");
+		}
+		return (Long) item;
+	}
+
+	private static class Table {
+		final int rows;
+		final List<Column> columns;
+		int next;
+
+		Table(Object item, List<Object> dict) throws IOException {
+			List<Object> table = asList(item);
+			if (table.size() < 2) {
+				throw new IOException("Invalid columnar batch: malformed table");
+			}
+			rows = (int) asLong(table.get(0));
+			List<Object> cols = asList(table.get(1));
+			columns = new ArrayList<Column>(cols.size());
+			for (Object col : cols) {
+				columns.add(new Column(col, dict, rows));
+			}
+		}
+
+		Object nextRow() throws IOException {
+			if (next >= rows) {
+				throw new IOException("Invalid columnar batch: table has " + rows + " rows");
+			}
+			Map<String, Object> map = null;
+			Object scalar = null;
+			boolean isScalar = false;
+			for (Column column : columns) {
+				byte type = column.type(next);
+				if (type == ColumnarBatch.CELL_ABSENT) {
+					continue;
+				}
+				Object value = column.nextValue(type);
+				if (column.name == null) {
+					scalar = value;
+					isScalar = true;
+				} else {
+					if (map == null) {
+						map = new LinkedHashMap<String, Object>();
+					}
+					map.put(column.name, value);
+				}
+			}
+			next++;
+			if (isScalar) {
+				return scalar;
+			}
+			return map != null ? map : new LinkedHashMap<String, Object>();
+		}
+	}
+
+	private static class Column {
+		final String name;
+		final byte uniform;
+		final byte[] types;
+		final List<Object> values;
+		final List<Object> dict;
+		final Table child;
+		int next;
+		long prev;
+
+		Column(Object item, List<Object> dict, int rows) throws IOException {
+			List<Object> column = asList(item);
+			if (column.size() < 3) {
+				throw new IOException("Invalid columnar batch: malformed column");
+			}
+			Object nm = column.get(0);
+			this.name = nm == null ? null : String.valueOf(nm);
+			Object tp = column.get(1);
+			if (tp instanceof byte[]) {
+				types = (byte[]) tp;
+				uniform = -1;
+				if (types.length < rows) {
+					throw new IOException("Invalid columnar batch: column " + name + " has " + types.length + " types");
+				}
+			} else {
+				types = null;
+				uniform = (byte) asLong(tp);
+			}
+			this.values = asList(column.get(2));
+			this.dict = dict;
+			this.child = column.size() > 3 ? new Table(column.get(3), dict) : null;
+		}
+
+		byte type(int row) {
+			return types != null ? types[row] : uniform;
+		}
+
+		Object nextValue(byte type) throws IOException {
+			switch (type) {
+			case ColumnarBatch.CELL_NULL:
+				return null;
+			case ColumnarBatch.CELL_FALSE:
+				return Boolean.FALSE;
+			case ColumnarBatch.CELL_TRUE:
+				return Boolean.TRUE;
+			case ColumnarBatch.CELL_INT:
+				prev += asLong(value());
+				return prev;
+			case ColumnarBatch.CELL_FLOAT:
+			case ColumnarBatch.CELL_DOUBLE:
+				return value();
+			case ColumnarBatch.CELL_STRING:
+				long index = asLong(value());
+				if (index < 0 || index >= dict.size()) {
+					throw new IOException("Invalid columnar batch: dictionary index " + index);
+				}
+				return dict.get((int) index);
+			case ColumnarBatch.CELL_ARRAY:
+				long count = asLong(value());
+				List<Object> items = new ArrayList<Object>((int) Math.min(count, 1024));
+				for (long i = 0; i < count; i++) {
+					items.add(child().nextRow());
+				}
+				return items;
+			case ColumnarBatch.CELL_MAP:
+				value();
+				return child().nextRow();
+			default:
+				throw new IOException("Invalid columnar batch: cell type " + type);
+			}
+		}
+
+		private Object value() throws IOException {
+			if (next >= values.size()) {
+				throw new IOException("Invalid columnar batch: column " + name + " has " + values.size() + " values");
+			}
+			return values.get(next++);
+		}
+
+		private Table child() throws IOException {
+			if (child == null) {
+				throw new IOException("Invalid columnar batch: column " + name + " has no child table");
+			}
+			return child;
+		}
+	}
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class implements a growable byte buffer used to write JSON encoded as UTF-8. Strings are escaped and encoded
+ * inline in a single pass, without intermediate strings. Escaping follows {@code StringEscapeUtils.escapeJson}: quote,
+ * backslash and slash are escaped, control characters are written as short or {@code \}{@code uXXXX} escapes and
+ * characters outside of ASCII are either UTF-8 encoded or, optionally, written as {@code \}{@code uXXXX} escapes.
+ * </p>
+ * <p>
+ * Writers are reused per thread using {@link #acquire(boolean)} and {@link #release()}, so formatting produces no
+ * garbage besides the final result. This class is not thread safe.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see JSONStreamFormatter
+ */
+public class JSONByteWriter {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E',
+			'F' };
+	private static final int INITIAL_SIZE = 1024;
+	private static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+	private static final ThreadLocal<JSONByteWriter> LOCAL = new ThreadLocal<JSONByteWriter>() {
+		@Override
+		protected JSONByteWriter initialValue() {
+			return new JSONByteWriter(INITIAL_SIZE);
+		}
+	};
+
+	private byte[] buf;
+	private int pos;
+	private boolean escapeNonAscii;
+	private boolean inUse;
+	private final StringBuilder chars = new StringBuilder(128);
+
+	/**
+	 * Create a writer with a given initial capacity.
+	 *
+	 * @param size
+	 *            initial capacity in bytes
+	 */
+	public JSONByteWriter(int size) {
+		buf = new byte[Math.max(16, size)];
+	}
+
+	/**
+	 * Obtain an empty writer reused by the current thread. A new writer is returned if the thread writer is already in
+	 * use (re-entrant formatting). Writer must be returned using {@link #release()}.
+	 *
+	 * @param escapeNonAscii
+	 *            {@code true} to write characters outside of ASCII as escapes, {@code false} to encode them as UTF-8
+	 * @return empty writer
+	 */
+	public static JSONByteWriter acquire(boolean escapeNonAscii) {
+		JSONByteWriter writer = LOCAL.get();
+		if (writer.inUse) {
+			writer = new JSONByteWriter(INITIAL_SIZE);
+		}
+		writer.inUse = true;
+		writer.escapeNonAscii = escapeNonAscii;
+		writer.pos = 0;
+		return writer;
+	}
+
+	/**
+	 * Return this writer for reuse by the current thread. Oversized buffers are not retained.
+	 */
+	public void release() {
+		inUse = false;
+		pos = 0;
+		if (buf.length > MAX_RETAINED_SIZE) {
+			buf = new byte[INITIAL_SIZE];
+		}
+	}
+
+	/**
+	 * Obtain scratch string builder, emptied, which can be used to collect text before writing it.
+	 *
+	 * @return empty scratch string builder
+	 */
+	public StringBuilder scratch() {
+		chars.setLength(0);
+		return chars;
+	}
+
+	/**
+	 * Obtain number of bytes written.
+	 *
+	 * @return number of bytes written
+	 */
+	public int size() {
+		return pos;
+	}
+
+	/**
+	 * Obtain underlying buffer. Valid bytes are in range {@code [0, size())}.
+	 *
+	 * @return underlying byte array
+	 */
+	public byte[] array() {
+		return buf;
+	}
+
+	/**
+	 * Determine if written bytes end with a given ASCII string.
+	 *
+	 * @param ascii
+	 *            ASCII string
+	 * @return {@code true} if written bytes end with a given string, {@code false} otherwise
+	 */
+	public boolean endsWith(String ascii) {
+		int len = ascii.length();
+		if (len > pos) {
+			return false;
+		}
+		for (int i = 0, off = pos - len; i < len; i++, off++) {
+			if (buf[off] != ascii.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write a byte.
+	 *
+	 * @param b
+	 *            byte to write
+	 * @return itself
+	 */
+	public JSONByteWriter write(int b) {
+		ensure(1);
+		buf[pos++] = (byte) b;
+		return this;
+	}
+
+	/**
+	 * Write a range of bytes.
+	 *
+	 * @param b
+	 *            bytes to write
+	 * @param off
+	 *            offset of first byte
+	 * @param len
+	 *            number of bytes
+	 * @return itself
+	 */
+	public JSONByteWriter write(byte[] b, int off, int len) {
+		ensure(len);
+		System.arraycopy(b, off, buf, pos, len);
+		pos += len;
+		return this;
+	}
+
+	/**
+	 * Write a string known to contain only ASCII characters (labels, separators), without escaping.
+	 *
+	 * @param ascii
+	 *            ASCII string
+	 * @return itself
+	 */
+	public JSONByteWriter writeAscii(String ascii) {
+		int len = ascii.length();
+		ensure(len);
+		for (int i = 0; i < len; i++) {
+			buf[pos++] = (byte) ascii.charAt(i);
+		}
+		return this;
+	}
+
+	/**
+	 * Write decimal representation of a given number.
+	 *
+	 * @param value
+	 *            number to write
+	 * @return itself
+	 */
+	public JSONByteWriter writeLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			return writeAscii("-9223372036854775808");
+		}
+		ensure(20);
+		if (value < 0) {
+			buf[pos++] = '-';
+			value = -value;
+		}
+		int start = pos;
+		do {
+			buf[pos++] = (byte) ('0' + (value % 10));
+			value /= 10;
+		} while (value != 0);
+		for (int i = start, j = pos - 1; i < j; i++, j--) {
+			byte tmp = buf[i];
+			buf[i] = buf[j];
+			buf[j] = tmp;
+		}
+		return this;
+	}
+
+	/**
+	 * Write text without escaping, encoded as UTF-8.
+	 *
+	 * @param text
+	 *            text to write, {@code "null"} is written for {@code null}
+	 * @return itself
+	 */
+	public JSONByteWriter writeRaw(CharSequence text) {
+		if (text == null) {
+			return writeAscii("null");
+		}
+		int len = text.length();
+		for (int i = 0; i < len; i++) {
+			char ch = text.charAt(i);
+			if (ch < 0x80) {
+				ensure(1);
+				buf[pos++] = (byte) ch;
+			} else {
+				i = writeUtf8(text, i, ch);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Write text surrounded by double quotes, escaped.
+	 *
+	 * @param text
+	 *            text to write, {@code "null"} is written for {@code null}
+	 * @return itself
+	 */
+	public JSONByteWriter writeQuoted(CharSequence text) {
+		write('"');
+		writeEscaped(text);
+		return write('"');
+	}
+
+	/**
+	 * Write text surrounded by double quotes, without escaping. Use only for text known to be JSON safe.
+	 *
+	 * @param text
+	 *            text to write, {@code "null"} is written for {@code null}
+	 * @return itself
+	 */
+	public JSONByteWriter writeQuotedRaw(CharSequence text) {
+		write('"');
+		writeRaw(text);
+		return write('"');
+	}
+
+	/**
+	 * Write escaped text.
+	 *
+	 * @param text
+	 *            text to write, {@code null} is written for {@code null}
+	 * @return itself
+	 */
+	public JSONByteWriter writeEscaped(CharSequence text) {
+		if (text == null) {
+			return writeAscii("null");
+		}
+		int len = text.length();
+		for (int i = 0; i < len; i++) {
+			char ch = text.charAt(i);
+			if (ch >= 0x20 && ch < 0x80) {
+				ensure(2);
+				if (ch == '"' || ch == '\\' || ch == '/') {
+					buf[pos++] = '\\';
+				}
+				buf[pos++] = (byte) ch;
+			} else if (ch < 0x20) {
+				writeControl(ch);
+			} else if (escapeNonAscii) {
+				writeUnicodeEscape(ch);
+			} else {
+				i = writeUtf8(text, i, ch);
+			}
+		}
+		return this;
+	}
+
+	private void writeControl(char ch) {
+		ensure(6);
+		buf[pos++] = '\\';
+		switch (ch) {
+		case '\b':
+			buf[pos++] = 'b';
+			break;
+		case '\n':
+			buf[pos++] = 'n';
+			break;
+		case '\t':
+			buf[pos++] = 't';
+			break;
+		case '\f':
+			buf[pos++] = 'f';
+			break;
+		case '\r':
+			buf[pos++] = 'r';
+			break;
+		default:
+			pos--;
+			writeUnicodeEscape(ch);
+		}
+	}
+
+	private void writeUnicodeEscape(char ch) {
+		ensure(6);
+		buf[pos++] = '\\';
+		buf[pos++] = 'u';
+		buf[pos++] = HEX[(ch >> 12) & 0xF];
+		buf[pos++] = HEX[(ch >> 8) & 0xF];
+		buf[pos++] = HEX[(ch >> 4) & 0xF];
+		buf[pos++] = HEX[ch & 0xF];
+	}
+
+	private int writeUtf8(CharSequence text, int i, char ch) {
+		ensure(4);
+		if (ch < 0x800) {
+			buf[pos++] = (byte) (0xC0 | (ch >> 6));
+			buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+		} else if (ch >= 0xD800 && ch <= 0xDBFF && i + 1 < text.length() && text.charAt(i + 1) >= 0xDC00
+				&& text.charAt(i + 1) <= 0xDFFF) {
+			int cp = 0x10000 + ((ch - 0xD800) << 10) + (text.charAt(i + 1) - 0xDC00);
+			buf[pos++] = (byte) (0xF0 | (cp >> 18));
+			buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+			return i + 1;
+		} else if (ch >= 0xD800 && ch <= 0xDFFF) {
+			// unpaired surrogate
+			buf[pos++] = '?';
+		} else {
+			buf[pos++] = (byte) (0xE0 | (ch >> 12));
+			buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+			buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+		}
+		return i;
+	}
+
+	/**
+	 * Copy written bytes to a given byte buffer.
+	 *
+	 * @param out
+	 *            destination buffer
+	 * @return number of bytes copied
+	 * @throws BufferOverflowException
+	 *             if buffer has insufficient space, buffer is not modified
+	 */
+	public int writeTo(ByteBuffer out) {
+		if (out.remaining() < pos) {
+			throw new BufferOverflowException();
+		}
+		out.put(buf, 0, pos);
+		return pos;
+	}
+
+	/**
+	 * Copy written bytes to a given output stream.
+	 *
+	 * @param out
+	 *            output stream
+	 * @throws IOException
+	 *             if error writing to stream
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buf, 0, pos);
+	}
+
+	/**
+	 * Obtain a copy of written bytes.
+	 *
+	 * @return written bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, pos);
+	}
+
+	/**
+	 * Decode written bytes as string.
+	 *
+	 * @return written bytes decoded as UTF-8 string
+	 */
+	@Override
+	public String toString() {
+		return new String(buf, 0, pos, UTF8);
+	}
+
+	private void ensure(int n) {
+		if (pos + n > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+		}
+	}
+}
@@ -74,6 +74,16 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 	protected String ATTR_JSON = ATTR_END_LINE;
 	protected String ARRAY_START_JSON = ARRAY_START_LINE;
 
+	private static final int SOURCE_RECORD = 0;
+	private static final int SOURCE_DATAGRAM = 1;
+
+	private final SourceFragmentCache<String[]> sourceFields = new SourceFragmentCache<String[]>() {
+		@Override
+		protected String[] build(Source source) {
+			return new String[] { sourceToJSON(source, true), sourceToJSON(source, false) };
+		}
+	};
+
 	/**
 	 * Create JSON formatter without newlines during formatting
 	 *
@@ -98,6 +108,7 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 		END_JSON = newLineFormat ? END_LINE : END;
 		ATTR_JSON = newLineFormat ? ATTR_END_LINE : ATTR_END;
 		ARRAY_START_JSON = newLineFormat ? ARRAY_START_LINE : ARRAY_START;
+		sourceFields.clear();
 	}
 
 	@Override
@@ -147,21 +158,7 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 			jsonString.append(JSON_PARENT_TRACK_ID_LABEL).append(ATTR_SEP);
 			Utils.quote(event.getParentId(), jsonString).append(ATTR_JSON);
 		}
-		jsonString.append(JSON_SOURCE_LABEL).append(ATTR_SEP);
-		Utils.quote(StringEscapeUtils.escapeJson(event.getSource().getName()), jsonString).append(ATTR_JSON);
-		String ssn = getSSN(event.getSource());
-		if (!Utils.isEmpty(ssn)) {
-			String escaped = StringEscapeUtils.escapeJson(ssn); // escape double quote chars
-			jsonString.append(JSON_SOURCE_SSN_LABEL).append(ATTR_SEP);
-			Utils.quote(escaped, jsonString).append(ATTR_JSON);
-		}
-		jsonString.append(JSON_SOURCE_FQN_LABEL).append(ATTR_SEP);
-		Utils.quote(StringEscapeUtils.escapeJson(event.getSource().getFQName()), jsonString).append(ATTR_JSON);
-		if (!Utils.isEmpty(event.getSource().getUrl())) {
-			String escaped = StringEscapeUtils.escapeJson(event.getSource().getUrl()); // escape double quote chars
-			jsonString.append(JSON_SOURCE_URL_LABEL).append(ATTR_SEP);
-			Utils.quote(escaped, jsonString).append(ATTR_JSON);
-		}
+		jsonString.append(sourceFields.get(event.getSource())[SOURCE_RECORD]);
 		if (event.get2(TrackingEvent.OBJ_ONE) != null) {
 			// we have a relation
 			jsonString.append(JSON_RELATE_TYPE_LABEL).append(ATTR_SEP);
@@ -308,22 +305,7 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 			jsonString.append(JSON_PARENT_TRACK_ID_LABEL).append(ATTR_SEP);
 			Utils.quote(activity.getParentId(), jsonString).append(ATTR_JSON);
 		}
-		jsonString.append(JSON_SOURCE_LABEL).append(ATTR_SEP);
-		Utils.quote(StringEscapeUtils.escapeJson(activity.getSource().getName()), jsonString).append(ATTR_JSON);
-		String ssn = getSSN(activity.getSource());
-		if (!Utils.isEmpty(ssn)) {
-			String escaped = StringEscapeUtils.escapeJson(ssn); // escape double quote chars
-			jsonString.append(JSON_SOURCE_SSN_LABEL).append(ATTR_SEP);
-			Utils.quote(escaped, jsonString).append(ATTR_JSON);
-		}
-		jsonString.append(JSON_SOURCE_FQN_LABEL).append(ATTR_SEP);
-		Utils.quote(StringEscapeUtils.escapeJson(activity.getSource().getFQName()), jsonString).append(ATTR_JSON);
-
-		if (!Utils.isEmpty(activity.getSource().getUrl())) {
-			String escaped = StringEscapeUtils.escapeJson(activity.getSource().getUrl()); // escape double quote chars
-			jsonString.append(JSON_SOURCE_URL_LABEL).append(ATTR_SEP);
-			Utils.quote(escaped, jsonString).append(ATTR_JSON);
-		}
+		jsonString.append(sourceFields.get(activity.getSource())[SOURCE_RECORD]);
 		jsonString.append(JSON_STATUS_LABEL).append(ATTR_SEP);
 		Utils.quote(activity.getStatus(), jsonString).append(ATTR_JSON);
 		jsonString.append(JSON_SEVERITY_LABEL).append(ATTR_SEP);
@@ -458,21 +440,7 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 
 		Source source = snap.getSource();
 		if (source != null) {
-			jsonString.append(JSON_SOURCE_LABEL).append(ATTR_SEP);
-			Utils.quote(StringEscapeUtils.escapeJson(source.getName()), jsonString).append(ATTR_JSON);
-			String ssn = getSSN(source);
-			if (!Utils.isEmpty(ssn)) {
-				String escaped = StringEscapeUtils.escapeJson(ssn); // escape double quote chars
-				jsonString.append(JSON_SOURCE_SSN_LABEL).append(ATTR_SEP);
-				Utils.quote(escaped, jsonString).append(ATTR_JSON);
-			}
-			jsonString.append(JSON_SOURCE_FQN_LABEL).append(ATTR_SEP);
-			Utils.quote(StringEscapeUtils.escapeJson(source.getFQName()), jsonString).append(ATTR_JSON);
-			if (!Utils.isEmpty(source.getUrl())) {
-				String escaped = StringEscapeUtils.escapeJson(source.getUrl()); // escape double quote chars
-				jsonString.append(JSON_SOURCE_URL_LABEL).append(ATTR_SEP);
-				Utils.quote(escaped, jsonString).append(ATTR_JSON);
-			}
+			jsonString.append(sourceFields.get(source)[SOURCE_RECORD]);
 		}
 		jsonString.append(JSON_SEVERITY_LABEL).append(ATTR_SEP);
 		Utils.quote(snap.getSeverity(), jsonString).append(ATTR_JSON);
@@ -604,22 +572,7 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 		Utils.quote(defOpName, jsonString).append(ATTR_JSON);
 
 		if (source != null) {
-			jsonString.append(JSON_SOURCE_LABEL).append(ATTR_SEP);
-			Utils.quote(StringEscapeUtils.escapeJson(source.getName()), jsonString).append(ATTR_JSON);
-			String ssn = getSSN(source);
-			if (!Utils.isEmpty(ssn)) {
-				String escaped = StringEscapeUtils.escapeJson(ssn); // escape double quote chars
-				jsonString.append(JSON_SOURCE_SSN_LABEL).append(ATTR_SEP);
-				Utils.quote(escaped, jsonString).append(ATTR_JSON);
-			}
-			jsonString.append(JSON_SOURCE_FQN_LABEL).append(ATTR_SEP);
-			Utils.quote(StringEscapeUtils.escapeJson(source.getFQName()), jsonString);
-			if (!Utils.isEmpty(source.getUrl())) {
-				jsonString.append(ATTR_JSON);
-				String escaped = StringEscapeUtils.escapeJson(source.getUrl()); // escape double quote chars
-				jsonString.append(JSON_SOURCE_URL_LABEL).append(ATTR_SEP);
-				Utils.quote(escaped, jsonString);
-			}
+			jsonString.append(sourceFields.get(source)[SOURCE_DATAGRAM]);
 			Source geoloc = source.getSource(SourceType.GEOADDR);
 			if (geoloc != null) {
 				jsonString.append(ATTR_JSON);
@@ -645,6 +598,43 @@ public class JSONFormatter implements EventFormatter, Configurable, JSONLabels {
 		return jsonString.toString();
 	}
 
+	/**
+	 * Builds JSON attributes of a given source: name, SSN, FQN and URL. Formatters use cached source attributes, see
+	 * {@link SourceFragmentCache}.
+	 *
+	 * @param source
+	 *            event source
+	 * @param attrEnd
+	 *            {@code true} to terminate last attribute with attribute separator
+	 * @return JSON attributes of a given source
+	 */
+	protected String sourceToJSON(Source source, boolean attrEnd) {
+		StringBuilder jsonString = new StringBuilder(256);
+		jsonString.append(JSON_SOURCE_LABEL).append(ATTR_SEP);
+		Utils.quote(StringEscapeUtils.escapeJson(source.getName()), jsonString).append(ATTR_JSON);
+		String ssn = getSSN(source);
+		if (!Utils.isEmpty(ssn)) {
+			String escaped = StringEscapeUtils.escapeJson(ssn); // escape double quote chars
+			jsonString.append(JSON_SOURCE_SSN_LABEL).append(ATTR_SEP);
+			Utils.quote(escaped, jsonString).append(ATTR_JSON);
+		}
+		jsonString.append(JSON_SOURCE_FQN_LABEL).append(ATTR_SEP);
+		Utils.quote(StringEscapeUtils.escapeJson(source.getFQName()), jsonString);
+		String url = source.getUrl();
+		if (attrEnd) {
+			jsonString.append(ATTR_JSON);
+			if (!Utils.isEmpty(url)) {
+				jsonString.append(JSON_SOURCE_URL_LABEL).append(ATTR_SEP);
+				Utils.quote(StringEscapeUtils.escapeJson(url), jsonString).append(ATTR_JSON);
+			}
+		} else if (!Utils.isEmpty(url)) {
+			jsonString.append(ATTR_JSON);
+			jsonString.append(JSON_SOURCE_URL_LABEL).append(ATTR_SEP);
+			Utils.quote(StringEscapeUtils.escapeJson(url), jsonString);
+		}
+		return jsonString.toString();
+	}
+
 	/**
 	 * Builds string reforestation of provided activity entity {@code items} collection.
 	 *
@@ -0,0 +1,724 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+import com.jkoolcloud.tnt4j.core.*;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.Useconds;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * Streaming JSON implementation of {@link StreamEventFormatter} interface. Produces the same JSON documents as
+ * {@link JSONFormatter}, but writes them as UTF-8 straight into a per-thread reusable {@link JSONByteWriter}, escaping
+ * strings inline instead of building intermediate strings. Formatted bytes are then copied into caller-supplied
+ * buffers or streams, so formatting produces next to no garbage.
+ * </p>
+ * <p>
+ * Characters outside of ASCII are written as UTF-8; set {@code EscapeNonAscii=true} to write them as
+ * {@code \}{@code uXXXX} escapes like {@link JSONFormatter} does.
+ * </p>
+ * <p>
+ * Source attributes are encoded once per source and copied into every record, see {@link SourceFragmentCache}.
+ * </p>
+ *
+ *
+ * @version $Revision: 1 $
+ *
+ * @see JSONFormatter
+ * @see JSONByteWriter
+ */
+public class JSONStreamFormatter extends JSONFormatter implements StreamEventFormatter {
+	private static final int SOURCE_RECORD = 0;
+	private static final int SOURCE_DATAGRAM = 1;
+
+	protected boolean escapeNonAscii = false;
+
+	private final SourceFragmentCache<byte[][]> sourceBytes = new SourceFragmentCache<byte[][]>() {
+		@Override
+		protected byte[][] build(Source source) {
+			return new byte[][] { sourceToBytes(source, true), sourceToBytes(source, false) };
+		}
+	};
+
+	/**
+	 * Create streaming JSON formatter without newlines during formatting
+	 *
+	 */
+	public JSONStreamFormatter() {
+		super();
+	}
+
+	/**
+	 * Create streaming JSON formatter and conditionally format with newline
+	 *
+	 * @param newLine
+	 *            apply newline formatting to JSON
+	 */
+	public JSONStreamFormatter(boolean newLine) {
+		super(newLine);
+	}
+
+	@Override
+	public void setConfiguration(Map<String, Object> settings) {
+		super.setConfiguration(settings);
+		escapeNonAscii = Utils.getBoolean("EscapeNonAscii", settings, escapeNonAscii);
+		sourceBytes.clear();
+	}
+
+	/**
+	 * Obtain an empty per-thread writer configured for this formatter. Writer must be released after use.
+	 *
+	 * @return empty JSON writer
+	 */
+	protected JSONByteWriter acquireWriter() {
+		return JSONByteWriter.acquire(escapeNonAscii);
+	}
+
+	@Override
+	public String format(Object obj, Object... args) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, obj, args);
+			return out.toString();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public String format(TrackingEvent event) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, event);
+			return out.toString();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public String format(TrackingActivity activity) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, activity);
+			return out.toString();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public String format(Snapshot snapshot) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, snapshot);
+			return out.toString();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public String format(long ttl, Source source, OpLevel level, String msg, Object... args) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, ttl, source, level, msg, args);
+			return out.toString();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(Object obj, Object... args) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, obj, args);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(TrackingEvent event) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, event);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(TrackingActivity activity) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, activity);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(Snapshot snapshot) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, snapshot);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public byte[] toBytes(long ttl, Source src, OpLevel level, String msg, Object... args) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, ttl, src, level, msg, args);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(TrackingEvent event, ByteBuffer dst) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, event);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(TrackingActivity activity, ByteBuffer dst) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, activity);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(Snapshot snapshot, ByteBuffer dst) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, snapshot);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public int format(ByteBuffer dst, long ttl, Source src, OpLevel level, String msg, Object... args) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, ttl, src, level, msg, args);
+			return out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(TrackingEvent event, OutputStream dst) throws IOException {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, event);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(TrackingActivity activity, OutputStream dst) throws IOException {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, activity);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(Snapshot snapshot, OutputStream dst) throws IOException {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, snapshot);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	@Override
+	public void format(OutputStream dst, long ttl, Source src, OpLevel level, String msg, Object... args)
+			throws IOException {
+		JSONByteWriter out = acquireWriter();
+		try {
+			write(out, ttl, src, level, msg, args);
+			out.writeTo(dst);
+		} finally {
+			out.release();
+		}
+	}
+
+	/**
+	 * Write a given object as JSON.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param obj
+	 *            object to be formatted
+	 * @param args
+	 *            arguments associated with the object
+	 */
+	protected void write(JSONByteWriter out, Object obj, Object... args) {
+		if (obj instanceof TrackingActivity) {
+			write(out, (TrackingActivity) obj);
+		} else if (obj instanceof TrackingEvent) {
+			write(out, (TrackingEvent) obj);
+		} else if (obj instanceof Snapshot) {
+			write(out, (Snapshot) obj);
+		} else if (obj instanceof Property) {
+			write(out, (Property) obj);
+		} else {
+			out.writeAscii(START_JSON);
+			out.writeAscii(JSON_TIME_USEC_LABEL).writeAscii(ATTR_SEP).writeLong(Useconds.CURRENT.get())
+					.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_MSG_TEXT_LABEL).writeAscii(ATTR_SEP);
+			out.writeQuoted(Utils.format(Utils.toString(obj), args));
+			out.writeAscii(END_JSON);
+		}
+	}
+
+	/**
+	 * Write a given {@link TrackingEvent} as JSON.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param event
+	 *            tracking event instance to be formatted
+	 */
+	protected void write(JSONByteWriter out, TrackingEvent event) {
+		Operation op = event.getOperation();
+		out.writeAscii(START_JSON);
+		writeIds(out, event.getTrackingId(), event.getSignature(), event.getParentId());
+		writeSource(out, event.getSource(), true);
+		if (event.get2(TrackingEvent.OBJ_ONE) != null) {
+			// we have a relation
+			out.writeAscii(JSON_RELATE_TYPE_LABEL).writeAscii(ATTR_SEP);
+			writeEnum(out, event.get2Type()).writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_RELATE_FQN_A_LABEL).writeAscii(ATTR_SEP);
+			out.writeQuotedRaw(event.get2(TrackingEvent.OBJ_ONE).getFQName(out.scratch())).writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_RELATE_FQN_B_LABEL).writeAscii(ATTR_SEP);
+			out.writeQuotedRaw(event.get2(TrackingEvent.OBJ_TWO).getFQName(out.scratch())).writeAscii(ATTR_JSON);
+		}
+		writeSeverityType(out, event.getSeverity(), op.getType());
+		writeNumber(out, JSON_TYPE_NO_LABEL, op.getType().ordinal());
+		writeNumber(out, JSON_PID_LABEL, op.getPID());
+		writeNumber(out, JSON_TID_LABEL, op.getTID());
+		out.writeAscii(JSON_COMP_CODE_LABEL).writeAscii(ATTR_SEP);
+		writeEnum(out, op.getCompCode()).writeAscii(ATTR_JSON);
+		writeNumber(out, JSON_COMP_CODE_NO_LABEL, op.getCompCode().ordinal());
+		writeNumber(out, JSON_REASON_CODE_LABEL, op.getReasonCode());
+		writeNumber(out, JSON_TTL_SEC_LABEL, event.getTTL());
+		writeString(out, JSON_LOCATION_LABEL, event.getLocation());
+		writeString(out, JSON_OPERATION_LABEL, op.getResolvedName());
+		writeString(out, JSON_RESOURCE_LABEL, op.getResource());
+		writeString(out, JSON_USER_LABEL, op.getUser());
+		writeNumber(out, JSON_TIME_USEC_LABEL, Useconds.CURRENT.get());
+		if (op.getStartTime() != null) {
+			writeNumber(out, JSON_START_TIME_USEC_LABEL, op.getStartTime().getTimeUsec());
+		}
+		if (op.getEndTime() != null) {
+			writeNumber(out, JSON_END_TIME_USEC_LABEL, op.getEndTime().getTimeUsec());
+			writeNumber(out, JSON_ELAPSED_TIME_USEC_LABEL, op.getElapsedTimeUsec());
+			if (op.getWaitTimeUsec() > 0) {
+				writeNumber(out, JSON_WAIT_TIME_USEC_LABEL, op.getWaitTimeUsec());
+			}
+			if (event.getMessageAge() > 0) {
+				writeNumber(out, JSON_MSG_AGE_USEC_LABEL, event.getMessageAge());
+			}
+		}
+		int snapCount = op.getSnapshotCount();
+		int propCount = op.getPropertyCount();
+		writeNumber(out, JSON_SNAPSHOT_COUNT_LABEL, snapCount);
+		writeNumber(out, JSON_PROPERTY_COUNT_LABEL, propCount);
+		writeNumber(out, JSON_MSG_SIZE_LABEL, event.getSize());
+		out.writeAscii(JSON_MSG_MIME_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(event.getMimeType()).writeAscii(ATTR_JSON);
+		out.writeAscii(JSON_MSG_ENC_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(event.getEncoding()).writeAscii(ATTR_JSON);
+		out.writeAscii(JSON_MSG_CHARSET_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(event.getCharset());
+
+		String msgText = event.getMessage();
+		if (!Utils.isEmpty(msgText)) {
+			out.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_MSG_TEXT_LABEL).writeAscii(ATTR_SEP).writeQuoted(msgText);
+		}
+		String exStr = op.getExceptionString();
+		if (!Utils.isEmpty(exStr)) {
+			out.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_EXCEPTION_LABEL).writeAscii(ATTR_SEP).writeQuoted(exStr);
+		}
+		if (!Utils.isEmpty(event.getCorrelator())) {
+			writeItems(out, JSON_CORR_ID_LABEL, event.getCorrelator());
+		}
+		if (!Utils.isEmpty(event.getTag())) {
+			writeItems(out, JSON_MSG_TAG_LABEL, event.getTag());
+		}
+		if (propCount > 0) {
+			writeItems(out, JSON_PROPERTIES_LABEL, op.getProperties());
+		}
+		if (snapCount > 0) {
+			writeItems(out, JSON_SNAPSHOTS_LABEL, op.getSnapshots());
+		}
+		out.writeAscii(END_JSON);
+	}
+
+	/**
+	 * Write a given {@link TrackingActivity} as JSON.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param activity
+	 *            tracking activity instance to be formatted
+	 */
+	protected void write(JSONByteWriter out, TrackingActivity activity) {
+		out.writeAscii(START_JSON);
+		writeIds(out, activity.getTrackingId(), activity.getSignature(), activity.getParentId());
+		writeSource(out, activity.getSource(), true);
+		out.writeAscii(JSON_STATUS_LABEL).writeAscii(ATTR_SEP);
+		writeEnum(out, activity.getStatus()).writeAscii(ATTR_JSON);
+		writeSeverityType(out, activity.getSeverity(), activity.getType());
+		writeNumber(out, JSON_TYPE_NO_LABEL, activity.getType().ordinal());
+		writeNumber(out, JSON_PID_LABEL, activity.getPID());
+		writeNumber(out, JSON_TID_LABEL, activity.getTID());
+		out.writeAscii(JSON_COMP_CODE_LABEL).writeAscii(ATTR_SEP);
+		writeEnum(out, activity.getCompCode()).writeAscii(ATTR_JSON);
+		writeNumber(out, JSON_COMP_CODE_NO_LABEL, activity.getCompCode().ordinal());
+		writeNumber(out, JSON_REASON_CODE_LABEL, activity.getReasonCode());
+		writeNumber(out, JSON_TTL_SEC_LABEL, activity.getTTL());
+		writeString(out, JSON_LOCATION_LABEL, activity.getLocation());
+		writeString(out, JSON_OPERATION_LABEL, activity.getResolvedName());
+		writeString(out, JSON_RESOURCE_LABEL, activity.getResource());
+		writeString(out, JSON_USER_LABEL, activity.getSource().getUser());
+		writeNumber(out, JSON_TIME_USEC_LABEL, Useconds.CURRENT.get());
+		if (activity.getStartTime() != null) {
+			writeNumber(out, JSON_START_TIME_USEC_LABEL, activity.getStartTime().getTimeUsec());
+		}
+		if (activity.getEndTime() != null) {
+			writeNumber(out, JSON_END_TIME_USEC_LABEL, activity.getEndTime().getTimeUsec());
+			writeNumber(out, JSON_ELAPSED_TIME_USEC_LABEL, activity.getElapsedTimeUsec());
+			if (activity.getWaitTimeUsec() > 0) {
+				writeNumber(out, JSON_WAIT_TIME_USEC_LABEL, activity.getWaitTimeUsec());
+			}
+		}
+		writeNumber(out, JSON_ID_COUNT_LABEL, activity.getIdCount());
+		writeNumber(out, JSON_SNAPSHOT_COUNT_LABEL, activity.getSnapshotCount());
+		out.writeAscii(JSON_PROPERTY_COUNT_LABEL).writeAscii(ATTR_SEP).writeLong(activity.getPropertyCount());
+
+		String exStr = activity.getExceptionString();
+		if (!Utils.isEmpty(exStr)) {
+			out.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_EXCEPTION_LABEL).writeAscii(ATTR_SEP).writeQuoted(exStr);
+		}
+		if (!Utils.isEmpty(activity.getCorrelator())) {
+			writeItems(out, JSON_CORR_ID_LABEL, activity.getCorrelator());
+		}
+		if (activity.getIdCount() > 0) {
+			writeItems(out, JSON_ID_SET_LABEL, activity.getIds());
+		}
+		if (activity.getPropertyCount() > 0) {
+			writeItems(out, JSON_PROPERTIES_LABEL, activity.getProperties());
+		}
+		if (activity.getSnapshotCount() > 0) {
+			writeItems(out, JSON_SNAPSHOTS_LABEL, activity.getSnapshots());
+		}
+		out.writeAscii(END_JSON);
+	}
+
+	/**
+	 * Write a given {@link Snapshot} as JSON.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param snap
+	 *            snapshot object to be formatted
+	 */
+	protected void write(JSONByteWriter out, Snapshot snap) {
+		out.writeAscii(START_JSON);
+		writeIds(out, snap.getTrackingId(), snap.getSignature(), snap.getParentId());
+		writeString(out, JSON_FQN_LABEL, snap.getId());
+		if (!Utils.isEmpty(snap.getCategory())) {
+			out.writeAscii(JSON_CATEGORY_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(snap.getCategory())
+					.writeAscii(ATTR_JSON);
+		}
+		writeString(out, JSON_NAME_LABEL, snap.getName());
+		writeNumber(out, JSON_COUNT_LABEL, snap.size());
+		writeNumber(out, JSON_TIME_USEC_LABEL, snap.getTimeStamp().getTimeUsec());
+		writeNumber(out, JSON_TTL_SEC_LABEL, snap.getTTL());
+		Source source = snap.getSource();
+		if (source != null) {
+			writeSource(out, source, true);
+		}
+		writeSeverityType(out, snap.getSeverity(), snap.getType());
+		out.writeAscii(JSON_TYPE_NO_LABEL).writeAscii(ATTR_SEP).writeLong(snap.getType().ordinal());
+		if (snap.size() > 0) {
+			writeItems(out, JSON_PROPERTIES_LABEL, snap.getSnapshot());
+		}
+		out.writeAscii(END_JSON);
+	}
+
+	/**
+	 * Write a given {@link Property} as JSON. Nothing is written for suppressed properties.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param prop
+	 *            property object to be formatted
+	 * @see #isSuppressed(Property)
+	 */
+	protected void write(JSONByteWriter out, Property prop) {
+		if (isSuppressed(prop)) {
+			return;
+		}
+		Object value = prop.getValue();
+		out.writeAscii(START_JSON);
+		out.writeAscii(JSON_NAME_LABEL).writeAscii(ATTR_SEP).writeQuoted(prop.getKey()).writeAscii(ATTR_JSON);
+		out.writeAscii(JSON_TYPE_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(prop.getDataType()).writeAscii(ATTR_JSON);
+		if (prop.getValueType() != null && !prop.getValueType().equalsIgnoreCase(ValueTypes.VALUE_TYPE_NONE)) {
+			out.writeAscii(JSON_VALUE_TYPE_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(prop.getValueType())
+					.writeAscii(ATTR_JSON);
+		}
+		out.writeAscii(JSON_VALUE_LABEL).writeAscii(ATTR_SEP);
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			out.writeLong(((Number) value).longValue());
+		} else if (isNoNeedToQuote(value)) {
+			out.writeRaw(String.valueOf(value));
+		} else {
+			out.writeQuoted(Utils.toString(value));
+		}
+		out.writeAscii(END_JSON);
+	}
+
+	/**
+	 * Determine if a given property is formatted as empty string by {@link #format(Property)}: property is
+	 * {@code null}, transient or has suppressed special numeric value.
+	 *
+	 * @param prop
+	 *            property to check
+	 * @return {@code true} if property is not written, {@code false} otherwise
+	 */
+	protected boolean isSuppressed(Property prop) {
+		return prop == null || prop.isTransient() || isSpecialSuppress(prop.getValue());
+	}
+
+	/**
+	 * Write a given message and severity level combo as JSON.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param ttl
+	 *            time to live in seconds
+	 * @param source
+	 *            event source
+	 * @param level
+	 *            severity level
+	 * @param msg
+	 *            message to be formatted
+	 * @param args
+	 *            arguments associated with the message
+	 */
+	protected void write(JSONByteWriter out, long ttl, Source source, OpLevel level, String msg, Object... args) {
+		out.writeAscii(START_JSON);
+		writeSeverityType(out, level, OpType.DATAGRAM);
+		writeNumber(out, JSON_TYPE_NO_LABEL, OpType.DATAGRAM.ordinal());
+		writeNumber(out, JSON_PID_LABEL, Utils.getVMPID());
+		writeNumber(out, JSON_TID_LABEL, Thread.currentThread().getId());
+		out.writeAscii(JSON_USER_LABEL).writeAscii(ATTR_SEP);
+		out.writeQuoted(source == null ? DefaultSourceFactory.getInstance().getRootSource().getUser()
+				: source.getUser()).writeAscii(ATTR_JSON);
+		writeNumber(out, JSON_TTL_SEC_LABEL, ttl);
+		writeNumber(out, JSON_TIME_USEC_LABEL, Useconds.CURRENT.get());
+		out.writeAscii(JSON_OPERATION_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(defOpName).writeAscii(ATTR_JSON);
+		if (source != null) {
+			writeSource(out, source, false);
+			Source geoloc = source.getSource(SourceType.GEOADDR);
+			if (geoloc != null) {
+				out.writeAscii(ATTR_JSON);
+				out.writeAscii(JSON_LOCATION_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(geoloc.getName());
+			}
+		}
+		if (!Utils.isEmpty(msg)) {
+			out.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_MSG_TEXT_LABEL).writeAscii(ATTR_SEP).writeQuoted(Utils.format(msg, args));
+		}
+		Throwable ex = Utils.getThrowable(args);
+		if (ex != null) {
+			out.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_EXCEPTION_LABEL).writeAscii(ATTR_SEP).writeQuoted(ex.toString());
+		}
+		out.writeAscii(END_JSON);
+	}
+
+	/**
+	 * Write a labeled JSON array of given items.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param label
+	 *            array label
+	 * @param items
+	 *            collection of activity entity items
+	 */
+	protected void writeItems(JSONByteWriter out, String label, Collection<?> items) {
+		out.writeAscii(ATTR_JSON);
+		out.writeAscii(label).writeAscii(ATTR_SEP).writeAscii(ARRAY_START_JSON);
+		if (items != null) {
+			boolean first = true;
+			for (Object item : items) {
+				if (item instanceof Property && isSuppressed((Property) item)) {
+					continue;
+				}
+				if (!first) {
+					out.writeAscii(ATTR_JSON);
+				}
+				first = false;
+				if (item instanceof TrackingEvent) {
+					write(out, (TrackingEvent) item);
+				} else if (item instanceof TrackingActivity) {
+					write(out, (TrackingActivity) item);
+				} else if (item instanceof Snapshot) {
+					write(out, (Snapshot) item);
+				} else if (item instanceof Property) {
+					write(out, (Property) item);
+				} else {
+					out.writeQuoted(Utils.toString(item));
+				}
+			}
+		}
+		out.writeAscii(ARRAY_END);
+	}
+
+	private void writeIds(JSONByteWriter out, String trackId, String signature, String parentId) {
+		if (!Utils.isEmpty(trackId)) {
+			out.writeAscii(JSON_TRACK_ID_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(trackId).writeAscii(ATTR_JSON);
+		}
+		if (!Utils.isEmpty(signature)) {
+			out.writeAscii(JSON_TRACK_SIGN_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(signature).writeAscii(ATTR_JSON);
+		}
+		if (!Utils.isEmpty(parentId)) {
+			out.writeAscii(JSON_PARENT_TRACK_ID_LABEL).writeAscii(ATTR_SEP).writeQuotedRaw(parentId)
+					.writeAscii(ATTR_JSON);
+		}
+	}
+
+	/**
+	 * Write cached source name, SSN, FQN and URL attributes of a given source.
+	 *
+	 * @param out
+	 *            JSON writer
+	 * @param source
+	 *            event source
+	 * @param attrEnd
+	 *            {@code true} to terminate last attribute with attribute separator
+	 */
+	protected void writeSource(JSONByteWriter out, Source source, boolean attrEnd) {
+		byte[] fields = sourceBytes.get(source)[attrEnd ? SOURCE_RECORD : SOURCE_DATAGRAM];
+		out.write(fields, 0, fields.length);
+	}
+
+	/**
+	 * Encode source name, SSN, FQN and URL attributes of a given source.
+	 *
+	 * @param source
+	 *            event source
+	 * @param attrEnd
+	 *            {@code true} to terminate last attribute with attribute separator
+	 * @return UTF-8 encoded JSON attributes of a given source
+	 */
+	protected byte[] sourceToBytes(Source source, boolean attrEnd) {
+		JSONByteWriter out = acquireWriter();
+		try {
+			writeSourceFields(out, source, attrEnd);
+			return out.toByteArray();
+		} finally {
+			out.release();
+		}
+	}
+
+	private void writeSourceFields(JSONByteWriter out, Source source, boolean attrEnd) {
+		out.writeAscii(JSON_SOURCE_LABEL).writeAscii(ATTR_SEP).writeQuoted(source.getName()).writeAscii(ATTR_JSON);
+		writeString(out, JSON_SOURCE_SSN_LABEL, getSSN(source));
+		out.writeAscii(JSON_SOURCE_FQN_LABEL).writeAscii(ATTR_SEP);
+		writeFQName(out, source);
+		String url = source.getUrl();
+		if (attrEnd) {
+			out.writeAscii(ATTR_JSON);
+			writeString(out, JSON_SOURCE_URL_LABEL, url);
+		} else if (!Utils.isEmpty(url)) {
+			out.writeAscii(ATTR_JSON);
+			out.writeAscii(JSON_SOURCE_URL_LABEL).writeAscii(ATTR_SEP).writeQuoted(url);
+		}
+	}
+
+	private JSONByteWriter writeFQName(JSONByteWriter out, Source source) {
+		return out.writeQuoted(source.getFQName(out.scratch()));
+	}
+
+	private void writeSeverityType(JSONByteWriter out, OpLevel sev, OpType type) {
+		out.writeAscii(JSON_SEVERITY_LABEL).writeAscii(ATTR_SEP);
+		writeEnum(out, sev).writeAscii(ATTR_JSON);
+		writeNumber(out, JSON_SEVERITY_NO_LABEL, sev.ordinal());
+		out.writeAscii(JSON_TYPE_LABEL).writeAscii(ATTR_SEP);
+		writeEnum(out, type).writeAscii(ATTR_JSON);
+	}
+
+	private static JSONByteWriter writeEnum(JSONByteWriter out, Enum<?> value) {
+		return out.writeQuotedRaw(String.valueOf(value));
+	}
+
+	private void writeNumber(JSONByteWriter out, String label, long value) {
+		out.writeAscii(label).writeAscii(ATTR_SEP).writeLong(value).writeAscii(ATTR_JSON);
+	}
+
+	private void writeString(JSONByteWriter out, String label, String value) {
+		if (!Utils.isEmpty(value)) {
+			out.writeAscii(label).writeAscii(ATTR_SEP).writeQuoted(value).writeAscii(ATTR_JSON);
+		}
+	}
+}
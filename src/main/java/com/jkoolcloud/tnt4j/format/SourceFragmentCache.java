@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jkoolcloud.tnt4j.source.DefaultSource;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.source.SourceFactory;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements a per {@link Source} cache of formatted source fragments, such as pre-escaped source name,
+ * SSN, FQN and URL attributes, so formatters do not re-escape values which never change for a given source.
+ * </p>
+ * <p>
+ * Entries are looked up by source identity. Each entry remembers versions of the source chain it was built from (see
+ * {@link DefaultSource#getVersion()}) and is rebuilt when any source in the chain changes, e.g. after
+ * {@code setName()}, {@code setUrl()} or a change of a parent source. Sources are weakly referenced and the least
+ * recently used ones are evicted beyond {@value #MAX_CACHED_SOURCES} sources. Fragments of sources whose changes can
+ * not be tracked are built on every call.
+ * </p>
+ *
+ * @param <T>
+ *            type of cached fragment
+ *
+ * @version $Revision: 1 $
+ */
+public abstract class SourceFragmentCache<T> {
+	/**
+	 * Maximum number of cached sources
+	 */
+	public static final int MAX_CACHED_SOURCES = 1024;
+
+	private final Cache<Source, Entry<T>> cache = CacheBuilder.newBuilder().weakKeys().maximumSize(MAX_CACHED_SOURCES)
+			.build();
+
+	private static class Entry<T> {
+		final int[] versions;
+		final T fragment;
+
+		Entry(int[] versions, T fragment) {
+			this.versions = versions;
+			this.fragment = fragment;
+		}
+	}
+
+	/**
+	 * Obtain fragment for a given source, building it when source is not cached or has changed since the fragment was
+	 * built.
+	 *
+	 * @param source
+	 *            event source
+	 * @return source fragment
+	 */
+	public T get(Source source) {
+		Entry<T> entry = cache.getIfPresent(source);
+		if (entry != null && DefaultSource.isCurrent(source, entry.versions)) {
+			return entry.fragment;
+		}
+		// capture versions before building, so concurrent changes invalidate the entry
+		int[] versions = DefaultSource.captureVersions(source);
+		T fragment = build(source);
+		if (versions != null) {
+			cache.put(source, new Entry<T>(versions, fragment));
+		}
+		return fragment;
+	}
+
+	/**
+	 * Remove all cached fragments. Should be called when formatting options used to build fragments change.
+	 */
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Obtain number of cached sources.
+	 *
+	 * @return number of cached sources
+	 */
+	public int size() {
+		return (int) cache.size();
+	}
+
+	/**
+	 * Build fragment for a given source.
+	 *
+	 * @param source
+	 *            event source
+	 * @return source fragment
+	 */
+	protected abstract T build(Source source);
+
+	/**
+	 * Obtain SSN of a given source, or SSN of source factory when source has no SSN. Factory SSN is configured once,
+	 * so its changes do not invalidate cached fragments.
+	 *
+	 * @param source
+	 *            event source
+	 * @return source SSN
+	 */
+	protected static String getSSN(Source source) {
+		String ssn = source.getSSN();
+		if (Utils.isEmpty(ssn)) {
+			SourceFactory factory = source.getSourceFactory();
+			return factory == null ? ssn : factory.getSSN();
+		}
+		return ssn;
+	}
+}
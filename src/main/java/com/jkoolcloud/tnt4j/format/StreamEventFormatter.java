@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.format;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * <p>
+ * Classes that implement this interface provide implementation for the {@link StreamEventFormatter} interface. This
+ * interface extends {@link BinaryEventFormatter} with methods which write formatted objects directly into a
+ * caller-supplied {@link ByteBuffer} or {@link OutputStream}, without creating intermediate strings or byte arrays.
+ * </p>
+ * <p>
+ * {@link ByteBuffer} methods throw {@link java.nio.BufferOverflowException} and leave the buffer unmodified when it
+ * has insufficient space for the formatted object.
+ * </p>
+ *
+ *
+ * @version $Revision: 1 $
+ *
+ * @see BinaryEventFormatter
+ */
+public interface StreamEventFormatter extends BinaryEventFormatter {
+	/**
+	 * Format a given {@link TrackingEvent} into a byte buffer
+	 *
+	 * @param event tracking event instance to be formatted
+	 * @param out destination buffer
+	 * @return number of bytes written
+	 * @see TrackingEvent
+	 */
+	int format(TrackingEvent event, ByteBuffer out);
+
+	/**
+	 * Format a given {@link TrackingActivity} into a byte buffer
+	 *
+	 * @param activity tracking activity instance to be formatted
+	 * @param out destination buffer
+	 * @return number of bytes written
+	 * @see TrackingActivity
+	 */
+	int format(TrackingActivity activity, ByteBuffer out);
+
+	/**
+	 * Format a given {@link Snapshot} into a byte buffer
+	 *
+	 * @param snapshot snapshot object to be formatted
+	 * @param out destination buffer
+	 * @return number of bytes written
+	 * @see Snapshot
+	 */
+	int format(Snapshot snapshot, ByteBuffer out);
+
+	/**
+	 * Format a given message and severity level combo into a byte buffer
+	 *
+	 * @param out destination buffer
+	 * @param ttl time to live in seconds
+	 * @param src event source
+	 * @param level severity level
+	 * @param msg message to be formatted
+	 * @param args arguments associated with the object
+	 * @return number of bytes written
+	 * @see OpLevel
+	 */
+	int format(ByteBuffer out, long ttl, Source src, OpLevel level, String msg, Object... args);
+
+	/**
+	 * Format a given {@link TrackingEvent} into an output stream
+	 *
+	 * @param event tracking event instance to be formatted
+	 * @param out output stream
+	 * @throws IOException if error writing to stream
+	 * @see TrackingEvent
+	 */
+	void format(TrackingEvent event, OutputStream out) throws IOException;
+
+	/**
+	 * Format a given {@link TrackingActivity} into an output stream
+	 *
+	 * @param activity tracking activity instance to be formatted
+	 * @param out output stream
+	 * @throws IOException if error writing to stream
+	 * @see TrackingActivity
+	 */
+	void format(TrackingActivity activity, OutputStream out) throws IOException;
+
+	/**
+	 * Format a given {@link Snapshot} into an output stream
+	 *
+	 * @param snapshot snapshot object to be formatted
+	 * @param out output stream
+	 * @throws IOException if error writing to stream
+	 * @see Snapshot
+	 */
+	void format(Snapshot snapshot, OutputStream out) throws IOException;
+
+	/**
+	 * Format a given message and severity level combo into an output stream
+	 *
+	 * @param out output stream
+	 * @param ttl time to live in seconds
+	 * @param src event source
+	 * @param level severity level
+	 * @param msg message to be formatted
+	 * @param args arguments associated with the object
+	 * @throws IOException if error writing to stream
+	 * @see OpLevel
+	 */
+	void format(OutputStream out, long ttl, Source src, OpLevel level, String msg, Object... args) throws IOException;
+}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.concurrent.atomic.AtomicLong;
@@ -50,7 +51,7 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * @see SinkLogEvent
  * @see SinkLogEventListener
  */
-public abstract class AbstractEventSink implements EventSink, EventSinkStats {
+public abstract class AbstractEventSink implements BatchEventSink, EventSinkStats {
 	protected final ArrayList<SinkErrorListener> errorListeners = new ArrayList<SinkErrorListener>(10);
 	protected final ArrayList<SinkLogEventListener> logListeners = new ArrayList<SinkLogEventListener>(10);
 	protected final ArrayList<SinkEventFilter> filters = new ArrayList<SinkEventFilter>(10);
@@ -76,6 +77,15 @@ public abstract class AbstractEventSink implements EventSink, EventSinkStats {
 	private AtomicLong loggedSnaps = new AtomicLong(0);
 	private AtomicLong errorCount = new AtomicLong(0);
 	private AtomicLong skipCount = new AtomicLong(0);
+	private AtomicLong loggedBatches = new AtomicLong(0);
+
+	// batch nesting level for the current thread
+	private final ThreadLocal<int[]> batchDepth = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
 
 	/**
 	 * Create an event sink with a given name
@@ -211,6 +221,7 @@ public abstract class AbstractEventSink implements EventSink, EventSinkStats {
 		stats.put(Utils.qualify(this, KEY_LOGGED_MSGS), loggedMsgs.get());
 		stats.put(Utils.qualify(this, KEY_SINK_WRITES), sinkWrites.get());
 		stats.put(Utils.qualify(this, KEY_SKIPPED_COUNT), skipCount.get());
+		stats.put(Utils.qualify(this, KEY_LOGGED_BATCHES), loggedBatches.get());
 		if (lastTime.get() > 0) {
 			stats.put(Utils.qualify(this, KEY_LAST_TIMESTAMP), new Date(lastTime.get()));
 			stats.put(Utils.qualify(this, KEY_LAST_AGE), (System.currentTimeMillis() - lastTime.get()));
@@ -240,6 +251,7 @@ public abstract class AbstractEventSink implements EventSink, EventSinkStats {
 		loggedMsgs.set(0);
 		sinkWrites.set(0);
 		skipCount.set(0);
+		loggedBatches.set(0);
 	}
 
 	@Override
@@ -485,6 +497,65 @@ public abstract class AbstractEventSink implements EventSink, EventSinkStats {
 		}
 	}
 
+	@Override
+	public void log(List<SinkLogEvent> events) {
+		_checkState();
+		int[] depth = batchDepth.get();
+		depth[0]++;
+		try {
+			for (SinkLogEvent event : events) {
+				logEvent(this, event);
+			}
+		} finally {
+			depth[0]--;
+		}
+		if (depth[0] == 0) {
+			try {
+				_flushBatch();
+				loggedBatches.incrementAndGet();
+			} catch (Throwable ex) {
+				for (SinkLogEvent event : events) {
+					notifyListeners(event.retain(), ex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Dispatch a given sink log event to the appropriate {@code log()} method of a given event sink.
+	 *
+	 * @param sink
+	 *            event sink to log the event to
+	 * @param event
+	 *            sink log event
+	 */
+	public static void logEvent(EventSink sink, SinkLogEvent event) {
+		Object sinkObject = event.getSinkObject();
+		if (sinkObject instanceof TrackingEvent) {
+			sink.log((TrackingEvent) sinkObject);
+		} else if (sinkObject instanceof TrackingActivity) {
+			sink.log((TrackingActivity) sinkObject);
+		} else if (sinkObject instanceof Snapshot) {
+			sink.log(event.getSnapshot());
+		} else if (event.getEventSource() != null) {
+			sink.log(event.getTTL(), event.getEventSource(), event.getSeverity(), event.getResourceBundle(),
+					String.valueOf(sinkObject), event.getArguments());
+		} else {
+			sink.log(event.getTTL(), sink.getSource(), event.getSeverity(), event.getResourceBundle(),
+					String.valueOf(sinkObject), event.getArguments());
+		}
+	}
+
+	/**
+	 * Determine if current thread is writing a batch of events to this sink. Subclasses may use this method to defer
+	 * flushing of the underlying destination until {@link #_flushBatch()} is called.
+	 *
+	 * @return {@code true} if current thread is within {@link #log(List)} call, {@code false} otherwise
+	 */
+	protected boolean isBatching() {
+		return batchDepth.get()[0] > 0;
+	}
+
 	@Override
 	public void log(OpLevel sev, String msg, Object... args) {
 		log(source, sev, msg, args);
@@ -642,6 +713,16 @@ public abstract class AbstractEventSink implements EventSink, EventSinkStats {
 		return true;
 	}
 
+	/**
+	 * Override this method to flush the underlying destination once a batch of events is written by
+	 * {@link #log(List)}. Default implementation does nothing.
+	 *
+	 * @throws IOException
+	 *             if error flushing batch to sink
+	 */
+	protected void _flushBatch() throws IOException {
+	}
+
 	/**
 	 * Override this method to add actual implementation for all subclasses.
 	 *
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Optional interface implemented by event sinks capable of writing batches of events. Pooled loggers hand off batches
+ * to sinks implementing this interface and write events one by one to all other sinks. {@link AbstractEventSink}
+ * implements this interface.
+ * </p>
+ *
+ * @see EventSink
+ * @see SinkLogEvent
+ *
+ * @version $Revision: 1 $
+ */
+public interface BatchEventSink extends EventSink {
+	/**
+	 * This method allows writing a batch of {@link SinkLogEvent} objects to the underlying destination. Sinks capable of
+	 * writing batches should write all events and flush the underlying destination once per batch.
+	 *
+	 * @param events
+	 *            list of sink log events to be sent to the sink
+	 * @see SinkLogEvent
+	 */
+	void log(List<SinkLogEvent> events);
+}
@@ -34,6 +34,7 @@ public interface EventSinkStats {
 	String KEY_LOGGED_ACTIVITIES = "sink-activities";
 	String KEY_LOGGED_SNAPSHOTS = "sink-snapshots";
 	String KEY_SKIPPED_COUNT = "sink-skipped";
+	String KEY_LOGGED_BATCHES = "sink-batches";
 	String KEY_LAST_TIMESTAMP = "sink-last-timestamp";
 	String KEY_LAST_AGE = "sink-last-age-ms";
 
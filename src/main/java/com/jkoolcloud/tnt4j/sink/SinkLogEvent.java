@@ -59,6 +59,7 @@ public class SinkLogEvent extends EventObject implements TTL {
 	private long ttl;
 	private long startTimeNanos = System.nanoTime();
 	private long stopTimeNanos = 0;
+	transient SinkLogEventPool pool;
 
 	/**
 	 * Create a new log event instance designed as a signal
@@ -98,12 +99,7 @@ public class SinkLogEvent extends EventObject implements TTL {
 	 */
 	public SinkLogEvent(EventSink sink, TrackingEvent msg) {
 		super(sink);
-		logObj = msg;
-		error = msg.getOperation().getThrowable();
-		level = msg.getSeverity();
-		evSrc = msg.getSource();
-		argList = msg.getMessageArgs();
-		ttl = msg.getTTL();
+		init(msg);
 	}
 
 	/**
@@ -116,10 +112,7 @@ public class SinkLogEvent extends EventObject implements TTL {
 	 */
 	public SinkLogEvent(EventSink sink, TrackingActivity msg) {
 		super(sink);
-		logObj = msg;
-		error = msg.getThrowable();
-		evSrc = msg.getSource();
-		ttl = msg.getTTL();
+		init(msg);
 	}
 
 	/**
@@ -132,11 +125,7 @@ public class SinkLogEvent extends EventObject implements TTL {
 	 */
 	public SinkLogEvent(EventSink sink, Snapshot snap) {
 		super(sink);
-		level = snap.getSeverity();
-		logObj = snap;
-		snapshot = snap;
-		evSrc = snap.getSource();
-		ttl = snap.getTTL();
+		init(snap);
 	}
 
 	/**
@@ -157,14 +146,7 @@ public class SinkLogEvent extends EventObject implements TTL {
 	 */
 	public SinkLogEvent(EventSink sink, Source evSource, OpLevel sev, long ttl, Object msg, Object... args) {
 		super(sink);
-		logObj = msg;
-		if (args != null && args.length > 0) {
-			argList = args;
-			error = Utils.getThrowable(args);
-		}
-		level = sev;
-		evSrc = evSource;
-		this.ttl = ttl;
+		init(evSource, sev, ttl, null, msg, args);
 	}
 
 	/**
@@ -188,6 +170,34 @@ public class SinkLogEvent extends EventObject implements TTL {
 	public SinkLogEvent(EventSink sink, Source evSource, OpLevel sev, long ttl, ResourceBundle bundle, Object key,
 			Object... args) {
 		super(sink);
+		init(evSource, sev, ttl, bundle, key, args);
+	}
+
+	void init(TrackingEvent msg) {
+		logObj = msg;
+		error = msg.getOperation().getThrowable();
+		level = msg.getSeverity();
+		evSrc = msg.getSource();
+		argList = msg.getMessageArgs();
+		ttl = msg.getTTL();
+	}
+
+	void init(TrackingActivity msg) {
+		logObj = msg;
+		error = msg.getThrowable();
+		evSrc = msg.getSource();
+		ttl = msg.getTTL();
+	}
+
+	void init(Snapshot snap) {
+		level = snap.getSeverity();
+		logObj = snap;
+		snapshot = snap;
+		evSrc = snap.getSource();
+		ttl = snap.getTTL();
+	}
+
+	void init(Source evSource, OpLevel sev, long ttl, ResourceBundle bundle, Object key, Object... args) {
 		logObj = key;
 		if (args != null && args.length > 0) {
 			argList = args;
@@ -199,6 +209,60 @@ public class SinkLogEvent extends EventObject implements TTL {
 		this.ttl = ttl;
 	}
 
+	/**
+	 * Clear all event state and bind event to a given sink, so that pooled event instance can be reused.
+	 *
+	 * @param sink
+	 *            sink associated with the event
+	 * @return same event instance
+	 */
+	SinkLogEvent reset(EventSink sink) {
+		source = sink;
+		logObj = null;
+		snapshot = null;
+		error = null;
+		bundle = null;
+		evSrc = null;
+		level = OpLevel.NONE;
+		argList = null;
+		signalType = SIGNAL_PROCESS;
+		ttl = 0;
+		startTimeNanos = System.nanoTime();
+		stopTimeNanos = 0;
+		return this;
+	}
+
+	/**
+	 * Mark this event as referenced beyond its processing (e.g. re-queued for retry or handed to error listeners), so
+	 * that it is never recycled into an event pool.
+	 *
+	 * @return same event instance
+	 *
+	 * @see SinkLogEventPool
+	 */
+	public SinkLogEvent retain() {
+		pool = null;
+		return this;
+	}
+
+	/**
+	 * Return this event to the event pool it was obtained from. Has no effect on events not obtained from a pool or
+	 * marked by {@link #retain()}. Event must not be accessed after it is recycled.
+	 *
+	 * @return {@code true} if event was returned to a pool, {@code false} otherwise
+	 *
+	 * @see SinkLogEventPool
+	 */
+	public boolean recycle() {
+		SinkLogEventPool owner = pool;
+		if (owner == null) {
+			return false;
+		}
+		pool = null;
+		owner.release(this);
+		return true;
+	}
+
 	/**
 	 * Return Thread associated with event producer, null if not available
 	 * 
@@ -305,7 +369,18 @@ public class SinkLogEvent extends EventObject implements TTL {
 	 * @return service time in nanoseconds
 	 */
 	public long complete() {
-		stopTimeNanos = System.nanoTime();
+		return complete(System.nanoTime());
+	}
+
+	/**
+	 * This method is called when event processing is complete and service time is calculated.
+	 *
+	 * @param stopNanos
+	 *            event processing completion time in nanoseconds, see {@link System#nanoTime()}
+	 * @return service time in nanoseconds
+	 */
+	public long complete(long stopNanos) {
+		stopTimeNanos = stopNanos;
 		return stopTimeNanos - startTimeNanos;
 	}
 
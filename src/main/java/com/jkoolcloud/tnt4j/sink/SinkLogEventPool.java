@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink;
+
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.RingBlockingQueue;
+
+/**
+ * <p>
+ * A bounded pool of reusable {@link SinkLogEvent} instances. Events are obtained by producer threads and recycled by
+ * consumer threads (see {@link SinkLogEvent#recycle()}) once processed, which avoids allocating a new event per log
+ * call. Free events are kept in a lock-free {@link RingBlockingQueue}, so neither obtaining nor recycling an event
+ * allocates memory. A new event is created when the pool is empty, and recycled events are discarded when the pool is
+ * full.
+ * </p>
+ *
+ * @see SinkLogEvent
+ *
+ * @version $Revision: 1 $
+ *
+ */
+public class SinkLogEventPool {
+	private final RingBlockingQueue<SinkLogEvent> free;
+
+	private final AtomicLong createCount = new AtomicLong(0);
+	private final AtomicLong reuseCount = new AtomicLong(0);
+
+	/**
+	 * Create event pool with a given maximum number of free events.
+	 *
+	 * @param capacity
+	 *            maximum number of free events kept by the pool
+	 */
+	public SinkLogEventPool(int capacity) {
+		free = new RingBlockingQueue<SinkLogEvent>(capacity);
+	}
+
+	/**
+	 * Obtain log event for a given tracking event.
+	 *
+	 * @param sink
+	 *            sink associated with the event
+	 * @param msg
+	 *            tracking event instance
+	 * @return log event instance
+	 */
+	public SinkLogEvent obtain(EventSink sink, TrackingEvent msg) {
+		SinkLogEvent event = free.poll();
+		if (event == null) {
+			event = new SinkLogEvent(sink, msg);
+			createCount.incrementAndGet();
+		} else {
+			event.reset(sink).init(msg);
+			reuseCount.incrementAndGet();
+		}
+		event.pool = this;
+		return event;
+	}
+
+	/**
+	 * Obtain log event for a given tracking activity.
+	 *
+	 * @param sink
+	 *            sink associated with the event
+	 * @param msg
+	 *            tracking activity instance
+	 * @return log event instance
+	 */
+	public SinkLogEvent obtain(EventSink sink, TrackingActivity msg) {
+		SinkLogEvent event = free.poll();
+		if (event == null) {
+			event = new SinkLogEvent(sink, msg);
+			createCount.incrementAndGet();
+		} else {
+			event.reset(sink).init(msg);
+			reuseCount.incrementAndGet();
+		}
+		event.pool = this;
+		return event;
+	}
+
+	/**
+	 * Obtain log event for a given snapshot.
+	 *
+	 * @param sink
+	 *            sink associated with the event
+	 * @param snap
+	 *            snapshot instance
+	 * @return log event instance
+	 */
+	public SinkLogEvent obtain(EventSink sink, Snapshot snap) {
+		SinkLogEvent event = free.poll();
+		if (event == null) {
+			event = new SinkLogEvent(sink, snap);
+			createCount.incrementAndGet();
+		} else {
+			event.reset(sink).init(snap);
+			reuseCount.incrementAndGet();
+		}
+		event.pool = this;
+		return event;
+	}
+
+	/**
+	 * Obtain log event for a given log message.
+	 *
+	 * @param sink
+	 *            sink associated with the event
+	 * @param evSource
+	 *            source associated with the event
+	 * @param sev
+	 *            log severity
+	 * @param ttl
+	 *            time to live in seconds
+	 * @param bundle
+	 *            resource bundle
+	 * @param key
+	 *            log message object
+	 * @param args
+	 *            argument list associated with the message
+	 * @return log event instance
+	 */
+	public SinkLogEvent obtain(EventSink sink, Source evSource, OpLevel sev, long ttl, ResourceBundle bundle,
+			Object key, Object... args) {
+		SinkLogEvent event = free.poll();
+		if (event == null) {
+			event = new SinkLogEvent(sink, evSource, sev, ttl, bundle, key, args);
+			createCount.incrementAndGet();
+		} else {
+			event.reset(sink).init(evSource, sev, ttl, bundle, key, args);
+			reuseCount.incrementAndGet();
+		}
+		event.pool = this;
+		return event;
+	}
+
+	/**
+	 * Return event to the pool. Event state is cleared, so that it does not hold references to logged objects.
+	 *
+	 * @param event
+	 *            event to return
+	 */
+	void release(SinkLogEvent event) {
+		event.reset(event.getEventSink());
+		free.offer(event);
+	}
+
+	/**
+	 * Obtain number of free events in the pool.
+	 *
+	 * @return number of free events
+	 */
+	public int size() {
+		return free.size();
+	}
+
+	/**
+	 * Obtain number of events created by the pool.
+	 *
+	 * @return number of created events
+	 */
+	public long getCreateCount() {
+		return createCount.get();
+	}
+
+	/**
+	 * Obtain number of events reused from the pool.
+	 *
+	 * @return number of reused events
+	 */
+	public long getReuseCount() {
+		return reuseCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{capacity: " + free.getCapacity() + ", free: " + size() + ", created: "
+				+ getCreateCount() + ", reused: " + getReuseCount() + "}";
+	}
+}
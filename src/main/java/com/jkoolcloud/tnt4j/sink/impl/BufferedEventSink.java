@@ -16,10 +16,15 @@
 package com.jkoolcloud.tnt4j.sink.impl;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
 
 import com.jkoolcloud.tnt4j.core.KeyValueStats;
@@ -31,6 +36,7 @@ import com.jkoolcloud.tnt4j.sink.*;
 import com.jkoolcloud.tnt4j.source.Source;
 import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
 import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.MappedSpillQueue;
 import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
@@ -39,6 +45,11 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * specified out sink using a separate thread. {@code BufferedEventSink} decouples writer from the actual sink write and
  * can improve performance during bursts.
  * </p>
+ * <p>
+ * Optionally events which do not fit into pooled logger queue are spilled into memory-mapped segment files and
+ * replayed in order once queue space becomes available, instead of being dropped or blocking the caller. Spilled log
+ * messages which are not replayed before shutdown are kept in segment files and replayed after restart.
+ * </p>
  *
  *
  * @version $Revision: 1 $
@@ -49,20 +60,37 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * @see SinkLogEvent
  * @see SinkLogEventListener
  */
-public class BufferedEventSink implements EventSink, IOShutdown {
+public class BufferedEventSink implements BatchEventSink, IOShutdown {
 	static final String KEY_OBJECTS_TOTAL = "buffered-objects-total";
 	static final String KEY_OBJECTS_DROPPED = "buffered-objects-dropped";
 	static final String KEY_OBJECTS_SKIPPED = "buffered-objects-skipped";
 	static final String KEY_OBJECTS_REQUEUED = "buffered-objects-requeued";
 	static final String KEY_FLUSH_COUNT = "buffered-flush-count";
+	static final String KEY_FLUSH_COALESCED = "buffered-flush-coalesced";
 	static final String KEY_TOTAL_ERRORS = "buffered-errors-total";
+	static final String KEY_OBJECTS_SPILLED = "buffered-objects-spilled";
+	static final String KEY_OBJECTS_REPLAYED = "buffered-objects-replayed";
+	static final String KEY_SPILL_SIZE = "buffered-spill-size";
+	static final String KEY_SPILL_BYTES = "buffered-spill-bytes";
+	static final String KEY_POOL_CREATED = "buffered-pool-created";
+	static final String KEY_POOL_REUSED = "buffered-pool-reused";
+	static final String KEY_SPILL_LOST = "buffered-spill-lost";
+	static final String KEY_SPILL_OBJECTS = "buffered-spill-objects";
+
+	/**
+	 * Default maximum number of spilled events kept on heap
+	 */
+	public static final int DEFAULT_SPILL_OBJECTS = 1024;
 
 	private long ttl = TTL.TTL_CONTEXT;
 	private long signalTimeout = 5000;
+	private long groupCommitInterval = 0;
 	private boolean block = false;
 	private Source source;
 	private EventSink outSink = null;
 	private BufferedEventSinkFactory factory;
+	private SpillEventQueue spillQ;
+	private SinkLogEventPool eventPool;
 
 	// sink stat counters
 	private AtomicLong totalCount = new AtomicLong(0);
@@ -71,6 +99,12 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 	private AtomicLong dropCount = new AtomicLong(0);
 	private AtomicLong rqCount = new AtomicLong(0);
 	private AtomicLong errorCount = new AtomicLong(0);
+	private AtomicLong coalescedCount = new AtomicLong(0);
+
+	// flush signal other threads may still join
+	private final AtomicReference<FlushSignal> pendingFlush = new AtomicReference<FlushSignal>();
+	// enqueued flush signal not yet completed
+	private final AtomicReference<FlushSignal> inFlightFlush = new AtomicReference<FlushSignal>();
 
 	/**
 	 * Create a buffered sink instance with a specified out sink maximum capacity. Event will be dropped if capacity is
@@ -92,6 +126,94 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 		outSink.filterOnLog(false); // disable filtering on the underlying sink (prevent double filters)
 	}
 
+	/**
+	 * Obtain sink log events from a given event pool instead of allocating a new event per log call. Pooled events are
+	 * recycled by {@link PooledLogger} once processed.
+	 *
+	 * @param pool
+	 *            sink log event pool, {@code null} to disable pooling
+	 */
+	public void setEventPool(SinkLogEventPool pool) {
+		eventPool = pool;
+	}
+
+	/**
+	 * Obtain sink log event pool used by this sink.
+	 *
+	 * @return sink log event pool, {@code null} if pooling is disabled
+	 */
+	public SinkLogEventPool getEventPool() {
+		return eventPool;
+	}
+
+	/**
+	 * Enable spilling of events into a given spill queue when pooled logger queue is full.
+	 *
+	 * @param queue
+	 *            spill queue where overflowing events are stored, {@code null} to disable spilling
+	 */
+	public void setSpillQueue(MappedSpillQueue queue) {
+		setSpillQueue(queue, DEFAULT_SPILL_OBJECTS);
+	}
+
+	/**
+	 * Enable spilling of events into a given spill queue when pooled logger queue is full. Log messages are encoded
+	 * into the spill queue. Tracking events, activities, snapshots and flush/close signals are kept on heap, up to a
+	 * given maximum, and only their references are spilled, so that all events are replayed in order.
+	 *
+	 * @param queue
+	 *            spill queue where overflowing events are stored, {@code null} to disable spilling
+	 * @param maxObjects
+	 *            maximum number of spilled events kept on heap
+	 */
+	public void setSpillQueue(MappedSpillQueue queue, int maxObjects) {
+		spillQ = queue != null ? new SpillEventQueue(outSink, queue, maxObjects) : null;
+	}
+
+	/**
+	 * Determine if spilling of overflowing log messages is enabled.
+	 *
+	 * @return {@code true} if spilling is enabled, {@code false} otherwise
+	 */
+	public boolean isSpilling() {
+		return spillQ != null;
+	}
+
+	/**
+	 * Replay spilled log messages into pooled logger queue in order, until all spilled messages are replayed or the
+	 * queue is full.
+	 *
+	 * @return number of replayed messages
+	 */
+	protected int replaySpilled() {
+		SpillEventQueue spill = spillQ;
+		if (spill == null || spill.isEmpty() || !isOpen()) {
+			return 0;
+		}
+		return spill.replay(factory.getPooledLogger());
+	}
+
+	/**
+	 * Set group commit interval. Flush requests made within this interval after the first one share a single flush of
+	 * the underlying sink. Regardless of this interval, flush requests made while a previous flush is in flight share
+	 * a single pending flush, which is enqueued once the previous flush completes.
+	 *
+	 * @param interval
+	 *            group commit interval in milliseconds, 0 to flush as soon as possible
+	 */
+	public void setGroupCommitInterval(long interval) {
+		groupCommitInterval = interval;
+	}
+
+	/**
+	 * Get group commit interval in milliseconds.
+	 *
+	 * @return group commit interval in milliseconds
+	 */
+	public long getGroupCommitInterval() {
+		return groupCommitInterval;
+	}
+
 	/**
 	 * Set maximum signal timeout.
 	 * 
@@ -197,7 +319,8 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 			if (ttl != TTL.TTL_CONTEXT) {
 				activity.setTTL(ttl);
 			}
-			SinkLogEvent sinkEvent = new SinkLogEvent(outSink, activity);
+			SinkLogEvent sinkEvent = eventPool != null ? eventPool.obtain(outSink, activity)
+					: new SinkLogEvent(outSink, activity);
 			_writeEvent(sinkEvent, block);
 		} else {
 			skipCount.incrementAndGet();
@@ -211,7 +334,8 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 			if (ttl != TTL.TTL_CONTEXT) {
 				event.setTTL(ttl);
 			}
-			SinkLogEvent sinkEvent = new SinkLogEvent(outSink, event);
+			SinkLogEvent sinkEvent = eventPool != null ? eventPool.obtain(outSink, event)
+					: new SinkLogEvent(outSink, event);
 			_writeEvent(sinkEvent, block);
 		} else {
 			skipCount.incrementAndGet();
@@ -225,13 +349,21 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 			if (ttl != TTL.TTL_CONTEXT) {
 				snapshot.setTTL(ttl);
 			}
-			SinkLogEvent sinkEvent = new SinkLogEvent(outSink, snapshot);
+			SinkLogEvent sinkEvent = eventPool != null ? eventPool.obtain(outSink, snapshot)
+					: new SinkLogEvent(outSink, snapshot);
 			_writeEvent(sinkEvent, block);
 		} else {
 			skipCount.incrementAndGet();
 		}
 	}
 
+	@Override
+	public void log(List<SinkLogEvent> events) {
+		for (SinkLogEvent event : events) {
+			AbstractEventSink.logEvent(this, event);
+		}
+	}
+
 	@Override
 	public void log(OpLevel sev, String msg, Object... args) {
 		log(source, sev, msg, args);
@@ -261,7 +393,10 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 	public void log(long ttl_sec, Source src, OpLevel sev, ResourceBundle bundle, String key, Object... args) {
 		_checkState();
 		if (isLoggable(sev, key, args)) {
-			SinkLogEvent sinkEvent = new SinkLogEvent(outSink, src, sev, ttl_sec, bundle, key, resolveArguments(args));
+			Object[] resolved = resolveArguments(args);
+			SinkLogEvent sinkEvent = eventPool != null
+					? eventPool.obtain(outSink, src, sev, ttl_sec, bundle, key, resolved)
+					: new SinkLogEvent(outSink, src, sev, ttl_sec, bundle, key, resolved);
 			_writeEvent(sinkEvent, block);
 		} else {
 			skipCount.incrementAndGet();
@@ -281,19 +416,33 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 		}
 	}
 
-	private void _writeEvent(SinkLogEvent sinkEvent, boolean sync) {
+	private boolean _writeEvent(SinkLogEvent sinkEvent, boolean sync) {
 		totalCount.incrementAndGet();
+		SpillEventQueue spill = spillQ;
+		if (spill != null && SpillEventQueue.isSpillable(sinkEvent)) {
+			// keep order: once spilling starts, new events go to spill until it is replayed
+			if (spill.isEmpty() && factory.getPooledLogger().tryOffer(sinkEvent)) {
+				return true;
+			}
+			if (spill.offer(sinkEvent)) {
+				return true;
+			}
+		}
 		if (sync) {
 			try {
 				factory.getPooledLogger().put(sinkEvent);
+				return true;
 			} catch (Throwable ex) {
 				dropCount.incrementAndGet();
+				return false;
 			}
 		} else {
 			boolean flag = factory.getPooledLogger().offer(sinkEvent);
 			if (!flag) {
 				dropCount.incrementAndGet();
+				sinkEvent.recycle();
 			}
+			return flag;
 		}
 	}
 
@@ -347,7 +496,21 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 		stats.put(Utils.qualify(this, KEY_OBJECTS_SKIPPED), skipCount.get());
 		stats.put(Utils.qualify(this, KEY_OBJECTS_REQUEUED), rqCount.get());
 		stats.put(Utils.qualify(this, KEY_FLUSH_COUNT), signalCount.get());
+		stats.put(Utils.qualify(this, KEY_FLUSH_COALESCED), coalescedCount.get());
 		stats.put(Utils.qualify(this, KEY_TOTAL_ERRORS), errorCount.get());
+		SpillEventQueue spill = spillQ;
+		if (spill != null) {
+			stats.put(Utils.qualify(this, KEY_OBJECTS_SPILLED), spill.spillCount.get());
+			stats.put(Utils.qualify(this, KEY_OBJECTS_REPLAYED), spill.replayCount.get());
+			stats.put(Utils.qualify(this, KEY_SPILL_SIZE), spill.queue.size());
+			stats.put(Utils.qualify(this, KEY_SPILL_BYTES), spill.queue.getBytes());
+			stats.put(Utils.qualify(this, KEY_SPILL_OBJECTS), spill.objects.size());
+			stats.put(Utils.qualify(this, KEY_SPILL_LOST), spill.lostCount.get());
+		}
+		if (eventPool != null) {
+			stats.put(Utils.qualify(this, KEY_POOL_CREATED), eventPool.getCreateCount());
+			stats.put(Utils.qualify(this, KEY_POOL_REUSED), eventPool.getReuseCount());
+		}
 		if (isOpen()) {
 			factory.getPooledLogger().getStats(stats);
 		}
@@ -362,6 +525,13 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 		rqCount.set(0);
 		errorCount.set(0);
 		skipCount.set(0);
+		coalescedCount.set(0);
+		SpillEventQueue spill = spillQ;
+		if (spill != null) {
+			spill.spillCount.set(0);
+			spill.replayCount.set(0);
+			spill.lostCount.set(0);
+		}
 		outSink.resetStats();
 	}
 
@@ -389,24 +559,41 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 	}
 
 	/**
-	 * Convert object array into an array of strings
+	 * Capture argument values at the time of the log call, since arguments are formatted asynchronously. Mutable
+	 * arguments are converted to strings, while immutable arguments (strings, boxed primitives, enums, etc.) and
+	 * exceptions are kept as is.
 	 *
 	 * @param args
 	 *            array of objects
-	 * @return array of string objects
+	 * @return array of captured argument values
 	 */
 	protected Object[] resolveArguments(Object... args) {
 		if (args == null || args.length == 0) {
 			return null;
 		}
 		for (int i = 0; i < args.length; i++) {
-			if (!(args[i] instanceof Throwable)) {
-				args[i] = String.valueOf(args[i]);
+			Object arg = args[i];
+			if (!(arg instanceof Throwable) && !isImmutable(arg)) {
+				args[i] = String.valueOf(arg);
 			}
 		}
 		return args;
 	}
 
+	/**
+	 * Determine if a given argument value can not change after the log call.
+	 *
+	 * @param arg
+	 *            argument value
+	 * @return {@code true} if argument is immutable, {@code false} otherwise
+	 */
+	protected static boolean isImmutable(Object arg) {
+		return arg == null || arg instanceof String || arg instanceof Integer || arg instanceof Long
+				|| arg instanceof Double || arg instanceof Float || arg instanceof Boolean || arg instanceof Character
+				|| arg instanceof Short || arg instanceof Byte || arg instanceof Enum || arg instanceof BigDecimal
+				|| arg instanceof BigInteger || arg instanceof UUID;
+	}
+
 	/**
 	 * Obtain {@link EventSinkFactory} associated with this sink.
 	 *
@@ -498,11 +685,64 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 
 	@Override
 	public void flush() throws IOException {
-		signal(SinkLogEvent.SIGNAL_FLUSH, signalTimeout, TimeUnit.MILLISECONDS);
+		_checkState();
+		FlushSignal flush;
+		while (true) {
+			FlushSignal pending = pendingFlush.get();
+			if (pending != null && pending.join()) {
+				// share flush which is not yet enqueued, it covers all events logged so far
+				coalescedCount.incrementAndGet();
+				pending.await(signalTimeout, TimeUnit.MILLISECONDS);
+				checkFlush(pending);
+				return;
+			}
+			flush = new FlushSignal(outSink, Thread.currentThread());
+			if (pendingFlush.compareAndSet(pending, flush)) {
+				break;
+			}
+		}
+		if (groupCommitInterval > 0) {
+			// let other flush requests join before the flush is issued
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(groupCommitInterval));
+		}
+		// keep collecting joiners while previous flush is in flight
+		FlushSignal previous = inFlightFlush.get();
+		if (previous != null) {
+			previous.await(signalTimeout, TimeUnit.MILLISECONDS);
+		}
+		// mark in flight before join window is closed, so the next flush waits for this one
+		inFlightFlush.set(flush);
+		flush.seal();
+		pendingFlush.compareAndSet(flush, null);
+		signalCount.incrementAndGet();
+		try {
+			if (_writeEvent(flush, true)) {
+				flush.await(signalTimeout, TimeUnit.MILLISECONDS);
+			} else {
+				flush.abort();
+			}
+		} finally {
+			inFlightFlush.compareAndSet(flush, null);
+		}
+		checkFlush(flush);
+	}
+
+	private void checkFlush(FlushSignal flush) throws IOException {
+		if (flush.isAborted()) {
+			throw new IOException("Flush signal dropped: sink=" + getName());
+		}
 	}
 
 	@Override
 	public void shutdown(Throwable ex) throws IOException {
+		SpillEventQueue spill = spillQ;
+		if (spill != null) {
+			// periodic replay is stopped first, replays and close are exclusive per spill queue
+			factory.unregisterSpill(this);
+			replaySpilled();
+			// log messages left in spill are kept for the next start, events kept on heap are lost
+			dropCount.addAndGet(spill.close());
+		}
 		// shutdown normally using signal
 		SinkLogEvent shutdownEvt = new SinkLogEvent(outSink, Thread.currentThread(), SinkLogEvent.SIGNAL_SHUTDOWN);
 		shutdownEvt.setException(ex);
@@ -550,8 +790,9 @@ public class BufferedEventSink implements EventSink, IOShutdown {
 	protected BufferedEventSink signal(SinkLogEvent evt, long wait, TimeUnit tunit) throws IOException {
 		_checkState();
 		signalCount.incrementAndGet();
-		_writeEvent(evt, true);
-		LockSupport.parkNanos(this, tunit.toNanos(wait));
+		if (_writeEvent(evt, true)) {
+			LockSupport.parkNanos(this, tunit.toNanos(wait));
+		}
 		return this;
 	}
 
@@ -15,14 +15,25 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.jkoolcloud.tnt4j.config.ConfigException;
+import com.jkoolcloud.tnt4j.core.OpLevel;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSinkFactory;
 import com.jkoolcloud.tnt4j.sink.EventSink;
 import com.jkoolcloud.tnt4j.sink.EventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.SinkLogEventPool;
+import com.jkoolcloud.tnt4j.utils.MappedSpillQueue;
+import com.jkoolcloud.tnt4j.utils.NamedThreadFactory;
 import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
@@ -31,6 +42,15 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * This factory relies on the specified concrete {@link EventSinkFactory} instance specified by {@link EventSinkFactory}
  * configuration attribute. This factory uses specified event sink factory to create event sinks and wraps then with
  * instances of {@link BufferedEventSink}.
+ * <p>
+ * When {@code SpillDir} is configured, events which do not fit into pooled logger queue are spilled into
+ * memory-mapped segment files (up to {@code SpillMaxSegments} files of {@code SpillSegmentSize} bytes per sink) and
+ * replayed every {@code SpillReplayInterval} milliseconds. Tracking events, activities, snapshots and signals are kept
+ * on heap (up to {@code SpillMaxObjects} per sink) and only referenced from spill files. Spilled log messages left at
+ * shutdown are replayed after restart by the sink with the same name.
+ * <p>
+ * When {@code EventPoolSize} is greater than zero, buffered sinks reuse sink log events from a shared
+ * {@link SinkLogEventPool} of a given size instead of allocating a new event per log call.
  *
  *
  * @see EventSink
@@ -41,12 +61,26 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  *
  */
 public class BufferedEventSinkFactory extends AbstractEventSinkFactory {
+	private static final int MAX_SPILL_ORDINALS = 64;
+
 	String poolFactoryClass;
 	boolean blockWrites = false;
 	long signalTimeout = 10000;
+	long groupCommitInterval = 0;
 	EventSinkFactory sinkFactory;
 	PooledLoggerFactory pooledFactory;
 
+	int eventPoolSize = 0;
+	SinkLogEventPool eventPool;
+
+	String spillDir;
+	int spillSegmentSize = 16 * 1024 * 1024;
+	int spillMaxSegments = 8;
+	int spillMaxObjects = BufferedEventSink.DEFAULT_SPILL_OBJECTS;
+	long spillReplayInterval = 100;
+	List<BufferedEventSink> spillSinks = new CopyOnWriteArrayList<BufferedEventSink>();
+	ScheduledExecutorService spillReplayer;
+
 	/**
 	 * Create a default buffered sink factory
 	 *
@@ -79,9 +113,94 @@ public class BufferedEventSinkFactory extends AbstractEventSinkFactory {
 	protected EventSink configureSink(EventSink sink) {
 		BufferedEventSink bsink = (BufferedEventSink) sink;
 		bsink.setSignalTimeout(signalTimeout);
+		bsink.setGroupCommitInterval(groupCommitInterval);
+		bsink.setEventPool(eventPool);
+		if (spillDir != null) {
+			MappedSpillQueue queue = openSpillQueue(String.valueOf(bsink.getName()));
+			if (queue != null) {
+				bsink.setSpillQueue(queue, spillMaxObjects);
+				registerSpill(bsink);
+			}
+		}
 		return super.configureSink(bsink);
 	}
 
+	/**
+	 * Open spill queue for a given sink name. Spill file prefix is derived from sink name and the first ordinal not
+	 * used by another open queue, so that spill files left by a previous process are recovered after restart.
+	 *
+	 * @param name
+	 *            sink name
+	 * @return spill queue, or {@code null} if spill queue can not be opened
+	 */
+	protected MappedSpillQueue openSpillQueue(String name) {
+		String base = name.replaceAll("[^A-Za-z0-9._-]", "_");
+		IOException error = null;
+		for (int i = 0; i < MAX_SPILL_ORDINALS; i++) {
+			try {
+				return new MappedSpillQueue(new File(spillDir), base + "-" + i, spillSegmentSize, spillMaxSegments);
+			} catch (IOException exc) {
+				error = exc;
+			}
+		}
+		PooledLogger.logger.log(OpLevel.ERROR, "Unable to open spill queue, spilling disabled: sink={0}, dir={1}",
+				name, spillDir, error);
+		return null;
+	}
+
+	/**
+	 * Register buffered sink for periodic replay of spilled events.
+	 *
+	 * @param sink
+	 *            buffered sink with spilling enabled
+	 */
+	protected synchronized void registerSpill(BufferedEventSink sink) {
+		spillSinks.add(sink);
+		if (spillReplayer == null) {
+			spillReplayer = Executors
+					.newSingleThreadScheduledExecutor(new NamedThreadFactory("BufferedEventSinkFactory/spill-replay-"));
+			spillReplayer.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					for (BufferedEventSink sink : spillSinks) {
+						try {
+							sink.replaySpilled();
+						} catch (Throwable e) {
+							PooledLogger.logger.log(OpLevel.ERROR, "Failed to replay spilled events: sink={0}",
+									sink.getName(), e);
+						}
+					}
+				}
+			}, spillReplayInterval, spillReplayInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Unregister buffered sink from periodic replay of spilled events. Replayer is stopped once no sinks are left,
+	 * waiting up to signal timeout for a replay in progress to complete.
+	 *
+	 * @param sink
+	 *            buffered sink with spilling enabled
+	 */
+	protected void unregisterSpill(BufferedEventSink sink) {
+		ScheduledExecutorService replayer = null;
+		synchronized (this) {
+			spillSinks.remove(sink);
+			if (spillSinks.isEmpty() && spillReplayer != null) {
+				replayer = spillReplayer;
+				spillReplayer = null;
+			}
+		}
+		if (replayer != null) {
+			replayer.shutdown();
+			try {
+				replayer.awaitTermination(signalTimeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	@Override
 	public EventSink getEventSink(String name) {
 		return configureSink(new BufferedEventSink(this, sinkFactory.getEventSink(name), blockWrites));
@@ -105,6 +224,14 @@ public class BufferedEventSinkFactory extends AbstractEventSinkFactory {
 				"PooledLoggerFactory.", props);
 		blockWrites = Utils.getBoolean("BlockWrites", props, blockWrites);
 		signalTimeout = Utils.getLong("SignalTimeout", props, signalTimeout);
+		groupCommitInterval = Utils.getLong("GroupCommitInterval", props, groupCommitInterval);
+		eventPoolSize = Utils.getInt("EventPoolSize", props, eventPoolSize);
+		eventPool = eventPoolSize > 0 ? new SinkLogEventPool(eventPoolSize) : null;
+		spillDir = Utils.getString("SpillDir", props, spillDir);
+		spillSegmentSize = Utils.getInt("SpillSegmentSize", props, spillSegmentSize);
+		spillMaxSegments = Utils.getInt("SpillMaxSegments", props, spillMaxSegments);
+		spillMaxObjects = Utils.getInt("SpillMaxObjects", props, spillMaxObjects);
+		spillReplayInterval = Utils.getLong("SpillReplayInterval", props, spillReplayInterval);
 		if (sinkFactory == null) {
 			throw new ConfigException("Missing EventSinkFactory implementation", props);
 		}
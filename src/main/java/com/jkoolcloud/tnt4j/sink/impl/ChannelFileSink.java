@@ -0,0 +1,382 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.format.Formatter;
+import com.jkoolcloud.tnt4j.sink.DefaultEventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.utils.NamedThreadFactory;
+import com.jkoolcloud.tnt4j.utils.Utf8;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements a file sink which writes to a {@link FileChannel} through a reusable direct {@link ByteBuffer}.
+ * Text is encoded into the buffer as UTF-8 without intermediate byte arrays, and the buffer is written to the channel
+ * according to a {@link FlushPolicy}. Each physical write may be followed by {@link FileChannel#force(boolean)}
+ * according to a {@link ForceLevel}.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see FileSink
+ * @see FileEventSink
+ */
+public class ChannelFileSink extends FileSink {
+	private static final EventSink logger = DefaultEventSinkFactory.defaultEventSink(ChannelFileSink.class);
+	private static final byte[] LINE_SEPARATOR = System.getProperty("line.separator", "\n").getBytes();
+
+	private static ScheduledExecutorService flushTimer;
+
+	/**
+	 * Policies defining when buffered data is written to the file.
+	 */
+	public enum FlushPolicy {
+		/**
+		 * Write every line as soon as it is written to the sink.
+		 */
+		ALWAYS,
+
+		/**
+		 * Write when requested by the writer, i.e. after every event or at the end of every batch of events.
+		 */
+		BATCH,
+
+		/**
+		 * Write only when buffer is full or on explicit {@link ChannelFileSink#flush()}.
+		 */
+		SIZE,
+
+		/**
+		 * Write when buffer is full, on explicit {@link ChannelFileSink#flush()} and periodically at a given interval.
+		 */
+		INTERVAL
+	}
+
+	/**
+	 * Durability levels applied after buffered data is written to the file.
+	 */
+	public enum ForceLevel {
+		/**
+		 * Do not force data to storage device, leave it to the operating system.
+		 */
+		NONE,
+
+		/**
+		 * Force file content to storage device.
+		 */
+		DATA,
+
+		/**
+		 * Force file content and metadata to storage device.
+		 */
+		METADATA
+	}
+
+	protected FileOutputStream stream;
+	protected FileChannel channel;
+	protected ByteBuffer buffer;
+	protected FlushPolicy flushPolicy = FlushPolicy.BATCH;
+	protected ForceLevel forceLevel = ForceLevel.NONE;
+	protected int bufferSize = 64 * 1024;
+	protected long flushInterval = 1000;
+	protected long bytesWritten = 0;
+
+	private ScheduledFuture<?> flushTask;
+
+	/**
+	 * Create a channel based file sink.
+	 *
+	 * @param filename
+	 *            for writing to the sink
+	 * @param appnd
+	 *            append to the underlying destination
+	 * @param format
+	 *            user defined formatter
+	 */
+	public ChannelFileSink(String filename, boolean appnd, Formatter format) {
+		super(filename, appnd, format);
+	}
+
+	/**
+	 * Set buffer size, which is also the maximum amount of data written to the file with a single write.
+	 *
+	 * @param size
+	 *            buffer size in bytes
+	 * @return itself
+	 */
+	public ChannelFileSink setBufferSize(int size) {
+		bufferSize = Math.max(Utf8.MAX_CHAR_BYTES + LINE_SEPARATOR.length, size);
+		return this;
+	}
+
+	/**
+	 * Set flush policy.
+	 *
+	 * @param policy
+	 *            flush policy
+	 * @param interval
+	 *            flush interval in milliseconds, used by {@link FlushPolicy#INTERVAL} only
+	 * @return itself
+	 */
+	public ChannelFileSink setFlushPolicy(FlushPolicy policy, long interval) {
+		flushPolicy = policy;
+		flushInterval = Math.max(1, interval);
+		return this;
+	}
+
+	/**
+	 * Set durability level applied after each write to the file.
+	 *
+	 * @param level
+	 *            force level
+	 * @return itself
+	 */
+	public ChannelFileSink setForceLevel(ForceLevel level) {
+		forceLevel = level;
+		return this;
+	}
+
+	/**
+	 * Obtain flush policy.
+	 *
+	 * @return flush policy
+	 */
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	/**
+	 * Obtain durability level.
+	 *
+	 * @return force level
+	 */
+	public ForceLevel getForceLevel() {
+		return forceLevel;
+	}
+
+	/**
+	 * Obtain total number of bytes written to the file since sink was opened.
+	 *
+	 * @return number of bytes written
+	 */
+	public synchronized long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	public PrintStream getPrintStream() {
+		return null;
+	}
+
+	@Override
+	public Object getSinkHandle() {
+		return channel;
+	}
+
+	@Override
+	public synchronized void open() throws IOException {
+		if (channel != null) {
+			return;
+		}
+		prepareFile();
+		stream = new FileOutputStream(file, append);
+		channel = stream.getChannel();
+		buffer = ByteBuffer.allocateDirect(bufferSize);
+		bytesWritten = 0;
+		if (flushPolicy == FlushPolicy.INTERVAL) {
+			flushTask = getFlushTimer().scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (Throwable e) {
+						logger.log(OpLevel.ERROR, "Failed to flush file: sink.file={0}", file, e);
+					}
+				}
+			}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (flushTask != null) {
+			flushTask.cancel(false);
+			flushTask = null;
+		}
+		if (channel != null) {
+			try {
+				drain(true);
+			} catch (IOException e) {
+				logger.log(OpLevel.ERROR, "Failed to write buffered data on close: sink.file={0}, lost.bytes={1}",
+						file, buffer.position(), e);
+			} finally {
+				Utils.close(stream);
+				channel = null;
+				stream = null;
+				buffer = null;
+			}
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel != null;
+	}
+
+	@Override
+	public void write(Object msg, Object... args) throws IOException {
+		writeLine(formatter.format(msg, args), true);
+	}
+
+	/**
+	 * Write a line of text to the buffer. Buffer is written to the file when full, or according to flush policy.
+	 *
+	 * @param msg
+	 *            line of text to write
+	 * @param flush
+	 *            true if writer requests data to be written to the file, honored by {@link FlushPolicy#ALWAYS} and
+	 *            {@link FlushPolicy#BATCH} policies
+	 * @throws IOException
+	 *             if error writing to sink
+	 */
+	@Override
+	public synchronized void writeLine(String msg, boolean flush) throws IOException {
+		if (!isOpen()) {
+			throw new IOException("Sink is closed, sink.file=" + file);
+		}
+		int len = msg.length();
+		int from = 0;
+		while ((from = Utf8.encode(msg, from, buffer)) < len) {
+			drain(false);
+		}
+		if (buffer.remaining() < LINE_SEPARATOR.length) {
+			drain(false);
+		}
+		buffer.put(LINE_SEPARATOR);
+		if (flushPolicy == FlushPolicy.ALWAYS || (flush && flushPolicy == FlushPolicy.BATCH)) {
+			drain(true);
+		}
+		checkRoll();
+	}
+
+	/**
+	 * Write a line of UTF-8 encoded text to the buffer. Buffer is written to the file when full, or according to flush
+	 * policy.
+	 *
+	 * @param msg
+	 *            line of UTF-8 encoded text to write
+	 * @param flush
+	 *            true if writer requests data to be written to the file, honored by {@link FlushPolicy#ALWAYS} and
+	 *            {@link FlushPolicy#BATCH} policies
+	 * @throws IOException
+	 *             if error writing to sink
+	 */
+	@Override
+	public synchronized void writeLine(byte[] msg, boolean flush) throws IOException {
+		if (!isOpen()) {
+			throw new IOException("Sink is closed, sink.file=" + file);
+		}
+		int from = 0;
+		while (from < msg.length) {
+			if (!buffer.hasRemaining()) {
+				drain(false);
+			}
+			int len = Math.min(buffer.remaining(), msg.length - from);
+			buffer.put(msg, from, len);
+			from += len;
+		}
+		if (buffer.remaining() < LINE_SEPARATOR.length) {
+			drain(false);
+		}
+		buffer.put(LINE_SEPARATOR);
+		if (flushPolicy == FlushPolicy.ALWAYS || (flush && flushPolicy == FlushPolicy.BATCH)) {
+			drain(true);
+		}
+		checkRoll();
+	}
+
+	/**
+	 * Write buffered data to the file channel and apply force level, even when buffer is empty, so that data written
+	 * by earlier buffer drains is forced as well.
+	 *
+	 * @throws IOException
+	 *             if error writing to file
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		if (isOpen()) {
+			drain(false);
+			force();
+		}
+	}
+
+	/**
+	 * Write buffered data to the file channel.
+	 *
+	 * @param force
+	 *            true to apply force level after write, false to write only
+	 * @throws IOException
+	 *             if error writing to file
+	 */
+	protected void drain(boolean force) throws IOException {
+		if (buffer.position() > 0) {
+			buffer.flip();
+			try {
+				while (buffer.hasRemaining()) {
+					int n = channel.write(buffer);
+					bytesWritten += n;
+					fileSize += n;
+				}
+			} finally {
+				buffer.compact();
+			}
+			if (force) {
+				force();
+			}
+		}
+	}
+
+	private void force() throws IOException {
+		if (forceLevel != ForceLevel.NONE) {
+			channel.force(forceLevel == ForceLevel.METADATA);
+		}
+	}
+
+	private static synchronized ScheduledExecutorService getFlushTimer() {
+		if (flushTimer == null) {
+			flushTimer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ChannelFileSink/flush-"));
+		}
+		return flushTimer;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "{flush.policy: " + flushPolicy + ", force.level: " + forceLevel + ", buffer.size: "
+				+ bufferSize + "}";
+	}
+}
@@ -15,6 +15,9 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.jkoolcloud.tnt4j.core.OpLevel;
 import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
 
@@ -24,7 +27,7 @@ import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
  *
  * @version $Revision: 1 $
  *
- * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#takeDelayedEvent()
+ * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#takeDelayedEvents(java.util.List, int)
  * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#put(com.jkoolcloud.tnt4j.sink.SinkLogEvent)
  */
 class DelayedLoggingTask extends AbstractPoolLoggingTask {
@@ -35,13 +38,20 @@ class DelayedLoggingTask extends AbstractPoolLoggingTask {
 	@Override
 	public void run() {
 		try {
+			List<SinkLogEvent> events = new ArrayList<SinkLogEvent>(PooledLogger.DELAY_BATCH_SIZE);
 			while (!isCanceled()) {
-				SinkLogEvent event = pooledLogger.takeDelayedEvent();
-				if (event.getSignalType() == SinkLogEvent.SIGNAL_TERMINATE) {
-					cancel();
-				} else {
-					pooledLogger.put(event);
+				pooledLogger.takeDelayedEvents(events, PooledLogger.DELAY_BATCH_SIZE);
+				for (SinkLogEvent event : events) {
+					if (event.getSignalType() == SinkLogEvent.SIGNAL_TERMINATE) {
+						cancel();
+					} else if (isCanceled() || pooledLogger.isShut()) {
+						// re-queue rest of the batch without blocking, rejected events are counted as dropped
+						pooledLogger.offer(event);
+					} else {
+						pooledLogger.put(event);
+					}
 				}
+				events.clear();
 			}
 		} catch (Throwable e) {
 			PooledLogger.logger.log(OpLevel.WARNING,
@@ -16,11 +16,13 @@
 package com.jkoolcloud.tnt4j.sink.impl;
 
 import java.io.IOException;
-import java.io.PrintStream;
 
+import com.jkoolcloud.tnt4j.config.Configurable;
 import com.jkoolcloud.tnt4j.core.OpLevel;
 import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.format.ColumnarBatch;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.format.StreamEventFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSink;
 import com.jkoolcloud.tnt4j.sink.EventSink;
 import com.jkoolcloud.tnt4j.source.Source;
@@ -31,6 +33,15 @@ import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
  * <p>
  * This class implements {@link EventSink} with file {@link FileSink} as the underlying storage.
  * </p>
+ * <p>
+ * Entries formatted by {@link StreamEventFormatter} are written to the file as UTF-8 bytes without intermediate
+ * strings.
+ * </p>
+ * <p>
+ * In columnar mode (see {@link #setColumnarBatchSize(int)}) entries are accumulated into a {@link ColumnarBatch},
+ * which is written to the file as a single binary record when the batch is full or at the end of each logged batch.
+ * Sink formatter is not used in this mode.
+ * </p>
  * 
  * 
  * @version $Revision: 1 $
@@ -43,6 +54,8 @@ import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
 public class FileEventSink extends AbstractEventSink {
 
 	FileSink fileSink;
+	ColumnarBatch columnar;
+	int columnarBatchSize;
 
 	/**
 	 * Create a file based event sink instance.
@@ -57,8 +70,53 @@ public class FileEventSink extends AbstractEventSink {
 	 *            event formatter to be used for formatting event entries
 	 */
 	public FileEventSink(String nm, String fileName, boolean append, EventFormatter frm) {
+		this(nm, new FileSink(fileName, append, frm), frm);
+	}
+
+	/**
+	 * Create a file based event sink instance writing to a given file sink.
+	 * 
+	 * @param nm
+	 *            logical event sink name
+	 * @param sink
+	 *            file sink where all entries are recorded
+	 * @param frm
+	 *            event formatter to be used for formatting event entries
+	 * 
+	 * @see ChannelFileSink
+	 */
+	public FileEventSink(String nm, FileSink sink, EventFormatter frm) {
 		super(nm, frm);
-		fileSink = new FileSink(fileName, append, frm);
+		fileSink = sink;
+	}
+
+	/**
+	 * Enable or disable columnar output mode. In columnar mode entries are written as {@link ColumnarBatch} records
+	 * holding up to a given number of entries. Entries logged outside of a batch are written immediately as a batch
+	 * of one entry.
+	 *
+	 * @param batchSize
+	 *            maximum number of entries in a columnar batch, {@code 0} to disable columnar mode
+	 * @return itself
+	 */
+	public FileEventSink setColumnarBatchSize(int batchSize) {
+		if (batchSize > 0) {
+			EventFormatter f = getEventFormatter();
+			columnar = new ColumnarBatch(f instanceof Configurable ? ((Configurable) f).getConfiguration() : null);
+		} else {
+			columnar = null;
+		}
+		columnarBatchSize = Math.max(0, batchSize);
+		return this;
+	}
+
+	/**
+	 * Obtain maximum number of entries in a columnar batch.
+	 *
+	 * @return maximum number of entries in a columnar batch, {@code 0} if columnar mode is disabled
+	 */
+	public int getColumnarBatchSize() {
+		return columnarBatchSize;
 	}
 
 	@Override
@@ -83,7 +141,13 @@ public class FileEventSink extends AbstractEventSink {
 
 	@Override
 	public void close() throws IOException {
-		fileSink.close();
+		try {
+			if (isOpen()) {
+				_writeColumnar();
+			}
+		} finally {
+			fileSink.close();
+		}
 	}
 
 	@Override
@@ -95,40 +159,126 @@ public class FileEventSink extends AbstractEventSink {
 
 	@Override
 	protected void _write(Object msg, Object... args) throws IOException, InterruptedException {
-		_writeLog(getEventFormatter().format(msg, args));
+		if (columnar != null) {
+			_checkState();
+			_addColumnar(columnar.add(msg, args));
+			return;
+		}
+		EventFormatter f = getEventFormatter();
+		if (f instanceof StreamEventFormatter) {
+			_writeLog(((StreamEventFormatter) f).toBytes(msg, args));
+		} else {
+			_writeLog(f.format(msg, args));
+		}
 	}
 
 	@Override
 	protected void _log(TrackingEvent event) throws IOException {
-		_writeLog(getEventFormatter().format(event));
+		if (columnar != null) {
+			_checkState();
+			_addColumnar(columnar.add(event));
+			return;
+		}
+		EventFormatter f = getEventFormatter();
+		if (f instanceof StreamEventFormatter) {
+			_writeLog(((StreamEventFormatter) f).toBytes(event));
+		} else {
+			_writeLog(f.format(event));
+		}
 	}
 
 	@Override
 	protected void _log(TrackingActivity activity) throws IOException {
-		_writeLog(getEventFormatter().format(activity));
+		if (columnar != null) {
+			_checkState();
+			_addColumnar(columnar.add(activity));
+			return;
+		}
+		EventFormatter f = getEventFormatter();
+		if (f instanceof StreamEventFormatter) {
+			_writeLog(((StreamEventFormatter) f).toBytes(activity));
+		} else {
+			_writeLog(f.format(activity));
+		}
 	}
 
 	@Override
-	protected void _log(Snapshot snapshot) {
-		_writeLog(getEventFormatter().format(snapshot));
+	protected void _log(Snapshot snapshot) throws IOException {
+		if (columnar != null) {
+			_checkState();
+			_addColumnar(columnar.add(snapshot));
+			return;
+		}
+		EventFormatter f = getEventFormatter();
+		if (f instanceof StreamEventFormatter) {
+			_writeLog(((StreamEventFormatter) f).toBytes(snapshot));
+		} else {
+			_writeLog(f.format(snapshot));
+		}
 	}
 
 	@Override
-	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) {
-		_writeLog(getEventFormatter().format(ttl, src, sev, msg, args));
+	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws IOException {
+		if (columnar != null) {
+			_checkState();
+			_addColumnar(columnar.add(ttl, src, sev, msg, args));
+			return;
+		}
+		EventFormatter f = getEventFormatter();
+		if (f instanceof StreamEventFormatter) {
+			_writeLog(((StreamEventFormatter) f).toBytes(ttl, src, sev, msg, args));
+		} else {
+			_writeLog(f.format(ttl, src, sev, msg, args));
+		}
+	}
+
+	protected void _writeLog(String msg) throws IOException {
+		_checkState();
+		fileSink.writeLine(msg, !isBatching());
 	}
 
-	protected void _writeLog(String msg) {
+	protected void _writeLog(byte[] msg) throws IOException {
 		_checkState();
+		fileSink.writeLine(msg, !isBatching());
+	}
+
+	/**
+	 * Write accumulated columnar batch if it is full or entry is logged outside of a batch.
+	 *
+	 * @param size
+	 *            number of entries in columnar batch
+	 * @throws IOException
+	 *             if error writing batch
+	 */
+	protected void _addColumnar(int size) throws IOException {
+		if (size >= columnarBatchSize || !isBatching()) {
+			_writeColumnar();
+		}
+	}
 
-		PrintStream printer = fileSink.getPrintStream();
-		printer.println(msg);
-		printer.flush();
+	/**
+	 * Write accumulated columnar batch, if any.
+	 *
+	 * @throws IOException
+	 *             if error writing batch
+	 */
+	protected void _writeColumnar() throws IOException {
+		ColumnarBatch batch = columnar;
+		byte[] bytes = batch != null ? batch.drain() : null;
+		if (bytes != null) {
+			_writeLog(bytes);
+		}
+	}
+
+	@Override
+	protected void _flushBatch() throws IOException {
+		flush();
 	}
 
 	@Override
-	public void flush() {
+	public void flush() throws IOException {
 		if (isOpen()) {
+			_writeColumnar();
 			fileSink.flush();
 		}
 	}
@@ -48,6 +48,19 @@ public class FileEventSinkFactory extends AbstractEventSinkFactory {
 	boolean append = true;
 	String fileName = UsecTimestamp.getTimeStamp("yyyy-MM-dd") + ".log";
 
+	boolean channel = false;
+	int bufferSize = 64 * 1024;
+	long flushInterval = 1000;
+	ChannelFileSink.FlushPolicy flushPolicy = ChannelFileSink.FlushPolicy.BATCH;
+	ChannelFileSink.ForceLevel forceLevel = ChannelFileSink.ForceLevel.NONE;
+
+	long rollSize = 0;
+	int rollRetention = 0;
+	FileRollingPolicy.Interval rollInterval = FileRollingPolicy.Interval.NONE;
+	FileRollingPolicy.Compression rollCompress = FileRollingPolicy.Compression.NONE;
+
+	int columnarBatchSize = 0;
+
 	/**
 	 * Create a default sink factory with default file name based on current timestamp: yyyy-MM-dd.log.
 	 */
@@ -66,17 +79,25 @@ public class FileEventSinkFactory extends AbstractEventSinkFactory {
 
 	@Override
 	public EventSink getEventSink(String name) {
-		return configureSink(new FileEventSink(name, fileName, append, new SimpleFormatter("{0} | {1} | {2}")));
+		return getEventSink(name, System.getProperties(), new SimpleFormatter("{0} | {1} | {2}"));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props) {
-		return configureSink(new FileEventSink(name, fileName, append, new SimpleFormatter("{0} | {1} | {2}")));
+		return getEventSink(name, props, new SimpleFormatter("{0} | {1} | {2}"));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
-		return configureSink(new FileEventSink(name, fileName, append, frmt));
+		FileSink fileSink;
+		if (channel) {
+			fileSink = new ChannelFileSink(fileName, append, frmt).setBufferSize(bufferSize)
+					.setFlushPolicy(flushPolicy, flushInterval).setForceLevel(forceLevel);
+		} else {
+			fileSink = new FileSink(fileName, append, frmt);
+		}
+		fileSink.setRollingPolicy(new FileRollingPolicy(rollSize, rollInterval, rollRetention, rollCompress));
+		return configureSink(new FileEventSink(name, fileSink, frmt).setColumnarBatchSize(columnarBatchSize));
 	}
 
 	@Override
@@ -94,6 +115,30 @@ public class FileEventSinkFactory extends AbstractEventSinkFactory {
 	public void setConfiguration(Map<String, Object> props) throws ConfigException {
 		fileName = Utils.getString("FileName", props, fileName);
 		append = Utils.getBoolean("Append", props, append);
+		channel = "channel".equalsIgnoreCase(Utils.getString("FileMode", props, channel ? "channel" : "stream"));
+		bufferSize = Utils.getInt("BufferSize", props, bufferSize);
+		flushInterval = Utils.getLong("FlushInterval", props, flushInterval);
+		String policy = Utils.getString("FlushPolicy", props, flushPolicy.name());
+		String force = Utils.getString("Force", props, forceLevel.name());
+		try {
+			flushPolicy = ChannelFileSink.FlushPolicy.valueOf(policy.trim().toUpperCase());
+			forceLevel = ChannelFileSink.ForceLevel.valueOf(force.trim().toUpperCase());
+		} catch (IllegalArgumentException exc) {
+			throw new ConfigException("Unsupported flush policy or force level: FlushPolicy=" + policy + ", Force="
+					+ force, props);
+		}
+		columnarBatchSize = Utils.getInt("ColumnarBatchSize", props, columnarBatchSize);
+		rollSize = Utils.getLong("RollSize", props, rollSize);
+		rollRetention = Utils.getInt("RollRetention", props, rollRetention);
+		String interval = Utils.getString("RollInterval", props, rollInterval.name());
+		String compress = Utils.getString("RollCompress", props, rollCompress.name());
+		try {
+			rollInterval = FileRollingPolicy.Interval.valueOf(interval.trim().toUpperCase());
+			rollCompress = FileRollingPolicy.Compression.valueOf(compress.trim().toUpperCase());
+		} catch (IllegalArgumentException exc) {
+			throw new ConfigException("Unsupported roll interval or compression: RollInterval=" + interval
+					+ ", RollCompress=" + compress, props);
+		}
 		super.setConfiguration(props);
 	}
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.sink.DefaultEventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.utils.NamedThreadFactory;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class defines when {@link FileSink} rolls over its file and what happens to rolled files. Files are rolled when
+ * they exceed a maximum size and/or when a time boundary ({@link Interval}) is crossed. Rolled files are renamed to
+ * {@code <file>.<yyyyMMdd-HHmmss>}; compression ({@link Compression}) and retention of rolled files are performed by a
+ * shared background thread, so rollover never blocks writers for longer than file rename and reopen.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see FileSink
+ */
+public class FileRollingPolicy {
+	private static final EventSink logger = DefaultEventSinkFactory.defaultEventSink(FileRollingPolicy.class);
+	private static final String ROLL_TIME_FORMAT = "yyyyMMdd-HHmmss";
+	private static final String ROLL_SUFFIX_REGEX = "\\.\\d{8}-\\d{6}(\\.\\d+)?(" + Pattern.quote(Compression.GZIP.ext)
+			+ ")?";
+
+	private static ExecutorService rollExecutor;
+
+	/**
+	 * Time boundaries at which files are rolled.
+	 */
+	public enum Interval {
+		NONE(-1), MINUTE(Calendar.MINUTE), HOUR(Calendar.HOUR_OF_DAY), DAY(Calendar.DAY_OF_MONTH), WEEK(
+				Calendar.WEEK_OF_YEAR), MONTH(Calendar.MONTH);
+
+		final int field;
+
+		Interval(int field) {
+			this.field = field;
+		}
+	}
+
+	/**
+	 * Compression applied to rolled files.
+	 */
+	public enum Compression {
+		NONE(""), GZIP(".gz");
+
+		final String ext;
+
+		Compression(String ext) {
+			this.ext = ext;
+		}
+	}
+
+	long maxSize = 0;
+	Interval interval = Interval.NONE;
+	int retention = 0;
+	Compression compression = Compression.NONE;
+
+	/**
+	 * Create a rolling policy.
+	 *
+	 * @param maxSize
+	 *            maximum file size in bytes, 0 to disable size based rolling
+	 * @param interval
+	 *            time boundary at which files are rolled
+	 * @param retention
+	 *            number of rolled files to keep, 0 to keep all
+	 * @param compression
+	 *            compression applied to rolled files
+	 */
+	public FileRollingPolicy(long maxSize, Interval interval, int retention, Compression compression) {
+		this.maxSize = Math.max(0, maxSize);
+		this.interval = interval == null ? Interval.NONE : interval;
+		this.retention = Math.max(0, retention);
+		this.compression = compression == null ? Compression.NONE : compression;
+	}
+
+	/**
+	 * Determine if this policy rolls files at all.
+	 *
+	 * @return {@code true} if size or time based rolling is enabled, {@code false} otherwise
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0 || interval != Interval.NONE;
+	}
+
+	/**
+	 * Obtain maximum file size.
+	 *
+	 * @return maximum file size in bytes, 0 if size based rolling is disabled
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Obtain time boundary at which files are rolled.
+	 *
+	 * @return rolling interval
+	 */
+	public Interval getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Obtain number of rolled files to keep.
+	 *
+	 * @return number of rolled files to keep, 0 if all are kept
+	 */
+	public int getRetention() {
+		return retention;
+	}
+
+	/**
+	 * Obtain compression applied to rolled files.
+	 *
+	 * @return compression type
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
+	/**
+	 * Determine if file has to be rolled.
+	 *
+	 * @param fileSize
+	 *            current file size in bytes
+	 * @param now
+	 *            current time in milliseconds
+	 * @param rollTime
+	 *            next time boundary as returned by {@link #nextRollTime(long)}
+	 * @return {@code true} if file has to be rolled, {@code false} otherwise
+	 */
+	public boolean isTriggered(long fileSize, long now, long rollTime) {
+		return (maxSize > 0 && fileSize >= maxSize) || now >= rollTime;
+	}
+
+	/**
+	 * Obtain time of the next time boundary following a given time.
+	 *
+	 * @param time
+	 *            time in milliseconds
+	 * @return next time boundary in milliseconds, {@link Long#MAX_VALUE} if time based rolling is disabled
+	 */
+	public long nextRollTime(long time) {
+		if (interval == Interval.NONE) {
+			return Long.MAX_VALUE;
+		}
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(time);
+		cal.set(Calendar.MILLISECOND, 0);
+		cal.set(Calendar.SECOND, 0);
+		// intervals are declared from the finest to the coarsest, truncate all finer fields
+		if (interval.compareTo(Interval.HOUR) >= 0) {
+			cal.set(Calendar.MINUTE, 0);
+		}
+		if (interval.compareTo(Interval.DAY) >= 0) {
+			cal.set(Calendar.HOUR_OF_DAY, 0);
+		}
+		if (interval == Interval.WEEK) {
+			cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
+		} else if (interval == Interval.MONTH) {
+			cal.set(Calendar.DAY_OF_MONTH, 1);
+		}
+		cal.add(interval.field, 1);
+		return cal.getTimeInMillis();
+	}
+
+	/**
+	 * Rename a closed file to its rolled name and schedule compression and retention of rolled files on a background
+	 * thread.
+	 *
+	 * @param file
+	 *            file to roll, must be closed
+	 * @return rolled file, or {@code null} if file does not exist or can not be renamed
+	 */
+	public File roll(File file) {
+		if (!file.exists() || file.length() == 0) {
+			return null;
+		}
+		String base = file.getPath() + "." + new SimpleDateFormat(ROLL_TIME_FORMAT).format(new Date());
+		File rolled = new File(base);
+		for (int i = 1; rolled.exists() || new File(rolled.getPath() + compression.ext).exists(); i++) {
+			rolled = new File(base + "." + i);
+		}
+		if (!file.renameTo(rolled)) {
+			logger.log(OpLevel.ERROR, "Failed to roll file: sink.file={0}, rolled.file={1}", file, rolled);
+			return null;
+		}
+		final File source = rolled;
+		final File active = file;
+		getRollExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				compress(source);
+				purge(active);
+			}
+		});
+		return rolled;
+	}
+
+	/**
+	 * Compress a rolled file according to this policy, replacing it with the compressed file.
+	 *
+	 * @param rolled
+	 *            rolled file
+	 */
+	protected void compress(File rolled) {
+		if (compression == Compression.NONE) {
+			return;
+		}
+		File target = new File(rolled.getPath() + compression.ext);
+		InputStream in = null;
+		OutputStream out = null;
+		try {
+			in = new FileInputStream(rolled);
+			out = new GZIPOutputStream(new FileOutputStream(target), 64 * 1024);
+			byte[] buf = new byte[64 * 1024];
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				out.write(buf, 0, len);
+			}
+			out.close();
+			out = null;
+			Utils.close(in);
+			in = null;
+			// keep time of last write, used to order rolled files
+			target.setLastModified(rolled.lastModified());
+			if (!rolled.delete()) {
+				logger.log(OpLevel.WARNING, "Failed to delete compressed file: rolled.file={0}", rolled);
+			}
+		} catch (IOException e) {
+			logger.log(OpLevel.ERROR, "Failed to compress rolled file: rolled.file={0}", rolled, e);
+			Utils.close(out);
+			if (!target.delete()) {
+				target.deleteOnExit();
+			}
+		} finally {
+			Utils.close(in);
+			Utils.close(out);
+		}
+	}
+
+	/**
+	 * Delete oldest rolled files exceeding retention count of this policy. Only files named
+	 * {@code <file>.<yyyyMMdd-HHmmss>[.<n>][.gz]} are considered rolled files.
+	 *
+	 * @param file
+	 *            active file, whose rolled files are purged
+	 */
+	protected void purge(File file) {
+		if (retention <= 0) {
+			return;
+		}
+		File dir = file.getAbsoluteFile().getParentFile();
+		final Pattern rolledName = Pattern.compile(Pattern.quote(file.getName()) + ROLL_SUFFIX_REGEX);
+		File[] rolled = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File d, String name) {
+				return rolledName.matcher(name).matches();
+			}
+		});
+		if (rolled == null || rolled.length <= retention) {
+			return;
+		}
+		Arrays.sort(rolled, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				long t1 = f1.lastModified(), t2 = f2.lastModified();
+				if (t1 != t2) {
+					return t1 < t2 ? -1 : 1;
+				}
+				// same time, rolled file name with a longer index suffix is newer
+				String n1 = f1.getName(), n2 = f2.getName();
+				return n1.length() != n2.length() ? n1.length() - n2.length() : n1.compareTo(n2);
+			}
+		});
+		for (int i = 0; i < rolled.length - retention; i++) {
+			if (!rolled[i].delete()) {
+				logger.log(OpLevel.WARNING, "Failed to delete rolled file: rolled.file={0}", rolled[i]);
+			}
+		}
+	}
+
+	private static synchronized ExecutorService getRollExecutor() {
+		if (rollExecutor == null) {
+			rollExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("FileRollingPolicy/roll-"));
+		}
+		return rollExecutor;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{max.size: " + maxSize + ", interval: " + interval + ", retention: "
+				+ retention + ", compression: " + compression + "}";
+	}
+}
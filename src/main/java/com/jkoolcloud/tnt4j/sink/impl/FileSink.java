@@ -15,9 +15,12 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 
 import com.jkoolcloud.tnt4j.format.DefaultFormatter;
@@ -35,6 +38,7 @@ import com.jkoolcloud.tnt4j.sink.Sink;
  * @see Sink
  * @see Formatter
  * @see DefaultFormatter
+ * @see FileRollingPolicy
  */
 
 public class FileSink implements Sink {
@@ -43,6 +47,9 @@ public class FileSink implements Sink {
 	protected PrintStream printer = null;
 	protected Formatter formatter = null;
 	protected boolean append = true;
+	protected FileRollingPolicy rolling = null;
+	protected long fileSize = 0;
+	protected long rollTime = Long.MAX_VALUE;
 
 	/**
 	 * Create a file based sink based on given filename.
@@ -86,6 +93,27 @@ public class FileSink implements Sink {
 		return printer;
 	}
 
+	/**
+	 * Set policy used to roll the underlying file.
+	 * 
+	 * @param policy rolling policy, null to disable rolling
+	 * @return itself
+	 */
+	public FileSink setRollingPolicy(FileRollingPolicy policy) {
+		rolling = (policy != null && policy.isEnabled()) ? policy : null;
+		rollTime = rolling != null ? rolling.nextRollTime(System.currentTimeMillis()) : Long.MAX_VALUE;
+		return this;
+	}
+
+	/**
+	 * Obtain policy used to roll the underlying file.
+	 * 
+	 * @return rolling policy, null if rolling is disabled
+	 */
+	public FileRollingPolicy getRollingPolicy() {
+		return rolling;
+	}
+
 	/**
 	 * Return the file name associated with this sink
 	 * 
@@ -110,6 +138,19 @@ public class FileSink implements Sink {
 
 	@Override
 	public synchronized void open() throws IOException {
+		if (printer == null) {
+			prepareFile();
+			printer = new PrintStream(
+					new BufferedOutputStream(new CountingOutputStream(new FileOutputStream(file, append))));
+		}
+	}
+
+	/**
+	 * Create parent path of the underlying file and initialize file size and rolling state before file is opened.
+	 * 
+	 * @throws IOException if parent path can not be created
+	 */
+	protected void prepareFile() throws IOException {
 		if (file != null) {
 			File parent = file.getParentFile();
 			if (parent != null) {
@@ -119,10 +160,48 @@ public class FileSink implements Sink {
 					throw new IOException("Could not verify/create parent path for sink.file=" + file, exc);
 				}
 			}
+			fileSize = append ? file.length() : 0;
 		}
+		if (rolling != null) {
+			rollTime = rolling.nextRollTime(System.currentTimeMillis());
+		}
+	}
 
-		if (printer == null) {
-			printer = new PrintStream(new FileOutputStream(file, append));
+	/**
+	 * Roll the underlying file if required by the rolling policy.
+	 * 
+	 * @throws IOException if file can not be reopened after rollover
+	 */
+	protected void checkRoll() throws IOException {
+		if (rolling != null && rolling.isTriggered(fileSize, System.currentTimeMillis(), rollTime)) {
+			roll();
+		}
+	}
+
+	/**
+	 * Close the underlying file, roll it according to the rolling policy and open a new file. Compression and
+	 * retention of rolled files is done in background. When file can not be rolled, writing continues to the same
+	 * file and rollover is retried after another maximum size worth of data or at the next time boundary.
+	 * 
+	 * @throws IOException if file can not be reopened after rollover
+	 */
+	public synchronized void roll() throws IOException {
+		if (rolling == null || !isOpen()) {
+			return;
+		}
+		close();
+		File rolled = rolling.roll(file);
+		boolean appnd = append;
+		try {
+			// never truncate the active file, when it could not be rolled
+			append = true;
+			open();
+		} finally {
+			append = appnd;
+		}
+		if (rolled == null) {
+			// back off size trigger, time trigger is already moved to the next boundary
+			fileSize = 0;
 		}
 	}
 
@@ -132,10 +211,50 @@ public class FileSink implements Sink {
 	}
 
 	@Override
-	public void write(Object msg, Object... args) throws IOException {
+	public synchronized void write(Object msg, Object... args) throws IOException {
 		if (isOpen()) {
 			printer.println(formatter.format(msg, args));
 			printer.flush();
+			checkRoll();
+		} else {
+			throw new IOException("Sink is closed, sink.file=" + file);
+		}
+	}
+
+	/**
+	 * Write a line of text to the underlying file.
+	 * 
+	 * @param msg line of text to write
+	 * @param flush true to flush written line to file, false to let sink decide when to flush
+	 * @throws IOException if error writing to sink
+	 */
+	public synchronized void writeLine(String msg, boolean flush) throws IOException {
+		if (isOpen()) {
+			printer.println(msg);
+			if (flush) {
+				printer.flush();
+			}
+			checkRoll();
+		} else {
+			throw new IOException("Sink is closed, sink.file=" + file);
+		}
+	}
+
+	/**
+	 * Write a line of UTF-8 encoded text to the underlying file.
+	 * 
+	 * @param msg line of UTF-8 encoded text to write
+	 * @param flush true to flush written line to file, false to let sink decide when to flush
+	 * @throws IOException if error writing to sink
+	 */
+	public synchronized void writeLine(byte[] msg, boolean flush) throws IOException {
+		if (isOpen()) {
+			printer.write(msg, 0, msg.length);
+			printer.println();
+			if (flush) {
+				printer.flush();
+			}
+			checkRoll();
 		} else {
 			throw new IOException("Sink is closed, sink.file=" + file);
 		}
@@ -143,11 +262,12 @@ public class FileSink implements Sink {
 
 	@Override
 	public String toString() {
-		return super.toString() + "{file: " + file + ", append: " + append + ", is.open: " + isOpen() + "}";
+		return super.toString() + "{file: " + file + ", append: " + append + ", is.open: " + isOpen() + ", rolling: "
+				+ rolling + "}";
 	}
 
 	@Override
-	public void flush() {
+	public void flush() throws IOException {
 		if (isOpen()) {
 			printer.flush();
 		}
@@ -158,4 +278,22 @@ public class FileSink implements Sink {
 		this.close();
 		this.open();
 	}
+
+	private class CountingOutputStream extends FilterOutputStream {
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			fileSize++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			fileSize += len;
+		}
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+
+/**
+ * This class implements a flush signal shared by multiple threads requesting a flush of the same sink. Threads may join
+ * the signal until it is enqueued, so a joined flush always covers events logged by the joining thread, and are all
+ * released once the flush completes or the signal is dropped.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see BufferedEventSink#flush()
+ */
+class FlushSignal extends SinkLogEvent {
+	private static final long serialVersionUID = 1L;
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private boolean sealed = false;
+	private volatile boolean aborted = false;
+	private int waiters = 1;
+
+	/**
+	 * Create a flush signal for a given sink.
+	 *
+	 * @param sink
+	 *            sink to flush
+	 * @param th
+	 *            thread which created the signal
+	 */
+	FlushSignal(EventSink sink, Thread th) {
+		super(sink, th, SIGNAL_FLUSH);
+	}
+
+	/**
+	 * Join this flush signal.
+	 *
+	 * @return {@code true} if joined, {@code false} if signal is already enqueued
+	 */
+	synchronized boolean join() {
+		if (sealed) {
+			return false;
+		}
+		waiters++;
+		return true;
+	}
+
+	/**
+	 * Obtain number of threads waiting for this flush.
+	 *
+	 * @return number of waiting threads
+	 */
+	synchronized int getWaiters() {
+		return waiters;
+	}
+
+	/**
+	 * Mark signal as enqueued, so that no more threads can join it. Must be called before the signal is enqueued.
+	 */
+	synchronized void seal() {
+		sealed = true;
+	}
+
+	/**
+	 * Release all threads waiting for this flush when signal could not be enqueued.
+	 */
+	void abort() {
+		aborted = true;
+		done.countDown();
+	}
+
+	/**
+	 * Determine if signal was dropped without being processed.
+	 *
+	 * @return {@code true} if signal was dropped, {@code false} otherwise
+	 */
+	boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Release all threads waiting for this flush.
+	 */
+	void release() {
+		done.countDown();
+	}
+
+	/**
+	 * Wait for flush to complete.
+	 *
+	 * @param timeout
+	 *            maximum time to wait
+	 * @param unit
+	 *            time unit of timeout
+	 * @return {@code true} if flush completed, {@code false} if timed out
+	 */
+	boolean await(long timeout, TimeUnit unit) {
+		try {
+			return done.await(timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
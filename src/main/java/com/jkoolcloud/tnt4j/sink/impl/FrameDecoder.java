@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * Reference decoder of frames produced by {@link FrameEncoder}. Reads frames from a stream and returns contained
+ * records, decompressing payload when required. Can be used by collectors and test servers to receive events sent by
+ * socket sinks in framed protocol mode.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see FrameEncoder
+ */
+public class FrameDecoder {
+	/**
+	 * Default maximum size of a frame payload, compressed or uncompressed, in bytes
+	 */
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+	private final DataInputStream in;
+	private final int maxFrameSize;
+	private final Inflater inflater = new Inflater();
+	private byte[] payload = new byte[0];
+	private byte[] raw = new byte[0];
+
+	/**
+	 * Create a frame decoder reading from a given stream, accepting frames of up to
+	 * {@value #DEFAULT_MAX_FRAME_SIZE} bytes.
+	 *
+	 * @param in
+	 *            input stream with frames
+	 */
+	public FrameDecoder(InputStream in) {
+		this(in, DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	/**
+	 * Create a frame decoder reading from a given stream.
+	 *
+	 * @param in
+	 *            input stream with frames
+	 * @param maxFrameSize
+	 *            maximum size of a frame payload, compressed or uncompressed, in bytes; larger frames are rejected
+	 *            before any buffer is allocated
+	 */
+	public FrameDecoder(InputStream in, int maxFrameSize) {
+		this.in = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+		this.maxFrameSize = Math.max(0, maxFrameSize);
+	}
+
+	/**
+	 * Obtain maximum size of a frame payload accepted by this decoder.
+	 *
+	 * @return maximum frame payload size in bytes
+	 */
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	/**
+	 * Read next frame and obtain its records.
+	 *
+	 * @return list of record bytes, or {@code null} at end of stream
+	 * @throws IOException
+	 *             if stream can not be read, frame is malformed or exceeds maximum frame size
+	 */
+	public List<byte[]> readFrame() throws IOException {
+		int m0 = in.read();
+		if (m0 < 0) {
+			return null;
+		}
+		if (m0 != FrameEncoder.MAGIC_0 || in.readByte() != FrameEncoder.MAGIC_1) {
+			throw new IOException("Invalid frame magic");
+		}
+		int flags = in.readUnsignedByte();
+		int count = in.readInt();
+		int rawLen = in.readInt();
+		int len = in.readInt();
+		if (count < 0 || rawLen < 0 || len < 0 || count > rawLen / FrameEncoder.RECORD_HEADER_SIZE) {
+			throw new IOException(
+					"Invalid frame header: records=" + count + ", raw.length=" + rawLen + ", length=" + len);
+		}
+		if (rawLen > maxFrameSize || len > maxFrameSize) {
+			throw new IOException("Frame too large: raw.length=" + rawLen + ", length=" + len + ", max.frame.size="
+					+ maxFrameSize);
+		}
+		payload = ensure(payload, len);
+		in.readFully(payload, 0, len);
+		byte[] data = payload;
+		if ((flags & FrameEncoder.FLAG_DEFLATE) != 0) {
+			raw = ensure(raw, rawLen);
+			inflater.reset();
+			inflater.setInput(payload, 0, len);
+			try {
+				if (inflater.inflate(raw, 0, rawLen) != rawLen || !inflater.finished()) {
+					throw new IOException("Invalid compressed payload: raw.length=" + rawLen);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("Invalid compressed payload: " + e.getMessage(), e);
+			}
+			data = raw;
+		} else if (len != rawLen) {
+			throw new IOException("Invalid frame length: raw.length=" + rawLen + ", length=" + len);
+		}
+		ByteBuffer buf = ByteBuffer.wrap(data, 0, rawLen);
+		List<byte[]> records = new ArrayList<byte[]>(count);
+		for (int i = 0; i < count; i++) {
+			if (buf.remaining() < FrameEncoder.RECORD_HEADER_SIZE) {
+				throw new EOFException("Truncated frame: records=" + count + ", read=" + i);
+			}
+			int recLen = buf.getInt();
+			if (recLen < 0 || recLen > buf.remaining()) {
+				throw new IOException("Invalid record length: length=" + recLen);
+			}
+			byte[] record = new byte[recLen];
+			buf.get(record);
+			records.add(record);
+		}
+		return records;
+	}
+
+	/**
+	 * Read next frame and obtain its records as UTF-8 strings.
+	 *
+	 * @return list of records, or {@code null} at end of stream
+	 * @throws IOException
+	 *             if stream can not be read or frame is malformed
+	 */
+	public List<String> readFrameAsStrings() throws IOException {
+		List<byte[]> records = readFrame();
+		if (records == null) {
+			return null;
+		}
+		List<String> lines = new ArrayList<String>(records.size());
+		for (byte[] record : records) {
+			lines.add(new String(record, "UTF-8"));
+		}
+		return lines;
+	}
+
+	/**
+	 * Release decompression resources.
+	 */
+	public void end() {
+		inflater.end();
+	}
+
+	private static byte[] ensure(byte[] buf, int len) {
+		return buf.length >= len ? buf : new byte[len];
+	}
+}
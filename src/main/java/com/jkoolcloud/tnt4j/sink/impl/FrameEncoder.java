@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * This class encodes batches of length-prefixed records into frames of the framed socket protocol. Each frame holds
+ * one or more records and is optionally compressed as a whole using deflate. Frame layout (big endian):
+ * </p>
+ *
+ * <pre>
+ * magic        2 bytes  'T' 'F'
+ * flags        1 byte   bit 0: payload is deflate compressed
+ * records      4 bytes  number of records in frame
+ * raw.length   4 bytes  length of uncompressed payload
+ * length       4 bytes  length of payload following the header
+ * payload      sequence of records: 4 bytes record length followed by record bytes (UTF-8)
+ * </pre>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see FrameDecoder
+ * @see NioSocketWriter
+ */
+public class FrameEncoder {
+	/**
+	 * First byte of frame magic
+	 */
+	public static final byte MAGIC_0 = 'T';
+
+	/**
+	 * Second byte of frame magic
+	 */
+	public static final byte MAGIC_1 = 'F';
+
+	/**
+	 * Frame flag indicating deflate compressed payload
+	 */
+	public static final int FLAG_DEFLATE = 0x01;
+
+	/**
+	 * Size of frame header in bytes
+	 */
+	public static final int HEADER_SIZE = 15;
+
+	/**
+	 * Size of record length prefix in bytes
+	 */
+	public static final int RECORD_HEADER_SIZE = 4;
+
+	private final int level;
+	private final int compressMin;
+	private Deflater deflater;
+	private ByteBuffer frame = ByteBuffer.allocate(0);
+
+	private long rawBytes = 0;
+	private long frameBytes = 0;
+
+	/**
+	 * Create a frame encoder.
+	 *
+	 * @param level
+	 *            deflate compression level (0-9), negative to disable compression
+	 * @param compressMin
+	 *            minimum payload size in bytes to be compressed, smaller payloads are sent uncompressed
+	 */
+	public FrameEncoder(int level, int compressMin) {
+		this.level = Math.min(level, Deflater.BEST_COMPRESSION);
+		this.compressMin = Math.max(0, compressMin);
+	}
+
+	/**
+	 * Encode a batch of length-prefixed records into a frame.
+	 *
+	 * @param records
+	 *            heap buffer with length-prefixed records between its position and limit
+	 * @param count
+	 *            number of records in buffer
+	 * @return buffer with frame contents between its position and limit, valid until next call
+	 */
+	public ByteBuffer encode(ByteBuffer records, int count) {
+		int rawLen = records.remaining();
+		int bound = rawLen + (rawLen >> 6) + 64;
+		if (frame.capacity() < HEADER_SIZE + bound) {
+			frame = ByteBuffer.allocate(HEADER_SIZE + bound);
+		}
+		frame.clear();
+		frame.put(MAGIC_0).put(MAGIC_1);
+		int flagsPos = frame.position();
+		frame.put((byte) 0).putInt(count).putInt(rawLen).putInt(0);
+		int payloadLen = level >= 0 && rawLen >= compressMin ? deflate(records) : -1;
+		if (payloadLen < 0) {
+			frame.position(HEADER_SIZE);
+			frame.put(records.array(), records.arrayOffset() + records.position(), rawLen);
+			payloadLen = rawLen;
+		} else {
+			frame.put(flagsPos, (byte) FLAG_DEFLATE);
+		}
+		frame.putInt(HEADER_SIZE - 4, payloadLen);
+		frame.limit(HEADER_SIZE + payloadLen);
+		frame.position(0);
+		rawBytes += rawLen;
+		frameBytes += frame.remaining();
+		return frame;
+	}
+
+	private int deflate(ByteBuffer records) {
+		int rawLen = records.remaining();
+		if (deflater == null) {
+			deflater = new Deflater(level);
+		}
+		deflater.reset();
+		deflater.setInput(records.array(), records.arrayOffset() + records.position(), rawLen);
+		deflater.finish();
+		int room = Math.min(rawLen, frame.capacity() - HEADER_SIZE);
+		int len = deflater.deflate(frame.array(), frame.arrayOffset() + HEADER_SIZE, room);
+		// not compressible, send as is
+		return deflater.finished() && len < rawLen ? len : -1;
+	}
+
+	/**
+	 * Obtain total number of uncompressed payload bytes encoded.
+	 *
+	 * @return number of uncompressed bytes
+	 */
+	public long getRawBytes() {
+		return rawBytes;
+	}
+
+	/**
+	 * Obtain total number of frame bytes produced, including headers.
+	 *
+	 * @return number of frame bytes
+	 */
+	public long getFrameBytes() {
+		return frameBytes;
+	}
+
+	/**
+	 * Release compression resources. Encoder may be used again afterwards, compression resources are recreated on
+	 * demand.
+	 */
+	public void end() {
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+	}
+}
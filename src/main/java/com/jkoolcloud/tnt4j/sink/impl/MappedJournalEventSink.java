@@ -0,0 +1,185 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.jkoolcloud.tnt4j.core.KeyValueStats;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.sink.AbstractEventSink;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.MappedJournal;
+import com.jkoolcloud.tnt4j.utils.MappedJournalReader;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements {@link EventSink} with memory-mapped append-only {@link MappedJournal} as the underlying
+ * storage. Formatted entries are encoded directly into mapped segment files; concurrent writers claim regions
+ * atomically and do not serialize on a lock. Journal can be tailed or shipped using {@link MappedJournalReader}.
+ * </p>
+ *
+ *
+ * @version $Revision: 1 $
+ *
+ * @see OpLevel
+ * @see MappedJournal
+ * @see MappedJournalReader
+ * @see EventFormatter
+ * @see AbstractEventSink
+ */
+public class MappedJournalEventSink extends AbstractEventSink {
+	static final String KEY_JOURNAL_RECORDS = "journal-records";
+	static final String KEY_JOURNAL_BYTES = "journal-bytes";
+	static final String KEY_JOURNAL_SEGMENT = "journal-segment-seq";
+	static final String KEY_JOURNAL_ROLLOVERS = "journal-rollovers";
+
+	MappedJournal journal;
+	boolean forceOnFlush = false;
+	volatile boolean opened = false;
+
+	/**
+	 * Create a journal based event sink instance.
+	 *
+	 * @param nm
+	 *            logical event sink name
+	 * @param jrnl
+	 *            journal where all entries are recorded, may be shared by multiple sinks
+	 * @param frm
+	 *            event formatter to be used for formatting event entries
+	 */
+	public MappedJournalEventSink(String nm, MappedJournal jrnl, EventFormatter frm) {
+		super(nm, frm);
+		journal = jrnl;
+	}
+
+	/**
+	 * Set whether journal contents are forced to storage device on every flush. Otherwise mapped contents are written
+	 * by the operating system.
+	 *
+	 * @param force
+	 *            true to force journal contents on flush, false otherwise
+	 * @return itself
+	 */
+	public MappedJournalEventSink setForceOnFlush(boolean force) {
+		forceOnFlush = force;
+		return this;
+	}
+
+	@Override
+	public boolean isSet(OpLevel sev) {
+		return true;
+	}
+
+	@Override
+	public Object getSinkHandle() {
+		return journal;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return opened && journal.isOpen();
+	}
+
+	@Override
+	public synchronized void open() throws IOException {
+		if (!opened) {
+			journal.open();
+			opened = true;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (opened) {
+			opened = false;
+			journal.close();
+		}
+	}
+
+	@Override
+	protected void _checkState() throws IllegalStateException {
+		if (!isOpen()) {
+			throw new IllegalStateException("Sink is not defined or closed");
+		}
+	}
+
+	@Override
+	protected void _write(Object msg, Object... args) throws IOException, InterruptedException {
+		_writeLog(getEventFormatter().format(msg, args));
+	}
+
+	@Override
+	protected void _log(TrackingEvent event) throws IOException {
+		_writeLog(getEventFormatter().format(event));
+	}
+
+	@Override
+	protected void _log(TrackingActivity activity) throws IOException {
+		_writeLog(getEventFormatter().format(activity));
+	}
+
+	@Override
+	protected void _log(Snapshot snapshot) throws IOException {
+		_writeLog(getEventFormatter().format(snapshot));
+	}
+
+	@Override
+	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws IOException {
+		_writeLog(getEventFormatter().format(ttl, src, sev, msg, args));
+	}
+
+	protected void _writeLog(String msg) throws IOException {
+		_checkState();
+		if (!journal.append(msg)) {
+			throw new IOException("Failed to append journal record: sink=" + getName() + ", record.length="
+					+ msg.length() + ", segment.size=" + journal.getSegmentSize());
+		}
+	}
+
+	@Override
+	protected void _flushBatch() throws IOException {
+		flush();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (forceOnFlush && isOpen()) {
+			journal.force();
+		}
+	}
+
+	@Override
+	public KeyValueStats getStats(Map<String, Object> stats) {
+		super.getStats(stats);
+		stats.put(Utils.qualify(this, KEY_JOURNAL_RECORDS), journal.getRecordCount());
+		stats.put(Utils.qualify(this, KEY_JOURNAL_BYTES), journal.getBytes());
+		stats.put(Utils.qualify(this, KEY_JOURNAL_SEGMENT), journal.getSegmentSeq());
+		stats.put(Utils.qualify(this, KEY_JOURNAL_ROLLOVERS), journal.getRolloverCount());
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "{journal: " + journal + "}";
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+import com.jkoolcloud.tnt4j.config.ConfigException;
+import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.format.SimpleFormatter;
+import com.jkoolcloud.tnt4j.sink.AbstractEventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.sink.EventSinkFactory;
+import com.jkoolcloud.tnt4j.utils.MappedJournal;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * Concrete implementation of {@link EventSinkFactory} interface, which creates instances of {@link EventSink}. This
+ * factory uses {@link MappedJournalEventSink} as the underlying sink provider and by default uses
+ * {@link SimpleFormatter} to format log messages. All sinks created by a factory instance share a single
+ * {@link MappedJournal}.
+ * </p>
+ *
+ *
+ * @see EventSink
+ * @see SimpleFormatter
+ * @see MappedJournalEventSink
+ *
+ * @version $Revision: 1 $
+ *
+ */
+public class MappedJournalEventSinkFactory extends AbstractEventSinkFactory {
+
+	String journalDir = "journal";
+	String journalPrefix = "tnt4j";
+	int segmentSize = 64 * 1024 * 1024;
+	boolean forceOnFlush = false;
+	MappedJournal journal;
+
+	/**
+	 * Create a default sink factory writing journal segments into {@code journal} directory.
+	 */
+	public MappedJournalEventSinkFactory() {
+	}
+
+	/**
+	 * Create a sink factory writing journal segments into a given directory.
+	 *
+	 * @param dir
+	 *            journal directory
+	 */
+	public MappedJournalEventSinkFactory(String dir) {
+		journalDir = dir;
+	}
+
+	@Override
+	public EventSink getEventSink(String name) {
+		return getEventSink(name, System.getProperties(), new SimpleFormatter("{0} | {1} | {2}"));
+	}
+
+	@Override
+	public EventSink getEventSink(String name, Properties props) {
+		return getEventSink(name, props, new SimpleFormatter("{0} | {1} | {2}"));
+	}
+
+	@Override
+	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
+		return configureSink(new MappedJournalEventSink(name, getJournal(), frmt).setForceOnFlush(forceOnFlush));
+	}
+
+	/**
+	 * Obtain journal shared by all sinks created by this factory.
+	 *
+	 * @return shared journal instance
+	 */
+	protected synchronized MappedJournal getJournal() {
+		if (journal == null) {
+			journal = new MappedJournal(new File(journalDir), journalPrefix, segmentSize);
+		}
+		return journal;
+	}
+
+	@Override
+	protected EventSink configureSink(EventSink sink) {
+		super.configureSink(sink);
+		try {
+			sink.open();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return sink;
+	}
+
+	@Override
+	public void setConfiguration(Map<String, Object> props) throws ConfigException {
+		journalDir = Utils.getString("Dir", props, journalDir);
+		journalPrefix = Utils.getString("Prefix", props, journalPrefix);
+		segmentSize = Utils.getInt("SegmentSize", props, segmentSize);
+		forceOnFlush = Utils.getBoolean("ForceOnFlush", props, forceOnFlush);
+		super.setConfiguration(props);
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import com.jkoolcloud.tnt4j.config.Configurable;
+import com.jkoolcloud.tnt4j.core.KeyValueStats;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.format.ColumnarBatch;
+import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.format.StreamEventFormatter;
+import com.jkoolcloud.tnt4j.sink.AbstractEventSink;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements {@link EventSink} with non-blocking {@link NioSocketWriter} connections as the underlying sink
+ * implementation. Formatted entries are coalesced into a write buffer and sent by a selector driven writer thread, so
+ * logging threads do not block on network backpressure and many entries are sent with a single write. Lost connections
+ * are re-established in background with exponential backoff. Entries can be balanced over a {@link NioSocketPool} of
+ * connections to multiple endpoints. Another sink can be associated with this sink where all events are routed.
+ * </p>
+ * <p>
+ * In columnar mode (see {@link #setColumnarBatchSize(int)}) entries are accumulated into a {@link ColumnarBatch},
+ * which is sent as a single binary record when the batch is full or at the end of each logged batch. Sink formatter
+ * is not used in this mode.
+ * </p>
+ *
+ *
+ * @version $Revision: 1 $
+ *
+ * @see NioSocketWriter
+ * @see NioSocketPool
+ * @see SocketEventSink
+ * @see EventSink
+ * @see EventFormatter
+ */
+public class NioSocketEventSink extends AbstractEventSink {
+	static final String KEY_SOCKET_CONNECTED = "socket-connected";
+	static final String KEY_SOCKET_PENDING_BYTES = "socket-pending-bytes";
+	static final String KEY_SOCKET_BYTES_SENT = "socket-bytes-sent";
+	static final String KEY_SOCKET_SEND_CALLS = "socket-send-calls";
+	static final String KEY_SOCKET_RECONNECTS = "socket-reconnects";
+	static final String KEY_SOCKET_DROPPED_BYTES = "socket-dropped-bytes";
+	static final String KEY_SOCKET_CONNECTIONS = "socket-connections";
+	static final String KEY_SOCKET_HEALTHY = "socket-healthy-connections";
+	static final String KEY_SOCKET_EJECTIONS = "socket-ejections";
+
+	private final NioSocketPool pool;
+	private EventSink logSink = null;
+	private String endpoints;
+	private long closeTimeout = 5000;
+	private ColumnarBatch columnar;
+	private int columnarBatchSize;
+
+	/**
+	 * Create a socket event sink based on a given host, port and formatter. Another sink can be associated with this
+	 * sink where all events are routed.
+	 *
+	 * @param name
+	 *            logical name assigned to this sink
+	 * @param host
+	 *            name where all messages are sent
+	 * @param port
+	 *            number where all messages are sent
+	 * @param frm
+	 *            event formatter associated with this sink
+	 * @param sink
+	 *            piped sink where all events are piped
+	 */
+	public NioSocketEventSink(String name, String host, int port, EventFormatter frm, EventSink sink) {
+		this(name, host + ":" + port,
+				new NioSocketPool(Collections.singletonList(new NioSocketWriter(host, port)), null), frm, sink);
+	}
+
+	/**
+	 * Create a socket event sink writing to a given connection pool. Another sink can be associated with this sink
+	 * where all events are routed.
+	 *
+	 * @param name
+	 *            logical name assigned to this sink
+	 * @param endpoints
+	 *            description of endpoints served by the pool
+	 * @param pool
+	 *            connection pool where all messages are sent
+	 * @param frm
+	 *            event formatter associated with this sink
+	 * @param sink
+	 *            piped sink where all events are piped
+	 */
+	public NioSocketEventSink(String name, String endpoints, NioSocketPool pool, EventFormatter frm, EventSink sink) {
+		super(name, frm);
+		this.endpoints = endpoints;
+		this.pool = pool;
+		logSink = sink;
+	}
+
+	/**
+	 * Obtain underlying connection pool.
+	 *
+	 * @return connection pool
+	 */
+	public NioSocketPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Set maximum time to wait for buffered entries to be sent when sink is closed.
+	 *
+	 * @param timeoutMs
+	 *            close timeout in milliseconds
+	 * @return itself
+	 */
+	public NioSocketEventSink setCloseTimeout(long timeoutMs) {
+		closeTimeout = Math.max(0, timeoutMs);
+		return this;
+	}
+
+	/**
+	 * Enable or disable columnar output mode. In columnar mode entries are sent as {@link ColumnarBatch} records
+	 * holding up to a given number of entries. Entries logged outside of a batch are sent immediately as a batch of
+	 * one entry.
+	 *
+	 * @param batchSize
+	 *            maximum number of entries in a columnar batch, {@code 0} to disable columnar mode
+	 * @return itself
+	 */
+	public NioSocketEventSink setColumnarBatchSize(int batchSize) {
+		if (batchSize > 0) {
+			EventFormatter f = getEventFormatter();
+			columnar = new ColumnarBatch(f instanceof Configurable ? ((Configurable) f).getConfiguration() : null);
+		} else {
+			columnar = null;
+		}
+		columnarBatchSize = Math.max(0, batchSize);
+		return this;
+	}
+
+	/**
+	 * Obtain maximum number of entries in a columnar batch.
+	 *
+	 * @return maximum number of entries in a columnar batch, {@code 0} if columnar mode is disabled
+	 */
+	public int getColumnarBatchSize() {
+		return columnarBatchSize;
+	}
+
+	@Override
+	protected void _log(TrackingActivity activity) throws IOException {
+		EventFormatter f = getEventFormatter();
+		if (columnar != null) {
+			_checkState();
+			addColumnar(columnar.add(activity));
+		} else if (f instanceof StreamEventFormatter) {
+			writeLine(((StreamEventFormatter) f).toBytes(activity));
+		} else {
+			writeLine(f.format(activity));
+		}
+		if (canForward(activity.getSeverity())) {
+			logSink.log(activity);
+		}
+	}
+
+	@Override
+	protected void _log(TrackingEvent event) throws IOException {
+		EventFormatter f = getEventFormatter();
+		if (columnar != null) {
+			_checkState();
+			addColumnar(columnar.add(event));
+		} else if (f instanceof StreamEventFormatter) {
+			writeLine(((StreamEventFormatter) f).toBytes(event));
+		} else {
+			writeLine(f.format(event));
+		}
+		if (canForward(event.getSeverity())) {
+			logSink.log(event);
+		}
+	}
+
+	@Override
+	protected void _log(Snapshot snapshot) throws IOException {
+		EventFormatter f = getEventFormatter();
+		if (columnar != null) {
+			_checkState();
+			addColumnar(columnar.add(snapshot));
+		} else if (f instanceof StreamEventFormatter) {
+			writeLine(((StreamEventFormatter) f).toBytes(snapshot));
+		} else {
+			writeLine(f.format(snapshot));
+		}
+		if (canForward(snapshot.getSeverity())) {
+			logSink.log(snapshot);
+		}
+	}
+
+	@Override
+	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws IOException {
+		EventFormatter f = getEventFormatter();
+		if (columnar != null) {
+			_checkState();
+			addColumnar(columnar.add(ttl, src, sev, msg, args));
+		} else if (f instanceof StreamEventFormatter) {
+			writeLine(((StreamEventFormatter) f).toBytes(ttl, src, sev, msg, args));
+		} else {
+			writeLine(f.format(ttl, src, sev, msg, args));
+		}
+		if (canForward(sev)) {
+			logSink.log(ttl, src, sev, msg, args);
+		}
+	}
+
+	@Override
+	protected void _write(Object msg, Object... args) throws IOException {
+		if (isOpen()) {
+			EventFormatter f = getEventFormatter();
+			if (columnar != null) {
+				addColumnar(columnar.add(msg, args));
+			} else if (f instanceof StreamEventFormatter) {
+				writeLine(((StreamEventFormatter) f).toBytes(msg, args));
+			} else {
+				writeLine(f.format(msg, args));
+			}
+		}
+	}
+
+	@Override
+	public Object getSinkHandle() {
+		return pool;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return pool.isRunning();
+	}
+
+	@Override
+	public synchronized void open() throws IOException {
+		pool.start();
+		if (logSink != null) {
+			logSink.open();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (isOpen()) {
+			writeColumnar();
+		}
+		pool.flush();
+	}
+
+	@Override
+	protected void _flushBatch() throws IOException {
+		flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (isOpen()) {
+			try {
+				writeColumnar();
+			} finally {
+				Utils.close(logSink);
+				pool.close(closeTimeout);
+			}
+		}
+	}
+
+	@Override
+	public KeyValueStats getStats(Map<String, Object> stats) {
+		super.getStats(stats);
+		stats.put(Utils.qualify(this, KEY_SOCKET_CONNECTED), pool.isConnected());
+		stats.put(Utils.qualify(this, KEY_SOCKET_CONNECTIONS), pool.getWriters().size());
+		stats.put(Utils.qualify(this, KEY_SOCKET_HEALTHY), pool.getHealthyCount());
+		stats.put(Utils.qualify(this, KEY_SOCKET_EJECTIONS), pool.getEjections());
+		stats.put(Utils.qualify(this, KEY_SOCKET_PENDING_BYTES), pool.getPendingBytes());
+		stats.put(Utils.qualify(this, KEY_SOCKET_BYTES_SENT), pool.getBytesSent());
+		stats.put(Utils.qualify(this, KEY_SOCKET_SEND_CALLS), pool.getSendCalls());
+		stats.put(Utils.qualify(this, KEY_SOCKET_RECONNECTS), pool.getReconnects());
+		stats.put(Utils.qualify(this, KEY_SOCKET_DROPPED_BYTES), pool.getDroppedBytes());
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() 
+			+ "{endpoints: " + endpoints 
+			+ ", pool: " + pool 
+			+ ", formatter: " + getEventFormatter() 
+			+ ", piped.sink: " + logSink 
+			+ "}";
+	}
+
+	private void writeLine(String msg) throws IOException {
+		if (Utils.isEmpty(msg)) {
+			return;
+		}
+		_checkState();
+		pool.write(msg);
+	}
+
+	private void writeLine(byte[] msg) throws IOException {
+		if (msg == null || msg.length == 0) {
+			return;
+		}
+		_checkState();
+		pool.write(msg);
+	}
+
+	private void addColumnar(int size) throws IOException {
+		if (size >= columnarBatchSize || !isBatching()) {
+			writeColumnar();
+		}
+	}
+
+	private void writeColumnar() throws IOException {
+		ColumnarBatch batch = columnar;
+		if (batch != null) {
+			writeLine(batch.drain());
+		}
+	}
+
+	@Override
+	public boolean isSet(OpLevel sev) {
+		return logSink != null ? logSink.isSet(sev) : true;
+	}
+
+	@Override
+	protected void _checkState() throws IllegalStateException {
+		if (!isOpen()) {
+			throw new IllegalStateException("Sink closed: " + endpoints + ", pool=" + pool);
+		}
+	}
+
+	private boolean canForward(OpLevel sev) {
+		return logSink != null && logSink.isSet(sev);
+	}
+}
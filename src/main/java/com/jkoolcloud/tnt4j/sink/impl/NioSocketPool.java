@@ -0,0 +1,363 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * This class implements a pool of {@link NioSocketWriter} connections to one or more endpoints. Each line is written
+ * to a single connection chosen by a {@link Balance} strategy, so callers write in parallel over independent
+ * connections instead of serializing on one socket. Connections which are disconnected or fail a write because they
+ * lost connection are ejected from balancing for a configured time; lines are then written to the remaining healthy
+ * connections. A connected writer whose buffer stays full is skipped for that line only.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see NioSocketWriter
+ * @see NioSocketEventSink
+ */
+public class NioSocketPool {
+	/**
+	 * Strategies used to choose a connection for each line.
+	 */
+	public enum Balance {
+		/**
+		 * Use healthy connections in turn.
+		 */
+		ROUND_ROBIN,
+
+		/**
+		 * Use healthy connection with the least number of bytes not yet sent.
+		 */
+		LEAST_OUTSTANDING
+	}
+
+	private final List<NioSocketWriter> writers;
+	private final AtomicLongArray ejectedUntil;
+	private final AtomicInteger next = new AtomicInteger(0);
+	private final AtomicLong ejections = new AtomicLong(0);
+	private final Balance balance;
+	private long ejectTime = 5000;
+
+	/**
+	 * Create a connection pool.
+	 *
+	 * @param writers
+	 *            connections in the pool
+	 * @param balance
+	 *            strategy used to choose a connection for each line
+	 */
+	public NioSocketPool(List<NioSocketWriter> writers, Balance balance) {
+		if (writers.isEmpty()) {
+			throw new IllegalArgumentException("Connection pool must have at least one connection");
+		}
+		this.writers = Collections.unmodifiableList(new ArrayList<NioSocketWriter>(writers));
+		this.ejectedUntil = new AtomicLongArray(writers.size());
+		this.balance = balance == null ? Balance.ROUND_ROBIN : balance;
+	}
+
+	/**
+	 * Set time a failed connection is excluded from balancing.
+	 *
+	 * @param ejectMs
+	 *            ejection time in milliseconds
+	 * @return itself
+	 */
+	public NioSocketPool setEjectTime(long ejectMs) {
+		ejectTime = Math.max(0, ejectMs);
+		return this;
+	}
+
+	/**
+	 * Obtain connections in the pool.
+	 *
+	 * @return unmodifiable list of connections
+	 */
+	public List<NioSocketWriter> getWriters() {
+		return writers;
+	}
+
+	/**
+	 * Obtain balancing strategy.
+	 *
+	 * @return balancing strategy
+	 */
+	public Balance getBalance() {
+		return balance;
+	}
+
+	/**
+	 * Start all connections.
+	 *
+	 * @throws IOException
+	 *             if connection writer can not be started
+	 */
+	public void start() throws IOException {
+		for (NioSocketWriter writer : writers) {
+			writer.start();
+		}
+	}
+
+	/**
+	 * Close all connections, waiting for buffered lines to be sent.
+	 *
+	 * @param timeoutMs
+	 *            maximum time to wait for buffered lines of each connection
+	 */
+	public void close(long timeoutMs) {
+		for (NioSocketWriter writer : writers) {
+			writer.close(timeoutMs);
+		}
+	}
+
+	/**
+	 * Write a line to a connection chosen by balancing strategy. When write fails, line is written to another healthy
+	 * connection; failed connection is ejected unless it is still connected.
+	 *
+	 * @param line
+	 *            line of text
+	 * @throws IOException
+	 *             if line could not be written to any connection
+	 */
+	public void write(CharSequence line) throws IOException {
+		write(line, null);
+	}
+
+	/**
+	 * Write a line of UTF-8 encoded bytes to a connection chosen by balancing strategy. When write fails, line is
+	 * written to another healthy connection; failed connection is ejected unless it is still connected.
+	 *
+	 * @param line
+	 *            line of UTF-8 encoded text
+	 * @throws IOException
+	 *             if line could not be written to any connection
+	 */
+	public void write(byte[] line) throws IOException {
+		write(null, line);
+	}
+
+	private void write(CharSequence text, byte[] bytes) throws IOException {
+		IOException error = null;
+		for (int attempt = 0; attempt < writers.size(); attempt++) {
+			int idx = choose();
+			try {
+				if (bytes != null) {
+					writers.get(idx).write(bytes);
+				} else {
+					writers.get(idx).write(text);
+				}
+				return;
+			} catch (IOException e) {
+				error = e;
+				// full buffer of a connected writer is backpressure, not a connection failure
+				if (!writers.get(idx).isConnected()) {
+					eject(idx);
+				}
+			}
+		}
+		throw error;
+	}
+
+	/**
+	 * Request buffered lines of all connections to be sent.
+	 */
+	public void flush() {
+		for (NioSocketWriter writer : writers) {
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Determine if connection at a given index is used for balancing.
+	 *
+	 * @param idx
+	 *            connection index
+	 * @return {@code true} if connection is connected and not ejected, {@code false} otherwise
+	 */
+	public boolean isHealthy(int idx) {
+		return writers.get(idx).isConnected() && System.currentTimeMillis() >= ejectedUntil.get(idx);
+	}
+
+	/**
+	 * Obtain number of connections used for balancing.
+	 *
+	 * @return number of healthy connections
+	 */
+	public int getHealthyCount() {
+		int count = 0;
+		for (int i = 0; i < writers.size(); i++) {
+			if (isHealthy(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Obtain number of times a connection was ejected after a write failed due to lost connection.
+	 *
+	 * @return number of ejections
+	 */
+	public long getEjections() {
+		return ejections.get();
+	}
+
+	/**
+	 * Determine if any connection is running.
+	 *
+	 * @return {@code true} if at least one connection is running, {@code false} otherwise
+	 */
+	public boolean isRunning() {
+		for (NioSocketWriter writer : writers) {
+			if (writer.isRunning()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine if any connection is connected.
+	 *
+	 * @return {@code true} if at least one connection is connected, {@code false} otherwise
+	 */
+	public boolean isConnected() {
+		for (NioSocketWriter writer : writers) {
+			if (writer.isConnected()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Obtain number of bytes buffered and not yet sent by all connections.
+	 *
+	 * @return number of pending bytes
+	 */
+	public long getPendingBytes() {
+		long sum = 0;
+		for (NioSocketWriter writer : writers) {
+			sum += writer.getPendingBytes();
+		}
+		return sum;
+	}
+
+	/**
+	 * Obtain number of bytes sent by all connections.
+	 *
+	 * @return number of bytes sent
+	 */
+	public long getBytesSent() {
+		long sum = 0;
+		for (NioSocketWriter writer : writers) {
+			sum += writer.getBytesSent();
+		}
+		return sum;
+	}
+
+	/**
+	 * Obtain number of channel write calls of all connections.
+	 *
+	 * @return number of write calls
+	 */
+	public long getSendCalls() {
+		long sum = 0;
+		for (NioSocketWriter writer : writers) {
+			sum += writer.getSendCalls();
+		}
+		return sum;
+	}
+
+	/**
+	 * Obtain number of reconnections of all connections.
+	 *
+	 * @return number of reconnections
+	 */
+	public long getReconnects() {
+		long sum = 0;
+		for (NioSocketWriter writer : writers) {
+			sum += writer.getReconnects();
+		}
+		return sum;
+	}
+
+	/**
+	 * Obtain number of bytes dropped by all connections.
+	 *
+	 * @return number of dropped bytes
+	 */
+	public long getDroppedBytes() {
+		long sum = 0;
+		for (NioSocketWriter writer : writers) {
+			sum += writer.getDroppedBytes();
+		}
+		return sum;
+	}
+
+	private void eject(int idx) {
+		ejectedUntil.set(idx, System.currentTimeMillis() + ejectTime);
+		ejections.incrementAndGet();
+	}
+
+	private int choose() {
+		int size = writers.size();
+		if (size == 1) {
+			return 0;
+		}
+		int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+		if (balance == Balance.LEAST_OUTSTANDING) {
+			int best = -1;
+			long bestPending = Long.MAX_VALUE;
+			for (int i = 0; i < size; i++) {
+				int idx = (start + i) % size;
+				if (isHealthy(idx)) {
+					long pending = writers.get(idx).getPendingBytes();
+					if (pending < bestPending) {
+						best = idx;
+						bestPending = pending;
+					}
+				}
+			}
+			if (best >= 0) {
+				return best;
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				int idx = (start + i) % size;
+				if (isHealthy(idx)) {
+					return idx;
+				}
+			}
+		}
+		// no healthy connection, buffer on any connection while reconnecting
+		return start;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{connections: " + writers.size() + ", healthy: " + getHealthyCount()
+				+ ", balance: " + balance + ", pending.bytes: " + getPendingBytes() + "}";
+	}
+}
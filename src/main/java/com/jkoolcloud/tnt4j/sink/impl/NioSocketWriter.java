@@ -0,0 +1,641 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.sink.DefaultEventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.utils.Utf8;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements a non-blocking line writer over a {@link SocketChannel}. Callers encode lines into a
+ * coalescing buffer and return immediately; a dedicated writer thread driven by a {@link Selector} sends buffered
+ * lines once the buffer reaches a send threshold, a flush is requested or the oldest buffered line has waited for the
+ * linger time (Nagle-like coalescing with a bounded delay). Callers never block on network backpressure: when the
+ * buffer is full they wait at most for a configured write timeout and then fail.
+ * </p>
+ * <p>
+ * Lost connections are re-established by the writer thread with exponential backoff; lines are buffered while
+ * disconnected. A line partially sent when connection was lost is discarded, so receivers never see a truncated line.
+ * In framed protocol mode ({@link #setFraming(FrameEncoder)}) each send is a single batch frame, and a frame partially
+ * sent when connection was lost is sent again as a whole.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see NioSocketEventSink
+ */
+public class NioSocketWriter implements Runnable {
+	private static final EventSink logger = DefaultEventSinkFactory.defaultEventSink(NioSocketWriter.class);
+
+	private final String host;
+	private final int port;
+	private final Object lock = new Object();
+
+	private int bufferSize = 64 * 1024;
+	private int sendThreshold = 16 * 1024;
+	private long lingerNanos = TimeUnit.MILLISECONDS.toNanos(5);
+	private long writeTimeoutMs = 500;
+	private int connectTimeoutMs = 10000;
+	private long reconnectMinMs = 100;
+	private long reconnectMaxMs = 30000;
+	private FrameEncoder framer;
+
+	// guarded by lock
+	private ByteBuffer fill;
+	private long fillStartNanos;
+	private boolean flushRequested;
+	private int fillRecords;
+
+	// writer thread only
+	private ByteBuffer drain;
+	private ByteBuffer out;
+	private SocketChannel channel;
+	private Selector selector;
+	private final ByteBuffer readBuf = ByteBuffer.allocate(512);
+
+	private volatile boolean running = false;
+	private volatile boolean connected = false;
+	private volatile Thread writer;
+	private volatile Throwable lastError;
+
+	private final AtomicLong bytesSent = new AtomicLong(0);
+	private final AtomicLong sendCalls = new AtomicLong(0);
+	private final AtomicLong reconnects = new AtomicLong(0);
+	private final AtomicLong droppedBytes = new AtomicLong(0);
+	private final AtomicLong pendingBytes = new AtomicLong(0);
+
+	/**
+	 * Create a socket writer for a given endpoint.
+	 *
+	 * @param host
+	 *            host name
+	 * @param port
+	 *            port number
+	 */
+	public NioSocketWriter(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Set coalescing buffer size and send threshold.
+	 *
+	 * @param size
+	 *            coalescing buffer size in bytes
+	 * @param threshold
+	 *            number of buffered bytes which triggers send without waiting for linger time
+	 * @return itself
+	 */
+	public NioSocketWriter setBufferSize(int size, int threshold) {
+		bufferSize = Math.max(Utf8.MAX_CHAR_BYTES + 1, size);
+		sendThreshold = Math.max(1, Math.min(threshold, bufferSize));
+		return this;
+	}
+
+	/**
+	 * Set maximum time buffered lines wait for more lines before being sent.
+	 *
+	 * @param lingerMs
+	 *            linger time in milliseconds, 0 to send as soon as possible
+	 * @return itself
+	 */
+	public NioSocketWriter setLinger(long lingerMs) {
+		lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+		return this;
+	}
+
+	/**
+	 * Set maximum time a caller waits for buffer space when coalescing buffer is full. Default is 500 ms.
+	 *
+	 * @param timeoutMs
+	 *            write timeout in milliseconds, 0 to fail immediately
+	 * @return itself
+	 */
+	public NioSocketWriter setWriteTimeout(long timeoutMs) {
+		writeTimeoutMs = Math.max(0, timeoutMs);
+		return this;
+	}
+
+	/**
+	 * Set connection timeout and reconnection backoff.
+	 *
+	 * @param connectMs
+	 *            connection timeout in milliseconds
+	 * @param minMs
+	 *            initial delay between reconnection attempts in milliseconds
+	 * @param maxMs
+	 *            maximum delay between reconnection attempts in milliseconds
+	 * @return itself
+	 */
+	public NioSocketWriter setReconnect(int connectMs, long minMs, long maxMs) {
+		connectTimeoutMs = Math.max(0, connectMs);
+		reconnectMinMs = Math.max(1, minMs);
+		reconnectMaxMs = Math.max(reconnectMinMs, maxMs);
+		return this;
+	}
+
+	/**
+	 * Enable framed protocol: buffered records are length-prefixed and sent as (optionally compressed) batch frames
+	 * produced by a given encoder, instead of newline terminated lines. Must be set before writer is started.
+	 *
+	 * @param encoder
+	 *            frame encoder, null for newline terminated lines
+	 * @return itself
+	 * @see FrameDecoder
+	 */
+	public NioSocketWriter setFraming(FrameEncoder encoder) {
+		framer = encoder;
+		return this;
+	}
+
+	/**
+	 * Determine if framed protocol is used.
+	 *
+	 * @return {@code true} if records are sent in frames, {@code false} if as newline terminated lines
+	 */
+	public boolean isFramed() {
+		return framer != null;
+	}
+
+	/**
+	 * Start writer thread. Connection is established asynchronously by the writer thread.
+	 *
+	 * @throws IOException
+	 *             if selector can not be opened
+	 */
+	public synchronized void start() throws IOException {
+		if (running) {
+			return;
+		}
+		selector = Selector.open();
+		synchronized (lock) {
+			fill = ByteBuffer.allocate(bufferSize);
+			flushRequested = false;
+		}
+		drain = ByteBuffer.allocate(bufferSize);
+		drain.flip();
+		out = drain;
+		running = true;
+		Thread thread = new Thread(this, getClass().getSimpleName() + "/" + host + ":" + port);
+		thread.setDaemon(true);
+		writer = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stop writer thread and close connection. Buffered lines are sent if connected, waiting at most a given time.
+	 *
+	 * @param timeoutMs
+	 *            maximum time to wait for buffered lines to be sent
+	 */
+	public synchronized void close(long timeoutMs) {
+		if (!running) {
+			return;
+		}
+		flush();
+		long deadline = System.currentTimeMillis() + timeoutMs;
+		while (connected && getPendingBytes() > 0 && System.currentTimeMillis() < deadline) {
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		running = false;
+		Thread thread = writer;
+		if (thread != null) {
+			selector.wakeup();
+			thread.interrupt();
+			try {
+				thread.join(timeoutMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		writer = null;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Determine if writer is running.
+	 *
+	 * @return {@code true} if writer is running, {@code false} otherwise
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Determine if writer is connected to the endpoint.
+	 *
+	 * @return {@code true} if connected, {@code false} otherwise
+	 */
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * Buffer a line of text to be sent. Line separator is appended unless line ends with one.
+	 *
+	 * @param line
+	 *            line of text
+	 * @throws IOException
+	 *             if writer is not running or coalescing buffer remains full for longer than write timeout
+	 */
+	public void write(CharSequence line) throws IOException {
+		write(line, null);
+	}
+
+	/**
+	 * Buffer a line of UTF-8 encoded bytes to be sent. Line separator is appended unless line ends with one.
+	 *
+	 * @param line
+	 *            line of UTF-8 encoded text
+	 * @throws IOException
+	 *             if writer is not running or coalescing buffer remains full for longer than write timeout
+	 */
+	public void write(byte[] line) throws IOException {
+		write(null, line);
+	}
+
+	private void write(CharSequence text, byte[] bytes) throws IOException {
+		long deadline = 0;
+		synchronized (lock) {
+			while (true) {
+				if (!running) {
+					throw new IOException("Socket writer closed: " + host + ":" + port);
+				}
+				int start = fill.position();
+				boolean appended = bytes != null ? (framer != null ? appendRecord(bytes) : appendLine(bytes))
+						: (framer != null ? appendRecord(text) : appendLine(text));
+				if (appended) {
+					fillRecords++;
+					pendingBytes.addAndGet(fill.position() - start);
+					if (start == 0) {
+						fillStartNanos = System.nanoTime();
+						selector.wakeup();
+					} else if (start < sendThreshold && fill.position() >= sendThreshold) {
+						selector.wakeup();
+					}
+					return;
+				}
+				fill.position(start);
+				if (start == 0) {
+					// line larger than buffer, enlarge buffer for this line only
+					int length = bytes != null ? bytes.length : Utf8.length(text);
+					fill = ByteBuffer.allocate(length + FrameEncoder.RECORD_HEADER_SIZE);
+					continue;
+				}
+				// buffer full, wait for the writer to take it
+				flushRequested = true;
+				selector.wakeup();
+				long now = System.currentTimeMillis();
+				if (deadline == 0) {
+					deadline = now + writeTimeoutMs;
+				}
+				if (now >= deadline) {
+					throw new IOException("Socket writer buffer full: " + host + ":" + port + ", connected=" + connected
+							+ ", pending.bytes=" + start, lastError);
+				}
+				try {
+					lock.wait(deadline - now);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for socket writer: " + host + ":" + port);
+				}
+			}
+		}
+	}
+
+	private boolean appendLine(CharSequence line) {
+		int len = line.length();
+		boolean eol = len > 0 && line.charAt(len - 1) == '\n';
+		if (Utf8.encode(line, 0, fill) == len && (eol || fill.hasRemaining())) {
+			if (!eol) {
+				fill.put((byte) '\n');
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private boolean appendLine(byte[] line) {
+		int len = line.length;
+		boolean eol = len > 0 && line[len - 1] == '\n';
+		if (fill.remaining() < (eol ? len : len + 1)) {
+			return false;
+		}
+		fill.put(line);
+		if (!eol) {
+			fill.put((byte) '\n');
+		}
+		return true;
+	}
+
+	private boolean appendRecord(byte[] line) {
+		if (fill.remaining() < FrameEncoder.RECORD_HEADER_SIZE + line.length) {
+			return false;
+		}
+		fill.putInt(line.length);
+		fill.put(line);
+		return true;
+	}
+
+	private boolean appendRecord(CharSequence line) {
+		int start = fill.position();
+		if (fill.remaining() < FrameEncoder.RECORD_HEADER_SIZE) {
+			return false;
+		}
+		fill.position(start + FrameEncoder.RECORD_HEADER_SIZE);
+		if (Utf8.encode(line, 0, fill) == line.length()) {
+			fill.putInt(start, fill.position() - start - FrameEncoder.RECORD_HEADER_SIZE);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Request buffered lines to be sent without waiting for linger time. This method does not wait for lines to be
+	 * sent.
+	 */
+	public void flush() {
+		synchronized (lock) {
+			if (fill != null && fill.position() > 0) {
+				flushRequested = true;
+				selector.wakeup();
+			}
+		}
+	}
+
+	/**
+	 * Obtain number of bytes buffered and not yet sent.
+	 *
+	 * @return number of pending bytes
+	 */
+	public long getPendingBytes() {
+		return pendingBytes.get();
+	}
+
+	/**
+	 * Obtain number of bytes sent.
+	 *
+	 * @return number of bytes sent
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	/**
+	 * Obtain number of channel write calls, each sending one or more coalesced lines.
+	 *
+	 * @return number of write calls
+	 */
+	public long getSendCalls() {
+		return sendCalls.get();
+	}
+
+	/**
+	 * Obtain number of times connection was re-established.
+	 *
+	 * @return number of reconnections
+	 */
+	public long getReconnects() {
+		return reconnects.get();
+	}
+
+	/**
+	 * Obtain number of bytes of lines discarded because they were partially sent when connection was lost or not sent
+	 * before writer was closed.
+	 *
+	 * @return number of dropped bytes
+	 */
+	public long getDroppedBytes() {
+		return droppedBytes.get();
+	}
+
+	/**
+	 * Obtain last connection or write error.
+	 *
+	 * @return last error, null if none
+	 */
+	public Throwable getLastError() {
+		return lastError;
+	}
+
+	@Override
+	public void run() {
+		long backoff = reconnectMinMs;
+		boolean everConnected = false;
+		while (running) {
+			try {
+				if (channel == null) {
+					connect();
+					if (everConnected) {
+						reconnects.incrementAndGet();
+					}
+					everConnected = true;
+					backoff = reconnectMinMs;
+				}
+				if (!out.hasRemaining() && !awaitBuffer()) {
+					continue;
+				}
+				send();
+			} catch (IOException e) {
+				lastError = e;
+				disconnect();
+				if (running) {
+					logger.log(OpLevel.DEBUG, "Socket writer error, reconnecting in {0} ms: endpoint={1}:{2}", backoff,
+							host, port, e);
+					sleep(backoff);
+					backoff = Math.min(backoff * 2, reconnectMaxMs);
+				}
+			} catch (InterruptedException e) {
+				// closing
+			}
+		}
+		synchronized (lock) {
+			// lines not sent before close are dropped
+			dropped(fill.position() + out.remaining());
+			fill.clear();
+			fillRecords = 0;
+		}
+		if (framer != null) {
+			// release deflater, recreated by the encoder if writer is restarted
+			framer.end();
+		}
+		disconnect();
+		Utils.close(selector);
+	}
+
+	private void connect() throws IOException {
+		SocketChannel ch = SocketChannel.open();
+		try {
+			ch.socket().setTcpNoDelay(true);
+			ch.socket().connect(new InetSocketAddress(host, port), connectTimeoutMs);
+			ch.configureBlocking(false);
+			ch.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			Utils.close(ch);
+			throw e;
+		}
+		channel = ch;
+		connected = true;
+		if (out.hasRemaining()) {
+			if (framer != null) {
+				// frame was partially sent on a lost connection, resend whole frame
+				pendingBytes.addAndGet(out.position());
+				out.position(0);
+			} else {
+				discardPartialLine();
+			}
+		}
+	}
+
+	private void disconnect() {
+		connected = false;
+		if (channel != null) {
+			SelectionKey key = channel.keyFor(selector);
+			if (key != null) {
+				key.cancel();
+			}
+			Utils.close(channel);
+			channel = null;
+			try {
+				// flush cancelled keys
+				selector.selectNow();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private void discardPartialLine() {
+		// line was partially sent on a lost connection, skip to the next line
+		if (out.position() == 0 || out.get(out.position() - 1) == '\n') {
+			return;
+		}
+		int start = out.position();
+		while (out.hasRemaining() && out.get() != '\n') {
+		}
+		dropped(out.position() - start);
+	}
+
+	/**
+	 * Wait until coalescing buffer is due to be sent and swap it with drain buffer.
+	 *
+	 * @return true if buffers were swapped, false otherwise
+	 */
+	private boolean awaitBuffer() throws IOException, InterruptedException {
+		long waitNanos = 0;
+		int records = 0;
+		synchronized (lock) {
+			int pending = fill.position();
+			if (pending > 0) {
+				waitNanos = (flushRequested || pending >= sendThreshold) ? 0
+						: lingerNanos - (System.nanoTime() - fillStartNanos);
+				if (waitNanos <= 0) {
+					ByteBuffer full = fill;
+					drain.clear();
+					fill = drain.capacity() == bufferSize ? drain : ByteBuffer.allocate(bufferSize);
+					full.flip();
+					drain = full;
+					records = fillRecords;
+					fillRecords = 0;
+					flushRequested = false;
+					lock.notifyAll();
+				}
+			}
+		}
+		if (records > 0) {
+			out = drain;
+			if (framer != null) {
+				out = framer.encode(drain, records);
+				pendingBytes.addAndGet(out.remaining() - drain.remaining());
+			}
+			return true;
+		}
+		// wait for linger time to expire or for the first line when buffer is empty
+		select(waitNanos > 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)) : 0);
+		return false;
+	}
+
+	private void send() throws IOException, InterruptedException {
+		while (out.hasRemaining() && running) {
+			int n = channel.write(out);
+			if (n > 0) {
+				bytesSent.addAndGet(n);
+				pendingBytes.addAndGet(-n);
+				sendCalls.incrementAndGet();
+			} else {
+				// socket send buffer full, wait until writable
+				SelectionKey key = channel.keyFor(selector);
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				select(0);
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+	}
+
+	private void select(long timeoutMs) throws IOException, InterruptedException {
+		selector.select(timeoutMs);
+		if (Thread.interrupted() && !running) {
+			throw new InterruptedException();
+		}
+		for (SelectionKey key : selector.selectedKeys()) {
+			if (key.isValid() && key.isReadable()) {
+				readBuf.clear();
+				if (channel.read(readBuf) < 0) {
+					throw new IOException("Connection closed by peer: " + host + ":" + port);
+				}
+			}
+		}
+		selector.selectedKeys().clear();
+	}
+
+	private void dropped(int bytes) {
+		droppedBytes.addAndGet(bytes);
+		pendingBytes.addAndGet(-bytes);
+	}
+
+	private void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			// closing
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{endpoint: " + host + ":" + port + ", connected: " + connected
+				+ ", pending.bytes: " + getPendingBytes() + ", bytes.sent: " + bytesSent.get() + ", reconnects: "
+				+ reconnects.get() + "}";
+	}
+}
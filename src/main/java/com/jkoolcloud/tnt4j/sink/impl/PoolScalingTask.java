@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+
+/**
+ * This class implements a task which periodically adjusts number of logging threads of an elastic pooled logger.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#scalePool()
+ */
+class PoolScalingTask extends AbstractPoolLoggingTask {
+	long intervalMs;
+
+	protected PoolScalingTask(PooledLogger logger, long intervalMs) {
+		super(logger);
+		this.intervalMs = intervalMs;
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (!isCanceled() && !pooledLogger.shutdown) {
+				TimeUnit.MILLISECONDS.sleep(intervalMs);
+				pooledLogger.scalePool();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Throwable e) {
+			PooledLogger.logger.log(OpLevel.WARNING, "Pool scaling failed: shutting down scaling: name={0}",
+					pooledLogger.getName(), e);
+		}
+	}
+}
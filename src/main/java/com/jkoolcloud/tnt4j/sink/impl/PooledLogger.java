@@ -16,22 +16,21 @@
 package com.jkoolcloud.tnt4j.sink.impl;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.LockSupport;
 
 import com.jkoolcloud.tnt4j.core.KeyValueStats;
 import com.jkoolcloud.tnt4j.core.OpLevel;
-import com.jkoolcloud.tnt4j.core.Snapshot;
 import com.jkoolcloud.tnt4j.limiter.DefaultLimiterFactory;
 import com.jkoolcloud.tnt4j.limiter.Limiter;
 import com.jkoolcloud.tnt4j.sink.*;
-import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
-import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
 import com.jkoolcloud.tnt4j.utils.NamedThreadFactory;
+import com.jkoolcloud.tnt4j.utils.TimingWheel;
 import com.jkoolcloud.tnt4j.utils.Utils;
+import com.jkoolcloud.tnt4j.utils.VirtualThreadFactory;
 
 /**
  * <p>
@@ -40,6 +39,23 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * underlying sinks are not guaranteed. The sinks must handle events coming out of sequence. Event time stamps are
  * preserved and should be used to sequence events properly.
  * </p>
+ * <p>
+ * In partitioned mode (see {@link #setPartitions(List)}) each event sink is bound to one of the queue partitions, each
+ * served by a single dedicated thread. Events for a given sink are therefore written in order and a slow sink only
+ * backs up its own partition without starving sinks bound to other partitions.
+ * </p>
+ * <p>
+ * In elastic mode the number of logging threads grows and shrinks between a minimum and maximum pool size. Pool is
+ * resized periodically based on queue depth, queue growth, observed throughput and last sink service time.
+ * </p>
+ * <p>
+ * Logging threads may run as virtual threads on JVMs supporting them, so that blocking sink I/O does not occupy
+ * platform threads. Platform threads are used on older JVMs.
+ * </p>
+ * <p>
+ * Events failed due to sink errors are scheduled for retry using a bounded {@link TimingWheel} and re-injected into the
+ * event queue in batches once retry interval expires.
+ * </p>
  *
  *
  * @version $Revision: 1 $
@@ -53,31 +69,57 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	protected static final double ERROR_RATE = Double
 			.valueOf(System.getProperty("tnt4j.pooled.logger.error.rate", "0.1"));
 	protected static final int REOPEN_FREQ = Integer.getInteger("tnt4j.pooled.logger.reopen.freq.ms", 10000);
+	protected static final int DELAY_TICK_MS = Integer.getInteger("tnt4j.pooled.logger.delay.tick.ms", 100);
+	protected static final int DELAY_WHEEL_SIZE = Integer.getInteger("tnt4j.pooled.logger.delay.wheel.size", 512);
+	protected static final int DELAY_BATCH_SIZE = Integer.getInteger("tnt4j.pooled.logger.delay.batch.size", 1000);
+	protected static final double SCALE_UP_FILL = Double
+			.valueOf(System.getProperty("tnt4j.pooled.logger.scale.up.fill", "0.1"));
+	protected static final double SCALE_DOWN_FILL = Double
+			.valueOf(System.getProperty("tnt4j.pooled.logger.scale.down.fill", "0.01"));
 
 	static final String KEY_Q_SIZE = "pooled-queue-size";
 	static final String KEY_Q_TASKS = "pooled-queue-tasks";
+	static final String KEY_Q_ACTIVE_TASKS = "pooled-queue-active-tasks";
+	static final String KEY_Q_MIN_TASKS = "pooled-queue-min-tasks";
+	static final String KEY_THREAD_MODE = "pooled-thread-mode";
 	static final String KEY_Q_CAPACITY = "pooled-queue-capacity";
+	static final String KEY_Q_PARTITIONS = "pooled-queue-partitions";
+	static final String KEY_Q_BATCH_SIZE = "pooled-queue-batch-size";
+	static final String KEY_Q_LANE_SIZES = "pooled-queue-lane-sizes";
+	static final String KEY_Q_SHED = "pooled-queue-shed";
 	static final String KEY_DQ_SIZE = "pooled-delay-size";
 	static final String KEY_OBJECTS_DROPPED = "pooled-objects-dropped";
 	static final String KEY_OBJECTS_SKIPPED = "pooled-objects-skipped";
 	static final String KEY_OBJECTS_REQUEUED = "pooled-objects-requeued";
 	static final String KEY_OBJECTS_LOGGED = "pooled-objects-logged";
 	static final String KEY_OBJECTS_COUNT = "pooled-objects-total";
+	static final String KEY_BATCH_COUNT = "pooled-batches-total";
 	static final String KEY_EXCEPTION_COUNT = "pooled-exceptions";
 	static final String KEY_SIGNAL_COUNT = "pooled-signals";
 	static final String KEY_RECOVERY_COUNT = "pooled-recovery-count";
 	static final String KEY_LAST_SERVICE_TIME_USEC = "pooled-last-service-time-usec";
 	static final String KEY_TOTAL_TIME_USEC = "pooled-total-time-usec";
 	static final String KEY_TOTAL_SERVICE_TIME_USEC = "pooled-total-service-time-usec";
+	static final String KEY_SCALE_UP_COUNT = "pooled-scale-up-count";
+	static final String KEY_SCALE_DOWN_COUNT = "pooled-scale-down-count";
+	static final String KEY_SCALE_THROUGHPUT = "pooled-scale-throughput-eps";
+	static final String KEY_SCALE_DEMAND = "pooled-scale-demand-tasks";
+	static final String KEY_SCALE_LAST_DECISION = "pooled-scale-last-decision";
 
 	String poolName;
 	int poolSize, capacity;
+	int batchSize = 1;
+	int minPoolSize;
+	long scaleIntervalMs;
+	boolean elastic = false;
+	boolean virtualThreads = false;
 	int retryInterval = REOPEN_FREQ; // time in milliseconds
 	boolean dropOnError = false;
 	ExecutorService threadPool;
 	Limiter errorLimiter;
 	BlockingQueue<SinkLogEvent> eventQ;
-	DelayQueue<DelayedElement<SinkLogEvent>> delayQ;
+	List<BlockingQueue<SinkLogEvent>> partitionQ;
+	TimingWheel<SinkLogEvent> delayQ;
 
 	volatile boolean started = false, shutdown = false;
 
@@ -87,11 +129,24 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	AtomicLong signalCount = new AtomicLong(0);
 	AtomicLong loggedCount = new AtomicLong(0);
 	AtomicLong totalCount = new AtomicLong(0);
+	AtomicLong batchCount = new AtomicLong(0);
 	AtomicLong exceptionCount = new AtomicLong(0);
 	AtomicLong recoveryCount = new AtomicLong(0);
 	AtomicLong totalUsec = new AtomicLong(0);
 	AtomicLong lastServiceUsec = new AtomicLong(0);
 	AtomicLong totalServiceUsec = new AtomicLong(0);
+	AtomicInteger activeTasks = new AtomicInteger(0);
+	AtomicLong scaleUpCount = new AtomicLong(0);
+	AtomicLong scaleDownCount = new AtomicLong(0);
+
+	// elastic pool state, guarded by scaleLock
+	final Object scaleLock = new Object();
+	Future<?> scaleTask;
+	long lastScaleTime, lastScaleCount;
+	int lastScaleDepth, retireTarget;
+	volatile double scaleThroughput;
+	volatile int scaleDemand;
+	volatile String lastScaleDecision = "none";
 
 	/**
 	 * Create a pooled logger instance.
@@ -104,11 +159,31 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 *            maximum queue capacity to hold incoming events, exceeding capacity will drop incoming events.
 	 */
 	public PooledLogger(String name, int threadPoolSize, int maxCapacity) {
+		this(name, threadPoolSize, maxCapacity, new ArrayBlockingQueue<SinkLogEvent>(maxCapacity));
+	}
+
+	/**
+	 * Create a pooled logger instance backed by a given event queue.
+	 *
+	 * @param name
+	 *            pool name to set
+	 * @param threadPoolSize
+	 *            number of threads that will be used to log all enqueued events.
+	 * @param maxCapacity
+	 *            maximum queue capacity to hold incoming events, exceeding capacity will drop incoming events.
+	 * @param queue
+	 *            bounded event queue used to hand off events to logging threads
+	 *
+	 * @see com.jkoolcloud.tnt4j.utils.RingBlockingQueue
+	 */
+	public PooledLogger(String name, int threadPoolSize, int maxCapacity, BlockingQueue<SinkLogEvent> queue) {
 		poolName = name;
 		poolSize = threadPoolSize;
+		minPoolSize = threadPoolSize;
 		capacity = maxCapacity;
-		eventQ = new ArrayBlockingQueue<SinkLogEvent>(capacity);
-		delayQ = new DelayQueue<DelayedElement<SinkLogEvent>>();
+		eventQ = queue;
+		watchShed(queue);
+		delayQ = new TimingWheel<SinkLogEvent>(DELAY_TICK_MS, TimeUnit.MILLISECONDS, DELAY_WHEEL_SIZE, capacity);
 		errorLimiter = DefaultLimiterFactory.getInstance().newLimiter(PooledLogger.ERROR_RATE, Limiter.MAX_RATE);
 	}
 
@@ -123,14 +198,23 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		// when ex is null it must be immediate shutdown request
 		if (ex == null) {
 			SinkLogEvent dieEvent = new SinkLogEvent(this, SinkLogEvent.SIGNAL_TERMINATE);
-			for (int i = 0; i < poolSize; i++) {
-				eventQ.offer(dieEvent);
+			if (partitionQ != null) {
+				for (BlockingQueue<SinkLogEvent> queue : partitionQ) {
+					queue.offer(dieEvent);
+				}
+			} else {
+				int tasks = Math.max(poolSize, activeTasks.get());
+				for (int i = 0; i < tasks; i++) {
+					eventQ.offer(dieEvent);
+				}
 			}
-			delayQ.offer(new DelayedElement<SinkLogEvent>(dieEvent, 0));
+			delayQ.offer(dieEvent, 0, TimeUnit.MILLISECONDS);
 
 			stop();
 
-			eventQ.clear();
+			for (BlockingQueue<SinkLogEvent> queue : getQueues()) {
+				queue.clear();
+			}
 			delayQ.clear();
 		}
 	}
@@ -153,14 +237,32 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 
 	@Override
 	public KeyValueStats getStats(Map<String, Object> stats) {
-		stats.put(Utils.qualify(this, poolName, KEY_Q_SIZE), eventQ.size());
+		stats.put(Utils.qualify(this, poolName, KEY_Q_SIZE), getQSize());
 		stats.put(Utils.qualify(this, poolName, KEY_DQ_SIZE), delayQ.size());
 		stats.put(Utils.qualify(this, poolName, KEY_Q_CAPACITY), capacity);
+		stats.put(Utils.qualify(this, poolName, KEY_Q_PARTITIONS), getQueues().size());
 		stats.put(Utils.qualify(this, poolName, KEY_Q_TASKS), poolSize);
+		stats.put(Utils.qualify(this, poolName, KEY_Q_ACTIVE_TASKS), activeTasks.get());
+		stats.put(Utils.qualify(this, poolName, KEY_THREAD_MODE), virtualThreads ? "virtual" : "platform");
+		stats.put(Utils.qualify(this, poolName, KEY_Q_BATCH_SIZE), batchSize);
 		stats.put(Utils.qualify(this, poolName, KEY_OBJECTS_DROPPED), dropCount.get());
+		if (eventQ instanceof PriorityLaneQueue) {
+			int[] laneSizes = new int[PriorityLaneQueue.LANE_COUNT];
+			long shed = 0;
+			for (BlockingQueue<SinkLogEvent> queue : getQueues()) {
+				PriorityLaneQueue laneQ = (PriorityLaneQueue) queue;
+				for (int i = 0; i < laneSizes.length; i++) {
+					laneSizes[i] += laneQ.size(i);
+				}
+				shed += laneQ.getShedCount();
+			}
+			stats.put(Utils.qualify(this, poolName, KEY_Q_LANE_SIZES), Arrays.toString(laneSizes));
+			stats.put(Utils.qualify(this, poolName, KEY_Q_SHED), shed);
+		}
 		stats.put(Utils.qualify(this, poolName, KEY_OBJECTS_SKIPPED), skipCount.get());
 		stats.put(Utils.qualify(this, poolName, KEY_OBJECTS_REQUEUED), reQCount.get());
 		stats.put(Utils.qualify(this, poolName, KEY_OBJECTS_COUNT), totalCount.get());
+		stats.put(Utils.qualify(this, poolName, KEY_BATCH_COUNT), batchCount.get());
 		stats.put(Utils.qualify(this, poolName, KEY_OBJECTS_LOGGED), loggedCount.get());
 		stats.put(Utils.qualify(this, poolName, KEY_EXCEPTION_COUNT), exceptionCount.get());
 		stats.put(Utils.qualify(this, poolName, KEY_RECOVERY_COUNT), recoveryCount.get());
@@ -168,6 +270,14 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		stats.put(Utils.qualify(this, poolName, KEY_LAST_SERVICE_TIME_USEC), lastServiceUsec.get());
 		stats.put(Utils.qualify(this, poolName, KEY_TOTAL_TIME_USEC), totalUsec.get());
 		stats.put(Utils.qualify(this, poolName, KEY_TOTAL_SERVICE_TIME_USEC), totalServiceUsec.get());
+		if (elastic) {
+			stats.put(Utils.qualify(this, poolName, KEY_Q_MIN_TASKS), minPoolSize);
+			stats.put(Utils.qualify(this, poolName, KEY_SCALE_UP_COUNT), scaleUpCount.get());
+			stats.put(Utils.qualify(this, poolName, KEY_SCALE_DOWN_COUNT), scaleDownCount.get());
+			stats.put(Utils.qualify(this, poolName, KEY_SCALE_THROUGHPUT), scaleThroughput);
+			stats.put(Utils.qualify(this, poolName, KEY_SCALE_DEMAND), scaleDemand);
+			stats.put(Utils.qualify(this, poolName, KEY_SCALE_LAST_DECISION), lastScaleDecision);
+		}
 		return this;
 	}
 
@@ -178,12 +288,15 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		reQCount.set(0);
 		signalCount.set(0);
 		totalCount.set(0);
+		batchCount.set(0);
 		totalServiceUsec.set(0);
 		lastServiceUsec.set(0);
 		loggedCount.set(0);
 		totalUsec.set(0);
 		recoveryCount.set(0);
 		exceptionCount.set(0);
+		scaleUpCount.set(0);
+		scaleDownCount.set(0);
 	}
 
 	/**
@@ -266,7 +379,14 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 * @return total number of messages waiting to be flushed
 	 */
 	public int getQSize() {
-		return eventQ.size();
+		if (partitionQ == null) {
+			return eventQ.size();
+		}
+		int size = 0;
+		for (BlockingQueue<SinkLogEvent> queue : partitionQ) {
+			size += queue.size();
+		}
+		return size;
 	}
 
 	/**
@@ -284,7 +404,7 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 * @return {@code true} if delay queue is full, {@code false} otherwise
 	 */
 	public boolean isDQfull() {
-		return delayQ.size() >= getCapacity();
+		return delayQ.isFull();
 	}
 
 	/**
@@ -293,7 +413,7 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 * @return {@code true} if event queue is full, {@code false} otherwise
 	 */
 	public boolean isQFull() {
-		return eventQ.size() >= getCapacity();
+		return getQSize() >= getCapacity() * getQueues().size();
 	}
 
 	/**
@@ -302,7 +422,152 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 * @return {@code true} if event queue is empty, {@code false} otherwise
 	 */
 	public boolean isEmpty() {
-		return eventQ.size() <= 0;
+		return getQSize() <= 0;
+	}
+
+	/**
+	 * Enable partitioned mode using a given set of queue partitions. Each event sink is bound to a single partition
+	 * (assigned by a stable hash of the sink) and each partition is served by a single dedicated thread, which preserves
+	 * per-sink write ordering and isolates sinks bound to different partitions from each other's backpressure. Must be
+	 * called before the logger is started.
+	 *
+	 * @param queues
+	 *            list of bounded queue partitions, one logging thread is started per partition
+	 */
+	public void setPartitions(List<BlockingQueue<SinkLogEvent>> queues) {
+		if (started) {
+			throw new IllegalStateException("Pooled logger already started: name=" + poolName);
+		}
+		if (queues == null || queues.isEmpty()) {
+			partitionQ = null;
+		} else {
+			partitionQ = new ArrayList<BlockingQueue<SinkLogEvent>>(queues);
+			eventQ = partitionQ.get(0);
+			poolSize = partitionQ.size();
+			for (BlockingQueue<SinkLogEvent> queue : partitionQ) {
+				watchShed(queue);
+			}
+		}
+	}
+
+	/**
+	 * Count events shed by priority lane queues as dropped.
+	 *
+	 * @param queue
+	 *            event queue
+	 */
+	private void watchShed(BlockingQueue<SinkLogEvent> queue) {
+		if (queue instanceof PriorityLaneQueue) {
+			((PriorityLaneQueue) queue).setShedListener(new SinkLogEventListener() {
+				@Override
+				public void sinkLogEvent(SinkLogEvent ev) {
+					dropCount.incrementAndGet();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Enable elastic mode, where number of logging threads is adjusted between a given minimum and pool size specified
+	 * at construction. Must be called before logger is started. Elastic mode is not applicable to partitioned loggers,
+	 * which always run one logging thread per partition.
+	 *
+	 * @param minSize
+	 *            minimum number of logging threads
+	 * @param intervalMs
+	 *            time in milliseconds between pool size adjustments
+	 */
+	public void setElastic(int minSize, long intervalMs) {
+		if (started) {
+			throw new IllegalStateException("Pooled logger already started: name=" + poolName);
+		}
+		minPoolSize = Math.max(1, Math.min(minSize, poolSize));
+		scaleIntervalMs = Math.max(1, intervalMs);
+		elastic = minPoolSize < poolSize;
+	}
+
+	/**
+	 * Determine if this logger runs in elastic mode.
+	 *
+	 * @return {@code true} if number of logging threads is adjusted dynamically, {@code false} otherwise
+	 */
+	public boolean isElastic() {
+		return elastic && partitionQ == null;
+	}
+
+	/**
+	 * Run logging threads as virtual threads when supported by the JVM. Must be called before logger is started. Has no
+	 * effect on JVMs without virtual thread support, where platform threads are used.
+	 *
+	 * @param virtual
+	 *            {@code true} to run logging threads as virtual threads, {@code false} to use platform threads
+	 * @return {@code true} if virtual threads will be used, {@code false} otherwise
+	 */
+	public boolean setVirtualThreads(boolean virtual) {
+		if (started) {
+			throw new IllegalStateException("Pooled logger already started: name=" + poolName);
+		}
+		virtualThreads = virtual && VirtualThreadFactory.isSupported();
+		if (virtual && !virtualThreads) {
+			logger.log(OpLevel.WARNING,
+					"Virtual threads not supported by JVM, using platform threads: name={0}, java.version={1}",
+					poolName, System.getProperty("java.version"));
+		}
+		return virtualThreads;
+	}
+
+	/**
+	 * Determine if logging threads run as virtual threads.
+	 *
+	 * @return {@code true} if logging threads are virtual, {@code false} otherwise
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * Obtain number of currently running logging threads.
+	 *
+	 * @return number of running logging threads
+	 */
+	public int getActiveTasks() {
+		return activeTasks.get();
+	}
+
+	/**
+	 * Determine if this logger runs in partitioned mode.
+	 *
+	 * @return {@code true} if events are partitioned by event sink, {@code false} otherwise
+	 */
+	public boolean isPartitioned() {
+		return partitionQ != null;
+	}
+
+	/**
+	 * Obtain all event queues served by this logger.
+	 *
+	 * @return list of event queues
+	 */
+	protected List<BlockingQueue<SinkLogEvent>> getQueues() {
+		return partitionQ != null ? partitionQ : Collections.singletonList(eventQ);
+	}
+
+	/**
+	 * Obtain event queue where a given event should be placed. In partitioned mode events are routed to the partition
+	 * selected by identity hash of the event sink, so a sink stays bound to the same partition for the lifetime of
+	 * this logger, even when closed and reopened. All events share the same queue otherwise.
+	 *
+	 * @param event
+	 *            logging event
+	 * @return event queue for a given event
+	 */
+	protected BlockingQueue<SinkLogEvent> getQueue(SinkLogEvent event) {
+		if (partitionQ == null) {
+			return eventQ;
+		}
+		int hash = System.identityHashCode(event.getEventSink());
+		hash ^= (hash >>> 16);
+		return partitionQ.get((hash & Integer.MAX_VALUE) % partitionQ.size());
 	}
 
 	/**
@@ -322,16 +587,28 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 * @return {@code true} if event is inserted/accepted {@code false} otherwise
 	 */
 	public boolean offer(SinkLogEvent event) {
-		boolean flag = false;
-		if (!shutdown || (event.getSignal() != null)) {
-			flag = eventQ.offer(event);
-		}
+		boolean flag = tryOffer(event);
 		if (!flag) {
 			dropCount.incrementAndGet();
 		}
 		return flag;
 	}
 
+	/**
+	 * Inserts the specified log event at the tail of this pooled logger. Rejected event is not counted as dropped, so
+	 * caller can keep it and retry later.
+	 *
+	 * @param event
+	 *            logging event
+	 * @return {@code true} if event is inserted/accepted {@code false} otherwise
+	 */
+	boolean tryOffer(SinkLogEvent event) {
+		if (!shutdown || (event.getSignal() != null)) {
+			return getQueue(event).offer(event);
+		}
+		return false;
+	}
+
 	/**
 	 * Inserts the specified log event at the tail of this pooled logger and block until insert is completed.
 	 *
@@ -342,7 +619,7 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 */
 	public void put(SinkLogEvent event) throws InterruptedException {
 		if (!shutdown || (event.getSignal() != null)) {
-			eventQ.put(event);
+			getQueue(event).put(event);
 		} else {
 			dropCount.incrementAndGet();
 			throw new InterruptedException("Unable to accept events: " + getName() + " is shutdown");
@@ -397,6 +674,26 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		this.retryInterval = retryInterval;
 	}
 
+	/**
+	 * Set maximum number of events drained from the queue and delivered to event sinks in a single batch. Batch size of
+	 * 1 (default) disables batching and each event is processed individually.
+	 *
+	 * @param size
+	 *            maximum number of events in a batch
+	 */
+	public void setBatchSize(int size) {
+		this.batchSize = Math.max(1, size);
+	}
+
+	/**
+	 * Obtain maximum number of events drained from the queue and delivered to event sinks in a single batch.
+	 *
+	 * @return maximum number of events in a batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	/**
 	 * Obtain event message from the queue
 	 *
@@ -405,7 +702,56 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 *             if interrupted while waiting
 	 */
 	protected SinkLogEvent takeEvent() throws InterruptedException {
-		return eventQ.take();
+		return takeEvent(eventQ);
+	}
+
+	/**
+	 * Obtain event message from a given queue
+	 *
+	 * @param queue
+	 *            event queue served by the calling task
+	 * @return sink event instance
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	protected SinkLogEvent takeEvent(BlockingQueue<SinkLogEvent> queue) throws InterruptedException {
+		return queue.take();
+	}
+
+	/**
+	 * Obtain a batch of event messages from the queue. Blocks until at least one event is available, then drains up to
+	 * {@code maxEvents} events without blocking.
+	 *
+	 * @param events
+	 *            list where obtained events are added
+	 * @param maxEvents
+	 *            maximum number of events to obtain
+	 * @return number of events obtained
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	protected int takeEvents(List<SinkLogEvent> events, int maxEvents) throws InterruptedException {
+		return takeEvents(eventQ, events, maxEvents);
+	}
+
+	/**
+	 * Obtain a batch of event messages from a given queue. Blocks until at least one event is available, then drains
+	 * up to {@code maxEvents} events without blocking.
+	 *
+	 * @param queue
+	 *            event queue served by the calling task
+	 * @param events
+	 *            list where obtained events are added
+	 * @param maxEvents
+	 *            maximum number of events to obtain
+	 * @return number of events obtained
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	protected int takeEvents(BlockingQueue<SinkLogEvent> queue, List<SinkLogEvent> events, int maxEvents)
+			throws InterruptedException {
+		events.add(queue.take());
+		return 1 + queue.drainTo(events, maxEvents - 1);
 	}
 
 	/**
@@ -416,8 +762,25 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 *             if interrupted while waiting
 	 */
 	protected SinkLogEvent takeDelayedEvent() throws InterruptedException {
-		DelayedElement<SinkLogEvent> elm = delayQ.take();
-		return elm.getElement();
+		List<SinkLogEvent> events = new ArrayList<SinkLogEvent>(1);
+		delayQ.takeExpired(events, 1);
+		return events.get(0);
+	}
+
+	/**
+	 * Obtain a batch of delayed event messages with expired retry interval. Blocks until at least one delayed event
+	 * expires.
+	 *
+	 * @param events
+	 *            list where obtained events are added
+	 * @param maxEvents
+	 *            maximum number of events to obtain
+	 * @return number of events obtained
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	protected int takeDelayedEvents(List<SinkLogEvent> events, int maxEvents) throws InterruptedException {
+		return delayQ.takeExpired(events, maxEvents);
 	}
 
 	/**
@@ -441,8 +804,12 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 *            time unit for duration
 	 */
 	public void putDelayed(SinkLogEvent event, long delay, TimeUnit unit) {
-		reQCount.incrementAndGet();
-		delayQ.put(new DelayedElement<SinkLogEvent>(event, unit.toMillis(delay)));
+		event.retain();
+		if (delayQ.offer(event, delay, unit)) {
+			reQCount.incrementAndGet();
+		} else {
+			dropCount.incrementAndGet();
+		}
 	}
 
 	/**
@@ -456,7 +823,7 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	private void skipEvent(SinkLogEvent event, Throwable ex) {
 		// add logic to handle skipped event
 		event.setException(ex);
-		if ((!dropOnError) && (delayQ.size() < capacity)) {
+		if ((!dropOnError) && !delayQ.isFull()) {
 			putDelayed(event);
 		} else {
 			skipCount.incrementAndGet();
@@ -535,6 +902,9 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 				close(event.getEventSink());
 			}
 		} finally {
+			if (event instanceof FlushSignal) {
+				((FlushSignal) event).release();
+			}
 			LockSupport.unpark(signal);
 		}
 	}
@@ -573,23 +943,34 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	 * @throws IOException
 	 */
 	private void sendEvent(SinkLogEvent event) {
-		Object sinkObject = event.getSinkObject();
-		EventSink outSink = event.getEventSink();
-
-		if (sinkObject instanceof TrackingEvent) {
-			outSink.log((TrackingEvent) sinkObject);
-		} else if (sinkObject instanceof TrackingActivity) {
-			outSink.log((TrackingActivity) sinkObject);
-		} else if (sinkObject instanceof Snapshot) {
-			outSink.log(event.getSnapshot());
-		} else if (event.getEventSource() != null) {
-			outSink.log(event.getTTL(), event.getEventSource(), event.getSeverity(), event.getResourceBundle(),
-					String.valueOf(sinkObject), event.getArguments());
+		AbstractEventSink.logEvent(event.getEventSink(), event);
+		loggedCount.incrementAndGet();
+	}
+
+	/**
+	 * Write a batch of events to the underlying event sink. All events in a batch must be bound to the same sink.
+	 * Events are written one by one to sinks not implementing {@link BatchEventSink}.
+	 *
+	 * @param events
+	 *            list of events bound to the same event sink
+	 * @throws IOException
+	 */
+	private void sendEvents(List<SinkLogEvent> events) throws IOException {
+		EventSink outSink = events.get(0).getEventSink();
+		if (isLoggable(outSink)) {
+			if (outSink instanceof BatchEventSink) {
+				((BatchEventSink) outSink).log(events);
+			} else {
+				for (SinkLogEvent event : events) {
+					AbstractEventSink.logEvent(outSink, event);
+				}
+			}
+			loggedCount.addAndGet(events.size());
 		} else {
-			outSink.log(event.getTTL(), outSink.getSource(), event.getSeverity(), event.getResourceBundle(),
-					String.valueOf(sinkObject), event.getArguments());
+			for (SinkLogEvent event : events) {
+				skipEvent(event, null);
+			}
 		}
-		loggedCount.incrementAndGet();
 	}
 
 	/**
@@ -633,7 +1014,7 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 	}
 
 	/**
-	 * Fully process a single event
+	 * Fully process a single event. Pooled event is recycled once processed, unless it is retained for retry.
 	 *
 	 * @param event
 	 *            event instance
@@ -643,10 +1024,87 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		try {
 			onEvent(event);
 		} catch (Throwable err) {
+			event.retain();
 			eventError(event, err);
 		} finally {
 			eventComplete(start, event);
 		}
+		event.recycle();
+	}
+
+	/**
+	 * Fully process a batch of events. Consecutive events bound to the same event sink are delivered to the sink as a
+	 * single batch, signals are processed individually in queue order. Pooled events are recycled once processed,
+	 * unless they are retained for retry.
+	 *
+	 * @param events
+	 *            list of event instances
+	 */
+	protected void processEvents(List<SinkLogEvent> events) {
+		int size = events.size();
+		int from = 0;
+		while (from < size) {
+			SinkLogEvent first = events.get(from);
+			int to = from + 1;
+			if (first.getSignal() == null) {
+				while (to < size && events.get(to).getSignal() == null
+						&& events.get(to).getEventSink() == first.getEventSink()) {
+					to++;
+				}
+			}
+			if (to - from == 1) {
+				processEvent(first);
+			} else {
+				processBatch(events.subList(from, to));
+			}
+			from = to;
+		}
+	}
+
+	/**
+	 * Process a batch of events bound to the same event sink
+	 *
+	 * @param events
+	 *            list of events bound to the same event sink
+	 */
+	private void processBatch(List<SinkLogEvent> events) {
+		long start = System.nanoTime();
+		try {
+			totalCount.addAndGet(events.size());
+			batchCount.incrementAndGet();
+			sendEvents(events);
+		} catch (Throwable err) {
+			for (SinkLogEvent event : events) {
+				event.retain();
+				eventError(event, err);
+			}
+		} finally {
+			batchComplete(start, events);
+		}
+		for (SinkLogEvent event : events) {
+			event.recycle();
+		}
+	}
+
+	/**
+	 * Batch processing completed
+	 *
+	 * @param start
+	 *            timer in nanoseconds
+	 * @param events
+	 *            list of event instances
+	 */
+	private long batchComplete(long start, List<SinkLogEvent> events) {
+		long stop = System.nanoTime();
+		long elaspedUsec = (stop - start) / 1000;
+		long serviceNanos = 0;
+		for (SinkLogEvent event : events) {
+			serviceNanos += event.complete(stop);
+		}
+		totalServiceUsec.addAndGet(serviceNanos / 1000);
+		lastServiceUsec.set(elaspedUsec / events.size());
+		totalUsec.addAndGet(elaspedUsec);
+		return elaspedUsec;
 	}
 
 	/**
@@ -656,16 +1114,113 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		if (started) {
 			return;
 		}
-		NamedThreadFactory tFactory = new NamedThreadFactory(
-				"PooledLoggingTask(" + poolName + "," + poolSize + "," + capacity + ")/task-");
-		threadPool = Executors.newFixedThreadPool((poolSize + 1), tFactory);
-		for (int i = 0; i < poolSize; i++) {
-			threadPool.execute(new PooledLoggingTask(this));
+		String prefix = "PooledLoggingTask(" + poolName + "," + poolSize + "," + capacity + ")/task-";
+		ThreadFactory tFactory = virtualThreads ? new VirtualThreadFactory(prefix) : new NamedThreadFactory(prefix);
+		if (isElastic()) {
+			threadPool = Executors.newCachedThreadPool(tFactory);
+			for (int i = 0; i < minPoolSize; i++) {
+				startTask(new PooledLoggingTask(this));
+			}
+			lastScaleTime = System.nanoTime();
+			retireTarget = minPoolSize;
+			scaleTask = threadPool.submit(new PoolScalingTask(this, scaleIntervalMs));
+		} else {
+			threadPool = Executors.newFixedThreadPool((poolSize + 1), tFactory);
+			if (partitionQ != null) {
+				for (BlockingQueue<SinkLogEvent> queue : partitionQ) {
+					startTask(new PooledLoggingTask(this, queue));
+				}
+			} else {
+				for (int i = 0; i < poolSize; i++) {
+					startTask(new PooledLoggingTask(this));
+				}
+			}
 		}
 		threadPool.execute(new DelayedLoggingTask(this));
 		started = true;
 	}
 
+	/**
+	 * Start a given logging task and account for it as active.
+	 *
+	 * @param task
+	 *            logging task to start
+	 */
+	private void startTask(PooledLoggingTask task) {
+		activeTasks.incrementAndGet();
+		try {
+			threadPool.execute(task);
+		} catch (RejectedExecutionException exc) {
+			activeTasks.decrementAndGet();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Adjust number of logging threads based on queue depth, queue growth, throughput and last service time observed
+	 * since previous invocation. Pool grows when backlog builds up or estimated demand exceeds number of active threads,
+	 * and shrinks one thread at a time when queue is drained and demand is below number of active threads. Threads are
+	 * retired by posting {@link SinkLogEvent#SIGNAL_TERMINATE} signals to the event queue. Scaling uses its own lock, so
+	 * it never waits for {@link #stop()}, and does nothing once logger is shut down.
+	 */
+	protected void scalePool() {
+		if (shutdown || !started) {
+			return;
+		}
+		synchronized (scaleLock) {
+			if (!shutdown) {
+				adjustPoolSize();
+			}
+		}
+	}
+
+	private void adjustPoolSize() {
+		long now = System.nanoTime();
+		long elapsed = Math.max(1, now - lastScaleTime);
+		long processed = totalCount.get();
+		long served = Math.max(0, processed - lastScaleCount);
+		int depth = getQSize();
+		int growth = depth - lastScaleDepth;
+		lastScaleTime = now;
+		lastScaleCount = processed;
+		lastScaleDepth = depth;
+
+		double throughput = served * 1e9 / elapsed;
+		double arrival = Math.max(0, throughput + growth * 1e9 / elapsed);
+		long svcUsec = lastServiceUsec.get();
+		int active = activeTasks.get();
+		int demand = svcUsec > 0 ? (int) Math.ceil(arrival * svcUsec / 1e6) : active;
+		scaleThroughput = throughput;
+		scaleDemand = demand;
+
+		int target = active;
+		if (depth > 0 && ((depth >= capacity * SCALE_UP_FILL && growth > 0) || demand > active)) {
+			target = Math.min(poolSize, Math.max(active + 1, demand));
+		} else if (depth <= capacity * SCALE_DOWN_FILL && demand < active && active <= retireTarget) {
+			target = Math.max(minPoolSize, active - 1);
+		}
+		if (target > active) {
+			for (int i = active; i < target; i++) {
+				startTask(new PooledLoggingTask(this));
+			}
+			retireTarget = target;
+			scaleUpCount.incrementAndGet();
+		} else if (target < active) {
+			if (!eventQ.offer(new SinkLogEvent(this, SinkLogEvent.SIGNAL_TERMINATE))) {
+				return;
+			}
+			// do not retire more threads until this one exits
+			retireTarget = target;
+			scaleDownCount.incrementAndGet();
+		} else {
+			return;
+		}
+		lastScaleDecision = (target > active ? "grow" : "shrink") + ": tasks=" + active + "->" + target + ", q.depth="
+				+ depth + ", q.growth=" + growth + ", eps=" + Math.round(throughput) + ", svc.usec=" + svcUsec
+				+ ", demand=" + demand;
+		logger.log(OpLevel.DEBUG, "Resizing pooled logger: name={0}, {1}", poolName, lastScaleDecision);
+	}
+
 	/**
 	 * Stop the the thread pool and all threads in this pooled logger.
 	 */
@@ -673,7 +1228,13 @@ public class PooledLogger implements KeyValueStats, IOShutdown {
 		if (threadPool == null) {
 			return;
 		}
-		threadPool.shutdown();
+		if (scaleTask != null) {
+			scaleTask.cancel(true);
+		}
+		synchronized (scaleLock) {
+			// wait for scaling in progress to complete, no new tasks are started after shutdown
+			threadPool.shutdown();
+		}
 		try {
 			threadPool.awaitTermination(20, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
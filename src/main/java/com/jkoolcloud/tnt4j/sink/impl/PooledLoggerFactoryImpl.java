@@ -15,13 +15,20 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.jkoolcloud.tnt4j.config.ConfigException;
 import com.jkoolcloud.tnt4j.config.Configurable;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.utils.RingBlockingQueue;
+import com.jkoolcloud.tnt4j.utils.RingBlockingQueue.WaitStrategy;
 import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
@@ -37,18 +44,45 @@ import com.jkoolcloud.tnt4j.utils.Utils;
 public class PooledLoggerFactoryImpl implements PooledLoggerFactory, Configurable {
 
 	public static final String DEFAULT_POOL_NAME = "default";
+	public static final String QUEUE_ARRAY = "array";
+	public static final String QUEUE_RING = "ring";
+	public static final String QUEUE_LANES = "lanes";
+	public static final String THREADS_PLATFORM = "platform";
+	public static final String THREADS_VIRTUAL = "virtual";
+
 	private static final int MAX_POOL_SIZE = Integer.getInteger("tnt4j.pooled.logger.pool", 4);
 	private static final int MAX_CAPACITY = Integer.getInteger("tnt4j.pooled.logger.capacity", 10000);
 	private static final int RETRY_INTERVAL = Integer.getInteger("tnt4j.pooled.logger.retry.interval", 5000);
+	private static final int BATCH_SIZE = Integer.getInteger("tnt4j.pooled.logger.batch.size", 1);
 	private static final boolean DROP_ON_EXCEPTION = Boolean.getBoolean("tnt4j.pooled.logger.drop.on.error");
+	private static final boolean PARTITIONED = Boolean.getBoolean("tnt4j.pooled.logger.partitioned");
+	private static final boolean ELASTIC = Boolean.getBoolean("tnt4j.pooled.logger.elastic");
+	private static final int MIN_POOL_SIZE = Integer.getInteger("tnt4j.pooled.logger.pool.min", 1);
+	private static final String LANE_WEIGHTS = System.getProperty("tnt4j.pooled.logger.lane.weights", "8,4,1");
+	private static final String LANE_CAPACITY = System.getProperty("tnt4j.pooled.logger.lane.capacity", "100,80,50");
+	private static final String THREAD_MODE = System.getProperty("tnt4j.pooled.logger.threads", THREADS_PLATFORM);
+	private static final int SCALE_INTERVAL = Integer.getInteger("tnt4j.pooled.logger.scale.interval.ms", 1000);
+	private static final String QUEUE_TYPE = System.getProperty("tnt4j.pooled.logger.queue", QUEUE_ARRAY);
+	private static final String WAIT_STRATEGY = System.getProperty("tnt4j.pooled.logger.queue.wait",
+			WaitStrategy.PARK.name());
 
 	private static final ConcurrentMap<String, PooledLogger> POOLED_LOGGERS = new ConcurrentHashMap<String, PooledLogger>();
 
 	int poolSize = MAX_POOL_SIZE;
 	int capacity = MAX_CAPACITY;
 	int retryInterval = RETRY_INTERVAL;
+	int batchSize = BATCH_SIZE;
 	boolean dropOnError = DROP_ON_EXCEPTION;
+	boolean partitioned = PARTITIONED;
+	boolean elastic = ELASTIC;
+	int minPoolSize = MIN_POOL_SIZE;
+	int scaleInterval = SCALE_INTERVAL;
+	String threadMode = THREAD_MODE;
+	String laneWeights = LANE_WEIGHTS;
+	String laneCapacity = LANE_CAPACITY;
 	String poolName = DEFAULT_POOL_NAME;
+	String queueType = QUEUE_TYPE;
+	WaitStrategy waitStrategy = WaitStrategy.valueOf(WAIT_STRATEGY, WaitStrategy.PARK);
 	protected Map<String, Object> props;
 
 	/**
@@ -95,16 +129,77 @@ public class PooledLoggerFactoryImpl implements PooledLoggerFactory, Configurabl
 		poolSize = Utils.getInt("Size", settings, MAX_POOL_SIZE);
 		capacity = Utils.getInt("Capacity", settings, MAX_CAPACITY);
 		retryInterval = Utils.getInt("RetryInterval", settings, RETRY_INTERVAL);
+		batchSize = Utils.getInt("BatchSize", settings, BATCH_SIZE);
 		dropOnError = Utils.getBoolean("DropOnError", settings, DROP_ON_EXCEPTION);
+		partitioned = Utils.getBoolean("Partitioned", settings, PARTITIONED);
+		elastic = Utils.getBoolean("Elastic", settings, ELASTIC);
+		minPoolSize = Utils.getInt("MinSize", settings, MIN_POOL_SIZE);
+		scaleInterval = Utils.getInt("ScaleInterval", settings, SCALE_INTERVAL);
+		threadMode = Utils.getString("Threads", settings, THREAD_MODE);
+		if (!THREADS_PLATFORM.equalsIgnoreCase(threadMode) && !THREADS_VIRTUAL.equalsIgnoreCase(threadMode)) {
+			throw new ConfigException("Unsupported thread mode: " + threadMode, settings);
+		}
+		laneWeights = Utils.getString("LaneWeights", settings, LANE_WEIGHTS);
+		laneCapacity = Utils.getString("LaneCapacity", settings, LANE_CAPACITY);
+		queueType = Utils.getString("Queue", settings, QUEUE_TYPE);
+		waitStrategy = WaitStrategy.valueOf(Utils.getString("WaitStrategy", settings, WAIT_STRATEGY),
+				WaitStrategy.PARK);
 		// create and register pooled logger instance if not yet available
-		PooledLogger pooledLogger = new PooledLogger(poolName, poolSize, capacity);
+		PooledLogger pooledLogger = new PooledLogger(poolName, poolSize, capacity, newEventQueue());
 		pooledLogger.dropOnError(dropOnError);
 		pooledLogger.setRetryInterval(retryInterval);
+		pooledLogger.setBatchSize(batchSize);
+		pooledLogger.setVirtualThreads(THREADS_VIRTUAL.equalsIgnoreCase(threadMode));
+		if (partitioned) {
+			List<BlockingQueue<SinkLogEvent>> partitions = new ArrayList<BlockingQueue<SinkLogEvent>>(poolSize);
+			partitions.add(pooledLogger.eventQ);
+			for (int i = 1; i < poolSize; i++) {
+				partitions.add(newEventQueue());
+			}
+			pooledLogger.setPartitions(partitions);
+		} else if (elastic) {
+			pooledLogger.setElastic(minPoolSize, scaleInterval);
+		}
 		if (POOLED_LOGGERS.putIfAbsent(poolName, pooledLogger) == null) {
 			pooledLogger.start();
 		}
 	}
 
+	/**
+	 * Create event queue used by pooled logger instances. Queue implementation is selected by {@code Queue}
+	 * configuration attribute: {@code array} (default) for a lock based {@link ArrayBlockingQueue}, {@code ring} for a
+	 * lock-free {@link RingBlockingQueue} using {@code WaitStrategy} ({@code spin}, {@code yield}, {@code park}),
+	 * {@code lanes} for a severity aware {@link PriorityLaneQueue} using {@code LaneWeights} and {@code LaneCapacity}
+	 * (percent of {@code Capacity}) given as comma separated values for high, normal and low severity lanes.
+	 *
+	 * @return new event queue instance
+	 * @throws ConfigException
+	 *             if queue type is not supported
+	 */
+	protected BlockingQueue<SinkLogEvent> newEventQueue() throws ConfigException {
+		if (QUEUE_RING.equalsIgnoreCase(queueType)) {
+			return new RingBlockingQueue<SinkLogEvent>(capacity, waitStrategy);
+		} else if (QUEUE_ARRAY.equalsIgnoreCase(queueType)) {
+			return new ArrayBlockingQueue<SinkLogEvent>(capacity);
+		} else if (QUEUE_LANES.equalsIgnoreCase(queueType)) {
+			try {
+				return new PriorityLaneQueue(capacity, toIntArray(laneWeights), toIntArray(laneCapacity));
+			} catch (IllegalArgumentException exc) {
+				throw new ConfigException(exc.getMessage(), props);
+			}
+		}
+		throw new ConfigException("Unsupported queue type: " + queueType, props);
+	}
+
+	private static int[] toIntArray(String values) {
+		String[] tokens = values.split(",");
+		int[] ints = new int[tokens.length];
+		for (int i = 0; i < tokens.length; i++) {
+			ints[i] = Integer.parseInt(tokens[i].trim());
+		}
+		return ints;
+	}
+
 	/**
 	 * Shuts down all pooled loggers.
 	 */
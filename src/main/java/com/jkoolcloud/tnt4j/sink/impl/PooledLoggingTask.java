@@ -15,6 +15,10 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
 import com.jkoolcloud.tnt4j.core.OpLevel;
 import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
 
@@ -25,17 +29,41 @@ import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
  * 
  * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#takeEvent()
  * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#processEvent(com.jkoolcloud.tnt4j.sink.SinkLogEvent)
+ * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#takeEvents(java.util.List, int)
+ * @see com.jkoolcloud.tnt4j.sink.impl.PooledLogger#processEvents(java.util.List)
  */
 class PooledLoggingTask extends AbstractPoolLoggingTask {
+	BlockingQueue<SinkLogEvent> eventQ;
+
 	protected PooledLoggingTask(PooledLogger logger) {
+		this(logger, logger.eventQ);
+	}
+
+	protected PooledLoggingTask(PooledLogger logger, BlockingQueue<SinkLogEvent> queue) {
 		super(logger);
+		eventQ = queue;
 	}
 
 	@Override
 	public void run() {
+		try {
+			if (pooledLogger.getBatchSize() > 1) {
+				runBatched(pooledLogger.getBatchSize());
+			} else {
+				runSingle();
+			}
+		} finally {
+			pooledLogger.activeTasks.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Take and process events one at a time.
+	 */
+	protected void runSingle() {
 		try {
 			while (!isCanceled()) {
-				SinkLogEvent event = pooledLogger.takeEvent();
+				SinkLogEvent event = pooledLogger.takeEvent(eventQ);
 				if (event.getSignalType() == SinkLogEvent.SIGNAL_TERMINATE) {
 					cancel();
 				} else {
@@ -47,4 +75,42 @@ class PooledLoggingTask extends AbstractPoolLoggingTask {
 					pooledLogger.exceptionCount.get(), e);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Drain and process events in batches of up to a given size.
+	 *
+	 * @param batchSize
+	 *            maximum number of events in a batch
+	 */
+	protected void runBatched(int batchSize) {
+		List<SinkLogEvent> batch = new ArrayList<SinkLogEvent>(batchSize);
+		List<SinkLogEvent> events = new ArrayList<SinkLogEvent>(batchSize);
+		try {
+			while (!isCanceled()) {
+				pooledLogger.takeEvents(eventQ, batch, batchSize);
+				SinkLogEvent terminate = null;
+				for (SinkLogEvent event : batch) {
+					if (event.getSignalType() != SinkLogEvent.SIGNAL_TERMINATE) {
+						events.add(event);
+					} else if (terminate == null) {
+						terminate = event;
+					} else {
+						// leave other terminate signals to other tasks
+						eventQ.offer(event);
+					}
+				}
+				batch.clear();
+				if (!events.isEmpty()) {
+					pooledLogger.processEvents(events);
+					events.clear();
+				}
+				if (terminate != null) {
+					cancel();
+				}
+			}
+		} catch (Throwable e) {
+			PooledLogger.logger.log(OpLevel.WARNING, "Interrupted during processing: shutting down: error.count={0}",
+					pooledLogger.exceptionCount.get(), e);
+		}
+	}
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.sink.SinkLogEventListener;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+
+/**
+ * This class implements a bounded {@link BlockingQueue} of sink log events split into severity lanes:
+ * <ul>
+ * <li>{@link #LANE_HIGH} - {@link OpLevel#ERROR} and above</li>
+ * <li>{@link #LANE_NORMAL} - {@link OpLevel#INFO} to {@link OpLevel#WARNING}, events without severity</li>
+ * <li>{@link #LANE_LOW} - {@link OpLevel#DEBUG} and {@link OpLevel#TRACE}</li>
+ * </ul>
+ * Lanes are drained using weighted round robin, so high severity events are served first without starving lower lanes.
+ * Each lane is bounded by its own capacity and all lanes share total queue capacity. When total capacity is exceeded,
+ * the oldest event from the lowest non-empty lane below the lane of the incoming event is shed to make room, so low
+ * severity events are dropped first. Shed events are reported to a listener set by
+ * {@link #setShedListener(SinkLogEventListener)}.
+ * <p>
+ * Signals (flush, close, shutdown) are not placed into lanes, they act as barriers: a signal is dequeued as soon as all
+ * events enqueued before it are dequeued, and events enqueued after a pending signal are not dequeued before it. So a
+ * flush signal is processed after all preceding events are written, regardless of their lanes. Signals are never
+ * shed.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see PooledLogger
+ */
+public class PriorityLaneQueue extends AbstractQueue<SinkLogEvent> implements BlockingQueue<SinkLogEvent> {
+	public static final int LANE_HIGH = 0;
+	public static final int LANE_NORMAL = 1;
+	public static final int LANE_LOW = 2;
+	public static final int LANE_COUNT = 3;
+
+	private final int capacity;
+	private final int[] laneCapacity = new int[LANE_COUNT];
+	private final int[] weights = new int[LANE_COUNT];
+	private final int[] credits = new int[LANE_COUNT];
+	private final List<ArrayDeque<Entry>> lanes = new ArrayList<ArrayDeque<Entry>>(LANE_COUNT);
+	private final ArrayDeque<Entry> signals = new ArrayDeque<Entry>();
+	private final AtomicLong[] shedCount = new AtomicLong[LANE_COUNT];
+	private volatile SinkLogEventListener shedListener;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private int count = 0;
+	private long nextSeq = 0;
+
+	private static final class Entry {
+		final SinkLogEvent event;
+		final long seq;
+
+		Entry(SinkLogEvent event, long seq) {
+			this.event = event;
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * Create a lane queue with a given total capacity, default lane weights (8, 4, 1) and default lane capacities (100%,
+	 * 80%, 50% of total capacity).
+	 *
+	 * @param capacity
+	 *            maximum number of events in all lanes
+	 */
+	public PriorityLaneQueue(int capacity) {
+		this(capacity, new int[] { 8, 4, 1 }, new int[] { 100, 80, 50 });
+	}
+
+	/**
+	 * Create a lane queue with a given total capacity, lane weights and lane capacities.
+	 *
+	 * @param capacity
+	 *            maximum number of events in all lanes
+	 * @param laneWeights
+	 *            number of events drained from each lane per round, indexed by lane
+	 * @param lanePercent
+	 *            capacity of each lane as percentage of total capacity, indexed by lane
+	 */
+	public PriorityLaneQueue(int capacity, int[] laneWeights, int[] lanePercent) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: capacity=" + capacity);
+		}
+		if (laneWeights.length != LANE_COUNT || lanePercent.length != LANE_COUNT) {
+			throw new IllegalArgumentException("Expected " + LANE_COUNT + " lane weights and capacities: weights="
+					+ Arrays.toString(laneWeights) + ", capacities=" + Arrays.toString(lanePercent));
+		}
+		this.capacity = capacity;
+		for (int i = 0; i < LANE_COUNT; i++) {
+			weights[i] = Math.max(1, laneWeights[i]);
+			credits[i] = weights[i];
+			laneCapacity[i] = (int) Math.max(1, Math.min(capacity, (long) capacity * lanePercent[i] / 100));
+			lanes.add(new ArrayDeque<Entry>());
+			shedCount[i] = new AtomicLong(0);
+		}
+	}
+
+	/**
+	 * Set listener notified about events shed from lanes to make room for higher severity events. Listener is called
+	 * while queue lock is held and must not block.
+	 *
+	 * @param listener
+	 *            shed event listener, {@code null} to remove
+	 */
+	public void setShedListener(SinkLogEventListener listener) {
+		shedListener = listener;
+	}
+
+	/**
+	 * Determine if a given event is a signal, which is queued as a barrier instead of a lane.
+	 *
+	 * @param event
+	 *            sink log event
+	 * @return {@code true} if event is a signal, {@code false} otherwise
+	 */
+	public static boolean isSignal(SinkLogEvent event) {
+		return event.getSignalType() != SinkLogEvent.SIGNAL_PROCESS;
+	}
+
+	/**
+	 * Obtain lane index for a given event. Severity of tracking activities is taken from the activity itself.
+	 *
+	 * @param event
+	 *            sink log event
+	 * @return lane index
+	 */
+	public static int getLane(SinkLogEvent event) {
+		Object obj = event.getSinkObject();
+		OpLevel sev = obj instanceof TrackingActivity ? ((TrackingActivity) obj).getSeverity() : event.getSeverity();
+		if (sev == null || sev == OpLevel.NONE) {
+			return LANE_NORMAL;
+		} else if (sev.ordinal() >= OpLevel.ERROR.ordinal()) {
+			return LANE_HIGH;
+		} else if (sev.ordinal() >= OpLevel.INFO.ordinal()) {
+			return LANE_NORMAL;
+		} else {
+			return LANE_LOW;
+		}
+	}
+
+	/**
+	 * Obtain maximum number of events in all lanes.
+	 *
+	 * @return total capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Obtain number of pending signals.
+	 *
+	 * @return number of pending signals
+	 */
+	public int getSignalCount() {
+		lock.lock();
+		try {
+			return signals.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Obtain number of events in a given lane.
+	 *
+	 * @param lane
+	 *            lane index
+	 * @return number of events in lane
+	 */
+	public int size(int lane) {
+		lock.lock();
+		try {
+			return lanes.get(lane).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Obtain number of events shed from a given lane to make room for higher severity events.
+	 *
+	 * @param lane
+	 *            lane index
+	 * @return number of shed events
+	 */
+	public long getShedCount(int lane) {
+		return shedCount[lane].get();
+	}
+
+	/**
+	 * Obtain total number of events shed from all lanes.
+	 *
+	 * @return number of shed events
+	 */
+	public long getShedCount() {
+		long total = 0;
+		for (AtomicLong shed : shedCount) {
+			total += shed.get();
+		}
+		return total;
+	}
+
+	@Override
+	public boolean offer(SinkLogEvent e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			return enqueue(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(SinkLogEvent e) throws InterruptedException {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		lock.lockInterruptibly();
+		try {
+			while (!enqueue(e)) {
+				notFull.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(SinkLogEvent e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (!enqueue(e)) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public SinkLogEvent poll() {
+		lock.lock();
+		try {
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public SinkLogEvent take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public SinkLogEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public SinkLogEvent peek() {
+		lock.lock();
+		try {
+			Entry barrier = signals.peekFirst();
+			if (barrier != null && !hasEarlier(barrier.seq)) {
+				return barrier.event;
+			}
+			long limit = barrier != null ? barrier.seq : Long.MAX_VALUE;
+			for (ArrayDeque<Entry> lane : lanes) {
+				Entry head = lane.peekFirst();
+				if (head != null && head.seq < limit) {
+					return head.event;
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super SinkLogEvent> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super SinkLogEvent> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			int n = 0;
+			SinkLogEvent e;
+			while (n < maxElements && (e = dequeue()) != null) {
+				c.add(e);
+				n++;
+			}
+			return n;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			for (ArrayDeque<Entry> lane : lanes) {
+				lane.clear();
+			}
+			signals.clear();
+			count = 0;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of events currently in the queue, ordered by lane and followed by pending
+	 * signals. The iterator does not support removal.
+	 *
+	 * @return iterator over queue elements
+	 */
+	@Override
+	public Iterator<SinkLogEvent> iterator() {
+		lock.lock();
+		try {
+			List<SinkLogEvent> snapshot = new ArrayList<SinkLogEvent>(count);
+			for (ArrayDeque<Entry> lane : lanes) {
+				for (Entry entry : lane) {
+					snapshot.add(entry.event);
+				}
+			}
+			for (Entry entry : signals) {
+				snapshot.add(entry.event);
+			}
+			return Collections.unmodifiableList(snapshot).iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean enqueue(SinkLogEvent e) {
+		if (isSignal(e)) {
+			if (count >= capacity) {
+				return false;
+			}
+			signals.addLast(new Entry(e, nextSeq++));
+			count++;
+			notEmpty.signal();
+			return true;
+		}
+		int laneIdx = getLane(e);
+		ArrayDeque<Entry> lane = lanes.get(laneIdx);
+		if (lane.size() >= laneCapacity[laneIdx]) {
+			return false;
+		}
+		if (count >= capacity && !shed(laneIdx)) {
+			return false;
+		}
+		lane.addLast(new Entry(e, nextSeq++));
+		count++;
+		notEmpty.signal();
+		return true;
+	}
+
+	private boolean shed(int laneIdx) {
+		for (int i = LANE_COUNT - 1; i > laneIdx; i--) {
+			Entry entry = lanes.get(i).pollFirst();
+			if (entry != null) {
+				count--;
+				shedCount[i].incrementAndGet();
+				SinkLogEventListener listener = shedListener;
+				if (listener != null) {
+					listener.sinkLogEvent(entry.event);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determine if any lane holds an event enqueued before a given sequence number.
+	 */
+	private boolean hasEarlier(long seq) {
+		for (ArrayDeque<Entry> lane : lanes) {
+			Entry head = lane.peekFirst();
+			if (head != null && head.seq < seq) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private SinkLogEvent dequeue() {
+		if (count == 0) {
+			return null;
+		}
+		Entry barrier = signals.peekFirst();
+		if (barrier != null && !hasEarlier(barrier.seq)) {
+			signals.pollFirst();
+			return taken(barrier);
+		}
+		// only events enqueued before pending signal are eligible
+		long limit = barrier != null ? barrier.seq : Long.MAX_VALUE;
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < LANE_COUNT; i++) {
+				ArrayDeque<Entry> lane = lanes.get(i);
+				Entry head = lane.peekFirst();
+				if (credits[i] > 0 && head != null && head.seq < limit) {
+					credits[i]--;
+					return taken(lane.pollFirst());
+				}
+			}
+			// all eligible lanes used up their share, start a new round
+			System.arraycopy(weights, 0, credits, 0, LANE_COUNT);
+		}
+		return null;
+	}
+
+	private SinkLogEvent taken(Entry entry) {
+		count--;
+		if (lock.hasWaiters(notFull)) {
+			// waiters may wait for different lanes
+			notFull.signalAll();
+		}
+		return entry.event;
+	}
+
+	@Override
+	public String toString() {
+		lock.lock();
+		try {
+			return getClass().getSimpleName() + "{capacity: " + capacity + ", size: " + count + ", lanes: ["
+					+ lanes.get(LANE_HIGH).size() + ", " + lanes.get(LANE_NORMAL).size() + ", "
+					+ lanes.get(LANE_LOW).size() + "], signals: " + signals.size() + ", weights: "
+					+ Arrays.toString(weights) + ", shed: " + getShedCount() + "}";
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -15,6 +15,7 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
@@ -119,7 +120,7 @@ public class SocketEventSink extends AbstractEventSink {
 	@Override
 	public synchronized void open() throws IOException {
 		socketSink = new Socket(hostName, portNo);
-		outStream = new DataOutputStream(socketSink.getOutputStream());
+		outStream = new DataOutputStream(new BufferedOutputStream(socketSink.getOutputStream()));
 		if (logSink != null) {
 			logSink.open();
 		}
@@ -132,6 +133,11 @@ public class SocketEventSink extends AbstractEventSink {
 		}
 	}
 
+	@Override
+	protected void _flushBatch() throws IOException {
+		flush();
+	}
+
 	@Override
 	public synchronized void close() throws IOException {
 		try {
@@ -174,7 +180,9 @@ public class SocketEventSink extends AbstractEventSink {
 			if (!msg.endsWith("\n")) {
 				outStream.write('\n');
 			}
-			outStream.flush();
+			if (!isBatching()) {
+				outStream.flush();
+			}
 		} catch (IOException e) {
 			if (retrying) {
 				throw e;
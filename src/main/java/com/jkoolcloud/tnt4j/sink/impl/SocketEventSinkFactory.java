@@ -15,10 +15,15 @@
  */
 package com.jkoolcloud.tnt4j.sink.impl;
 
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import com.jkoolcloud.tnt4j.config.ConfigException;
+import com.jkoolcloud.tnt4j.format.CBORFormatter;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
 import com.jkoolcloud.tnt4j.format.JSONFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSinkFactory;
@@ -48,6 +53,27 @@ public class SocketEventSinkFactory extends AbstractEventSinkFactory {
 
 	private EventSinkFactory eventSinkFactory = DefaultEventSinkFactory.getInstance();
 
+	private boolean nio = false;
+	private int bufferSize = 64 * 1024;
+	private int sendThreshold = 16 * 1024;
+	private long linger = 5;
+	private long writeTimeout = 500;
+	private int connectTimeout = 10000;
+	private long reconnectMin = 100;
+	private long reconnectMax = 30000;
+
+	private String endpoints = null;
+	private List<InetSocketAddress> endpointList = null;
+	private int connections = 1;
+	private long ejectTime = 5000;
+	private NioSocketPool.Balance balance = NioSocketPool.Balance.ROUND_ROBIN;
+
+	private boolean framed = false;
+	private int compressLevel = 6;
+	private int compressMin = 256;
+
+	private int columnarBatchSize = 0;
+
 	/**
 	 * Create a socket event sink factory. Same as {@code SocketEventSinkFactory("localhost", 6400)}.
 	 * 
@@ -82,20 +108,19 @@ public class SocketEventSinkFactory extends AbstractEventSinkFactory {
 
 	@Override
 	public EventSink getEventSink(String name) {
-		return configureSink(new SocketEventSink(name, hostName, port, new JSONFormatter(false),
+		return configureSink(newSocketSink(name, new JSONFormatter(false),
 				eventSinkFactory.getEventSink(name, System.getProperties(), new JSONFormatter())));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props) {
-		return configureSink(new SocketEventSink(name, hostName, port, new JSONFormatter(false),
+		return configureSink(newSocketSink(name, new JSONFormatter(false),
 				eventSinkFactory.getEventSink(name, props, new JSONFormatter())));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
-		return configureSink(
-				new SocketEventSink(name, hostName, port, frmt, eventSinkFactory.getEventSink(name, props, frmt)));
+		return configureSink(newSocketSink(name, frmt, eventSinkFactory.getEventSink(name, props, frmt)));
 	}
 
 	/**
@@ -115,7 +140,42 @@ public class SocketEventSinkFactory extends AbstractEventSinkFactory {
 	 * @see EventFormatter
 	 */
 	public EventSink getEventSink(String name, Properties props, EventFormatter frmt, EventSink pipedSink) {
-		return configureSink(new SocketEventSink(name, hostName, port, frmt, pipedSink));
+		return configureSink(newSocketSink(name, frmt, pipedSink));
+	}
+
+	/**
+	 * Create socket event sink instance: {@link NioSocketEventSink} when {@code SocketMode=nio}, {@code Endpoints}
+	 * are defined, {@code Protocol=framed} or {@code ColumnarBatchSize} is set, {@link SocketEventSink} otherwise.
+	 * Non-blocking sinks writing binary records ({@link CBORFormatter}) always use the framed protocol, since binary
+	 * records may contain newlines.
+	 *
+	 * @param name
+	 *            name of the category associated with the event log
+	 * @param frmt
+	 *            event formatter object to format events before writing to log
+	 * @param pipedSink
+	 *            piped sink used to route events
+	 * @return event sink instance
+	 */
+	protected EventSink newSocketSink(String name, EventFormatter frmt, EventSink pipedSink) {
+		if (nio || endpoints != null || framed || columnarBatchSize > 0) {
+			boolean framing = framed || frmt instanceof CBORFormatter;
+			String targets = endpoints != null ? endpoints : hostName + ":" + port;
+			List<InetSocketAddress> addresses = endpointList != null ? endpointList
+					: Collections.singletonList(InetSocketAddress.createUnresolved(hostName, port));
+			List<NioSocketWriter> writers = new ArrayList<NioSocketWriter>();
+			for (InetSocketAddress address : addresses) {
+				for (int i = 0; i < connections; i++) {
+					writers.add(new NioSocketWriter(address.getHostString(), address.getPort())
+							.setBufferSize(bufferSize, sendThreshold).setLinger(linger).setWriteTimeout(writeTimeout)
+							.setReconnect(connectTimeout, reconnectMin, reconnectMax)
+							.setFraming(framing ? new FrameEncoder(compressLevel, compressMin) : null));
+				}
+			}
+			NioSocketPool pool = new NioSocketPool(writers, balance).setEjectTime(ejectTime);
+			return new NioSocketEventSink(name, targets, pool, frmt, pipedSink).setColumnarBatchSize(columnarBatchSize);
+		}
+		return new SocketEventSink(name, hostName, port, frmt, pipedSink);
 	}
 
 	@Override
@@ -123,8 +183,72 @@ public class SocketEventSinkFactory extends AbstractEventSinkFactory {
 		super.setConfiguration(settings);
 		hostName = Utils.getString("Host", settings, hostName);
 		port = Utils.getInt("Port", settings, port);
+		nio = "nio".equalsIgnoreCase(Utils.getString("SocketMode", settings, nio ? "nio" : "stream"));
+		bufferSize = Utils.getInt("BufferSize", settings, bufferSize);
+		sendThreshold = Utils.getInt("SendThreshold", settings, sendThreshold);
+		linger = Utils.getLong("Linger", settings, linger);
+		writeTimeout = Utils.getLong("WriteTimeout", settings, writeTimeout);
+		connectTimeout = Utils.getInt("ConnectTimeout", settings, connectTimeout);
+		reconnectMin = Utils.getLong("ReconnectMinDelay", settings, reconnectMin);
+		reconnectMax = Utils.getLong("ReconnectMaxDelay", settings, reconnectMax);
+		endpoints = Utils.getString("Endpoints", settings, endpoints);
+		endpointList = endpoints != null ? parseEndpoints(endpoints, settings) : null;
+		connections = Math.max(1, Utils.getInt("Connections", settings, connections));
+		ejectTime = Utils.getLong("EjectTime", settings, ejectTime);
+		String balanceName = Utils.getString("Balance", settings, balance.name());
+		try {
+			balance = NioSocketPool.Balance.valueOf(balanceName.trim().toUpperCase());
+		} catch (IllegalArgumentException exc) {
+			throw new ConfigException("Unsupported balance policy: Balance=" + balanceName, settings);
+		}
+		framed = "framed".equalsIgnoreCase(Utils.getString("Protocol", settings, framed ? "framed" : "line"));
+		compressLevel = Utils.getInt("CompressLevel", settings, compressLevel);
+		compressMin = Utils.getInt("CompressMin", settings, compressMin);
+		columnarBatchSize = Utils.getInt("ColumnarBatchSize", settings, columnarBatchSize);
+		if (columnarBatchSize > 0 && !framed) {
+			// columnar batches are binary, newline terminated lines would corrupt them
+			String protocol = Utils.getString("Protocol", settings, null);
+			if (protocol != null) {
+				throw new ConfigException("Columnar batches require framed protocol: ColumnarBatchSize="
+						+ columnarBatchSize + ", Protocol=" + protocol, settings);
+			}
+			framed = true;
+		}
 		eventSinkFactory = (EventSinkFactory) Utils.createConfigurableObject("eventSinkFactory", "eventSinkFactory.",
 				settings);
 		eventSinkFactory = eventSinkFactory == null ? DefaultEventSinkFactory.getInstance() : eventSinkFactory;
 	}
+
+	/**
+	 * Parse comma separated list of {@code host[:port]} endpoints. Endpoints without a port use configured
+	 * {@code Port}.
+	 *
+	 * @param targets
+	 *            comma separated list of endpoints
+	 * @param settings
+	 *            configuration settings
+	 * @return list of unresolved endpoint addresses
+	 * @throws ConfigException
+	 *             if an endpoint is empty or has an invalid port
+	 */
+	private List<InetSocketAddress> parseEndpoints(String targets, Map<String, Object> settings)
+			throws ConfigException {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (String endpoint : targets.split(",")) {
+			endpoint = endpoint.trim();
+			int idx = endpoint.lastIndexOf(':');
+			String host = idx >= 0 ? endpoint.substring(0, idx).trim() : endpoint;
+			if (host.isEmpty()) {
+				throw new ConfigException("Invalid endpoint: Endpoints=" + targets, settings);
+			}
+			try {
+				int portNo = idx >= 0 ? Integer.parseInt(endpoint.substring(idx + 1).trim()) : port;
+				addresses.add(InetSocketAddress.createUnresolved(host, portNo));
+			} catch (IllegalArgumentException exc) {
+				throw new ConfigException("Invalid endpoint port: endpoint=" + endpoint + ", Endpoints=" + targets,
+						settings);
+			}
+		}
+		return addresses;
+	}
 }
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.MappedSpillQueue;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * This class implements an overflow tier for {@link BufferedEventSink}. Events which do not fit into the pooled logger
+ * queue are appended to a {@link MappedSpillQueue} and replayed into the pooled logger in order once queue space
+ * becomes available.
+ * <p>
+ * Log message events (severity, TTL, source, message pattern and arguments) are encoded into spill records, throwable
+ * arguments are encoded as text (class name, message, stack trace and causes) and decoded as {@link SpilledThrowable}.
+ * Spilled log messages survive restarts, see {@link MappedSpillQueue}. Tracking events, activities, snapshots and
+ * flush/close signals can not be encoded; they are kept on heap (up to a given maximum) and only a reference is
+ * spilled, so they are replayed in order with log messages. Referenced events are lost on restart.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see BufferedEventSink
+ */
+class SpillEventQueue {
+	private static final byte RECORD_MESSAGE = 2;
+	private static final byte RECORD_OBJECT = 3;
+	private static final byte ARG_NULL = 0;
+	private static final byte ARG_STRING = 1;
+	private static final byte ARG_THROWABLE = 2;
+	private static final int MAX_CAUSE_DEPTH = 8;
+
+	final MappedSpillQueue queue;
+	final EventSink outSink;
+	final int maxObjects;
+	final ConcurrentMap<String, Source> sources = new ConcurrentHashMap<String, Source>();
+	final ConcurrentMap<Long, SinkLogEvent> objects = new ConcurrentHashMap<Long, SinkLogEvent>();
+	final AtomicLong objectSeq = new AtomicLong(0);
+	boolean closed = false;
+
+	AtomicLong spillCount = new AtomicLong(0);
+	AtomicLong replayCount = new AtomicLong(0);
+	AtomicLong lostCount = new AtomicLong(0);
+
+	/**
+	 * Create a spill queue for a given out sink.
+	 *
+	 * @param sink
+	 *            out sink replayed events are bound to
+	 * @param queue
+	 *            spill queue storing serialized events
+	 * @param maxObjects
+	 *            maximum number of spilled events kept on heap
+	 */
+	SpillEventQueue(EventSink sink, MappedSpillQueue queue, int maxObjects) {
+		this.outSink = sink;
+		this.queue = queue;
+		this.maxObjects = maxObjects;
+	}
+
+	/**
+	 * Determine if a given event can be encoded into a spill record, which survives restarts.
+	 *
+	 * @param event
+	 *            sink log event
+	 * @return {@code true} if event can be encoded, {@code false} otherwise
+	 */
+	static boolean isEncodable(SinkLogEvent event) {
+		Object obj = event.getSinkObject();
+		return event.getSignalType() == SinkLogEvent.SIGNAL_PROCESS && obj != null
+				&& !(obj instanceof TrackingEvent || obj instanceof TrackingActivity || obj instanceof Snapshot
+						|| obj instanceof Thread);
+	}
+
+	/**
+	 * Determine if a given event can be spilled. All events except shutdown and terminate signals can be spilled.
+	 *
+	 * @param event
+	 *            sink log event
+	 * @return {@code true} if event can be spilled, {@code false} otherwise
+	 */
+	static boolean isSpillable(SinkLogEvent event) {
+		int type = event.getSignalType();
+		return type == SinkLogEvent.SIGNAL_PROCESS || type == SinkLogEvent.SIGNAL_FLUSH
+				|| type == SinkLogEvent.SIGNAL_CLOSE;
+	}
+
+	/**
+	 * Determine if spill queue is empty.
+	 *
+	 * @return {@code true} if there are no spilled events, {@code false} otherwise
+	 */
+	boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Append event at the tail of spill queue. Encoded events are recycled, other events are kept on heap until
+	 * replayed.
+	 *
+	 * @param event
+	 *            sink log event
+	 * @return {@code true} if event was spilled, {@code false} if event is not spillable or spill queue is full
+	 */
+	boolean offer(SinkLogEvent event) {
+		if (!isSpillable(event)) {
+			return false;
+		}
+		try {
+			if (isEncodable(event)) {
+				if (queue.offer(encode(event))) {
+					spillCount.incrementAndGet();
+					event.recycle();
+					return true;
+				}
+			} else if (objects.size() < maxObjects) {
+				Long id = objectSeq.incrementAndGet();
+				objects.put(id, event);
+				if (queue.offer(encodeObject(id))) {
+					spillCount.incrementAndGet();
+					return true;
+				}
+				objects.remove(id);
+			}
+		} catch (IOException exc) {
+			PooledLogger.logger.log(OpLevel.ERROR, "Failed to spill event: sink={0}, queue={1}", outSink.getName(),
+					queue, exc);
+		}
+		return false;
+	}
+
+	/**
+	 * Replay spilled events into a pooled logger in order, until either spill queue is empty or pooled logger queue is
+	 * full. Replays are exclusive, since the head record is peeked and removed in separate steps. Nothing is replayed
+	 * once spill queue is closed.
+	 *
+	 * @param logger
+	 *            pooled logger where events are replayed
+	 * @return number of replayed events
+	 */
+	synchronized int replay(PooledLogger logger) {
+		int count = 0;
+		byte[] record;
+		while (!closed && (record = queue.peek()) != null) {
+			SinkLogEvent event;
+			try {
+				event = decode(record);
+			} catch (Throwable exc) {
+				event = null;
+			}
+			if (event == null) {
+				lostCount.incrementAndGet();
+				remove(record);
+				continue;
+			}
+			if (!logger.tryOffer(event)) {
+				break;
+			}
+			remove(record);
+			count++;
+		}
+		replayCount.addAndGet(count);
+		return count;
+	}
+
+	private void remove(byte[] record) {
+		queue.remove();
+		if (record.length > 0 && record[0] == RECORD_OBJECT) {
+			try {
+				objects.remove(readObjectId(record));
+			} catch (IOException exc) {
+			}
+		}
+	}
+
+	/**
+	 * Close spill queue. Spilled log messages are kept in spill files and recovered by the next spill queue created
+	 * with the same directory and prefix, events kept on heap are discarded. Waits for a replay in progress to complete.
+	 *
+	 * @return number of discarded events
+	 */
+	synchronized long close() {
+		if (closed) {
+			return 0;
+		}
+		closed = true;
+		long discarded = objects.size();
+		objects.clear();
+		lostCount.addAndGet(discarded);
+		queue.close();
+		return discarded;
+	}
+
+	byte[] encode(SinkLogEvent event) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		Source src = event.getEventSource();
+		String fqn = "";
+		if (src != null) {
+			fqn = src.getFQName();
+			if (!sources.containsKey(fqn)) {
+				sources.putIfAbsent(fqn, src);
+			}
+		}
+		out.writeByte(RECORD_MESSAGE);
+		out.writeLong(event.getTTL());
+		out.writeByte(event.getSeverity().ordinal());
+		writeString(out, fqn);
+		writeString(out, Utils.getString(event.getResourceBundle(), event.getSinkObject()));
+		Object[] args = event.getArguments();
+		out.writeInt(args == null ? -1 : args.length);
+		if (args != null) {
+			for (Object arg : args) {
+				if (arg == null) {
+					out.writeByte(ARG_NULL);
+				} else if (arg instanceof Throwable) {
+					out.writeByte(ARG_THROWABLE);
+					writeThrowable(out, (Throwable) arg, 0);
+				} else {
+					out.writeByte(ARG_STRING);
+					writeString(out, String.valueOf(arg));
+				}
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] encodeObject(long id) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(9);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(RECORD_OBJECT);
+		out.writeLong(id);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static long readObjectId(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		in.readByte();
+		return in.readLong();
+	}
+
+	/**
+	 * Decode a spill record.
+	 *
+	 * @param record
+	 *            spill record
+	 * @return decoded event, {@code null} if record references an event which is no longer kept on heap
+	 * @throws IOException
+	 *             if record is malformed
+	 */
+	SinkLogEvent decode(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		byte type = in.readByte();
+		if (type == RECORD_OBJECT) {
+			return objects.get(in.readLong());
+		}
+		if (type != RECORD_MESSAGE) {
+			throw new IOException("Unsupported spill record type: " + type);
+		}
+		long ttl = in.readLong();
+		int level = in.readByte();
+		if (level < 0 || level >= OpLevel.values().length) {
+			throw new IOException("Invalid spill record severity: " + level);
+		}
+		OpLevel sev = OpLevel.values()[level];
+		String fqn = readString(in);
+		String msg = readString(in);
+		int argc = in.readInt();
+		Object[] args = null;
+		if (argc > in.available()) {
+			throw new IOException("Invalid spill record argument count: " + argc);
+		}
+		if (argc >= 0) {
+			args = new Object[argc];
+			for (int i = 0; i < argc; i++) {
+				byte argType = in.readByte();
+				if (argType == ARG_STRING) {
+					args[i] = readString(in);
+				} else if (argType == ARG_THROWABLE) {
+					args[i] = readThrowable(in, 0);
+				}
+			}
+		}
+		return new SinkLogEvent(outSink, getSource(fqn), sev, ttl, msg, args);
+	}
+
+	private Source getSource(String fqn) {
+		if (fqn == null || fqn.isEmpty()) {
+			return null;
+		}
+		Source src = sources.get(fqn);
+		return src != null ? src : DefaultSourceFactory.getInstance().fromFQN(fqn);
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] buf = str.getBytes(Utils.UTF8);
+		out.writeInt(buf.length);
+		out.write(buf);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if (len < 0) {
+			return null;
+		}
+		if (len > in.available()) {
+			throw new IOException("Invalid spill record string length: " + len);
+		}
+		byte[] buf = new byte[len];
+		in.readFully(buf);
+		return new String(buf, Utils.UTF8);
+	}
+
+	private static void writeThrowable(DataOutputStream out, Throwable ex, int depth) throws IOException {
+		writeString(out, ex instanceof SpilledThrowable ? ((SpilledThrowable) ex).getClassName()
+				: ex.getClass().getName());
+		writeString(out, ex.getMessage());
+		StackTraceElement[] stack = ex.getStackTrace();
+		out.writeInt(stack.length);
+		for (StackTraceElement element : stack) {
+			writeString(out, element.getClassName());
+			writeString(out, element.getMethodName());
+			writeString(out, element.getFileName());
+			out.writeInt(element.getLineNumber());
+		}
+		Throwable cause = ex.getCause();
+		boolean hasCause = cause != null && cause != ex && depth < MAX_CAUSE_DEPTH;
+		out.writeBoolean(hasCause);
+		if (hasCause) {
+			writeThrowable(out, cause, depth + 1);
+		}
+	}
+
+	private static Throwable readThrowable(DataInputStream in, int depth) throws IOException {
+		if (depth > MAX_CAUSE_DEPTH) {
+			throw new IOException("Invalid spill record cause depth: " + depth);
+		}
+		SpilledThrowable ex = new SpilledThrowable(readString(in), readString(in));
+		int frames = in.readInt();
+		if (frames < 0 || frames > in.available()) {
+			throw new IOException("Invalid spill record stack depth: " + frames);
+		}
+		StackTraceElement[] stack = new StackTraceElement[frames];
+		for (int i = 0; i < frames; i++) {
+			String cls = readString(in);
+			String method = readString(in);
+			String file = readString(in);
+			stack[i] = new StackTraceElement(String.valueOf(cls), String.valueOf(method), file, in.readInt());
+		}
+		ex.setStackTrace(stack);
+		if (in.readBoolean()) {
+			ex.initCause(readThrowable(in, depth + 1));
+		}
+		return ex;
+	}
+
+	/**
+	 * Throwable decoded from a spill record. Reports class name, message, stack trace and causes of the original
+	 * throwable, without loading or instantiating its class.
+	 */
+	static class SpilledThrowable extends Throwable {
+		private static final long serialVersionUID = 3712385468218460427L;
+
+		private final String className;
+
+		SpilledThrowable(String className, String message) {
+			super(message);
+			this.className = String.valueOf(className);
+		}
+
+		/**
+		 * Obtain class name of the original throwable.
+		 *
+		 * @return class name of the original throwable
+		 */
+		public String getClassName() {
+			return className;
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			String msg = getLocalizedMessage();
+			return msg != null ? className + ": " + msg : className;
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.OpType;
+import com.jkoolcloud.tnt4j.source.DefaultSource;
+import com.jkoolcloud.tnt4j.source.Source;
+
+/**
+ * <p>
+ * This class implements precompiled topic templates used to route events to topics based on event attributes.
+ * Templates consist of literal text and field references, e.g. {@code tnt4j.${severity}.${type}}. Supported fields:
+ * </p>
+ * <ul>
+ * <li>{@code ${source.fqn}} - fully qualified name of event source</li>
+ * <li>{@code ${source.name}} - name of event source</li>
+ * <li>{@code ${severity}} - event severity, e.g. {@code ERROR}</li>
+ * <li>{@code ${type}} - event type, e.g. {@code SEND}, {@code ACTIVITY}, {@code SNAPSHOT} or {@code DATAGRAM} for log
+ * messages</li>
+ * <li>{@code ${snapshot.category}} - snapshot category</li>
+ * </ul>
+ * <p>
+ * Templates are split into parts once. Expanded topics are cached per source (by identity), severity, type and
+ * category, so expansion allocates nothing once a topic has been seen. Cached topics of a source are dropped when the
+ * source or any of its parents changes (see {@link DefaultSource#getVersion()}); sources are weakly referenced and
+ * the least recently used ones are evicted beyond {@value #MAX_CACHED_SOURCES} sources. Topics of sources whose
+ * changes can not be tracked are expanded on every call. Field values are sanitized according to topic
+ * {@link Syntax}; missing values expand to {@value #MISSING_VALUE}. This class is thread safe.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ */
+public class TopicTemplate {
+	/**
+	 * Value used for fields not available for an event
+	 */
+	public static final String MISSING_VALUE = "NONE";
+
+	static final int MAX_CACHED_SOURCES = 1024;
+	static final int MAX_CACHED_CATEGORIES = 1024;
+
+	private static final int LEVELS = OpLevel.values().length;
+	private static final int TYPES = OpType.values().length;
+
+	/**
+	 * Topic name syntax, which determines how field values are sanitized.
+	 */
+	public enum Syntax {
+		/**
+		 * Kafka topic names: characters other than ASCII alphanumerics, '.', '_' and '-' are replaced by '_'.
+		 */
+		KAFKA {
+			@Override
+			char sanitize(char ch) {
+				if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '.'
+						|| ch == '_' || ch == '-') {
+					return ch;
+				}
+				return '_';
+			}
+		},
+
+		/**
+		 * MQTT topic names: '#' (source FQN separator) becomes topic level separator '/', wildcard '+' and NUL are
+		 * replaced by '_'.
+		 */
+		MQTT {
+			@Override
+			char sanitize(char ch) {
+				if (ch == '#') {
+					return '/';
+				}
+				if (ch == '+' || ch == 0) {
+					return '_';
+				}
+				return ch;
+			}
+		};
+
+		abstract char sanitize(char ch);
+	}
+
+	enum Field {
+		SOURCE_FQN("source.fqn"), SOURCE_NAME("source.name"), SEVERITY("severity"), TYPE("type"), CATEGORY(
+				"snapshot.category");
+
+		final String label;
+
+		Field(String label) {
+			this.label = label;
+		}
+
+		static Field forLabel(String label) {
+			for (Field field : values()) {
+				if (field.label.equals(label)) {
+					return field;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final String template;
+	private final Syntax syntax;
+	private final String[] literals;
+	private final Field[] fields;
+	private final boolean usesSource;
+	private final boolean usesSeverity;
+	private final boolean usesType;
+	private final boolean usesCategory;
+
+	private final Topics shared;
+	private final Cache<Source, Topics> bySource = CacheBuilder.newBuilder().weakKeys().maximumSize(MAX_CACHED_SOURCES)
+			.build();
+
+	/**
+	 * Compile a topic template.
+	 *
+	 * @param template
+	 *            topic template
+	 * @param syntax
+	 *            topic name syntax used to sanitize field values
+	 * @throws IllegalArgumentException
+	 *             if template refers to an unknown field or is malformed
+	 */
+	public TopicTemplate(String template, Syntax syntax) {
+		this.template = template;
+		this.syntax = syntax;
+		List<String> lits = new ArrayList<String>();
+		List<Field> flds = new ArrayList<Field>();
+		int pos = 0;
+		int start;
+		while ((start = template.indexOf("${", pos)) >= 0) {
+			int end = template.indexOf('}', start);
+			if (end < 0) {
+				throw new IllegalArgumentException("Unterminated field: template=" + template + ", offset=" + start);
+			}
+			Field field = Field.forLabel(template.substring(start + 2, end).trim());
+			if (field == null) {
+				throw new IllegalArgumentException("Unknown field: template=" + template + ", field="
+						+ template.substring(start, end + 1));
+			}
+			lits.add(template.substring(pos, start));
+			flds.add(field);
+			pos = end + 1;
+		}
+		lits.add(template.substring(pos));
+		this.literals = lits.toArray(new String[lits.size()]);
+		this.fields = flds.toArray(new Field[flds.size()]);
+		this.usesSource = flds.contains(Field.SOURCE_FQN) || flds.contains(Field.SOURCE_NAME);
+		this.usesSeverity = flds.contains(Field.SEVERITY);
+		this.usesType = flds.contains(Field.TYPE);
+		this.usesCategory = flds.contains(Field.CATEGORY);
+		this.shared = new Topics(null);
+	}
+
+	/**
+	 * Determine if a given string contains template fields.
+	 *
+	 * @param topic
+	 *            topic name or template
+	 * @return {@code true} if string is a template, {@code false} if it is a plain topic name
+	 */
+	public static boolean isTemplate(String topic) {
+		return topic != null && topic.contains("${");
+	}
+
+	/**
+	 * Determine if this template expands to the same topic for all events.
+	 *
+	 * @return {@code true} if template has no fields, {@code false} otherwise
+	 */
+	public boolean isConstant() {
+		return fields.length == 0;
+	}
+
+	/**
+	 * Obtain template text.
+	 *
+	 * @return template text
+	 */
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Expand template for a given set of event attributes.
+	 *
+	 * @param src
+	 *            event source, may be {@code null}
+	 * @param sev
+	 *            event severity
+	 * @param type
+	 *            event type
+	 * @param category
+	 *            snapshot category, {@code null} if not a snapshot
+	 * @return topic name
+	 */
+	public String expand(Source src, OpLevel sev, OpType type, String category) {
+		if (fields.length == 0) {
+			return literals[0];
+		}
+		Topics topics = usesSource && src != null ? topicsFor(src) : shared;
+		AtomicReferenceArray<String> slots = topics == null ? null : topics.slots(usesCategory ? category : null);
+		if (slots == null || (usesSeverity && sev == null) || (usesType && type == null)) {
+			return build(src, sev, type, category);
+		}
+		int idx = usesType ? type.ordinal() : 0;
+		if (usesSeverity) {
+			idx += sev.ordinal() * (usesType ? TYPES : 1);
+		}
+		String topic = slots.get(idx);
+		if (topic == null) {
+			topic = build(src, sev, type, category);
+			slots.lazySet(idx, topic);
+		}
+		return topic;
+	}
+
+	private Topics topicsFor(Source src) {
+		Topics topics = bySource.getIfPresent(src);
+		if (topics != null && DefaultSource.isCurrent(src, topics.versions)) {
+			return topics;
+		}
+		// capture versions before expanding, so concurrent changes invalidate the entry
+		int[] versions = DefaultSource.captureVersions(src);
+		if (versions == null) {
+			return null;
+		}
+		topics = new Topics(versions);
+		bySource.put(src, topics);
+		return topics;
+	}
+
+	private String build(Source src, OpLevel sev, OpType type, String category) {
+		StringBuilder topic = new StringBuilder(template.length() + 64);
+		for (int i = 0; i < fields.length; i++) {
+			topic.append(literals[i]);
+			switch (fields[i]) {
+			case SOURCE_FQN:
+				appendValue(topic, src != null ? src.getFQName() : null);
+				break;
+			case SOURCE_NAME:
+				appendValue(topic, src != null ? src.getName() : null);
+				break;
+			case SEVERITY:
+				appendValue(topic, sev != null ? sev.name() : null);
+				break;
+			case TYPE:
+				appendValue(topic, type != null ? type.name() : null);
+				break;
+			case CATEGORY:
+				appendValue(topic, category);
+				break;
+			}
+		}
+		topic.append(literals[fields.length]);
+		return topic.toString();
+	}
+
+	private void appendValue(StringBuilder topic, String value) {
+		if (value == null || value.isEmpty()) {
+			topic.append(MISSING_VALUE);
+			return;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			topic.append(syntax.sanitize(value.charAt(i)));
+		}
+	}
+
+	/**
+	 * Expanded topics of a single source, indexed by severity and type (and category if used by template).
+	 */
+	private class Topics {
+		final int[] versions;
+		final AtomicReferenceArray<String> slots = new AtomicReferenceArray<String>(
+				(usesSeverity ? LEVELS : 1) * (usesType ? TYPES : 1));
+		final ConcurrentHashMap<String, AtomicReferenceArray<String>> byCategory = usesCategory
+				? new ConcurrentHashMap<String, AtomicReferenceArray<String>>() : null;
+
+		Topics(int[] versions) {
+			this.versions = versions;
+		}
+
+		AtomicReferenceArray<String> slots(String category) {
+			if (category == null || byCategory == null) {
+				return slots;
+			}
+			AtomicReferenceArray<String> catSlots = byCategory.get(category);
+			if (catSlots == null && byCategory.size() < MAX_CACHED_CATEGORIES) {
+				catSlots = new AtomicReferenceArray<String>(slots.length());
+				AtomicReferenceArray<String> prev = byCategory.putIfAbsent(category, catSlots);
+				if (prev != null) {
+					catSlots = prev;
+				}
+			}
+			return catSlots;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{template: " + template + ", syntax: " + syntax + "}";
+	}
+}
@@ -16,22 +16,42 @@
 package com.jkoolcloud.tnt4j.sink.impl.kafka;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 
 import com.jkoolcloud.tnt4j.core.KeyValueStats;
 import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.OpType;
 import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.format.BinaryEventFormatter;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSink;
+import com.jkoolcloud.tnt4j.sink.DefaultEventSinkFactory;
 import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.sink.impl.TopicTemplate;
 import com.jkoolcloud.tnt4j.source.Source;
 import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
 import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
@@ -39,7 +59,23 @@ import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
  * <p>
- * This class implements {@link EventSink} with Kafka as the underlying sink implementation.
+ * This class implements {@link EventSink} with Kafka as the underlying sink implementation. Records are sent
+ * asynchronously; delivery results are reported by producer callbacks. Failed deliveries are reported to sink error
+ * listeners (and retried by buffered sinks), and the number of records awaiting acknowledgement can be bounded by an
+ * in-flight window, which makes logging threads wait when the window is full.
+ * </p>
+ * <p>
+ * Record values are bytes: formatters implementing {@link BinaryEventFormatter} produce them directly, other
+ * formatters' output is UTF-8 encoded. Producer serializers are therefore fixed to {@link StringSerializer} keys and
+ * {@link ByteArraySerializer} values. A legacy {@link StringSerializer} {@value #VALUE_SERIALIZER} is ignored with a
+ * warning, producer properties configuring other {@value #KEY_SERIALIZER} or {@value #VALUE_SERIALIZER} classes are
+ * rejected when sink is opened. Record keys are selected by
+ * {@link PartitionKey} strategy and severity and type of each tracking object are sent as record headers
+ * ({@value #HEADER_SEVERITY}, {@value #HEADER_TYPE}), so consumers can route records without parsing values.
+ * </p>
+ * <p>
+ * Records are sent to the topic named by the sink, unless a {@link TopicTemplate} is set, in which case topics are
+ * expanded per record from event source, severity, type and snapshot category.
  * </p>
  * 
  * 
@@ -49,12 +85,111 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * @see EventFormatter
  * @see AbstractEventSink
  * @see KafkaEventSinkFactory
+ * @see BinaryEventFormatter
+ * @see TopicTemplate
  */
 public class KafkaEventSink extends AbstractEventSink {
+	static final String KEY_IN_FLIGHT = "kafka-in-flight";
+	static final String KEY_MAX_IN_FLIGHT = "kafka-max-in-flight";
+	static final String KEY_ACKED = "kafka-acked";
+	static final String KEY_FAILED = "kafka-failed";
+	static final String KEY_WINDOW_TIMEOUTS = "kafka-window-timeouts";
+
+	public static final String HEADER_SEVERITY = "severity";
+	public static final String HEADER_TYPE = "type";
+
+	/**
+	 * Kafka producer property naming record key serializer class
+	 */
+	public static final String KEY_SERIALIZER = "key.serializer";
+
+	/**
+	 * Kafka producer property naming record value serializer class
+	 */
+	public static final String VALUE_SERIALIZER = "value.serializer";
+
+	private static final EventSink logger = DefaultEventSinkFactory.defaultEventSink(KafkaEventSink.class);
+	private static final AtomicBoolean LEGACY_SERIALIZER_WARNED = new AtomicBoolean(false);
+	private static final Charset UTF8 = Charset.forName(Utils.UTF8);
+	private static final Header[] SEVERITY_HEADERS = new Header[OpLevel.values().length];
+	private static final Header[] TYPE_HEADERS = new Header[OpType.values().length];
+
+	static {
+		for (OpLevel level : OpLevel.values()) {
+			SEVERITY_HEADERS[level.ordinal()] = new RecordHeader(HEADER_SEVERITY, level.name().getBytes(UTF8));
+		}
+		for (OpType type : OpType.values()) {
+			TYPE_HEADERS[type.ordinal()] = new RecordHeader(HEADER_TYPE, type.name().getBytes(UTF8));
+		}
+	}
+
+	/**
+	 * Strategies used to select Kafka record keys, which determine record partitions. Records with the same key are
+	 * sent to the same partition and keep their relative order. Records without a key are distributed across
+	 * partitions by the producer.
+	 */
+	public enum PartitionKey {
+		/**
+		 * Operation name for events, activity name for activities, category for snapshots and source FQN for log
+		 * messages.
+		 */
+		NAME,
+
+		/**
+		 * Tracking id of tracking objects, no key for log messages.
+		 */
+		TRACKING_ID,
+
+		/**
+		 * Correlator of tracking objects (lowest one when there are several), no key for objects without correlators and
+		 * log messages.
+		 */
+		CORRELATOR,
+
+		/**
+		 * Fully qualified name of event source.
+		 */
+		SOURCE,
+
+		/**
+		 * No key, records are spread evenly across partitions.
+		 */
+		ROUND_ROBIN;
+
+		/**
+		 * Obtain partition key strategy by name (case insensitive).
+		 *
+		 * @param name strategy name
+		 * @param defValue default value when name is null or not recognized
+		 * @return partition key strategy
+		 */
+		public static PartitionKey valueOf(String name, PartitionKey defValue) {
+			if (name == null) {
+				return defValue;
+			}
+			try {
+				return valueOf(name.trim().toUpperCase());
+			} catch (IllegalArgumentException exc) {
+				return defValue;
+			}
+		}
+	}
 
 	Properties kprops;
-	Producer<String, String> producer;
-	
+	Producer<String, byte[]> producer;
+
+	PartitionKey partitionKey = PartitionKey.NAME;
+	TopicTemplate topicTemplate;
+	boolean headers = true;
+
+	int maxInFlight = 0;
+	long inFlightTimeout = 30000;
+	Semaphore window;
+	AtomicLong inFlight = new AtomicLong(0);
+	AtomicLong acked = new AtomicLong(0);
+	AtomicLong failed = new AtomicLong(0);
+	AtomicLong windowTimeouts = new AtomicLong(0);
+
 	/**
 	 * Create a Kafka event sink
 	 * 
@@ -67,6 +202,89 @@ public class KafkaEventSink extends AbstractEventSink {
 	    this.kprops = props;
     }
 
+	/**
+	 * Set maximum number of records sent and not yet acknowledged. Logging threads wait for window space up to a given
+	 * timeout and fail when it expires. Must be set before sink is opened.
+	 * 
+	 * @param max maximum number of in-flight records, 0 for unbounded
+	 * @param timeoutMs maximum time to wait for window space in milliseconds
+	 * @return itself
+	 */
+	public KafkaEventSink setInFlightWindow(int max, long timeoutMs) {
+		maxInFlight = Math.max(0, max);
+		inFlightTimeout = Math.max(0, timeoutMs);
+		return this;
+	}
+
+	/**
+	 * Set strategy used to select record keys.
+	 * 
+	 * @param key partition key strategy
+	 * @return itself
+	 */
+	public KafkaEventSink setPartitionKey(PartitionKey key) {
+		partitionKey = key == null ? PartitionKey.NAME : key;
+		return this;
+	}
+
+	/**
+	 * Obtain strategy used to select record keys.
+	 * 
+	 * @return partition key strategy
+	 */
+	public PartitionKey getPartitionKey() {
+		return partitionKey;
+	}
+
+	/**
+	 * Set template used to select record topics. Topic named by the sink is used when template is not set.
+	 * 
+	 * @param template topic template, {@code null} to use sink name
+	 * @return itself
+	 */
+	public KafkaEventSink setTopicTemplate(TopicTemplate template) {
+		topicTemplate = template;
+		return this;
+	}
+
+	/**
+	 * Enable or disable severity and type record headers. Headers require Kafka brokers 0.11 or later.
+	 * 
+	 * @param enable {@code true} to send record headers, {@code false} otherwise
+	 * @return itself
+	 */
+	public KafkaEventSink setHeaders(boolean enable) {
+		headers = enable;
+		return this;
+	}
+
+	/**
+	 * Obtain number of records sent and not yet acknowledged.
+	 * 
+	 * @return number of in-flight records
+	 */
+	public long getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Obtain number of records acknowledged by Kafka.
+	 * 
+	 * @return number of acknowledged records
+	 */
+	public long getAcked() {
+		return acked.get();
+	}
+
+	/**
+	 * Obtain number of records Kafka failed to deliver.
+	 * 
+	 * @return number of failed records
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
 	@Override
     public boolean isSet(OpLevel sev) {
 	    return true;
@@ -82,22 +300,83 @@ public class KafkaEventSink extends AbstractEventSink {
 	    return producer != null;
     }
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws IOException if producer properties configure serializers other than {@link StringSerializer} for keys
+	 *             or {@link ByteArraySerializer} (or legacy {@link StringSerializer}) for values
+	 */
 	@Override
     public synchronized void open() throws IOException {
+		checkSerializer(KEY_SERIALIZER, StringSerializer.class, null);
+		checkSerializer(VALUE_SERIALIZER, ByteArraySerializer.class, StringSerializer.class);
 		close();
-		producer = new KafkaProducer<String, String>(kprops);
+		window = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+		producer = createProducer(kprops);
+	}
+
+	/**
+	 * Create Kafka producer used by this sink. Override to supply a different producer implementation, e.g.
+	 * {@code MockProducer}. Producer serializers are fixed to string keys and byte array values; producer properties
+	 * naming other serializers are rejected by {@link #open()} before this method is called.
+	 * 
+	 * @param props producer properties
+	 * @return Kafka producer instance
+	 */
+	protected Producer<String, byte[]> createProducer(Properties props) {
+		return new KafkaProducer<String, byte[]>(props, new StringSerializer(), new ByteArraySerializer());
+	}
+
+	private void checkSerializer(String key, Class<?> required, Class<?> legacy) throws IOException {
+		Object value = kprops != null ? kprops.get(key) : null;
+		if (value == null) {
+			return;
+		}
+		String name = value instanceof Class ? ((Class<?>) value).getName() : value.toString().trim();
+		if (legacy != null && name.equals(legacy.getName())) {
+			// configurations predating byte array values, serializer is overridden by the sink
+			if (LEGACY_SERIALIZER_WARNED.compareAndSet(false, true)) {
+				logger.log(OpLevel.WARNING, "Ignoring legacy Kafka serializer, using {0}: {1}={2}, topic={3}",
+						required.getName(), key, name, getName());
+			}
+			return;
+		}
+		if (!name.isEmpty() && !name.equals(required.getName())) {
+			throw new IOException("Unsupported Kafka serializer: " + key + "=" + name + ", required=" + required.getName()
+					+ ", topic=" + getName());
+		}
 	}
 
 	@Override
     public synchronized void close() throws IOException {
 		if (producer != null) {
+			// completes in-flight records and invokes their callbacks
 			producer.close();
+			producer = null;
 		}
 	}
 
+	@Override
+	public void flush() throws IOException {
+		Producer<String, byte[]> p = producer;
+		if (p != null) {
+			p.flush();
+		}
+	}
+
+	@Override
+	protected void _flushBatch() throws IOException {
+		flush();
+	}
+
 	@Override
 	public KeyValueStats getStats(Map<String, Object> stats) {
 		super.getStats(stats);
+		stats.put(Utils.qualify(this, KEY_IN_FLIGHT), inFlight.get());
+		stats.put(Utils.qualify(this, KEY_MAX_IN_FLIGHT), maxInFlight);
+		stats.put(Utils.qualify(this, KEY_ACKED), acked.get());
+		stats.put(Utils.qualify(this, KEY_FAILED), failed.get());
+		stats.put(Utils.qualify(this, KEY_WINDOW_TIMEOUTS), windowTimeouts.get());
 		if (isOpen()) {
 			Map<MetricName, ? extends Metric> kMetrics = producer.metrics();
 			Set<MetricName> keys = kMetrics.keySet();
@@ -110,29 +389,191 @@ public class KafkaEventSink extends AbstractEventSink {
 	
 	@Override
     protected void _log(TrackingEvent event) throws Exception {
-		producer.send(new ProducerRecord<String, String>(getName(), 
-				event.getOperation().getName(), getEventFormatter().format(event)));
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(event)
+				: encode(f.format(event));
+		OpType type = event.getOperation().getType();
+		send(newRecord(topic(event.getSource(), event.getSeverity(), type, null),
+				key(event, event.getOperation().getName()), value, headers(event.getSeverity(), type)),
+				new DeliveryCallback(event));
 	}
 
 	@Override
     protected void _log(TrackingActivity activity) throws Exception {
-		producer.send(new ProducerRecord<String, String>(getName(), 
-				activity.getName(), getEventFormatter().format(activity)));
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(activity)
+				: encode(f.format(activity));
+		send(newRecord(topic(activity.getSource(), activity.getSeverity(), activity.getType(), null),
+				key(activity, activity.getName()), value, headers(activity.getSeverity(), activity.getType())),
+				new DeliveryCallback(activity));
     }
 
 	@Override
     protected void _log(Snapshot snapshot) throws Exception {
-		producer.send(new ProducerRecord<String, String>(getName(), 
-				snapshot.getCategory(), getEventFormatter().format(snapshot)));
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(snapshot)
+				: encode(f.format(snapshot));
+		send(newRecord(topic(snapshot.getSource(), snapshot.getSeverity(), snapshot.getType(), snapshot.getCategory()),
+				key(snapshot, snapshot.getCategory()), value, headers(snapshot.getSeverity(), snapshot.getType())),
+				new DeliveryCallback(snapshot));
     }
 
 	@Override
     protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws Exception {
-		producer.send(new ProducerRecord<String, String>(getName(), src.getFQName(), getEventFormatter().format(ttl, src, sev, msg, args)));
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(ttl, src, sev, msg, args)
+				: encode(f.format(ttl, src, sev, msg, args));
+		String key = (partitionKey == PartitionKey.NAME || partitionKey == PartitionKey.SOURCE) ? src.getFQName() : null;
+		send(newRecord(topic(src, sev, OpType.DATAGRAM, null), key, value, headers(sev, OpType.DATAGRAM)),
+				new DeliveryCallback(ttl, src, sev, msg, args));
     }
 
 	@Override
     protected void _write(Object msg, Object... args) throws IOException, InterruptedException {
-		producer.send(new ProducerRecord<String, String>(getName(), getEventFormatter().format(msg, args)));
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(msg, args)
+				: encode(f.format(msg, args));
+		send(newRecord(topic(getSource(), OpLevel.NONE, OpType.DATAGRAM, null), null, value, null),
+				new DeliveryCallback(null));
     }
+
+	/**
+	 * Select record key for a given tracking object based on partition key strategy.
+	 * 
+	 * @param trackable tracking object
+	 * @param name object name used by {@link PartitionKey#NAME} strategy
+	 * @return record key, {@code null} if none
+	 */
+	protected String key(Trackable trackable, String name) {
+		switch (partitionKey) {
+		case TRACKING_ID:
+			return trackable.getTrackingId();
+		case CORRELATOR:
+			Set<String> cids = trackable.getCorrelator();
+			if (cids == null || cids.isEmpty()) {
+				return null;
+			}
+			return cids.size() == 1 ? cids.iterator().next() : Collections.min(cids);
+		case SOURCE:
+			Source src = trackable.getSource();
+			return src != null ? src.getFQName() : null;
+		case ROUND_ROBIN:
+			return null;
+		default:
+			return name;
+		}
+	}
+
+	private List<Header> headers(OpLevel sev, OpType type) {
+		if (!headers) {
+			return null;
+		}
+		return Arrays.asList(SEVERITY_HEADERS[sev.ordinal()], TYPE_HEADERS[type.ordinal()]);
+	}
+
+	private String topic(Source src, OpLevel sev, OpType type, String category) {
+		TopicTemplate template = topicTemplate;
+		return template != null ? template.expand(src, sev, type, category) : getName();
+	}
+
+	private static ProducerRecord<String, byte[]> newRecord(String topic, String key, byte[] value,
+			List<Header> recHeaders) {
+		return new ProducerRecord<String, byte[]>(topic, null, key, value, recHeaders);
+	}
+
+	private static byte[] encode(String value) {
+		return value != null ? value.getBytes(UTF8) : null;
+	}
+
+	/**
+	 * Send a record within in-flight window.
+	 * 
+	 * @param record record to send
+	 * @param callback delivery callback
+	 * @throws IOException if sink is closed or in-flight window remains full for longer than timeout
+	 * @throws InterruptedException if interrupted while waiting for window space
+	 */
+	protected void send(ProducerRecord<String, byte[]> record, DeliveryCallback callback)
+			throws IOException, InterruptedException {
+		Producer<String, byte[]> p = producer;
+		if (p == null) {
+			throw new IOException("Sink is closed: topic=" + getName());
+		}
+		Semaphore w = window;
+		if (w != null && !w.tryAcquire(inFlightTimeout, TimeUnit.MILLISECONDS)) {
+			windowTimeouts.incrementAndGet();
+			throw new IOException("Kafka in-flight window full: topic=" + getName() + ", in.flight=" + inFlight.get()
+					+ ", timeout.ms=" + inFlightTimeout);
+		}
+		callback.window = w;
+		inFlight.incrementAndGet();
+		try {
+			p.send(record, callback);
+		} catch (RuntimeException e) {
+			callback.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Producer callback which tracks delivery of a single record. Failed records are reported to sink error listeners
+	 * as {@link SinkLogEvent}, so that buffered sinks can retry them.
+	 */
+	class DeliveryCallback implements Callback {
+		Object item;
+		Source src;
+		OpLevel sev;
+		long ttl;
+		Object[] args;
+		Semaphore window;
+
+		DeliveryCallback(Object item) {
+			this.item = item;
+		}
+
+		DeliveryCallback(long ttl, Source src, OpLevel sev, String msg, Object... args) {
+			this.item = msg;
+			this.ttl = ttl;
+			this.src = src;
+			this.sev = sev;
+			this.args = args;
+		}
+
+		void release() {
+			inFlight.decrementAndGet();
+			if (window != null) {
+				window.release();
+			}
+		}
+
+		@Override
+		public void onCompletion(RecordMetadata metadata, Exception exception) {
+			release();
+			if (exception == null) {
+				acked.incrementAndGet();
+				return;
+			}
+			failed.incrementAndGet();
+			SinkLogEvent event = toSinkLogEvent();
+			if (event != null) {
+				notifyListeners(event, exception);
+			} else {
+				setErrorState(exception);
+			}
+		}
+
+		SinkLogEvent toSinkLogEvent() {
+			KafkaEventSink sink = KafkaEventSink.this;
+			if (src != null) {
+				return new SinkLogEvent(sink, src, sev, ttl, item, args);
+			} else if (item instanceof TrackingEvent) {
+				return new SinkLogEvent(sink, (TrackingEvent) item);
+			} else if (item instanceof TrackingActivity) {
+				return new SinkLogEvent(sink, (TrackingActivity) item);
+			} else if (item instanceof Snapshot) {
+				return new SinkLogEvent(sink, (Snapshot) item);
+			}
+			return null;
+		}
+	}
 }
@@ -26,6 +26,7 @@ import com.jkoolcloud.tnt4j.format.JSONFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSinkFactory;
 import com.jkoolcloud.tnt4j.sink.EventSink;
 import com.jkoolcloud.tnt4j.sink.EventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.impl.TopicTemplate;
 import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
@@ -46,31 +47,67 @@ public class KafkaEventSinkFactory extends AbstractEventSinkFactory {
 	private Properties kafkaProps = new Properties();
 	private String kafkaTopic = DEFAULT_KAFKA_TOPIC;
 	private String kafkaPropFile = null;
+	private int maxInFlight = 0;
+	private long inFlightTimeout = 30000;
+	private KafkaEventSink.PartitionKey partitionKey = KafkaEventSink.PartitionKey.NAME;
+	private boolean headers = true;
+	private TopicTemplate topicTemplate;
 
 	@Override
 	public EventSink getEventSink(String name) {
-		return configureSink(new KafkaEventSink(kafkaTopic, kafkaProps, new JSONFormatter(false)));
+		return configureSink(newKafkaSink(new JSONFormatter(false)));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props) {
-		return configureSink(new KafkaEventSink(kafkaTopic, kafkaProps, new JSONFormatter(false)));
+		return configureSink(newKafkaSink(new JSONFormatter(false)));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
-		return configureSink(new KafkaEventSink(kafkaTopic, kafkaProps, frmt));
+		return configureSink(newKafkaSink(frmt));
+	}
+
+	/**
+	 * Create Kafka event sink instance configured by this factory.
+	 * 
+	 * @param frmt
+	 *            event formatter object to format events before writing to log
+	 * @return Kafka event sink instance
+	 */
+	protected KafkaEventSink newKafkaSink(EventFormatter frmt) {
+		return new KafkaEventSink(kafkaTopic, kafkaProps, frmt).setInFlightWindow(maxInFlight, inFlightTimeout)
+				.setPartitionKey(partitionKey).setHeaders(headers).setTopicTemplate(topicTemplate);
 	}
 
 	@Override
 	public void setConfiguration(Map<String, Object> settings) throws ConfigException {
 		super.setConfiguration(settings);
 		kafkaTopic = Utils.getString("topic", settings, DEFAULT_KAFKA_TOPIC);
+		topicTemplate = null;
+		if (TopicTemplate.isTemplate(kafkaTopic)) {
+			try {
+				topicTemplate = new TopicTemplate(kafkaTopic, TopicTemplate.Syntax.KAFKA);
+			} catch (IllegalArgumentException e) {
+				ConfigException error = new ConfigException(e.getMessage(), settings);
+				error.initCause(e);
+				throw error;
+			}
+		}
 		kafkaPropFile = Utils.getString("propFile", settings, kafkaPropFile);
+		maxInFlight = Utils.getInt("maxInFlight", settings, maxInFlight);
+		inFlightTimeout = Utils.getLong("inFlightTimeout", settings, inFlightTimeout);
+		partitionKey = KafkaEventSink.PartitionKey.valueOf(Utils.getString("partitionKey", settings, null), partitionKey);
+		headers = Utils.getBoolean("headers", settings, headers);
 		if (kafkaPropFile != null) {
 			loadKafkaProps(kafkaPropFile, settings);
 		} else {
 			kafkaProps.putAll(settings);
+			// sink options are not producer properties
+			kafkaProps.remove("maxInFlight");
+			kafkaProps.remove("inFlightTimeout");
+			kafkaProps.remove("partitionKey");
+			kafkaProps.remove("headers");
 		}
 	}
 
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl.mqtt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import com.jkoolcloud.tnt4j.core.KeyValueStats;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.OpType;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.format.BinaryEventFormatter;
+import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.sink.AbstractEventSink;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * <p>
+ * This class implements {@link EventSink} with asynchronous MQTT client as the underlying sink implementation.
+ * Messages are published without waiting for broker acknowledgement; delivery results are reported by completion
+ * callbacks. The number of messages awaiting acknowledgement is bounded by an in-flight window, which makes logging
+ * threads wait when the window is full.
+ * </p>
+ * <p>
+ * Events written within a batch ({@link #log(java.util.List)}) can be combined into a single message, one formatted
+ * event per line and one message per topic, which amortizes broker round trips required by QoS 1 and 2. At QoS 1
+ * and 2 failed messages are reported to sink error listeners per event (and retried by buffered sinks); at QoS 0,
+ * which gives no delivery guarantee, failures only update sink error state and events are not retained for retry.
+ * </p>
+ * 
+ * 
+ * @version $Revision: 1 $
+ * 
+ * @see OpLevel
+ * @see EventFormatter
+ * @see AbstractEventSink
+ * @see MqttEventSinkFactory
+ */
+public class MqttAsyncEventSink extends AbstractEventSink {
+	static final String KEY_IN_FLIGHT = "mqtt-in-flight";
+	static final String KEY_MAX_IN_FLIGHT = "mqtt-max-in-flight";
+	static final String KEY_PUBLISHED = "mqtt-published";
+	static final String KEY_ACKED = "mqtt-acked";
+	static final String KEY_FAILED = "mqtt-failed";
+	static final String KEY_WINDOW_TIMEOUTS = "mqtt-window-timeouts";
+	static final String KEY_BATCH_SIZE = "mqtt-batch-size";
+
+	private static final Charset UTF8 = Charset.forName(Utils.UTF8);
+	private static final int BATCH_DELIMITER = '\n';
+
+	MqttAsyncClient mqttClient;
+	MqttEventSinkFactory factory;
+
+	int maxInFlight = 0;
+	long inFlightTimeout = 30000;
+	int batchSize = 1;
+	int batchBytes = 256 * 1024;
+
+	Semaphore window;
+	final HashMap<String, Batch> batches = new HashMap<String, Batch>();
+
+	AtomicLong inFlight = new AtomicLong(0);
+	AtomicLong published = new AtomicLong(0);
+	AtomicLong acked = new AtomicLong(0);
+	AtomicLong failed = new AtomicLong(0);
+	AtomicLong windowTimeouts = new AtomicLong(0);
+
+	/**
+	 * Create asynchronous MQTT event sink
+	 * 
+	 * @param fc
+	 *            event sink factory
+	 * @param name
+	 *            event sink name
+	 * @param props
+	 *            event sink properties
+	 * @param frmt
+	 *            event sink formatter
+	 */
+	protected MqttAsyncEventSink(MqttEventSinkFactory fc, String name, Properties props, EventFormatter frmt) {
+		super(name, frmt);
+		factory = fc;
+	}
+
+	/**
+	 * Set maximum number of messages published and not yet completed. Logging threads wait for window space up to a
+	 * given timeout, after which messages fail. Must be set before sink is opened.
+	 * 
+	 * @param max
+	 *            maximum number of in-flight messages, 0 for unbounded
+	 * @param timeoutMs
+	 *            maximum time to wait for window space in milliseconds
+	 * @return itself
+	 */
+	public MqttAsyncEventSink setInFlightWindow(int max, long timeoutMs) {
+		maxInFlight = Math.max(0, max);
+		inFlightTimeout = Math.max(0, timeoutMs);
+		return this;
+	}
+
+	/**
+	 * Set batching limits. Events logged within a batch are combined into a single message until either limit is
+	 * reached.
+	 * 
+	 * @param maxEvents
+	 *            maximum number of events per message, 1 to disable batching
+	 * @param maxBytes
+	 *            maximum message payload size in bytes
+	 * @return itself
+	 */
+	public MqttAsyncEventSink setBatch(int maxEvents, int maxBytes) {
+		batchSize = Math.max(1, maxEvents);
+		batchBytes = Math.max(1, maxBytes);
+		return this;
+	}
+
+	/**
+	 * Obtain number of messages published and not yet completed.
+	 * 
+	 * @return number of in-flight messages
+	 */
+	public long getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Obtain number of messages completed successfully.
+	 * 
+	 * @return number of acknowledged messages
+	 */
+	public long getAcked() {
+		return acked.get();
+	}
+
+	/**
+	 * Obtain number of messages failed to be delivered.
+	 * 
+	 * @return number of failed messages
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	@Override
+	public boolean isSet(OpLevel sev) {
+		return true;
+	}
+
+	@Override
+	public Object getSinkHandle() {
+		return mqttClient;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return mqttClient != null && mqttClient.isConnected();
+	}
+
+	@Override
+	public synchronized void open() throws IOException {
+		close();
+		window = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+		try {
+			mqttClient = factory.newMqttAsyncClient();
+		} catch (MqttException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (mqttClient != null) {
+			flush();
+			try {
+				// lets in-flight messages complete
+				mqttClient.disconnect().waitForCompletion();
+				mqttClient.close();
+			} catch (MqttException e) {
+				throw new IOException(e);
+			} finally {
+				mqttClient = null;
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ArrayList<Batch> pending;
+		synchronized (batches) {
+			if (batches.isEmpty()) {
+				return;
+			}
+			pending = new ArrayList<Batch>(batches.values());
+			batches.clear();
+		}
+		for (Batch msg : pending) {
+			publish(msg);
+		}
+	}
+
+	@Override
+	protected void _flushBatch() throws IOException {
+		flush();
+	}
+
+	@Override
+	public KeyValueStats getStats(Map<String, Object> stats) {
+		super.getStats(stats);
+		stats.put(Utils.qualify(this, KEY_IN_FLIGHT), inFlight.get());
+		stats.put(Utils.qualify(this, KEY_MAX_IN_FLIGHT), maxInFlight);
+		stats.put(Utils.qualify(this, KEY_PUBLISHED), published.get());
+		stats.put(Utils.qualify(this, KEY_ACKED), acked.get());
+		stats.put(Utils.qualify(this, KEY_FAILED), failed.get());
+		stats.put(Utils.qualify(this, KEY_WINDOW_TIMEOUTS), windowTimeouts.get());
+		stats.put(Utils.qualify(this, KEY_BATCH_SIZE), batchSize);
+		return this;
+	}
+
+	@Override
+	protected void _log(TrackingEvent event) throws Exception {
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(event)
+				: encode(f.format(event));
+		append(factory.getTopic(this, event.getSource(), event.getSeverity(), event.getOperation().getType(), null),
+				value, factory.qos > 0 ? new SinkLogEvent(this, event) : null);
+	}
+
+	@Override
+	protected void _log(TrackingActivity activity) throws Exception {
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(activity)
+				: encode(f.format(activity));
+		append(factory.getTopic(this, activity.getSource(), activity.getSeverity(), activity.getType(), null), value,
+				factory.qos > 0 ? new SinkLogEvent(this, activity) : null);
+	}
+
+	@Override
+	protected void _log(Snapshot snapshot) throws Exception {
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(snapshot)
+				: encode(f.format(snapshot));
+		append(factory.getTopic(this, snapshot.getSource(), snapshot.getSeverity(), snapshot.getType(),
+				snapshot.getCategory()), value, factory.qos > 0 ? new SinkLogEvent(this, snapshot) : null);
+	}
+
+	@Override
+	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws Exception {
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(ttl, src, sev, msg, args)
+				: encode(f.format(ttl, src, sev, msg, args));
+		append(factory.getTopic(this, src, sev, OpType.DATAGRAM, null), value,
+				factory.qos > 0 ? new SinkLogEvent(this, src, sev, ttl, msg, args) : null);
+	}
+
+	@Override
+	protected void _write(Object msg, Object... args) throws IOException, InterruptedException {
+		EventFormatter f = getEventFormatter();
+		byte[] value = f instanceof BinaryEventFormatter ? ((BinaryEventFormatter) f).toBytes(msg, args)
+				: encode(f.format(msg, args));
+		append(factory.getTopic(this, getSource(), OpLevel.NONE, OpType.DATAGRAM, null), value, null);
+	}
+
+	/**
+	 * Add a formatted event to the current message of a given topic and publish the message when it is complete.
+	 * Messages are complete outside of batches or when batching limits are reached.
+	 * 
+	 * @param topic
+	 *            MQTT topic
+	 * @param value
+	 *            formatted event
+	 * @param retry
+	 *            event reported to error listeners if message fails, {@code null} if none
+	 * @throws IOException
+	 *             if sink is closed
+	 */
+	protected void append(String topic, byte[] value, SinkLogEvent retry) throws IOException {
+		if (mqttClient == null) {
+			throw new IOException("Sink is closed: topic=" + getName());
+		}
+		if (batchSize <= 1) {
+			Batch single = new Batch(topic, value.length);
+			single.add(value, retry);
+			publish(single);
+			return;
+		}
+		Batch complete = null;
+		synchronized (batches) {
+			Batch batch = batches.get(topic);
+			if (batch != null && batch.size() + value.length + 1 > batchBytes) {
+				complete = batch;
+				batch = null;
+			}
+			if (batch == null) {
+				batch = new Batch(topic, (int) Math.min(batchBytes, (long) (value.length + 1) * batchSize));
+				batches.put(topic, batch);
+			}
+			batch.add(value, retry);
+			if (complete == null && (batch.count >= batchSize || !isBatching())) {
+				complete = batch;
+				batches.remove(topic);
+			}
+		}
+		if (complete != null) {
+			publish(complete);
+		}
+	}
+
+	/**
+	 * Publish a given message within in-flight window. Failures are reported by {@link Batch#onFailure}, so that all
+	 * events in the message are handled the same way whether publishing fails immediately or later.
+	 * 
+	 * @param msg
+	 *            message to publish
+	 */
+	protected void publish(Batch msg) {
+		MqttAsyncClient client = mqttClient;
+		try {
+			if (client == null) {
+				throw new IOException("Sink is closed: topic=" + getName());
+			}
+			Semaphore w = window;
+			if (w != null && !w.tryAcquire(inFlightTimeout, TimeUnit.MILLISECONDS)) {
+				windowTimeouts.incrementAndGet();
+				throw new IOException("MQTT in-flight window full: topic=" + getName() + ", in.flight=" + inFlight.get()
+						+ ", timeout.ms=" + inFlightTimeout);
+			}
+			msg.window = w;
+			msg.sent = true;
+			inFlight.incrementAndGet();
+			published.incrementAndGet();
+			factory.publish(msg.topic, client, factory.newMqttMessage(msg.toByteArray()), msg);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			msg.onFailure(null, e);
+		} catch (Throwable e) {
+			msg.onFailure(null, e);
+		}
+	}
+
+	private static byte[] encode(String value) {
+		return value.getBytes(UTF8);
+	}
+
+	/**
+	 * Message payload of one or more formatted events, which tracks completion of its publication.
+	 */
+	class Batch extends ByteArrayOutputStream implements IMqttActionListener {
+		final String topic;
+		int count;
+		ArrayList<SinkLogEvent> events;
+		Semaphore window;
+		boolean sent;
+		boolean completed;
+
+		Batch(String topic, int size) {
+			super(size);
+			this.topic = topic;
+		}
+
+		void add(byte[] value, SinkLogEvent retry) {
+			if (count > 0) {
+				write(BATCH_DELIMITER);
+			}
+			write(value, 0, value.length);
+			count++;
+			if (retry != null) {
+				if (events == null) {
+					events = new ArrayList<SinkLogEvent>(Math.min(batchSize, 64));
+				}
+				events.add(retry);
+			}
+		}
+
+		private synchronized boolean complete() {
+			if (completed) {
+				return false;
+			}
+			completed = true;
+			if (sent) {
+				inFlight.decrementAndGet();
+				if (window != null) {
+					window.release();
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void onSuccess(IMqttToken token) {
+			if (complete()) {
+				acked.incrementAndGet();
+			}
+		}
+
+		@Override
+		public void onFailure(IMqttToken token, Throwable exception) {
+			if (!complete()) {
+				return;
+			}
+			failed.incrementAndGet();
+			if (events == null) {
+				setErrorState(exception);
+				return;
+			}
+			for (SinkLogEvent event : events) {
+				notifyListeners(event, exception);
+			}
+		}
+	}
+}
@@ -23,6 +23,7 @@ import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
 import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.OpType;
 import com.jkoolcloud.tnt4j.core.Snapshot;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSink;
@@ -133,25 +134,28 @@ public class MqttEventSink extends AbstractEventSink {
 	@Override
 	protected void _log(TrackingEvent event) throws Exception {
 		MqttMessage message = factory.newMqttMessage(getEventFormatter().format(event));
-		factory.publish(this, mqttClient, message);
+		factory.publish(factory.getTopic(this, event.getSource(), event.getSeverity(), event.getOperation().getType(),
+				null), mqttClient, message);
 	}
 
 	@Override
 	protected void _log(TrackingActivity activity) throws Exception {
 		MqttMessage message = factory.newMqttMessage(getEventFormatter().format(activity));
-		factory.publish(this, mqttClient, message);
+		factory.publish(factory.getTopic(this, activity.getSource(), activity.getSeverity(), activity.getType(), null),
+				mqttClient, message);
 	}
 
 	@Override
 	protected void _log(Snapshot snapshot) throws Exception {
 		MqttMessage message = factory.newMqttMessage(getEventFormatter().format(snapshot));
-		factory.publish(this, mqttClient, message);
+		factory.publish(factory.getTopic(this, snapshot.getSource(), snapshot.getSeverity(), snapshot.getType(),
+				snapshot.getCategory()), mqttClient, message);
 	}
 
 	@Override
 	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws Exception {
 		MqttMessage message = factory.newMqttMessage(getEventFormatter().format(ttl, src, sev, msg, args));
-		factory.publish(this, mqttClient, message);
+		factory.publish(factory.getTopic(this, src, sev, OpType.DATAGRAM, null), mqttClient, message);
 	}
 
 	@Override
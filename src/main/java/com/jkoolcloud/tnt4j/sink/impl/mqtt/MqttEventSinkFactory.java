@@ -22,11 +22,15 @@ import org.eclipse.paho.client.mqttv3.*;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
 import com.jkoolcloud.tnt4j.config.ConfigException;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.OpType;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
 import com.jkoolcloud.tnt4j.format.JSONFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSinkFactory;
 import com.jkoolcloud.tnt4j.sink.EventSink;
 import com.jkoolcloud.tnt4j.sink.EventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.impl.TopicTemplate;
+import com.jkoolcloud.tnt4j.source.Source;
 import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
@@ -69,6 +73,11 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 	 */
 	String topic;
 
+	/**
+	 * MQTT topic template, when topic refers to event fields
+	 */
+	TopicTemplate topicTemplate;
+
 	/**
 	 * MQTT version
 	 */
@@ -104,6 +113,31 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 	 */
 	boolean retainMsg = false;
 
+	/**
+	 * Use asynchronous MQTT client
+	 */
+	boolean async = false;
+
+	/**
+	 * Maximum number of in-flight messages (asynchronous client only)
+	 */
+	int maxInFlight = 10;
+
+	/**
+	 * Maximum time in milliseconds to wait for in-flight window space (asynchronous client only)
+	 */
+	long inFlightTimeout = 30000;
+
+	/**
+	 * Maximum number of batched events per message (asynchronous client only)
+	 */
+	int batchSize = 1;
+
+	/**
+	 * Maximum batched message size in bytes (asynchronous client only)
+	 */
+	int batchBytes = 256 * 1024;
+
 	/**
 	 * MQTT connection options
 	 */
@@ -111,17 +145,37 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 
 	@Override
 	public EventSink getEventSink(String name) {
-		return configureSink(new MqttEventSink(this, name, null, new JSONFormatter(false)));
+		return configureSink(newMqttSink(name, null, new JSONFormatter(false)));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props) {
-		return configureSink(new MqttEventSink(this, name, props, new JSONFormatter(false)));
+		return configureSink(newMqttSink(name, props, new JSONFormatter(false)));
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
-		return configureSink(new MqttEventSink(this, name, props, frmt));
+		return configureSink(newMqttSink(name, props, frmt));
+	}
+
+	/**
+	 * Create MQTT event sink instance configured by this factory: {@link MqttAsyncEventSink} when asynchronous client
+	 * is enabled, {@link MqttEventSink} otherwise.
+	 * 
+	 * @param name
+	 *            event sink name
+	 * @param props
+	 *            event sink properties
+	 * @param frmt
+	 *            event sink formatter
+	 * @return MQTT event sink instance
+	 */
+	protected EventSink newMqttSink(String name, Properties props, EventFormatter frmt) {
+		if (async) {
+			return new MqttAsyncEventSink(this, name, props, frmt).setInFlightWindow(maxInFlight, inFlightTimeout)
+					.setBatch(batchSize, batchBytes);
+		}
+		return new MqttEventSink(this, name, props, frmt);
 	}
 
 	@Override
@@ -131,6 +185,16 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 		clientid = Utils.getString("mqtt-clientid", settings, MqttClient.generateClientId());
 		version = Utils.getInt("mqtt-version", settings, MqttConnectOptions.MQTT_VERSION_DEFAULT);
 		topic = Utils.getString("mqtt-topic", settings, topic);
+		topicTemplate = null;
+		if (TopicTemplate.isTemplate(topic)) {
+			try {
+				topicTemplate = new TopicTemplate(topic, TopicTemplate.Syntax.MQTT);
+			} catch (IllegalArgumentException e) {
+				ConfigException error = new ConfigException(e.getMessage(), settings);
+				error.initCause(e);
+				throw error;
+			}
+		}
 		userName = Utils.getString("mqtt-user", settings, userName);
 		userPwd = Utils.getString("mqtt-pwd", settings, userPwd);
 		keepAlive = Utils.getInt("mqtt-keepalive", settings, keepAlive);
@@ -142,6 +206,13 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 		qos = Utils.getInt("mqtt-qos", settings, qos);
 		retainMsg = Utils.getBoolean("mqtt-retain", settings, retainMsg);
 
+		// asynchronous client
+		async = Utils.getBoolean("mqtt-async", settings, async);
+		maxInFlight = Utils.getInt("mqtt-max-inflight", settings, maxInFlight);
+		inFlightTimeout = Utils.getLong("mqtt-inflight-timeout", settings, inFlightTimeout);
+		batchSize = Utils.getInt("mqtt-batch-size", settings, batchSize);
+		batchBytes = Utils.getInt("mqtt-batch-bytes", settings, batchBytes);
+
 		if (ssl) {
 			Properties connProps = new Properties();
 			connProps.putAll(settings);
@@ -157,6 +228,10 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 		options.setConnectionTimeout(connTimeout);
 		options.setMqttVersion(version);
 		options.setCleanSession(cleanSession);
+		if (async && maxInFlight > 0) {
+			// client rejects publications beyond its own in-flight limit
+			options.setMaxInflight(maxInFlight);
+		}
 	}
 
 	/**
@@ -173,6 +248,20 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 		return client;
 	}
 
+	/**
+	 * Create and connect asynchronous MQTT client
+	 * 
+	 * @return asynchronous MQTT client instance, connected
+	 *
+	 * @throws org.eclipse.paho.client.mqttv3.MqttException
+	 *             when server communication or security error occurs
+	 */
+	public MqttAsyncClient newMqttAsyncClient() throws MqttException {
+		MqttAsyncClient client = new MqttAsyncClient(serverURI, clientid, new MemoryPersistence());
+		client.connect(options).waitForCompletion();
+		return client;
+	}
+
 	/**
 	 * Create a new MQTT message with specific contents
 	 * 
@@ -215,7 +304,71 @@ public class MqttEventSinkFactory extends AbstractEventSinkFactory {
 	 */
 	public void publish(EventSink evSink, MqttClient client, MqttMessage msg)
 			throws MqttPersistenceException, MqttException {
-		String mqttTopic = (topic == null ? evSink.getName() : topic);
+		publish(getTopic(evSink, evSink.getSource(), OpLevel.NONE, OpType.DATAGRAM, null), client, msg);
+	}
+
+	/**
+	 * Publish message to a given topic using MQTT client
+	 * 
+	 * @param mqttTopic
+	 *            MQTT topic
+	 * @param client
+	 *            MQTT client
+	 * @param msg
+	 *            MQTT message instance
+	 *
+	 * @throws org.eclipse.paho.client.mqttv3.MqttPersistenceException
+	 *             when a problem with storing the message
+	 * @throws org.eclipse.paho.client.mqttv3.MqttException
+	 *             for other errors encountered while publishing the message. For instance client not connected
+	 */
+	public void publish(String mqttTopic, MqttClient client, MqttMessage msg)
+			throws MqttPersistenceException, MqttException {
 		client.publish(mqttTopic, msg);
 	}
+
+	/**
+	 * Obtain MQTT topic for a given set of event attributes. Topic template is expanded if configured, otherwise
+	 * configured topic or event sink name is returned.
+	 * 
+	 * @param evSink
+	 *            event sink
+	 * @param src
+	 *            event source
+	 * @param sev
+	 *            event severity
+	 * @param type
+	 *            event type
+	 * @param category
+	 *            snapshot category, {@code null} if not a snapshot
+	 * @return MQTT topic
+	 */
+	public String getTopic(EventSink evSink, Source src, OpLevel sev, OpType type, String category) {
+		if (topicTemplate != null) {
+			return topicTemplate.expand(src, sev, type, category);
+		}
+		return topic == null ? evSink.getName() : topic;
+	}
+
+	/**
+	 * Publish message to a given topic using asynchronous MQTT client without waiting for completion
+	 * 
+	 * @param mqttTopic
+	 *            MQTT topic
+	 * @param client
+	 *            asynchronous MQTT client
+	 * @param msg
+	 *            MQTT message instance
+	 * @param callback
+	 *            listener notified when publication completes or fails
+	 *
+	 * @throws org.eclipse.paho.client.mqttv3.MqttPersistenceException
+	 *             when a problem with storing the message
+	 * @throws org.eclipse.paho.client.mqttv3.MqttException
+	 *             for other errors encountered while publishing the message. For instance client not connected
+	 */
+	public void publish(String mqttTopic, MqttAsyncClient client, MqttMessage msg, IMqttActionListener callback)
+			throws MqttPersistenceException, MqttException {
+		client.publish(mqttTopic, msg, null, callback);
+	}
 }
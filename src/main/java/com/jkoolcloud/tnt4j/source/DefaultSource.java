@@ -15,6 +15,9 @@
  */
 package com.jkoolcloud.tnt4j.source;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
@@ -22,6 +25,10 @@ import com.jkoolcloud.tnt4j.utils.Utils;
  * Implements Source entity -- container of other sources. Each one identifies a specific entity such as an application,
  * server, device etc.
  * </p>
+ * <p>
+ * Each source counts changes of its attributes (see {@link #getVersion()}), so values derived from a source and its
+ * parent sources can be cached and validated cheaply, see {@link #captureVersions(Source)}.
+ * </p>
  * 
  * 
  * @version $Revision: 3 $
@@ -34,6 +41,7 @@ public class DefaultSource implements Source {
 	private Source parentSource;
 	private SourceType sourceType;
 	private SourceFactory factory;
+	private final AtomicInteger version = new AtomicInteger(0);
 
 	/**
 	 * Creates an Source object with the specified properties.
@@ -86,6 +94,7 @@ public class DefaultSource implements Source {
 	 */
 	public void setName(String name) {
 		this.sname = name;
+		version.incrementAndGet();
 	}
 
 	@Override
@@ -111,6 +120,7 @@ public class DefaultSource implements Source {
 	 */
 	public Source setSource(Source parent) {
 		this.parentSource = parent;
+		version.incrementAndGet();
 		return this;
 	}
 
@@ -122,6 +132,7 @@ public class DefaultSource implements Source {
 	@Override
 	public void setUser(String user) {
 		this.user = user;
+		version.incrementAndGet();
 	}
 
 	@Override
@@ -132,6 +143,7 @@ public class DefaultSource implements Source {
 	@Override
 	public void setUrl(String url) {
 		this.url = url;
+		version.incrementAndGet();
 	}
 
 	@Override
@@ -142,6 +154,7 @@ public class DefaultSource implements Source {
 	@Override
 	public void setSSN(String ssn) {
 		this.ssname = ssn;
+		version.incrementAndGet();
 	}
 
 	@Override
@@ -159,6 +172,64 @@ public class DefaultSource implements Source {
 	 */
 	protected void setType(SourceType type) {
 		sourceType = type;
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Obtain number of changes of this source. Incremented after name, type, parent source, user, URL or SSN of this
+	 * source is set.
+	 *
+	 * @return source version
+	 */
+	public int getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Capture versions of a given source and all its parent sources. Must be called before values derived from the
+	 * source chain are computed, so that changes made while computing them invalidate the captured versions.
+	 *
+	 * @param source
+	 *            source
+	 * @return versions of source chain starting with given source, or {@code null} if any source in the chain is not
+	 *         a {@link DefaultSource} and changes can not be tracked
+	 *
+	 * @see #isCurrent(Source, int[])
+	 */
+	public static int[] captureVersions(Source source) {
+		int[] versions = new int[4];
+		int depth = 0;
+		for (Source src = source; src != null; src = src.getSource()) {
+			if (!(src instanceof DefaultSource)) {
+				return null;
+			}
+			if (depth == versions.length) {
+				versions = Arrays.copyOf(versions, depth * 2);
+			}
+			versions[depth++] = ((DefaultSource) src).getVersion();
+		}
+		return depth == versions.length ? versions : Arrays.copyOf(versions, depth);
+	}
+
+	/**
+	 * Determine if a given source chain has not changed since its versions were captured. Parent changes are detected
+	 * through the version of the child source, so only versions are compared.
+	 *
+	 * @param source
+	 *            source
+	 * @param versions
+	 *            versions obtained by {@link #captureVersions(Source)}
+	 * @return {@code true} if no source in the chain has changed, {@code false} otherwise
+	 */
+	public static boolean isCurrent(Source source, int[] versions) {
+		int i = 0;
+		for (Source src = source; src != null; src = src.getSource(), i++) {
+			if (i >= versions.length || !(src instanceof DefaultSource)
+					|| ((DefaultSource) src).getVersion() != versions[i]) {
+				return false;
+			}
+		}
+		return i == versions.length;
 	}
 
 	/**
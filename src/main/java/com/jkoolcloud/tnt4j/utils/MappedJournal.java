@@ -0,0 +1,471 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class implements an append-only journal of byte records stored in memory-mapped, pre-allocated segment files.
+ * Writers claim a region of the current segment by atomically advancing its write offset, copy the record into the
+ * claimed region and commit it by writing the record length header last. No lock is taken on the write path; a lock is
+ * only taken by the single writer which overflows a segment and rolls the journal over to the next one. A spare segment
+ * is pre-allocated in advance so that rollover does not wait for file creation. If the next segment can not be created,
+ * append fails with {@link IOException} and rollover is retried by the next writer.
+ * <p>
+ * Segment files are named {@code <prefix>-<sequence>.journal}. Each record is stored as a 4 byte length followed by
+ * record bytes. A length of 0 marks the end of committed data, {@link #EOF_MARK} marks the end of a segment and
+ * is written on rollover and on close (segments left unsealed by a crashed writer are sealed on next open). Journals
+ * can be read or tailed with {@link MappedJournalReader}.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see MappedJournalReader
+ */
+public class MappedJournal {
+	/**
+	 * Size of the record header in bytes
+	 */
+	public static final int HEADER_SIZE = 4;
+
+	/**
+	 * Record length value marking the end of segment
+	 */
+	public static final int EOF_MARK = -1;
+
+	/**
+	 * Segment file name extension
+	 */
+	public static final String FILE_EXT = ".journal";
+
+	private final File dir;
+	private final String prefix;
+	private final int segmentSize;
+	private final Object rollLock = new Object();
+	private final AtomicLong records = new AtomicLong(0);
+	private final AtomicLong bytes = new AtomicLong(0);
+	private final AtomicLong rollovers = new AtomicLong(0);
+
+	private volatile Segment current;
+	private Segment spare;
+	private final List<Segment> unforced = new ArrayList<Segment>();
+	private long segmentSeq = 0;
+	private int refCount = 0;
+
+	static class Segment {
+		final long seq;
+		final File file;
+		final RandomAccessFile raf;
+		final MappedByteBuffer buffer;
+		final AtomicInteger claim = new AtomicInteger(0);
+		final AtomicInteger writers = new AtomicInteger(0);
+
+		Segment(long seq, File file, int size) throws IOException {
+			this.seq = seq;
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(size);
+				this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} catch (IOException e) {
+				raf.close();
+				throw e;
+			}
+		}
+
+		void close(boolean force) {
+			// wait for writers which claimed regions before the segment was sealed
+			while (writers.get() > 0) {
+				Thread.yield();
+			}
+			if (force) {
+				buffer.force();
+			}
+			Utils.close(raf);
+		}
+	}
+
+	/**
+	 * Create a journal writing segment files into a given directory.
+	 *
+	 * @param dir
+	 *            directory where segment files are created
+	 * @param prefix
+	 *            segment file name prefix
+	 * @param segmentSize
+	 *            size of a single segment file in bytes
+	 */
+	public MappedJournal(File dir, String prefix, int segmentSize) {
+		if (segmentSize <= HEADER_SIZE * 2) {
+			throw new IllegalArgumentException("Segment size too small: segmentSize=" + segmentSize);
+		}
+		this.dir = dir;
+		this.prefix = prefix;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Open the journal. Journal is reference counted: every call to this method must be matched by a call to
+	 * {@link #close()}. Writing starts with a new segment following the last existing segment in the directory.
+	 *
+	 * @throws IOException
+	 *             if segment file can not be created
+	 */
+	public void open() throws IOException {
+		synchronized (rollLock) {
+			if (refCount == 0) {
+				if (!dir.exists()) {
+					dir.mkdirs();
+				}
+				long[] existing = listSegments(dir, prefix);
+				segmentSeq = existing.length > 0 ? existing[existing.length - 1] + 1 : 0;
+				// seal segments left open by a writer which was not closed
+				for (int i = Math.max(0, existing.length - 2); i < existing.length; i++) {
+					seal(segmentFile(dir, prefix, existing[i]));
+				}
+				current = newSegment();
+				spare = newSegment();
+			}
+			refCount++;
+		}
+	}
+
+	/**
+	 * Determine if journal is open.
+	 *
+	 * @return {@code true} if journal is open, {@code false} otherwise
+	 */
+	public boolean isOpen() {
+		return current != null;
+	}
+
+	/**
+	 * Append a record containing a given text encoded as UTF-8. Text is encoded directly into the mapped segment.
+	 *
+	 * @param text
+	 *            record text
+	 * @return {@code true} if record was appended, {@code false} if journal is closed or record is larger than a
+	 *         segment
+	 * @throws IOException
+	 *             if next segment file can not be created
+	 */
+	public boolean append(CharSequence text) throws IOException {
+		return append(text, Utf8.length(text));
+	}
+
+	/**
+	 * Append a record.
+	 *
+	 * @param record
+	 *            record bytes
+	 * @return {@code true} if record was appended, {@code false} if journal is closed or record is larger than a
+	 *         segment
+	 * @throws IOException
+	 *             if next segment file can not be created
+	 */
+	public boolean append(byte[] record) throws IOException {
+		return append(record, record.length);
+	}
+
+	private boolean append(Object data, int len) throws IOException {
+		int size = HEADER_SIZE + len;
+		if (len <= 0 || size + HEADER_SIZE > segmentSize) {
+			return false;
+		}
+		while (true) {
+			Segment seg = current;
+			if (seg == null) {
+				return false;
+			}
+			if (seg.claim.get() > segmentSize) {
+				// segment sealed, roll over unless already done by another writer
+				rollover(seg);
+				continue;
+			}
+			seg.writers.incrementAndGet();
+			try {
+				int offset = seg.claim.getAndAdd(size);
+				// always leave room for end of segment mark
+				if (offset + size + HEADER_SIZE <= segmentSize) {
+					ByteBuffer region = seg.buffer.duplicate();
+					region.position(offset + HEADER_SIZE);
+					if (data instanceof byte[]) {
+						region.put((byte[]) data);
+					} else {
+						Utf8.encode((CharSequence) data, 0, region);
+					}
+					// length written last commits the record
+					seg.buffer.putInt(offset, len);
+					records.incrementAndGet();
+					bytes.addAndGet(len);
+					return true;
+				} else if (offset + HEADER_SIZE <= segmentSize) {
+					// first writer crossing the limit seals the segment
+					seg.buffer.putInt(offset, EOF_MARK);
+				} else {
+					continue;
+				}
+			} finally {
+				seg.writers.decrementAndGet();
+			}
+			rollover(seg);
+		}
+	}
+
+	/**
+	 * Switch from a sealed segment to the next one. Fails if next segment can not be created, in which case current
+	 * segment stays sealed and any writer seeing it retries the rollover.
+	 */
+	private void rollover(Segment sealed) throws IOException {
+		Segment next;
+		synchronized (rollLock) {
+			if (current != sealed) {
+				return;
+			}
+			next = spare != null ? spare : newSegment();
+			spare = null;
+			current = next;
+			rollovers.incrementAndGet();
+		}
+		sealed.close(false);
+		synchronized (rollLock) {
+			// sealed segment contents are forced by next force() call
+			unforced.add(sealed);
+			// pre-allocate spare segment for the next rollover
+			if (current == next && spare == null) {
+				try {
+					spare = newSegment();
+				} catch (IOException exc) {
+					// retried on next rollover
+				}
+			}
+		}
+	}
+
+	/**
+	 * Force contents of the current segment and segments sealed since last call to storage device.
+	 */
+	public void force() {
+		for (Segment seg : takeUnforced()) {
+			seg.buffer.force();
+		}
+		Segment seg = current;
+		if (seg != null) {
+			seg.buffer.force();
+		}
+	}
+
+	private List<Segment> takeUnforced() {
+		synchronized (rollLock) {
+			if (unforced.isEmpty()) {
+				return unforced.subList(0, 0);
+			}
+			List<Segment> segs = new ArrayList<Segment>(unforced);
+			unforced.clear();
+			return segs;
+		}
+	}
+
+	/**
+	 * Close the journal once all {@link #open()} calls are matched. Current segment and segments sealed since last
+	 * {@link #force()} are forced to storage device, unused spare segment is deleted.
+	 */
+	public void close() {
+		synchronized (rollLock) {
+			if (refCount == 0 || --refCount > 0) {
+				return;
+			}
+			Segment seg = current;
+			current = null;
+			if (seg != null) {
+				int offset = seg.claim.getAndAdd(segmentSize);
+				if (offset + HEADER_SIZE <= segmentSize) {
+					seg.buffer.putInt(offset, EOF_MARK);
+				}
+				seg.close(true);
+			}
+			for (Segment sealed : unforced) {
+				sealed.buffer.force();
+			}
+			unforced.clear();
+			if (spare != null) {
+				spare.close(false);
+				if (!spare.file.delete()) {
+					spare.file.deleteOnExit();
+				}
+				spare = null;
+			}
+		}
+	}
+
+	/**
+	 * Obtain journal directory.
+	 *
+	 * @return journal directory
+	 */
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * Obtain segment file name prefix.
+	 *
+	 * @return segment file name prefix
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * Obtain segment size in bytes.
+	 *
+	 * @return segment size in bytes
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * Obtain sequence number of the segment currently written.
+	 *
+	 * @return current segment sequence number, or -1 if journal is closed
+	 */
+	public long getSegmentSeq() {
+		Segment seg = current;
+		return seg != null ? seg.seq : -1;
+	}
+
+	/**
+	 * Obtain number of records appended since journal was created.
+	 *
+	 * @return number of appended records
+	 */
+	public long getRecordCount() {
+		return records.get();
+	}
+
+	/**
+	 * Obtain number of record bytes appended since journal was created.
+	 *
+	 * @return number of appended record bytes
+	 */
+	public long getBytes() {
+		return bytes.get();
+	}
+
+	/**
+	 * Obtain number of segment rollovers since journal was created.
+	 *
+	 * @return number of rollovers
+	 */
+	public long getRolloverCount() {
+		return rollovers.get();
+	}
+
+	/**
+	 * Obtain segment file for a given sequence number.
+	 *
+	 * @param dir
+	 *            journal directory
+	 * @param prefix
+	 *            segment file name prefix
+	 * @param seq
+	 *            segment sequence number
+	 * @return segment file
+	 */
+	public static File segmentFile(File dir, String prefix, long seq) {
+		return new File(dir, prefix + "-" + String.format("%019d", seq) + FILE_EXT);
+	}
+
+	/**
+	 * Obtain sorted sequence numbers of existing segment files.
+	 *
+	 * @param dir
+	 *            journal directory
+	 * @param prefix
+	 *            segment file name prefix
+	 * @return sorted array of segment sequence numbers
+	 */
+	public static long[] listSegments(File dir, final String prefix) {
+		final String start = prefix + "-";
+		String[] names = dir.list(new FilenameFilter() {
+			@Override
+			public boolean accept(File d, String name) {
+				return name.startsWith(start) && name.endsWith(FILE_EXT);
+			}
+		});
+		if (names == null) {
+			return new long[0];
+		}
+		long[] seqs = new long[names.length];
+		int count = 0;
+		for (String name : names) {
+			try {
+				seqs[count] = Long.parseLong(name.substring(start.length(), name.length() - FILE_EXT.length()));
+				count++;
+			} catch (NumberFormatException exc) {
+				// not a segment file
+			}
+		}
+		seqs = Arrays.copyOf(seqs, count);
+		Arrays.sort(seqs);
+		return seqs;
+	}
+
+	private static void seal(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+			int offset = 0;
+			while (offset + HEADER_SIZE <= buffer.capacity()) {
+				int len = buffer.getInt(offset);
+				if (len == 0) {
+					buffer.putInt(offset, EOF_MARK);
+					break;
+				} else if (len < 0 || len > buffer.capacity()) {
+					break;
+				}
+				offset += HEADER_SIZE + len;
+			}
+			buffer.force();
+		} finally {
+			Utils.close(raf);
+		}
+	}
+
+	private Segment newSegment() throws IOException {
+		Segment seg = new Segment(segmentSeq, segmentFile(dir, prefix, segmentSeq), segmentSize);
+		segmentSeq++;
+		return seg;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{dir: " + dir + ", prefix: " + prefix + ", segment.size: " + segmentSize
+				+ ", segment.seq: " + getSegmentSeq() + ", records: " + records.get() + ", rollovers: "
+				+ rollovers.get() + "}";
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class implements a reader of journals written by {@link MappedJournal}. Reader maps segment files read-only and
+ * returns committed records in append order, moving to the next segment when the end of segment mark is reached. When
+ * no committed record is available {@link #next()} returns {@code null}, so the journal can be tailed by polling while
+ * it is being written. Reader position ({@link #getSegmentSeq()}, {@link #getOffset()}) can be saved and later
+ * restored using {@link #seek(long, int)} to resume shipping without re-reading records.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see MappedJournal
+ */
+public class MappedJournalReader implements Closeable {
+	private final File dir;
+	private final String prefix;
+
+	private RandomAccessFile raf;
+	private MappedByteBuffer buffer;
+	private long segmentSeq = -1;
+	private int offset = 0;
+
+	/**
+	 * Create a reader positioned at the first existing segment of a journal.
+	 *
+	 * @param dir
+	 *            journal directory
+	 * @param prefix
+	 *            segment file name prefix
+	 */
+	public MappedJournalReader(File dir, String prefix) {
+		this.dir = dir;
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Position reader at a given segment and offset within the segment.
+	 *
+	 * @param seq
+	 *            segment sequence number
+	 * @param off
+	 *            offset of the next record within the segment
+	 * @throws IOException
+	 *             if segment file can not be opened
+	 */
+	public void seek(long seq, int off) throws IOException {
+		closeSegment();
+		segmentSeq = seq;
+		offset = off;
+	}
+
+	/**
+	 * Obtain next committed record.
+	 *
+	 * @return record bytes, or {@code null} if no committed record is available
+	 * @throws IOException
+	 *             if segment file can not be opened
+	 */
+	public byte[] next() throws IOException {
+		ByteBuffer rec = nextRecord();
+		if (rec == null) {
+			return null;
+		}
+		byte[] record = new byte[rec.remaining()];
+		rec.get(record);
+		return record;
+	}
+
+	/**
+	 * Obtain next committed record as a read-only view of the mapped segment, without copying record bytes. Returned
+	 * buffer is valid until reader is closed.
+	 *
+	 * @return buffer positioned at record bytes, or {@code null} if no committed record is available
+	 * @throws IOException
+	 *             if segment file can not be opened
+	 */
+	public ByteBuffer nextRecord() throws IOException {
+		while (true) {
+			if (buffer == null && !openSegment()) {
+				return null;
+			}
+			int len = offset + MappedJournal.HEADER_SIZE <= buffer.capacity() ? buffer.getInt(offset) : 0;
+			if (len > 0) {
+				ByteBuffer rec = buffer.duplicate();
+				rec.position(offset + MappedJournal.HEADER_SIZE);
+				rec.limit(offset + MappedJournal.HEADER_SIZE + len);
+				offset += MappedJournal.HEADER_SIZE + len;
+				return rec.slice();
+			}
+			if (len == MappedJournal.EOF_MARK) {
+				// end of segment, move to the next one
+				closeSegment();
+				segmentSeq++;
+				offset = 0;
+			} else {
+				// no more committed records
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Obtain sequence number of the segment being read.
+	 *
+	 * @return segment sequence number, or -1 if no segment was opened yet
+	 */
+	public long getSegmentSeq() {
+		return segmentSeq;
+	}
+
+	/**
+	 * Obtain offset of the next record within the segment being read.
+	 *
+	 * @return offset of the next record
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public void close() {
+		closeSegment();
+	}
+
+	private boolean openSegment() throws IOException {
+		if (segmentSeq < 0) {
+			long[] segments = MappedJournal.listSegments(dir, prefix);
+			if (segments.length == 0) {
+				return false;
+			}
+			segmentSeq = segments[0];
+			offset = 0;
+		}
+		File file = MappedJournal.segmentFile(dir, prefix, segmentSeq);
+		if (!file.exists()) {
+			return false;
+		}
+		raf = new RandomAccessFile(file, "r");
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} catch (IOException e) {
+			closeSegment();
+			throw e;
+		}
+		return true;
+	}
+
+	private void closeSegment() {
+		Utils.close(raf);
+		raf = null;
+		buffer = null;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{dir: " + dir + ", prefix: " + prefix + ", segment.seq: " + segmentSeq
+				+ ", offset: " + offset + "}";
+	}
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class implements a bounded FIFO queue of byte records stored in memory-mapped, append-only segment files.
+ * Records are appended to the last segment and read from the first one; a new segment is created when the last one is
+ * full and a segment file is deleted once all its records are read. Heap usage does not depend on the number of queued
+ * records.
+ * <p>
+ * Each segment file starts with its read and write positions, so records which were not read before the queue is
+ * closed (or the process exits) are recovered by a queue created later with the same directory and prefix. A lock file
+ * prevents two queues from using the same directory and prefix at the same time.
+ * <p>
+ * All methods are thread safe.
+ *
+ * @version $Revision: 1 $
+ */
+public class MappedSpillQueue {
+	private static final int SEGMENT_HEADER_SIZE = 8;
+	private static final int READ_POS_OFFSET = 0;
+	private static final int WRITE_POS_OFFSET = 4;
+	private static final int HEADER_SIZE = 4;
+	private static final String SEGMENT_SUFFIX = ".spill";
+	private static final String LOCK_SUFFIX = ".lock";
+
+	private final File dir;
+	private final String prefix;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+	private final RandomAccessFile lockFile;
+	private final FileLock lock;
+
+	private long segmentSeq = 0;
+	private long count = 0;
+	private long bytes = 0;
+	private long recovered = 0;
+	private boolean closed = false;
+
+	private static class Segment {
+		final File file;
+		final RandomAccessFile raf;
+		final MappedByteBuffer buffer;
+		int writePos, readPos;
+
+		Segment(File file, int size) throws IOException {
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "rw");
+			try {
+				this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			} catch (IOException e) {
+				raf.close();
+				throw e;
+			}
+		}
+
+		void init() {
+			setReadPos(SEGMENT_HEADER_SIZE);
+			setWritePos(SEGMENT_HEADER_SIZE);
+		}
+
+		void setReadPos(int pos) {
+			readPos = pos;
+			buffer.putInt(READ_POS_OFFSET, pos);
+		}
+
+		void setWritePos(int pos) {
+			writePos = pos;
+			buffer.putInt(WRITE_POS_OFFSET, pos);
+		}
+
+		boolean fits(int len) {
+			return writePos + HEADER_SIZE + len <= buffer.capacity();
+		}
+
+		boolean isDrained() {
+			return readPos >= writePos;
+		}
+
+		void close(boolean delete) {
+			Utils.close(raf);
+			if (delete && !file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Create a spill queue, recovering records left in segment files of a previous queue with the same directory and
+	 * prefix.
+	 *
+	 * @param dir
+	 *            directory where segment files are created
+	 * @param prefix
+	 *            segment file name prefix
+	 * @param segmentSize
+	 *            size of a single segment file in bytes
+	 * @param maxSegments
+	 *            maximum number of segment files
+	 * @throws IOException
+	 *             if queue directory and prefix are used by another queue or segment files can not be recovered
+	 */
+	public MappedSpillQueue(File dir, String prefix, int segmentSize, int maxSegments) throws IOException {
+		if (segmentSize <= SEGMENT_HEADER_SIZE + HEADER_SIZE) {
+			throw new IllegalArgumentException("Segment size too small: segmentSize=" + segmentSize);
+		}
+		this.dir = dir;
+		this.prefix = prefix;
+		this.segmentSize = segmentSize;
+		this.maxSegments = Math.max(1, maxSegments);
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		lockFile = new RandomAccessFile(new File(dir, prefix + LOCK_SUFFIX), "rw");
+		FileLock fLock = null;
+		try {
+			fLock = lockFile.getChannel().tryLock();
+		} catch (OverlappingFileLockException exc) {
+			fLock = null;
+		}
+		lock = fLock;
+		if (lock == null) {
+			Utils.close(lockFile);
+			throw new IOException("Spill queue is in use: dir=" + dir + ", prefix=" + prefix);
+		}
+		try {
+			recover();
+		} catch (IOException exc) {
+			close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Open segment files left by a previous queue in sequence order, deleting drained or corrupted ones.
+	 */
+	private void recover() throws IOException {
+		File[] files = dir.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return segmentSeq(file) >= 0;
+			}
+		});
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				long s1 = segmentSeq(f1), s2 = segmentSeq(f2);
+				return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+			}
+		});
+		for (File file : files) {
+			segmentSeq = Math.max(segmentSeq, segmentSeq(file) + 1);
+			long len = file.length();
+			if (len <= SEGMENT_HEADER_SIZE || len > Integer.MAX_VALUE) {
+				file.delete();
+				continue;
+			}
+			Segment seg = new Segment(file, (int) len);
+			int readPos = seg.buffer.getInt(READ_POS_OFFSET);
+			int writePos = seg.buffer.getInt(WRITE_POS_OFFSET);
+			if (readPos < SEGMENT_HEADER_SIZE || writePos > seg.buffer.capacity() || readPos > writePos) {
+				seg.close(true);
+				continue;
+			}
+			int pos = readPos, records = 0;
+			long size = 0;
+			while (pos + HEADER_SIZE <= writePos) {
+				int rlen = seg.buffer.getInt(pos);
+				if (rlen < 0 || pos + HEADER_SIZE + rlen > writePos) {
+					break;
+				}
+				pos += HEADER_SIZE + rlen;
+				size += rlen;
+				records++;
+			}
+			seg.readPos = readPos;
+			seg.setWritePos(pos);
+			if (seg.isDrained()) {
+				seg.close(true);
+				continue;
+			}
+			segments.addLast(seg);
+			count += records;
+			bytes += size;
+		}
+		recovered = count;
+	}
+
+	private long segmentSeq(File file) {
+		String name = file.getName();
+		String head = prefix + "-";
+		if (!name.startsWith(head) || !name.endsWith(SEGMENT_SUFFIX)) {
+			return -1;
+		}
+		String seq = name.substring(head.length(), name.length() - SEGMENT_SUFFIX.length());
+		if (seq.isEmpty() || seq.length() > 18) {
+			return -1;
+		}
+		for (int i = 0; i < seq.length(); i++) {
+			if (!Character.isDigit(seq.charAt(i))) {
+				return -1;
+			}
+		}
+		return Long.parseLong(seq);
+	}
+
+	/**
+	 * Append a record at the tail of the queue.
+	 *
+	 * @param record
+	 *            record bytes
+	 * @return {@code true} if record was appended, {@code false} if queue is full, closed or record is larger than a
+	 *         segment
+	 * @throws IOException
+	 *             if segment file can not be created
+	 */
+	public synchronized boolean offer(byte[] record) throws IOException {
+		if (closed || record.length + HEADER_SIZE + SEGMENT_HEADER_SIZE > segmentSize) {
+			return false;
+		}
+		Segment seg = segments.peekLast();
+		if (seg == null || !seg.fits(record.length)) {
+			if (segments.size() >= maxSegments) {
+				return false;
+			}
+			seg = newSegment();
+			segments.addLast(seg);
+		}
+		seg.buffer.putInt(seg.writePos, record.length);
+		seg.buffer.position(seg.writePos + HEADER_SIZE);
+		seg.buffer.put(record);
+		// publish record by moving write position after record is written
+		seg.setWritePos(seg.writePos + HEADER_SIZE + record.length);
+		count++;
+		bytes += record.length;
+		return true;
+	}
+
+	/**
+	 * Obtain record at the head of the queue without removing it.
+	 *
+	 * @return record bytes, or {@code null} if queue is empty
+	 */
+	public synchronized byte[] peek() {
+		Segment seg = head();
+		if (seg == null) {
+			return null;
+		}
+		int len = seg.buffer.getInt(seg.readPos);
+		byte[] record = new byte[len];
+		seg.buffer.position(seg.readPos + HEADER_SIZE);
+		seg.buffer.get(record);
+		return record;
+	}
+
+	/**
+	 * Remove record at the head of the queue.
+	 *
+	 * @return {@code true} if record was removed, {@code false} if queue is empty
+	 */
+	public synchronized boolean remove() {
+		Segment seg = head();
+		if (seg == null) {
+			return false;
+		}
+		int len = seg.buffer.getInt(seg.readPos);
+		seg.setReadPos(seg.readPos + HEADER_SIZE + len);
+		count--;
+		bytes -= len;
+		if (seg.isDrained()) {
+			if (segments.size() > 1) {
+				segments.pollFirst().close(true);
+			} else {
+				// reuse the only segment
+				seg.init();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Obtain and remove record at the head of the queue.
+	 *
+	 * @return record bytes, or {@code null} if queue is empty
+	 */
+	public synchronized byte[] poll() {
+		byte[] record = peek();
+		if (record != null) {
+			remove();
+		}
+		return record;
+	}
+
+	/**
+	 * Obtain number of records in the queue.
+	 *
+	 * @return number of records
+	 */
+	public synchronized long size() {
+		return count;
+	}
+
+	/**
+	 * Obtain number of records recovered from segment files of a previous queue when this queue was created.
+	 *
+	 * @return number of recovered records
+	 */
+	public synchronized long getRecoveredCount() {
+		return recovered;
+	}
+
+	/**
+	 * Obtain total size of records in the queue in bytes.
+	 *
+	 * @return size of queued records in bytes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Determine if queue is empty.
+	 *
+	 * @return {@code true} if queue is empty, {@code false} otherwise
+	 */
+	public synchronized boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Obtain number of segment files currently allocated.
+	 *
+	 * @return number of segment files
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Close the queue. Segment files holding unread records are kept and recovered by a queue created later with the
+	 * same directory and prefix, drained segment files are deleted.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		while (!segments.isEmpty()) {
+			Segment seg = segments.pollFirst();
+			seg.close(seg.isDrained());
+		}
+		count = 0;
+		bytes = 0;
+		try {
+			if (lock != null) {
+				lock.release();
+			}
+		} catch (IOException exc) {
+		}
+		Utils.close(lockFile);
+	}
+
+	private Segment head() {
+		Segment seg = segments.peekFirst();
+		return (seg == null || seg.isDrained()) ? null : seg;
+	}
+
+	private Segment newSegment() throws IOException {
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		File file = new File(dir, prefix + "-" + (segmentSeq++) + SEGMENT_SUFFIX);
+		Segment seg = new Segment(file, segmentSize);
+		seg.init();
+		return seg;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return getClass().getSimpleName() + "{dir: " + dir + ", prefix: " + prefix + ", segment.size: " + segmentSize
+				+ ", segments: " + segments.size() + "/" + maxSegments + ", records: " + count + ", bytes: " + bytes
+				+ "}";
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * <p>
+ * This class implements a pre-parsed {@link MessageFormat} pattern, which produces the same output as
+ * {@code MessageFormat.format(pattern, args)} without parsing the pattern on every call. Compiled templates are
+ * cached by pattern, least recently used ones are evicted when the cache is full, see {@link #compile(String)}.
+ * </p>
+ * <p>
+ * Patterns having only plain {@code {n}} arguments (no format type or style) are formatted by direct substitution of
+ * argument strings between pre-parsed literals. {@link Number} arguments are formatted by a per thread
+ * {@link NumberFormat} of the format locale, which is the locale {@link MessageFormat} uses by default. Patterns with
+ * {@link Date} arguments, format types or styles are formatted by a copy of a cached {@link MessageFormat} instance,
+ * which is recreated when the format locale changes.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see Utils#format(String, Object...)
+ */
+public class MessageTemplate {
+	/**
+	 * Maximum number of cached templates
+	 */
+	public static final int MAX_CACHED_TEMPLATES = 1024;
+
+	/**
+	 * Maximum length of cached patterns, longer patterns are compiled on every call
+	 */
+	public static final int MAX_CACHED_LENGTH = 1024;
+
+	private static final int MAX_INDEX_DIGITS = 9;
+	private static final Cache<String, MessageTemplate> TEMPLATES = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_TEMPLATES).build();
+	private static final ThreadLocal<LocaleNumberFormat> NUMBER_FORMAT = new ThreadLocal<LocaleNumberFormat>();
+
+	private final String pattern;
+	private final String[] literals;
+	private final int[] indexes;
+	private final int length;
+	private volatile MessageFormat format;
+
+	/**
+	 * Create a template for a given pattern. Use {@link #compile(String)} to obtain cached templates.
+	 *
+	 * @param pattern
+	 *            pattern as defined by {@link MessageFormat}
+	 */
+	public MessageTemplate(String pattern) {
+		if (pattern == null) {
+			throw new NullPointerException("pattern");
+		}
+		this.pattern = pattern;
+		List<String> lits = new ArrayList<String>();
+		List<Integer> idxs = new ArrayList<Integer>();
+		if (parse(pattern, lits, idxs)) {
+			literals = lits.toArray(new String[lits.size()]);
+			indexes = new int[idxs.size()];
+			int len = 0;
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = idxs.get(i);
+			}
+			for (String lit : literals) {
+				len += lit.length();
+			}
+			length = len;
+		} else {
+			literals = null;
+			indexes = null;
+			length = pattern.length();
+		}
+	}
+
+	/**
+	 * Obtain a cached template for a given pattern. A new template is compiled and cached when pattern is not cached
+	 * yet. Patterns of at most {@value #MAX_CACHED_LENGTH} characters are cached, longer patterns are compiled on
+	 * every call. At most {@value #MAX_CACHED_TEMPLATES} templates are cached, least recently used templates are
+	 * evicted first.
+	 *
+	 * @param pattern
+	 *            pattern as defined by {@link MessageFormat}
+	 * @return compiled template
+	 */
+	public static MessageTemplate compile(String pattern) {
+		MessageTemplate template = TEMPLATES.getIfPresent(pattern);
+		if (template == null) {
+			template = new MessageTemplate(pattern);
+			if (pattern.length() <= MAX_CACHED_LENGTH) {
+				TEMPLATES.put(pattern, template);
+			}
+		}
+		return template;
+	}
+
+	/**
+	 * Obtain number of cached templates.
+	 *
+	 * @return number of cached templates
+	 */
+	public static int getCachedCount() {
+		return (int) TEMPLATES.size();
+	}
+
+	/**
+	 * Remove all cached templates.
+	 */
+	public static void clearCache() {
+		TEMPLATES.invalidateAll();
+	}
+
+	/**
+	 * Obtain template pattern.
+	 *
+	 * @return pattern as defined by {@link MessageFormat}
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Determine if pattern has only plain {@code {n}} arguments and is formatted by direct substitution.
+	 *
+	 * @return {@code true} if pattern has no format types or styles, {@code false} otherwise
+	 */
+	public boolean isSimple() {
+		return indexes != null;
+	}
+
+	/**
+	 * Format given arguments using this template, same as {@code MessageFormat.format(pattern, args)}.
+	 *
+	 * @param args
+	 *            arguments for format
+	 * @return formatted string
+	 * @throws IllegalArgumentException
+	 *             if pattern is invalid or argument can not be formatted by its format type
+	 */
+	public String format(Object... args) {
+		if (indexes == null) {
+			return formatSlow(args);
+		}
+		int count = args == null ? 0 : args.length;
+		for (int idx : indexes) {
+			if (idx < count && args[idx] instanceof Date) {
+				return formatSlow(args);
+			}
+		}
+		StringBuilder str = new StringBuilder(length + 16 * indexes.length);
+		NumberFormat numFmt = null;
+		for (int i = 0; i < indexes.length; i++) {
+			str.append(literals[i]);
+			int idx = indexes[i];
+			if (idx >= count) {
+				str.append('{').append(idx).append('}');
+			} else if (args[idx] instanceof Number) {
+				if (numFmt == null) {
+					numFmt = getNumberFormat(formatLocale());
+				}
+				str.append(numFmt.format(args[idx]));
+			} else {
+				str.append(String.valueOf(args[idx]));
+			}
+		}
+		return str.append(literals[indexes.length]).toString();
+	}
+
+	private String formatSlow(Object[] args) {
+		return ((MessageFormat) getMessageFormat().clone()).format(args);
+	}
+
+	/**
+	 * Obtain cached message format, which is recreated when format locale changes.
+	 */
+	private MessageFormat getMessageFormat() {
+		Locale locale = formatLocale();
+		MessageFormat fmt = format;
+		if (fmt == null || !fmt.getLocale().equals(locale)) {
+			format = fmt = new MessageFormat(pattern, locale);
+		}
+		return fmt;
+	}
+
+	/**
+	 * Obtain locale used by {@link MessageFormat} by default: the default format locale on Java 7 and later, the
+	 * default locale on Java 6. {@link Formatter} picks its default locale the same way and is much cheaper to create
+	 * than a {@link MessageFormat}.
+	 */
+	private static Locale formatLocale() {
+		return new Formatter().locale();
+	}
+
+	private static NumberFormat getNumberFormat(Locale locale) {
+		LocaleNumberFormat numFmt = NUMBER_FORMAT.get();
+		if (numFmt == null || !numFmt.locale.equals(locale)) {
+			numFmt = new LocaleNumberFormat(locale);
+			NUMBER_FORMAT.set(numFmt);
+		}
+		return numFmt.format;
+	}
+
+	/**
+	 * Split a pattern into literals and argument indexes, resolving quotes the same way as {@link MessageFormat}.
+	 *
+	 * @return {@code true} if pattern has only plain {@code {n}} arguments, {@code false} otherwise
+	 */
+	private static boolean parse(String pattern, List<String> lits, List<Integer> idxs) {
+		StringBuilder lit = new StringBuilder(pattern.length());
+		boolean inQuote = false;
+		int len = pattern.length();
+		for (int i = 0; i < len; i++) {
+			char ch = pattern.charAt(i);
+			if (ch == '\'') {
+				if (i + 1 < len && pattern.charAt(i + 1) == '\'') {
+					lit.append('\'');
+					i++;
+				} else {
+					inQuote = !inQuote;
+				}
+			} else if (ch == '{' && !inQuote) {
+				int end = i + 1;
+				while (end < len && pattern.charAt(end) >= '0' && pattern.charAt(end) <= '9') {
+					end++;
+				}
+				int digits = end - i - 1;
+				if (digits == 0 || digits > MAX_INDEX_DIGITS || end >= len || pattern.charAt(end) != '}') {
+					return false;
+				}
+				lits.add(lit.toString());
+				idxs.add(Integer.parseInt(pattern.substring(i + 1, end)));
+				lit.setLength(0);
+				i = end;
+			} else {
+				lit.append(ch);
+			}
+		}
+		lits.add(lit.toString());
+		return true;
+	}
+
+	private static class LocaleNumberFormat {
+		final Locale locale;
+		final NumberFormat format;
+
+		LocaleNumberFormat(Locale locale) {
+			this.locale = locale;
+			this.format = NumberFormat.getInstance(locale);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{pattern: " + pattern + ", simple: " + isSimple() + "}";
+	}
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class implements a bounded, lock-free, multi-producer multi-consumer {@link BlockingQueue} backed by a
+ * preallocated ring buffer. Each slot carries a sequence number, so producers and consumers claim slots with a single
+ * CAS on the tail/head cursor and never contend on a shared lock. Blocking operations ({@link #put(Object)},
+ * {@link #take()}) wait using a configurable {@link WaitStrategy}. Threads blocked by {@link WaitStrategy#PARK} are
+ * woken up by a signal from the opposite side, which takes a lock only while some thread is blocked, so the cost of
+ * {@link #offer(Object)} stays flat regardless of the number of producer threads and idle threads consume no CPU.
+ * Head and tail cursors are padded to avoid false sharing between producers and consumers.
+ *
+ * @version $Revision: 1 $
+ * @param <E>
+ *            type of elements in queue
+ *
+ * @see WaitStrategy
+ */
+public class RingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	private final int capacity;
+	private final AtomicReferenceArray<E> slots;
+	private final AtomicLongArray sequences;
+	private final WaitStrategy waitStrategy;
+
+	private final PaddedAtomicLong tail = new PaddedAtomicLong();
+	private final PaddedAtomicLong head = new PaddedAtomicLong();
+
+	private final ReentrantLock waitLock = new ReentrantLock();
+	private final Condition notEmpty = waitLock.newCondition();
+	private final Condition notFull = waitLock.newCondition();
+	private final AtomicInteger waitingTakers = new AtomicInteger(0);
+	private final AtomicInteger waitingPutters = new AtomicInteger(0);
+
+	/**
+	 * Wait strategies used by blocking operations when the queue is full (producers) or empty (consumers).
+	 */
+	public enum WaitStrategy {
+		/**
+		 * Busy spin, lowest latency, burns one CPU per waiting thread.
+		 */
+		SPIN {
+			@Override
+			public int idle(int counter) {
+				return counter;
+			}
+		},
+
+		/**
+		 * Spin for a short period then yield CPU to other threads.
+		 */
+		YIELD {
+			@Override
+			public int idle(int counter) {
+				if (counter >= SPIN_TRIES) {
+					Thread.yield();
+					return counter;
+				}
+				return counter + 1;
+			}
+		},
+
+		/**
+		 * Spin, then yield, then block until signaled by the opposite side. Best trade-off between latency and CPU
+		 * usage, idle threads consume no CPU.
+		 */
+		PARK {
+			@Override
+			public int idle(int counter) {
+				if (counter >= SPIN_TRIES) {
+					Thread.yield();
+				}
+				return counter + 1;
+			}
+
+			@Override
+			public boolean isBlocking(int counter) {
+				return counter >= SPIN_TRIES + YIELD_TRIES;
+			}
+		};
+
+		static final int SPIN_TRIES = 100;
+		static final int YIELD_TRIES = 100;
+
+		/**
+		 * Wait for a condition to change without blocking.
+		 *
+		 * @param counter
+		 *            number of times this method was invoked for the current wait
+		 * @return updated counter to be passed to the next invocation
+		 */
+		public abstract int idle(int counter);
+
+		/**
+		 * Determine if waiting thread should block until signaled instead of calling {@link #idle(int)}.
+		 *
+		 * @param counter
+		 *            number of times {@link #idle(int)} was invoked for the current wait
+		 * @return {@code true} if thread should block, {@code false} otherwise
+		 */
+		public boolean isBlocking(int counter) {
+			return false;
+		}
+
+		/**
+		 * Obtain wait strategy by name (case insensitive).
+		 *
+		 * @param name
+		 *            wait strategy name
+		 * @param defValue
+		 *            default value when name is null or not recognized
+		 * @return wait strategy instance
+		 */
+		public static WaitStrategy valueOf(String name, WaitStrategy defValue) {
+			if (name == null) {
+				return defValue;
+			}
+			try {
+				return valueOf(name.trim().toUpperCase());
+			} catch (IllegalArgumentException exc) {
+				return defValue;
+			}
+		}
+	}
+
+	/**
+	 * Create a ring queue with a given capacity and {@link WaitStrategy#PARK} wait strategy.
+	 *
+	 * @param capacity
+	 *            maximum number of elements in the queue
+	 */
+	public RingBlockingQueue(int capacity) {
+		this(capacity, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Create a ring queue with a given capacity and wait strategy.
+	 *
+	 * @param capacity
+	 *            maximum number of elements in the queue
+	 * @param strategy
+	 *            wait strategy used by blocking operations
+	 */
+	public RingBlockingQueue(int capacity, WaitStrategy strategy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: capacity=" + capacity);
+		}
+		this.capacity = capacity;
+		this.waitStrategy = strategy == null ? WaitStrategy.PARK : strategy;
+		this.slots = new AtomicReferenceArray<E>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Obtain wait strategy used by blocking operations.
+	 *
+	 * @return wait strategy
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * Obtain maximum capacity of this queue.
+	 *
+	 * @return maximum capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		while (true) {
+			long pos = tail.get();
+			int idx = (int) (pos % capacity);
+			long dif = sequences.get(idx) - pos;
+			if (dif == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					slots.lazySet(idx, e);
+					sequences.set(idx, pos + 1);
+					if (waitingTakers.get() > 0) {
+						signal(notEmpty);
+					}
+					return true;
+				}
+			} else if (dif < 0) {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public E poll() {
+		while (true) {
+			long pos = head.get();
+			int idx = (int) (pos % capacity);
+			long dif = sequences.get(idx) - (pos + 1);
+			if (dif == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					E e = slots.get(idx);
+					slots.lazySet(idx, null);
+					sequences.set(idx, pos + capacity);
+					if (waitingPutters.get() > 0) {
+						signal(notFull);
+					}
+					return e;
+				}
+			} else if (dif < 0) {
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public E peek() {
+		long pos = head.get();
+		int idx = (int) (pos % capacity);
+		return sequences.get(idx) == pos + 1 ? slots.get(idx) : null;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		int counter = 0;
+		while (!offer(e)) {
+			checkInterrupt();
+			if (waitStrategy.isBlocking(counter)) {
+				awaitNotFull(0, false);
+			} else {
+				counter = waitStrategy.idle(counter);
+			}
+		}
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int counter = 0;
+		while (!offer(e)) {
+			checkInterrupt();
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (waitStrategy.isBlocking(counter)) {
+				awaitNotFull(remaining, true);
+			} else {
+				counter = waitStrategy.idle(counter);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		int counter = 0;
+		E e;
+		while ((e = poll()) == null) {
+			checkInterrupt();
+			if (waitStrategy.isBlocking(counter)) {
+				awaitNotEmpty(0, false);
+			} else {
+				counter = waitStrategy.idle(counter);
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int counter = 0;
+		E e;
+		while ((e = poll()) == null) {
+			checkInterrupt();
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			if (waitStrategy.isBlocking(counter)) {
+				awaitNotEmpty(remaining, true);
+			} else {
+				counter = waitStrategy.idle(counter);
+			}
+		}
+		return e;
+	}
+
+	@Override
+	public int size() {
+		// read head first so that the result is never negative
+		long h = head.get();
+		long t = tail.get();
+		long size = t - h;
+		return (int) Math.max(0, Math.min(size, capacity));
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		int count = 0;
+		E e;
+		while (count < maxElements && (e = poll()) != null) {
+			c.add(e);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a weakly consistent iterator over a snapshot of elements currently in the queue. The iterator does not
+	 * support removal.
+	 *
+	 * @return iterator over queue elements
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		ArrayList<E> snapshot = new ArrayList<E>(size());
+		long h = head.get();
+		long t = tail.get();
+		for (long pos = h; pos < t; pos++) {
+			E e = slots.get((int) (pos % capacity));
+			if (e != null) {
+				snapshot.add(e);
+			}
+		}
+		final Iterator<E> it = snapshot.iterator();
+		return new Iterator<E>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return it.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("remove");
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{capacity: " + capacity + ", size: " + size() + ", wait.strategy: "
+				+ waitStrategy + "}";
+	}
+
+	/**
+	 * Determine if the slot at the head of the queue holds an element.
+	 */
+	private boolean isReadable() {
+		long pos = head.get();
+		return sequences.get((int) (pos % capacity)) == pos + 1;
+	}
+
+	/**
+	 * Determine if the slot at the tail of the queue is free.
+	 */
+	private boolean isWritable() {
+		long pos = tail.get();
+		return sequences.get((int) (pos % capacity)) == pos;
+	}
+
+	/**
+	 * Block until an element is available or timeout expires. Waiting takers are registered before queue state is
+	 * checked, and producers check registered takers after publishing an element, so wake up signals are never lost.
+	 */
+	private void awaitNotEmpty(long nanos, boolean timed) throws InterruptedException {
+		waitLock.lockInterruptibly();
+		try {
+			waitingTakers.incrementAndGet();
+			try {
+				while (!isReadable()) {
+					if (!timed) {
+						notEmpty.await();
+					} else if (nanos <= 0) {
+						return;
+					} else {
+						nanos = notEmpty.awaitNanos(nanos);
+					}
+				}
+			} finally {
+				waitingTakers.decrementAndGet();
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	/**
+	 * Block until a slot is free or timeout expires, see {@link #awaitNotEmpty(long, boolean)}.
+	 */
+	private void awaitNotFull(long nanos, boolean timed) throws InterruptedException {
+		waitLock.lockInterruptibly();
+		try {
+			waitingPutters.incrementAndGet();
+			try {
+				while (!isWritable()) {
+					if (!timed) {
+						notFull.await();
+					} else if (nanos <= 0) {
+						return;
+					} else {
+						nanos = notFull.awaitNanos(nanos);
+					}
+				}
+			} finally {
+				waitingPutters.decrementAndGet();
+			}
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	private void signal(Condition condition) {
+		waitLock.lock();
+		try {
+			condition.signal();
+		} finally {
+			waitLock.unlock();
+		}
+	}
+
+	private static void checkInterrupt() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Atomic counter padded to occupy a cache line of its own.
+	 */
+	@SuppressWarnings("unused")
+	private static final class PaddedAtomicLong extends AtomicLong {
+		private static final long serialVersionUID = -2432815496282393538L;
+
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+}
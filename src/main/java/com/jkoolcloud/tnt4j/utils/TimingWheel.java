@@ -0,0 +1,238 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements a bounded hashed timing wheel, which schedules elements for expiration after a given delay.
+ * Scheduling is lock-free and O(1): elements are appended to a pending queue and placed into wheel buckets by the
+ * consumer thread on every tick. Expiration is O(1) per element as only one bucket is examined per tick. Expired
+ * elements are handed out in batches by {@link #takeExpired(Collection, int)}, which must be called by a single
+ * consumer thread.
+ * <p>
+ * Expiration accuracy is bound by tick duration: elements expire no earlier than their delay and no later than one
+ * tick after their delay (assuming the consumer keeps up).
+ *
+ * @version $Revision: 1 $
+ * @param <T>
+ *            type of elements scheduled by the wheel
+ */
+public class TimingWheel<T> {
+	private final long tickNanos;
+	private final int mask;
+	private final int capacity;
+	private final List<ArrayList<Entry<T>>> wheel;
+	private final ConcurrentLinkedQueue<Entry<T>> pending = new ConcurrentLinkedQueue<Entry<T>>();
+	private final ArrayDeque<T> expired = new ArrayDeque<T>();
+	private final AtomicInteger size = new AtomicInteger(0);
+	private final long startTime = System.nanoTime();
+
+	// accessed by consumer thread only
+	private long tick = 0;
+
+	private static class Entry<T> {
+		final T element;
+		final long deadline;
+		long rounds;
+
+		Entry(T element, long deadline) {
+			this.element = element;
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * Create a timing wheel.
+	 *
+	 * @param tickDuration
+	 *            duration of a single tick
+	 * @param unit
+	 *            time unit of tick duration
+	 * @param ticksPerWheel
+	 *            number of buckets in the wheel, rounded up to the power of 2
+	 * @param capacity
+	 *            maximum number of elements scheduled by the wheel
+	 */
+	public TimingWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, int capacity) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("Tick duration must be positive: tickDuration=" + tickDuration);
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid ticks per wheel: ticksPerWheel=" + ticksPerWheel);
+		}
+		int buckets = Integer.highestOneBit(ticksPerWheel);
+		if (buckets < ticksPerWheel) {
+			buckets <<= 1;
+		}
+		this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+		this.mask = buckets - 1;
+		this.capacity = capacity;
+		this.wheel = new ArrayList<ArrayList<Entry<T>>>(buckets);
+		for (int i = 0; i < buckets; i++) {
+			wheel.add(new ArrayList<Entry<T>>());
+		}
+	}
+
+	/**
+	 * Schedule an element for expiration after a given delay. This method never blocks.
+	 *
+	 * @param element
+	 *            element to schedule
+	 * @param delay
+	 *            delay before element expires
+	 * @param unit
+	 *            time unit of delay
+	 * @return {@code true} if element was scheduled, {@code false} if wheel capacity is exceeded
+	 */
+	public boolean offer(T element, long delay, TimeUnit unit) {
+		if (element == null) {
+			throw new NullPointerException();
+		}
+		if (size.incrementAndGet() > capacity) {
+			size.decrementAndGet();
+			return false;
+		}
+		pending.offer(new Entry<T>(element, System.nanoTime() + Math.max(0, unit.toNanos(delay))));
+		return true;
+	}
+
+	/**
+	 * Obtain number of elements scheduled by the wheel, including expired elements not yet taken.
+	 *
+	 * @return number of scheduled elements
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Obtain maximum number of elements scheduled by the wheel.
+	 *
+	 * @return maximum number of scheduled elements
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Determine if wheel capacity is reached.
+	 *
+	 * @return {@code true} if wheel is full, {@code false} otherwise
+	 */
+	public boolean isFull() {
+		return size.get() >= capacity;
+	}
+
+	/**
+	 * Obtain tick duration in a given time unit.
+	 *
+	 * @param unit
+	 *            time unit
+	 * @return tick duration
+	 */
+	public long getTickDuration(TimeUnit unit) {
+		return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Wait for expired elements and move up to a given number of them into a given collection. Blocks until at least
+	 * one element expires. Must be called by a single consumer thread.
+	 *
+	 * @param c
+	 *            collection to receive expired elements
+	 * @param maxElements
+	 *            maximum number of elements to return
+	 * @return number of elements added to the collection
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public int takeExpired(Collection<? super T> c, int maxElements) throws InterruptedException {
+		while (expired.isEmpty()) {
+			waitForNextTick();
+			transferPending();
+			expireBucket(wheel.get((int) (tick & mask)));
+			tick++;
+		}
+		int count = 0;
+		while (count < maxElements && !expired.isEmpty()) {
+			c.add(expired.poll());
+			count++;
+		}
+		size.addAndGet(-count);
+		return count;
+	}
+
+	/**
+	 * Remove all scheduled elements. Must be called by consumer thread or when consumer thread is stopped.
+	 */
+	public void clear() {
+		pending.clear();
+		expired.clear();
+		for (ArrayList<Entry<T>> bucket : wheel) {
+			bucket.clear();
+		}
+		size.set(0);
+	}
+
+	private void waitForNextTick() throws InterruptedException {
+		long deadline = startTime + (tick + 1) * tickNanos;
+		long sleepNanos;
+		while ((sleepNanos = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(this, sleepNanos);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	private void transferPending() {
+		Entry<T> entry;
+		while ((entry = pending.poll()) != null) {
+			long calculated = (entry.deadline - startTime) / tickNanos;
+			entry.rounds = (calculated - tick) / wheel.size();
+			long ticks = Math.max(calculated, tick);
+			wheel.get((int) (ticks & mask)).add(entry);
+		}
+	}
+
+	private void expireBucket(ArrayList<Entry<T>> bucket) {
+		for (int i = bucket.size() - 1; i >= 0; i--) {
+			Entry<T> entry = bucket.get(i);
+			if (entry.rounds <= 0) {
+				int last = bucket.size() - 1;
+				bucket.set(i, bucket.get(last));
+				bucket.remove(last);
+				expired.add(entry.element);
+			} else {
+				entry.rounds--;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{tick.ms: " + getTickDuration(TimeUnit.MILLISECONDS) + ", buckets: "
+				+ wheel.size() + ", capacity: " + capacity + ", size: " + size() + "}";
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class implements allocation free UTF-8 encoding of character sequences directly into byte buffers. Unlike
+ * {@code String.getBytes()} or {@code CharsetEncoder}, no intermediate byte arrays or char buffers are created.
+ * Unpaired surrogates are encoded as {@code '?'}.
+ *
+ * @version $Revision: 1 $
+ */
+public final class Utf8 {
+	/**
+	 * Maximum number of bytes a single character (or surrogate pair) is encoded into.
+	 */
+	public static final int MAX_CHAR_BYTES = 4;
+
+	private Utf8() {
+	}
+
+	/**
+	 * Encode characters of a given sequence into a byte buffer, starting at a given index and until either all
+	 * characters are encoded or buffer has not enough space for the next character.
+	 *
+	 * @param src
+	 *            characters to encode
+	 * @param from
+	 *            index of the first character to encode
+	 * @param dst
+	 *            buffer to encode into
+	 * @return index of the first character not encoded, {@code src.length()} if all characters are encoded
+	 */
+	public static int encode(CharSequence src, int from, ByteBuffer dst) {
+		int len = src.length();
+		int i = from;
+		while (i < len) {
+			char c = src.charAt(i);
+			if (c < 0x80) {
+				if (!dst.hasRemaining()) {
+					break;
+				}
+				dst.put((byte) c);
+			} else if (c < 0x800) {
+				if (dst.remaining() < 2) {
+					break;
+				}
+				dst.put((byte) (0xC0 | (c >> 6)));
+				dst.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(src.charAt(i + 1))) {
+				if (dst.remaining() < 4) {
+					break;
+				}
+				int cp = Character.toCodePoint(c, src.charAt(++i));
+				dst.put((byte) (0xF0 | (cp >> 18)));
+				dst.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+				dst.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+				dst.put((byte) (0x80 | (cp & 0x3F)));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				if (!dst.hasRemaining()) {
+					break;
+				}
+				dst.put((byte) '?');
+			} else {
+				if (dst.remaining() < 3) {
+					break;
+				}
+				dst.put((byte) (0xE0 | (c >> 12)));
+				dst.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				dst.put((byte) (0x80 | (c & 0x3F)));
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Obtain number of bytes a given character sequence is encoded into.
+	 *
+	 * @param src
+	 *            characters to encode
+	 * @return number of UTF-8 bytes
+	 */
+	public static int length(CharSequence src) {
+		int len = src.length();
+		int bytes = 0;
+		for (int i = 0; i < len; i++) {
+			char c = src.charAt(i);
+			if (c < 0x80) {
+				bytes++;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(src.charAt(i + 1))) {
+				bytes += 4;
+				i++;
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				bytes++;
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+}
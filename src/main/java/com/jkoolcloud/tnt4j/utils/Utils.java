@@ -421,7 +421,8 @@ public class Utils {
 	}
 
 	/**
-	 * Format a given string pattern and a list of arguments as defined by {@link MessageFormat}
+	 * Format a given string pattern and a list of arguments as defined by {@link MessageFormat}. Patterns are parsed
+	 * once and cached, see {@link MessageTemplate#compile(String)}.
 	 *
 	 * @param pattern
 	 *            format string
@@ -431,7 +432,7 @@ public class Utils {
 	 */
 	public static String format(String pattern, Object... args) {
 		if (args != null && args.length > 0) {
-			return MessageFormat.format(pattern, args);
+			return MessageTemplate.compile(pattern).format(args);
 		} else {
 			return String.valueOf(pattern);
 		}
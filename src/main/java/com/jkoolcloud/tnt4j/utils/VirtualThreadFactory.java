@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class implements a thread factory which creates virtual threads on JVMs supporting them (Java 21 and above).
+ * Virtual threads are obtained via reflection, so this class can be loaded on any JVM. Use {@link #isSupported()} to
+ * determine if virtual threads are available; on older JVMs this factory falls back to {@link NamedThreadFactory}
+ * platform daemon threads.
+ *
+ * @version $Revision: 1 $
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+
+	static {
+		Method ofVirtual = null, name = null, factory = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+		} catch (Throwable e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_FACTORY = factory;
+	}
+
+	ThreadFactory factory;
+	boolean virtual;
+
+	/**
+	 * Create a virtual thread factory
+	 *
+	 * @param pfix
+	 *            thread name prefix
+	 */
+	public VirtualThreadFactory(String pfix) {
+		factory = newVirtualFactory(pfix);
+		virtual = factory != null;
+		if (!virtual) {
+			factory = new NamedThreadFactory(pfix);
+		}
+	}
+
+	/**
+	 * Determine if current JVM supports virtual threads.
+	 *
+	 * @return {@code true} if virtual threads are supported, {@code false} otherwise
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Determine if this factory creates virtual threads.
+	 *
+	 * @return {@code true} if threads created by this factory are virtual, {@code false} if platform threads are
+	 *         created
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		return factory.newThread(r);
+	}
+
+	private static ThreadFactory newVirtualFactory(String pfix) {
+		if (OF_VIRTUAL == null) {
+			return null;
+		}
+		try {
+			// Thread.Builder is not thread safe, so create a dedicated builder per factory
+			Object builder = OF_VIRTUAL.invoke(null);
+			BUILDER_NAME.invoke(builder, pfix, 0L);
+			return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+}
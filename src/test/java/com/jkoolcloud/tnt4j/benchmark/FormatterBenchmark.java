@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.OpType;
+import com.jkoolcloud.tnt4j.core.Property;
+import com.jkoolcloud.tnt4j.core.PropertySnapshot;
+import com.jkoolcloud.tnt4j.format.BinaryEventFormatter;
+import com.jkoolcloud.tnt4j.format.CBORFormatter;
+import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.format.JSONFormatter;
+import com.jkoolcloud.tnt4j.format.JSONStreamFormatter;
+import com.jkoolcloud.tnt4j.format.LevelingJSONFormatter;
+import com.jkoolcloud.tnt4j.source.DefaultSource;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * <p>
+ * Benchmark comparing {@link CBORFormatter} against {@link JSONFormatter}, {@link LevelingJSONFormatter} and
+ * {@link JSONStreamFormatter}. Formats the same tracking event (with a snapshot, properties and an exception) into
+ * bytes and measures time, record size and heap allocated per record. Text formatters' output is UTF-8 encoded, the
+ * same way byte oriented sinks encode it.
+ * </p>
+ * Usage: {@code FormatterBenchmark [records] [rounds]}
+ *
+ * @version $Revision: 1 $
+ */
+public class FormatterBenchmark {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static void main(String[] args) throws Exception {
+		int records = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		TrackingEvent event = newEvent();
+		EventFormatter[] formatters = { new JSONFormatter(false), new LevelingJSONFormatter(false),
+				new JSONStreamFormatter(false), new CBORFormatter() };
+		System.out.println("records=" + records + ", rounds=" + rounds);
+		System.out.println(String.format("%-24s %10s %10s %12s", "formatter", "ns/rec", "bytes/rec", "alloc/rec"));
+		for (int run = 0; run < rounds; run++) {
+			for (EventFormatter formatter : formatters) {
+				long[] result = run(formatter, event, records);
+				if (run == rounds - 1) {
+					System.out.println(String.format("%-24s %10d %10d %12s", formatter.getClass().getSimpleName(),
+							result[0] / records, result[1] / records, result[2] < 0 ? "n/a" : result[2] / records));
+				}
+			}
+		}
+	}
+
+	private static long[] run(EventFormatter formatter, TrackingEvent event, int records) {
+		long alloc0 = allocatedBytes();
+		long bytes = 0;
+		long begin = System.nanoTime();
+		for (int i = 0; i < records; i++) {
+			bytes += toBytes(formatter, event).length;
+		}
+		long elapsed = System.nanoTime() - begin;
+		long alloc1 = allocatedBytes();
+		return new long[] { elapsed, bytes, alloc0 < 0 ? -1 : alloc1 - alloc0 };
+	}
+
+	private static byte[] toBytes(EventFormatter formatter, TrackingEvent event) {
+		return formatter instanceof BinaryEventFormatter ? ((BinaryEventFormatter) formatter).toBytes(event)
+				: formatter.format(event).getBytes(UTF8);
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if (mx instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static TrackingEvent newEvent() {
+		Source server = new DefaultSource(DefaultSourceFactory.getInstance(), "server-1", SourceType.SERVER, null,
+				"svc");
+		DefaultSource app = new DefaultSource(DefaultSourceFactory.getInstance(), "orders", SourceType.APPL, server,
+				"svc");
+		app.setUrl("http://server-1/orders");
+
+		PropertySnapshot snapshot = new PropertySnapshot("Orders", "queue-stats", OpLevel.INFO);
+		snapshot.add("depth", 42);
+		snapshot.add("rate", 1234.5);
+		snapshot.add("owner", "order-service");
+		snapshot.add("healthy", true);
+		snapshot.add(new Property("lastId", 9876543210L, true));
+		snapshot.setSource(app);
+
+		TrackingEvent event = new TrackingEvent(null, app, OpLevel.ERROR, OpType.SEND, "placeOrder", "corr-1",
+				"tag-1", "Order {0} failed for customer {1}", "ord-1001", "cust-77",
+				new IllegalStateException("Inventory service unavailable")) {
+		};
+		event.setTrackingId("trk-1001");
+		event.start();
+		event.stop();
+		event.getOperation().addSnapshot(snapshot);
+		event.getOperation().addProperty(new Property("amount", 99.95));
+		event.getOperation().addProperty(new Property("currency", "USD"));
+		return event;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.sink.impl.NullEventSink;
+import com.jkoolcloud.tnt4j.sink.impl.PooledLogger;
+import com.jkoolcloud.tnt4j.sink.impl.PooledLoggerFactoryImpl;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.utils.VirtualThreadFactory;
+
+/**
+ * <p>
+ * Benchmark comparing {@link PooledLogger} running on platform threads against virtual threads ({@code Threads}
+ * factory attribute). Logging threads deliver events to a sink simulating blocking I/O of given latency, either
+ * outside of any monitor ({@code io}), within a {@code synchronized} block the way stream based sinks write
+ * ({@code sync-io}), or without I/O at all ({@code none}). Virtual threads are pinned to their carrier while blocked
+ * inside a monitor on Java 21, so {@code sync-io} shows the cost of pinning.
+ * </p>
+ * Usage: {@code PooledLoggerThreadsBenchmark [threads] [events] [io-usec]}
+ *
+ * @version $Revision: 1 $
+ */
+public class PooledLoggerThreadsBenchmark {
+	private static final String[] IO_MODES = { "none", "io", "sync-io" };
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int events = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		long ioUsec = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+		System.out.println("threads=" + threads + ", events=" + events + ", io.usec=" + ioUsec + ", cpus="
+				+ Runtime.getRuntime().availableProcessors() + ", java.version=" + System.getProperty("java.version")
+				+ ", virtual.supported=" + VirtualThreadFactory.isSupported());
+		System.out.println(String.format("%-10s %-10s %10s %12s", "threads", "io", "ms", "events/s"));
+		Source source = DefaultSourceFactory.getInstance().getRootSource();
+		int pool = 0;
+		for (int run = 0; run < 2; run++) {
+			for (String io : IO_MODES) {
+				for (String mode : new String[] { PooledLoggerFactoryImpl.THREADS_PLATFORM,
+						PooledLoggerFactoryImpl.THREADS_VIRTUAL }) {
+					long nanos = run(mode, "bench-" + (pool++), threads, events, io, ioUsec, source);
+					if (run > 0) {
+						System.out.println(String.format("%-10s %-10s %10d %12d", mode, io,
+								TimeUnit.NANOSECONDS.toMillis(nanos), events * 1000000000L / nanos));
+					}
+				}
+			}
+		}
+		PooledLoggerFactoryImpl.shutdownAllLoggers();
+	}
+
+	private static long run(String mode, String name, int threads, int events, String io, long ioUsec,
+			Source source) throws Exception {
+		Map<String, Object> settings = new HashMap<String, Object>();
+		settings.put("Name", name);
+		settings.put("Size", String.valueOf(threads));
+		settings.put("Capacity", String.valueOf(events));
+		settings.put("BatchSize", "1");
+		settings.put("Threads", mode);
+		PooledLoggerFactoryImpl factory = new PooledLoggerFactoryImpl();
+		factory.setConfiguration(settings);
+		PooledLogger logger = factory.getPooledLogger();
+
+		IOSink sink = new IOSink(name, io, TimeUnit.MICROSECONDS.toNanos(ioUsec));
+		long begin = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			logger.put(new SinkLogEvent(sink, source, OpLevel.INFO, 0, "event"));
+		}
+		while (sink.count.get() < events) {
+			Thread.sleep(1);
+		}
+		long elapsed = System.nanoTime() - begin;
+		logger.shutdown(null);
+		return elapsed;
+	}
+
+	private static class IOSink extends NullEventSink {
+		final AtomicLong count = new AtomicLong();
+		final String io;
+		final long ioNanos;
+
+		IOSink(String name, String io, long ioNanos) {
+			super(name);
+			this.io = io;
+			this.ioNanos = ioNanos;
+		}
+
+		@Override
+		protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) throws Exception {
+			if ("io".equals(io)) {
+				LockSupport.parkNanos(ioNanos);
+			} else if ("sync-io".equals(io)) {
+				Object monitor = Thread.currentThread();
+				synchronized (monitor) {
+					LockSupport.parkNanos(ioNanos);
+				}
+			}
+			count.incrementAndGet();
+		}
+	}
+}
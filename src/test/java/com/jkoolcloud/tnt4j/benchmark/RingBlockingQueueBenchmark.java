@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.jkoolcloud.tnt4j.utils.RingBlockingQueue;
+import com.jkoolcloud.tnt4j.utils.RingBlockingQueue.WaitStrategy;
+
+/**
+ * <p>
+ * Benchmark comparing {@link RingBlockingQueue} wait strategies against {@link ArrayBlockingQueue}. Measures
+ * throughput of producers handing off messages to consumers and CPU time consumed by idle consumers blocked in
+ * {@code take()}.
+ * </p>
+ * Usage: {@code RingBlockingQueueBenchmark [producers] [consumers] [messages] [capacity] [idle-seconds]}
+ *
+ * @version $Revision: 1 $
+ */
+public class RingBlockingQueueBenchmark {
+	private static final Object MSG = new Object();
+	private static final Object STOP = new Object();
+
+	public static void main(String[] args) throws Exception {
+		int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int messages = args.length > 2 ? Integer.parseInt(args[2]) : 2000000;
+		int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+		int idleSec = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+		System.out.println("producers=" + producers + ", consumers=" + consumers + ", messages=" + messages
+				+ ", capacity=" + capacity);
+		for (int run = 0; run < 2; run++) {
+			String phase = run == 0 ? "warmup" : "measure";
+			report(phase, "array", throughput(new ArrayBlockingQueue<Object>(capacity), producers, consumers, messages));
+			for (WaitStrategy ws : WaitStrategy.values()) {
+				report(phase, "ring/" + ws,
+						throughput(new RingBlockingQueue<Object>(capacity, ws), producers, consumers, messages));
+			}
+		}
+		System.out.println("idle consumer CPU time over " + idleSec + "s, " + consumers + " consumers:");
+		printIdle("array", idleCpu(new ArrayBlockingQueue<Object>(capacity), consumers, idleSec));
+		for (WaitStrategy ws : WaitStrategy.values()) {
+			printIdle("ring/" + ws, idleCpu(new RingBlockingQueue<Object>(capacity, ws), consumers, idleSec));
+		}
+	}
+
+	private static void report(String phase, String name, long nanos) {
+		if ("measure".equals(phase)) {
+			System.out.println(String.format("%-12s %8d ms", name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+		}
+	}
+
+	private static void printIdle(String name, long cpuNanos) {
+		System.out.println(String.format("%-12s %8d ms cpu", name, TimeUnit.NANOSECONDS.toMillis(cpuNanos)));
+	}
+
+	private static long throughput(final BlockingQueue<Object> queue, int producers, int consumers,
+			final int messages) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final int perProducer = messages / producers;
+		Thread[] pThreads = new Thread[producers];
+		Thread[] cThreads = new Thread[consumers];
+		for (int i = 0; i < consumers; i++) {
+			cThreads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (queue.take() != STOP) {
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			cThreads[i].start();
+		}
+		for (int i = 0; i < producers; i++) {
+			pThreads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int n = 0; n < perProducer; n++) {
+							queue.put(MSG);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			pThreads[i].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread t : pThreads) {
+			t.join();
+		}
+		for (int i = 0; i < consumers; i++) {
+			queue.put(STOP);
+		}
+		for (Thread t : cThreads) {
+			t.join();
+		}
+		return System.nanoTime() - begin;
+	}
+
+	private static long idleCpu(final BlockingQueue<Object> queue, int consumers, int seconds)
+			throws InterruptedException {
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		Thread[] cThreads = new Thread[consumers];
+		for (int i = 0; i < consumers; i++) {
+			cThreads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (queue.take() != STOP) {
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			cThreads[i].start();
+		}
+		long[] before = new long[consumers];
+		for (int i = 0; i < consumers; i++) {
+			before[i] = mx.getThreadCpuTime(cThreads[i].getId());
+		}
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		long cpu = 0;
+		for (int i = 0; i < consumers; i++) {
+			cpu += mx.getThreadCpuTime(cThreads[i].getId()) - before[i];
+		}
+		for (int i = 0; i < consumers; i++) {
+			queue.put(STOP);
+		}
+		for (Thread t : cThreads) {
+			t.join();
+		}
+		return cpu;
+	}
+}
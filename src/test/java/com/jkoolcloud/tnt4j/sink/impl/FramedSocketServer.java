@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Local test server for the framed socket protocol. Accepts connections, decodes frames using {@link FrameDecoder}
+ * and counts received records. When a number of records is given, sends them to itself over a framed
+ * {@link NioSocketWriter} and verifies that every record is received intact and in order, reporting payload and wire
+ * bytes. Otherwise runs until killed, printing received records.
+ * </p>
+ * Usage: {@code FramedSocketServer [port] [records] [compress-level]}
+ *
+ * @version $Revision: 1 $
+ */
+public class FramedSocketServer implements Runnable {
+	private final ServerSocket server;
+	private final boolean print;
+	private final ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<String>();
+	private final AtomicLong frames = new AtomicLong(0);
+	private final AtomicLong records = new AtomicLong(0);
+	private volatile IOException error;
+
+	public FramedSocketServer(int port, boolean print) throws IOException {
+		this.server = new ServerSocket(port);
+		this.print = print;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 6400;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int level = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+
+		FramedSocketServer srv = new FramedSocketServer(port, count <= 0);
+		Thread acceptor = new Thread(srv, "FramedSocketServer/accept");
+		acceptor.setDaemon(count > 0);
+		acceptor.start();
+		System.out.println("listening on port " + srv.server.getLocalPort());
+		if (count > 0) {
+			System.exit(srv.verify(count, level) ? 0 : 1);
+		}
+	}
+
+	@Override
+	public void run() {
+		while (!server.isClosed()) {
+			try {
+				final Socket socket = server.accept();
+				Thread reader = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						read(socket);
+					}
+				}, "FramedSocketServer/" + socket.getRemoteSocketAddress());
+				reader.setDaemon(true);
+				reader.start();
+			} catch (IOException e) {
+				if (!server.isClosed()) {
+					error = e;
+				}
+				return;
+			}
+		}
+	}
+
+	private void read(Socket socket) {
+		FrameDecoder decoder = null;
+		try {
+			decoder = new FrameDecoder(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+			List<String> frame;
+			while ((frame = decoder.readFrameAsStrings()) != null) {
+				frames.incrementAndGet();
+				for (String record : frame) {
+					if (print) {
+						System.out.println(record);
+					} else {
+						received.add(record);
+					}
+					records.incrementAndGet();
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+		} finally {
+			if (decoder != null) {
+				decoder.end();
+			}
+			try {
+				socket.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private boolean verify(int count, int level) throws Exception {
+		FrameEncoder encoder = new FrameEncoder(level, 256);
+		NioSocketWriter writer = new NioSocketWriter("localhost", server.getLocalPort()).setFraming(encoder);
+		writer.start();
+		long begin = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			writer.write(record(i));
+		}
+		writer.close(TimeUnit.SECONDS.toMillis(30));
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (records.get() < count && error == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		long elapsed = System.nanoTime() - begin;
+		server.close();
+		encoder.end();
+
+		int idx = 0, mismatched = 0;
+		for (String record : received) {
+			if (!record.equals(record(idx++))) {
+				mismatched++;
+			}
+		}
+		boolean ok = error == null && idx == count && mismatched == 0;
+		System.out.println("records=" + records.get() + "/" + count + ", frames=" + frames.get() + ", mismatched="
+				+ mismatched + ", error=" + error);
+		System.out.println("payload.bytes=" + encoder.getRawBytes() + ", wire.bytes=" + encoder.getFrameBytes()
+				+ ", ratio=" + String.format("%.2f", (double) encoder.getRawBytes() / Math.max(1, encoder.getFrameBytes()))
+				+ ", elapsed.ms=" + TimeUnit.NANOSECONDS.toMillis(elapsed));
+		System.out.println(ok ? "PASSED" : "FAILED");
+		return ok;
+	}
+
+	private static String record(int i) {
+		return "{\"fqn\":\"APPL=FramedSocketServer#SERVER=localhost\",\"seq\":" + i
+				+ ",\"severity\":\"INFO\",\"msg-text\":\"framed protocol record " + i + "\"}";
+	}
+}
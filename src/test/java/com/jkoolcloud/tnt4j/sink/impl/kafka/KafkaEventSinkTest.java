@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.format.JSONFormatter;
+import com.jkoolcloud.tnt4j.sink.SinkError;
+import com.jkoolcloud.tnt4j.sink.SinkErrorListener;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * Tests delivery tracking of {@link KafkaEventSink} using a {@link MockProducer} supplied through
+ * {@link KafkaEventSink#createProducer(Properties)}. Sends are completed manually, so tests control when and how each
+ * record is acknowledged.
+ *
+ * @version $Revision: 1 $
+ */
+public class KafkaEventSinkTest {
+	private static final String TOPIC = "tnt4j-test";
+
+	private MockProducer<String, byte[]> mock;
+	private KafkaEventSink sink;
+	private Source source;
+	private final List<SinkError> errors = new CopyOnWriteArrayList<SinkError>();
+
+	@Before
+	public void setUp() {
+		source = DefaultSourceFactory.getInstance().newSource("KafkaEventSinkTest");
+		mock = new MockProducer<String, byte[]>(false, new StringSerializer(), new ByteArraySerializer());
+		sink = new KafkaEventSink(TOPIC, new Properties(), new JSONFormatter(false)) {
+			@Override
+			protected Producer<String, byte[]> createProducer(Properties props) {
+				return mock;
+			}
+		};
+		sink.addSinkErrorListener(new SinkErrorListener() {
+			@Override
+			public void sinkError(SinkError ev) {
+				errors.add(ev);
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		sink.close();
+	}
+
+	@Test
+	public void sendsRecordWithKeyAndHeaders() throws IOException {
+		sink.open();
+		sink.log(source, OpLevel.WARNING, "hello {0}", "kafka");
+
+		assertEquals(1, mock.history().size());
+		ProducerRecord<String, byte[]> record = mock.history().get(0);
+		assertEquals(TOPIC, record.topic());
+		assertEquals(source.getFQName(), record.key());
+		assertTrue(new String(record.value(), Utils.UTF8).contains("hello kafka"));
+		assertEquals(OpLevel.WARNING.name(),
+				new String(record.headers().lastHeader(KafkaEventSink.HEADER_SEVERITY).value(), Utils.UTF8));
+		assertEquals(1, sink.getInFlight());
+
+		assertTrue(mock.completeNext());
+		assertEquals(0, sink.getInFlight());
+		assertEquals(1, sink.getAcked());
+		assertEquals(0, sink.getFailed());
+		assertTrue(errors.isEmpty());
+	}
+
+	@Test
+	public void failedDeliveryNotifiesErrorListeners() throws IOException {
+		sink.open();
+		sink.log(source, OpLevel.ERROR, "lost {0}", "record");
+
+		assertTrue(mock.errorNext(new RuntimeException("broker down")));
+		assertEquals(0, sink.getInFlight());
+		assertEquals(0, sink.getAcked());
+		assertEquals(1, sink.getFailed());
+		assertEquals(1, errors.size());
+		SinkError error = errors.get(0);
+		assertNotNull(error.getSinkEvent());
+		assertEquals(OpLevel.ERROR, error.getSinkEvent().getSeverity());
+		assertEquals("broker down", error.getCause().getMessage());
+	}
+
+	@Test
+	public void fullWindowFailsSendUntilAcknowledged() throws IOException {
+		sink.setInFlightWindow(1, 10);
+		sink.open();
+		sink.log(source, OpLevel.INFO, "first");
+		sink.log(source, OpLevel.INFO, "second");
+
+		assertEquals(1, mock.history().size());
+		assertEquals(1, sink.windowTimeouts.get());
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).getCause() instanceof IOException);
+
+		assertTrue(mock.completeNext());
+		sink.log(source, OpLevel.INFO, "third");
+		assertEquals(2, mock.history().size());
+		assertEquals(1, sink.getInFlight());
+	}
+
+	@Test
+	public void legacyStringValueSerializerIsIgnored() throws IOException {
+		Properties props = new Properties();
+		props.setProperty(KafkaEventSink.KEY_SERIALIZER, StringSerializer.class.getName());
+		props.setProperty(KafkaEventSink.VALUE_SERIALIZER, StringSerializer.class.getName());
+		sink.kprops = props;
+		sink.open();
+		assertTrue(sink.isOpen());
+
+		sink.log(source, OpLevel.INFO, "legacy {0}", "config");
+		assertEquals(1, mock.history().size());
+		assertTrue(new String(mock.history().get(0).value(), Utils.UTF8).contains("legacy config"));
+	}
+
+	@Test
+	public void incompatibleSerializerIsRejected() throws IOException {
+		Properties props = new Properties();
+		props.setProperty(KafkaEventSink.VALUE_SERIALIZER, "org.apache.kafka.common.serialization.LongSerializer");
+		sink.kprops = props;
+		try {
+			sink.open();
+			fail("Incompatible value serializer accepted");
+		} catch (IOException exc) {
+			assertTrue(exc.getMessage().contains(KafkaEventSink.VALUE_SERIALIZER));
+		}
+		assertTrue(!sink.isOpen());
+
+		props.remove(KafkaEventSink.VALUE_SERIALIZER);
+		props.setProperty(KafkaEventSink.KEY_SERIALIZER, ByteArraySerializer.class.getName());
+		try {
+			sink.open();
+			fail("Incompatible key serializer accepted");
+		} catch (IOException exc) {
+			assertTrue(exc.getMessage().contains(KafkaEventSink.KEY_SERIALIZER));
+		}
+
+		props.setProperty(KafkaEventSink.KEY_SERIALIZER, StringSerializer.class.getName());
+		props.setProperty(KafkaEventSink.VALUE_SERIALIZER, ByteArraySerializer.class.getName());
+		sink.open();
+		assertTrue(sink.isOpen());
+	}
+
+	@Test
+	public void closeClosesProducer() throws IOException {
+		sink.open();
+		assertTrue(sink.isOpen());
+		sink.close();
+		assertTrue(mock.closed());
+		assertTrue(!sink.isOpen());
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2014-2018 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jkoolcloud.tnt4j.sink.impl.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttToken;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.format.DefaultFormatter;
+import com.jkoolcloud.tnt4j.sink.SinkError;
+import com.jkoolcloud.tnt4j.sink.SinkErrorListener;
+import com.jkoolcloud.tnt4j.sink.SinkLogEvent;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * Tests in-flight window, batching and failure handling of {@link MqttAsyncEventSink} using a factory which supplies
+ * an unconnected client through {@link MqttEventSinkFactory#newMqttAsyncClient()} and records messages passed to
+ * {@link MqttEventSinkFactory#publish(String, MqttAsyncClient, MqttMessage, IMqttActionListener)}. Publications are
+ * completed manually, so tests control when and how each message is acknowledged.
+ *
+ * @version $Revision: 1 $
+ */
+public class MqttAsyncEventSinkTest {
+	private static final String TOPIC = "tnt4j-test";
+
+	private TestFactory factory;
+	private TestSink sink;
+	private Source source;
+	private final List<SinkError> errors = new CopyOnWriteArrayList<SinkError>();
+
+	@Before
+	public void setUp() {
+		source = DefaultSourceFactory.getInstance().newSource("MqttAsyncEventSinkTest");
+		factory = new TestFactory();
+		sink = new TestSink(factory);
+		sink.addSinkErrorListener(new SinkErrorListener() {
+			@Override
+			public void sinkError(SinkError ev) {
+				errors.add(ev);
+			}
+		});
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		sink.close();
+	}
+
+	@Test
+	public void publishesEachEventOutsideBatch() throws IOException {
+		sink.open();
+		sink.log(source, OpLevel.WARNING, "hello {0}", "mqtt");
+
+		assertEquals(1, factory.published.size());
+		Published msg = factory.published.get(0);
+		assertEquals(TOPIC, msg.topic);
+		assertEquals("hello mqtt", msg.payload());
+		assertEquals(1, msg.message.getQos());
+		assertEquals(1, sink.getInFlight());
+
+		msg.callback.onSuccess(null);
+		assertEquals(0, sink.getInFlight());
+		assertEquals(1, sink.getAcked());
+		assertEquals(0, sink.getFailed());
+		assertTrue(errors.isEmpty());
+	}
+
+	@Test
+	public void fullWindowFailsPublishUntilCompleted() throws IOException {
+		sink.setInFlightWindow(1, 10);
+		sink.open();
+		sink.log(source, OpLevel.INFO, "first");
+		sink.log(source, OpLevel.INFO, "second");
+
+		assertEquals(1, factory.published.size());
+		assertEquals(1, sink.windowTimeouts.get());
+		assertEquals(1, sink.getFailed());
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).getCause() instanceof IOException);
+		assertEquals("second", String.valueOf(errors.get(0).getSinkEvent().getSinkObject()));
+
+		// completion releases window space
+		factory.published.get(0).callback.onSuccess(null);
+		sink.log(source, OpLevel.INFO, "third");
+		assertEquals(2, factory.published.size());
+		assertEquals("third", factory.published.get(1).payload());
+		assertEquals(1, sink.getInFlight());
+
+		// failure releases window space as well
+		factory.published.get(1).callback.onFailure(null, new MqttException(MqttException.REASON_CODE_CONNECTION_LOST));
+		assertEquals(0, sink.getInFlight());
+		sink.log(source, OpLevel.INFO, "fourth");
+		assertEquals(3, factory.published.size());
+		assertEquals(1, sink.windowTimeouts.get());
+	}
+
+	@Test
+	public void batchesByCount() throws IOException {
+		sink.setBatch(3, 64 * 1024);
+		sink.open();
+		sink.log(newEvents(7));
+
+		assertEquals(3, factory.published.size());
+		assertEquals("event-0\nevent-1\nevent-2", factory.published.get(0).payload());
+		assertEquals("event-3\nevent-4\nevent-5", factory.published.get(1).payload());
+		assertEquals("event-6", factory.published.get(2).payload());
+		assertEquals(3, sink.getInFlight());
+	}
+
+	@Test
+	public void batchesByBytes() throws IOException {
+		// two 7 byte events and a delimiter fit, the third one does not
+		sink.setBatch(100, 16);
+		sink.open();
+		sink.log(newEvents(5));
+
+		assertEquals(3, factory.published.size());
+		assertEquals("event-0\nevent-1", factory.published.get(0).payload());
+		assertEquals("event-2\nevent-3", factory.published.get(1).payload());
+		assertEquals("event-4", factory.published.get(2).payload());
+		for (Published msg : factory.published) {
+			assertTrue(msg.message.getPayload().length <= 16);
+		}
+	}
+
+	@Test
+	public void failedBatchNotifiesListenersPerEventAtQos1() throws IOException {
+		sink.setBatch(10, 64 * 1024);
+		sink.open();
+		sink.log(newEvents(3));
+
+		assertEquals(1, factory.published.size());
+		MqttException cause = new MqttException(MqttException.REASON_CODE_CONNECTION_LOST);
+		factory.published.get(0).callback.onFailure(null, cause);
+		assertEquals(1, sink.getFailed());
+		assertEquals(3, errors.size());
+		for (int i = 0; i < errors.size(); i++) {
+			assertSame(cause, errors.get(i).getCause());
+			assertEquals("event-" + i, String.valueOf(errors.get(i).getSinkEvent().getSinkObject()));
+		}
+	}
+
+	@Test
+	public void failedMessageSetsErrorStateAtQos0() throws IOException {
+		factory.qos = 0;
+		sink.open();
+		sink.log(source, OpLevel.INFO, "lost");
+
+		assertEquals(1, factory.published.size());
+		assertEquals(0, factory.published.get(0).message.getQos());
+		MqttException cause = new MqttException(MqttException.REASON_CODE_CONNECTION_LOST);
+		factory.published.get(0).callback.onFailure(null, cause);
+		assertEquals(1, sink.getFailed());
+		assertTrue(errors.isEmpty());
+		assertTrue(sink.errorState());
+		assertSame(cause, sink.getLastError());
+	}
+
+	@Test
+	public void flushAndClosePublishPendingBatches() throws IOException {
+		sink.setBatch(10, 64 * 1024);
+		sink.open();
+		sink.batching = true;
+		sink.log(source, OpLevel.INFO, "event-0");
+		sink.log(source, OpLevel.INFO, "event-1");
+		assertTrue(factory.published.isEmpty());
+
+		sink.flush();
+		assertEquals(1, factory.published.size());
+		assertEquals("event-0\nevent-1", factory.published.get(0).payload());
+
+		sink.log(source, OpLevel.INFO, "event-2");
+		assertEquals(1, factory.published.size());
+		TestClient client = factory.client;
+		sink.close();
+		assertEquals(2, factory.published.size());
+		assertEquals("event-2", factory.published.get(1).payload());
+		assertTrue(client.closed);
+		assertTrue(!sink.isOpen());
+		assertNull(sink.getSinkHandle());
+	}
+
+	private List<SinkLogEvent> newEvents(int count) {
+		List<SinkLogEvent> events = new ArrayList<SinkLogEvent>(count);
+		for (int i = 0; i < count; i++) {
+			events.add(new SinkLogEvent(sink, source, OpLevel.INFO, 0, "event-" + i));
+		}
+		return events;
+	}
+
+	private static class TestSink extends MqttAsyncEventSink {
+		boolean batching = false;
+
+		TestSink(MqttEventSinkFactory factory) {
+			super(factory, TOPIC, null, new DefaultFormatter("{2}"));
+		}
+
+		@Override
+		protected boolean isBatching() {
+			return batching || super.isBatching();
+		}
+	}
+
+	private static class TestFactory extends MqttEventSinkFactory {
+		final List<Published> published = new CopyOnWriteArrayList<Published>();
+		TestClient client;
+
+		@Override
+		public MqttAsyncClient newMqttAsyncClient() throws MqttException {
+			client = new TestClient();
+			return client;
+		}
+
+		@Override
+		public void publish(String mqttTopic, MqttAsyncClient client, MqttMessage msg, IMqttActionListener callback) {
+			published.add(new Published(mqttTopic, msg, callback));
+		}
+	}
+
+	private static class TestClient extends MqttAsyncClient {
+		boolean closed = false;
+
+		TestClient() throws MqttException {
+			super("tcp://localhost:1883", "MqttAsyncEventSinkTest", new MemoryPersistence());
+		}
+
+		@Override
+		public boolean isConnected() {
+			return !closed;
+		}
+
+		@Override
+		public IMqttToken disconnect() throws MqttException {
+			return new MqttToken() {
+				@Override
+				public void waitForCompletion() {
+				}
+			};
+		}
+
+		@Override
+		public void close() throws MqttException {
+			closed = true;
+		}
+	}
+
+	private static class Published {
+		final String topic;
+		final MqttMessage message;
+		final IMqttActionListener callback;
+
+		Published(String topic, MqttMessage message, IMqttActionListener callback) {
+			this.topic = topic;
+			this.message = message;
+			this.callback = callback;
+		}
+
+		String payload() throws IOException {
+			return new String(message.getPayload(), Utils.UTF8);
+		}
+	}
+}